@@ -0,0 +1,198 @@
+package com.couture.mercury.core.client;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the answers of another {@link MxResolver}.
+ *
+ * <p>Found answers are kept for their TTL, capped at {@link #DEFAULT_MAX_TTL_MILLIS} by default.
+ * Failures are cached too, so a queue full of mail to a dead domain does not query DNS per message:
+ * non-existent domains for the negative TTL and server failures for the much shorter failure TTL, after
+ * which they are tried again.</p>
+ *
+ * <p>Concurrent lookups of a domain that is not cached are coalesced: the first caller queries the
+ * resolver and the others wait for its answer, so a burst of messages to a new domain costs one query.
+ * Expired entries are replaced on the next lookup of their domain; {@link #purgeExpired()} drops the
+ * expired entries of domains no longer asked for.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class CachingMxResolver implements MxResolver {
+    /**
+     * Default longest time a found answer is kept, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_TTL_MILLIS = 3_600_000;
+
+    /**
+     * Default time a non-existent domain is remembered, in milliseconds.
+     */
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 300_000;
+
+    /**
+     * Default time a server failure is remembered, in milliseconds.
+     */
+    public static final long DEFAULT_FAILURE_TTL_MILLIS = 30_000;
+
+    private final MxResolver m_resolver;
+    private final long m_maxTtlMillis;
+    private final long m_negativeTtlMillis;
+    private final long m_failureTtlMillis;
+    private final LongSupplier m_clock;
+    private final Map<String, Entry> m_entries = new ConcurrentHashMap<>();
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+
+    /**
+     * Creates a cache with the default TTLs.
+     *
+     * @param resolver The resolver to cache.
+     */
+    public CachingMxResolver(MxResolver resolver){
+        this(resolver, DEFAULT_MAX_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS, DEFAULT_FAILURE_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param resolver The resolver to cache.
+     * @param maxTtlMillis The longest time a found answer is kept, in milliseconds (At least 0).
+     * @param negativeTtlMillis The time a non-existent domain is remembered, in milliseconds (At least 0).
+     * @param failureTtlMillis The time a server failure is remembered, in milliseconds (At least 0).
+     * @param clock The current time in milliseconds.
+     * @throws IllegalArgumentException If a TTL is negative.
+     */
+    public CachingMxResolver(MxResolver resolver, long maxTtlMillis, long negativeTtlMillis, long failureTtlMillis,
+                             LongSupplier clock){
+        m_resolver = Objects.requireNonNull(resolver, "Resolver cannot be null");
+        m_clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        if(maxTtlMillis < 0 || negativeTtlMillis < 0 || failureTtlMillis < 0){
+            throw new IllegalArgumentException("TTLs cannot be negative");
+        }
+        m_maxTtlMillis = maxTtlMillis;
+        m_negativeTtlMillis = negativeTtlMillis;
+        m_failureTtlMillis = failureTtlMillis;
+    }
+
+    @Override
+    public MxLookup resolve(String domain){
+        Objects.requireNonNull(domain, "Domain cannot be null");
+        while(true){
+            long now = m_clock.getAsLong();
+            Entry entry = m_entries.get(domain);
+            if(entry != null && !entry.isExpired(now)){
+                m_hits.incrementAndGet();
+                return entry.m_answer.join();
+            }
+
+            Entry lookup = new Entry();
+            boolean owner = entry == null ? m_entries.putIfAbsent(domain, lookup) == null
+                    : m_entries.replace(domain, entry, lookup);
+            if(!owner){
+                // Another caller started a lookup first; wait for its entry.
+                continue;
+            }
+
+            m_misses.incrementAndGet();
+            MxLookup answer;
+            try{
+                answer = m_resolver.resolve(domain);
+            }
+            catch(RuntimeException e){
+                answer = MxLookup.failed(MxLookup.Status.SERVER_FAILURE, 0);
+            }
+            lookup.complete(answer, m_clock.getAsLong() + ttlOf(answer));
+            return answer;
+        }
+    }
+
+    /**
+     * Drops every expired entry.
+     *
+     * @return The number of entries dropped.
+     */
+    public int purgeExpired(){
+        long now = m_clock.getAsLong();
+        int count = 0;
+        for(Map.Entry<String, Entry> entry : m_entries.entrySet()){
+            if(entry.getValue().isExpired(now) && m_entries.remove(entry.getKey(), entry.getValue())){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of domains cached, expired or not.
+     *
+     * @return The entry count.
+     */
+    public int size(){
+        return m_entries.size();
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache, including those that waited for a lookup in progress.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount(){
+        return m_hits.get();
+    }
+
+    /**
+     * Gets the number of lookups passed to the resolver.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount(){
+        return m_misses.get();
+    }
+
+    /**
+     * Gets how long an answer is kept.
+     *
+     * @param answer The answer.
+     * @return The TTL in milliseconds.
+     */
+    private long ttlOf(MxLookup answer){
+        return switch(answer.getStatus()){
+            case FOUND -> Math.min(answer.getTtlMillis(), m_maxTtlMillis);
+            case NO_DOMAIN -> m_negativeTtlMillis;
+            case SERVER_FAILURE -> m_failureTtlMillis;
+        };
+    }
+
+    /**
+     * The answer for one domain, pending until the lookup completes.
+     */
+    private static final class Entry {
+        private final CompletableFuture<MxLookup> m_answer = new CompletableFuture<>();
+        private volatile long m_expiresMillis = Long.MAX_VALUE;
+
+        /**
+         * Publishes the answer.
+         *
+         * @param answer The answer.
+         * @param expiresMillis When the answer expires, in milliseconds.
+         */
+        void complete(MxLookup answer, long expiresMillis){
+            m_expiresMillis = expiresMillis;
+            m_answer.complete(answer);
+        }
+
+        /**
+         * Checks if the answer has expired. A lookup in progress never has.
+         *
+         * @param now The current time in milliseconds.
+         * @return True if the answer should be looked up again.
+         */
+        boolean isExpired(long now){
+            return now >= m_expiresMillis;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the transactions in flight to each recipient domain, adapting the limit the way TCP adapts
+ * its congestion window.
+ *
+ * <p>Each domain starts with {@link SmtpClientConfig#getInitialDomainWindow()} transactions in flight.
+ * While the domain accepts mail the window grows: by one per success up to the threshold at which it
+ * last pushed back, then by one per window of successes. A 4xx reply or a failed connection is taken
+ * as the domain pushing back, and the window is multiplied by {@link SmtpClientConfig#getWindowBackoff()},
+ * down to one. Transactions that were already in flight when the window shrank do not shrink it
+ * again, so one burst of refusals counts as one signal. A fixed limit either leaves a large provider's
+ * capacity unused or gets the client throttled by it; this finds each domain's rate on its own.</p>
+ *
+ * <p>5xx replies concern the message or recipient rather than load, and leave the window alone.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class ConcurrencyLimiter {
+    /**
+     * What the outcome of a transaction says about the domain's capacity.
+     */
+    public enum Signal {
+        /**
+         * The domain accepted the transaction; the window may grow.
+         */
+        SUCCESS,
+
+        /**
+         * The domain pushed back or failed; the window shrinks.
+         */
+        CONGESTION,
+
+        /**
+         * The outcome says nothing about capacity.
+         */
+        NEUTRAL
+    }
+
+    private final SmtpClientConfig m_config;
+    private final Map<String, DomainWindow> m_windows = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param config The client configuration, for the window bounds, backoff and acquire timeout.
+     */
+    public ConcurrencyLimiter(SmtpClientConfig config){
+        m_config = Objects.requireNonNull(config, "Client configuration cannot be null");
+    }
+
+    /**
+     * Classifies the outcome of a transaction. Any 421 reply, which closes the session, or a 4xx reply
+     * to the transaction is congestion; a successful transaction is success; anything else is neutral.
+     *
+     * @param result The transaction's replies.
+     * @return The signal.
+     */
+    public static Signal classify(DeliveryResult result){
+        for(CommandResult reply : result.getRecipientReplies().values()){
+            if(reply.getResponseCode() == 421){
+                return Signal.CONGESTION;
+            }
+        }
+
+        int code = result.getTransactionReply().getResponseCode();
+        if(code / 100 == 4){
+            return Signal.CONGESTION;
+        }
+        return result.getTransactionReply().isSuccess() ? Signal.SUCCESS : Signal.NEUTRAL;
+    }
+
+    /**
+     * Takes a place in a domain's window, waiting up to the acquire timeout while the window is full.
+     *
+     * @param domain The lower-case recipient domain.
+     * @return The permit, which must be released once the transaction completes.
+     * @throws LocalLimitException If the window stays full for the acquire timeout.
+     */
+    public Permit acquire(String domain) throws LocalLimitException {
+        Objects.requireNonNull(domain, "Domain cannot be null");
+        return m_windows.computeIfAbsent(domain, key -> new DomainWindow()).acquire(domain);
+    }
+
+    /**
+     * Takes a place in a domain's window if one is free, without waiting.
+     *
+     * @param domain The lower-case recipient domain.
+     * @return The permit, which must be released once the transaction completes, or null if the window is full.
+     */
+    public Permit tryAcquire(String domain){
+        Objects.requireNonNull(domain, "Domain cannot be null");
+        return m_windows.computeIfAbsent(domain, key -> new DomainWindow()).tryAcquire();
+    }
+
+    /**
+     * Gets the current window of a domain.
+     *
+     * @param domain The lower-case recipient domain.
+     * @return The number of transactions allowed in flight.
+     */
+    public int getWindow(String domain){
+        DomainWindow window = m_windows.get(domain);
+        return window == null ? m_config.getInitialDomainWindow() : window.getLimit();
+    }
+
+    /**
+     * Gets the number of transactions in flight to a domain.
+     *
+     * @param domain The lower-case recipient domain.
+     * @return The in-flight count.
+     */
+    public int getInFlight(String domain){
+        DomainWindow window = m_windows.get(domain);
+        return window == null ? 0 : window.getInFlight();
+    }
+
+    /**
+     * Gets the current window of every domain seen so far.
+     *
+     * @return A snapshot of the windows, by domain.
+     */
+    public Map<String, Integer> getWindows(){
+        Map<String, Integer> windows = new LinkedHashMap<>();
+        m_windows.forEach((domain, window) -> windows.put(domain, window.getLimit()));
+        return windows;
+    }
+
+    /**
+     * A place in a domain's window, held for the duration of one transaction.
+     */
+    public static final class Permit {
+        private final DomainWindow m_window;
+        private final long m_sequence;
+        private boolean m_released;
+
+        /**
+         * Creates a permit.
+         *
+         * @param window The domain's window.
+         * @param sequence The order in which the permit was issued.
+         */
+        private Permit(DomainWindow window, long sequence){
+            m_window = window;
+            m_sequence = sequence;
+        }
+
+        /**
+         * Gives the place back and adjusts the window by the outcome. Only the first call has an effect.
+         *
+         * @param signal The outcome of the transaction.
+         */
+        public void release(Signal signal){
+            if(m_released){
+                return;
+            }
+            m_released = true;
+            m_window.release(m_sequence, signal);
+        }
+    }
+
+    /**
+     * The window of one domain.
+     */
+    private final class DomainWindow {
+        private final ReentrantLock m_lock = new ReentrantLock();
+        private final Condition m_available = m_lock.newCondition();
+        private double m_window = m_config.getInitialDomainWindow();
+        private double m_threshold = m_config.getMaxDomainWindow();
+        private int m_inFlight;
+        private long m_issued;
+        // Permits issued before this one were in flight at the last decrease.
+        private long m_recoverySequence;
+
+        /**
+         * Takes a place, waiting while the window is full.
+         *
+         * @param domain The domain, for error messages.
+         * @return The permit.
+         * @throws LocalLimitException If no place became free within the acquire timeout.
+         */
+        Permit acquire(String domain) throws LocalLimitException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(m_config.getAcquireTimeoutMillis());
+            m_lock.lock();
+            try{
+                while(m_inFlight >= (int) m_window){
+                    if(remaining <= 0){
+                        throw new LocalLimitException("Concurrency limit reached for " + domain);
+                    }
+                    remaining = m_available.awaitNanos(remaining);
+                }
+                m_inFlight++;
+                return new Permit(this, m_issued++);
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new LocalLimitException("Interrupted waiting for a place in the window of " + domain, e);
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Takes a place if one is free.
+         *
+         * @return The permit, or null if the window is full.
+         */
+        Permit tryAcquire(){
+            m_lock.lock();
+            try{
+                if(m_inFlight >= (int) m_window){
+                    return null;
+                }
+                m_inFlight++;
+                return new Permit(this, m_issued++);
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Frees a place and adjusts the window.
+         *
+         * @param sequence The order in which the permit was issued.
+         * @param signal The outcome of the transaction.
+         */
+        void release(long sequence, Signal signal){
+            m_lock.lock();
+            try{
+                m_inFlight--;
+                if(signal == Signal.SUCCESS){
+                    double increase = m_window < m_threshold ? 1 : 1 / Math.floor(m_window);
+                    m_window = Math.min(m_window + increase, m_config.getMaxDomainWindow());
+                }
+                else if(signal == Signal.CONGESTION && sequence >= m_recoverySequence){
+                    m_window = Math.max(1, m_window * m_config.getWindowBackoff());
+                    m_threshold = m_window;
+                    m_recoverySequence = m_issued;
+                }
+                m_available.signalAll();
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the whole number of transactions allowed in flight.
+         *
+         * @return The limit.
+         */
+        int getLimit(){
+            m_lock.lock();
+            try{
+                return (int) m_window;
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the number of transactions in flight.
+         *
+         * @return The in-flight count.
+         */
+        int getInFlight(){
+            m_lock.lock();
+            try{
+                return m_inFlight;
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.couture.mercury.core.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps established outbound connections per {@link Destination} so they survive across messages.
+ *
+ * <p>Opening a connection costs a TCP handshake, a greeting and EHLO, which for distant servers is
+ * most of the time spent on a small message. {@link #acquire(Destination)} hands out the most recently
+ * used idle connection to the destination after a RSET, which both clears the previous transaction and
+ * proves the connection is still alive; a connection that fails the RSET is closed and the next one is
+ * tried. Only when none is idle is a new connection opened, up to
+ * {@link SmtpClientConfig#getMaxConnectionsPerDestination()}; beyond that the caller waits for a
+ * connection to be released.</p>
+ *
+ * <p>{@link #release(SmtpConnection)} returns a connection for reuse unless it has failed, has carried
+ * {@link SmtpClientConfig#getMaxMessagesPerConnection()} transactions, or the destination already has
+ * {@link SmtpClientConfig#getMaxIdlePerDestination()} idle connections. Idle connections are closed
+ * with QUIT once they have been unused for {@link SmtpClientConfig#getIdleTimeoutMillis()}, by a
+ * background thread owned by the pool.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class ConnectionPool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final SmtpClientConfig m_config;
+    private final Map<Destination, DestinationPool> m_pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService m_evictor;
+    private final AtomicLong m_created = new AtomicLong();
+    private final AtomicLong m_reused = new AtomicLong();
+    private volatile boolean m_closed;
+
+    /**
+     * Creates a pool and starts its idle eviction thread.
+     *
+     * @param config The client configuration.
+     */
+    public ConnectionPool(SmtpClientConfig config){
+        m_config = Objects.requireNonNull(config, "Client configuration cannot be null");
+        m_evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "smtp-client-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long period = Math.max(1, config.getIdleTimeoutMillis() / 2);
+        m_evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acquires a connection to a destination, reusing an idle one when possible.
+     *
+     * @param destination The destination.
+     * @return A connection ready for a new transaction, which must be given back with
+     *         {@link #release(SmtpConnection)} or {@link #invalidate(SmtpConnection)}.
+     * @throws LocalLimitException If the pool is closed or the destination stays at its connection limit
+     *                             for the acquire timeout.
+     * @throws SmtpClientException If the server refuses the session.
+     * @throws IOException If a new connection cannot be established.
+     */
+    public SmtpConnection acquire(Destination destination) throws IOException {
+        Objects.requireNonNull(destination, "Destination cannot be null");
+        if(m_closed){
+            throw new LocalLimitException("Connection pool is closed");
+        }
+
+        DestinationPool pool = m_pools.computeIfAbsent(destination, key -> new DestinationPool());
+        SmtpConnection idle;
+        while((idle = pool.take(destination)) != null){
+            try{
+                idle.reset();
+                m_reused.incrementAndGet();
+                return idle;
+            }
+            catch(IOException e){
+                LOGGER.debug("Discarding idle connection to {}", destination, e);
+                discard(pool, idle);
+            }
+        }
+
+        try{
+            SmtpConnection connection = SmtpConnection.open(destination, m_config);
+            m_created.incrementAndGet();
+            return connection;
+        }
+        catch(IOException | RuntimeException e){
+            pool.closed();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a connection after a transaction, keeping it for reuse if it is still fit.
+     *
+     * @param connection The connection.
+     */
+    public void release(SmtpConnection connection){
+        DestinationPool pool = m_pools.get(connection.getDestination());
+        boolean retire = m_closed || !connection.isUsable()
+                || connection.getMessagesSent() >= m_config.getMaxMessagesPerConnection();
+        if(retire || !pool.offer(connection)){
+            discard(pool, connection);
+        }
+    }
+
+    /**
+     * Closes a connection that should not be reused, for example after an unexpected failure.
+     *
+     * @param connection The connection.
+     */
+    public void invalidate(SmtpConnection connection){
+        discard(m_pools.get(connection.getDestination()), connection);
+    }
+
+    /**
+     * Closes every idle connection unused for longer than the idle timeout.
+     * Runs periodically on the pool's eviction thread.
+     */
+    public void evictIdle(){
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(m_config.getIdleTimeoutMillis());
+        for(DestinationPool pool : m_pools.values()){
+            for(SmtpConnection connection : pool.removeIdleSince(cutoff)){
+                discard(pool, connection);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of connections open to a destination, idle or in use.
+     *
+     * @param destination The destination.
+     * @return The open connection count.
+     */
+    public int getOpenCount(Destination destination){
+        DestinationPool pool = m_pools.get(destination);
+        return pool == null ? 0 : pool.getOpenCount();
+    }
+
+    /**
+     * Gets the number of idle connections to a destination.
+     *
+     * @param destination The destination.
+     * @return The idle connection count.
+     */
+    public int getIdleCount(Destination destination){
+        DestinationPool pool = m_pools.get(destination);
+        return pool == null ? 0 : pool.getIdleCount();
+    }
+
+    /**
+     * Gets the number of connections opened by the pool.
+     *
+     * @return The created connection count.
+     */
+    public long getCreatedCount(){
+        return m_created.get();
+    }
+
+    /**
+     * Gets the number of acquisitions served by an idle connection.
+     *
+     * @return The reused connection count.
+     */
+    public long getReusedCount(){
+        return m_reused.get();
+    }
+
+    /**
+     * Gets the client configuration.
+     *
+     * @return The configuration.
+     */
+    public SmtpClientConfig getConfig(){
+        return m_config;
+    }
+
+    /**
+     * Stops the eviction thread and closes every idle connection. Connections still in use are closed
+     * when they are released.
+     */
+    @Override
+    public void close(){
+        m_closed = true;
+        m_evictor.shutdownNow();
+        for(DestinationPool pool : m_pools.values()){
+            for(SmtpConnection connection : pool.removeAllIdle()){
+                discard(pool, connection);
+            }
+        }
+    }
+
+    /**
+     * Closes a connection and frees its slot.
+     *
+     * @param pool The destination's pool.
+     * @param connection The connection.
+     */
+    private static void discard(DestinationPool pool, SmtpConnection connection){
+        connection.close();
+        pool.closed();
+    }
+
+    /**
+     * The connections to one destination. Idle connections are kept most recently used first, so
+     * under light load the same few stay warm and the rest age out.
+     */
+    private final class DestinationPool {
+        private final ReentrantLock m_lock = new ReentrantLock();
+        private final Condition m_available = m_lock.newCondition();
+        private final Deque<SmtpConnection> m_idle = new ArrayDeque<>();
+        private int m_open;
+
+        /**
+         * Takes an idle connection, or reserves a slot for a new one, waiting while the destination is at its limit.
+         *
+         * @param destination The destination, for error messages.
+         * @return An idle connection, or null if a slot was reserved for a new connection.
+         * @throws LocalLimitException If no connection became available within the acquire timeout.
+         */
+        SmtpConnection take(Destination destination) throws LocalLimitException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(m_config.getAcquireTimeoutMillis());
+            m_lock.lock();
+            try{
+                while(true){
+                    SmtpConnection idle = m_idle.pollFirst();
+                    if(idle != null){
+                        return idle;
+                    }
+                    if(m_open < m_config.getMaxConnectionsPerDestination()){
+                        m_open++;
+                        return null;
+                    }
+                    if(remaining <= 0){
+                        throw new LocalLimitException("Connection limit reached for " + destination);
+                    }
+                    remaining = m_available.awaitNanos(remaining);
+                }
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                throw new LocalLimitException("Interrupted waiting for a connection to " + destination, e);
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Keeps a connection for reuse.
+         *
+         * @param connection The connection.
+         * @return False if the idle limit has been reached and the connection should be closed instead.
+         */
+        boolean offer(SmtpConnection connection){
+            m_lock.lock();
+            try{
+                if(m_idle.size() >= m_config.getMaxIdlePerDestination()){
+                    return false;
+                }
+                m_idle.addFirst(connection);
+                m_available.signal();
+                return true;
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Frees the slot of a connection that has been closed or failed to open.
+         */
+        void closed(){
+            m_lock.lock();
+            try{
+                m_open--;
+                m_available.signal();
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Removes the idle connections last used before a time. They keep their slots until closed.
+         *
+         * @param cutoff The time on the {@link System#nanoTime()} clock.
+         * @return The removed connections.
+         */
+        List<SmtpConnection> removeIdleSince(long cutoff){
+            List<SmtpConnection> removed = new ArrayList<>();
+            m_lock.lock();
+            try{
+                Iterator<SmtpConnection> iterator = m_idle.descendingIterator();
+                while(iterator.hasNext()){
+                    SmtpConnection connection = iterator.next();
+                    if(connection.getLastUsedNanos() - cutoff < 0){
+                        iterator.remove();
+                        removed.add(connection);
+                    }
+                }
+            }
+            finally{
+                m_lock.unlock();
+            }
+            return removed;
+        }
+
+        /**
+         * Removes every idle connection. They keep their slots until closed.
+         *
+         * @return The removed connections.
+         */
+        List<SmtpConnection> removeAllIdle(){
+            m_lock.lock();
+            try{
+                List<SmtpConnection> removed = new ArrayList<>(m_idle);
+                m_idle.clear();
+                return removed;
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the number of open connections.
+         *
+         * @return The open connection count.
+         */
+        int getOpenCount(){
+            m_lock.lock();
+            try{
+                return m_open;
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the number of idle connections.
+         *
+         * @return The idle connection count.
+         */
+        int getIdleCount(){
+            m_lock.lock();
+            try{
+                return m_idle.size();
+            }
+            finally{
+                m_lock.unlock();
+            }
+        }
+    }
+}
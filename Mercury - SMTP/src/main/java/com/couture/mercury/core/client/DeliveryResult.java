@@ -0,0 +1,89 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of one outbound transaction: the reply to each recipient and the reply that ended the
+ * transaction. A recipient is delivered only if its RCPT was accepted and the message was accepted at
+ * the end of DATA; otherwise the reply to look at for retry decisions is {@link #getReply(String)}.
+ */
+public final class DeliveryResult {
+    private final Map<String, CommandResult> m_recipientReplies;
+    private final CommandResult m_transactionReply;
+
+    /**
+     * Creates a result.
+     *
+     * @param recipientReplies The reply to each recipient's RCPT, in the order they were sent.
+     * @param transactionReply The reply to the end of DATA, or the reply that stopped the transaction earlier.
+     */
+    public DeliveryResult(Map<String, CommandResult> recipientReplies, CommandResult transactionReply){
+        m_recipientReplies = Collections.unmodifiableMap(new LinkedHashMap<>(recipientReplies));
+        m_transactionReply = transactionReply;
+    }
+
+    /**
+     * Gets the reply that ended the transaction: the reply to the end of DATA, or to the MAIL, RCPT or
+     * DATA command that stopped it.
+     *
+     * @return The transaction reply.
+     */
+    public CommandResult getTransactionReply(){
+        return m_transactionReply;
+    }
+
+    /**
+     * Gets the reply to each recipient's RCPT command.
+     *
+     * @return An unmodifiable map in the order the recipients were sent; recipients never sent are absent.
+     */
+    public Map<String, CommandResult> getRecipientReplies(){
+        return m_recipientReplies;
+    }
+
+    /**
+     * Gets the reply that decides a recipient's outcome: the transaction reply if its RCPT was accepted,
+     * otherwise the RCPT reply.
+     *
+     * @param recipient The recipient.
+     * @return The reply, or the transaction reply if the recipient was never sent.
+     */
+    public CommandResult getReply(String recipient){
+        CommandResult reply = m_recipientReplies.get(recipient);
+        return reply == null || reply.isSuccess() ? m_transactionReply : reply;
+    }
+
+    /**
+     * Gets the recipients the message was delivered to.
+     *
+     * @return The delivered recipients, empty if the transaction failed.
+     */
+    public List<String> getDeliveredRecipients(){
+        if(!m_transactionReply.isSuccess()){
+            return List.of();
+        }
+
+        List<String> delivered = new ArrayList<>();
+        for(Map.Entry<String, CommandResult> entry : m_recipientReplies.entrySet()){
+            if(entry.getValue().isSuccess()){
+                delivered.add(entry.getKey());
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Checks if the message was delivered to every recipient sent.
+     *
+     * @return True if the transaction and every RCPT succeeded.
+     */
+    public boolean isFullyDelivered(){
+        return getDeliveredRecipients().size() == m_recipientReplies.size() && !m_recipientReplies.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package com.couture.mercury.core.client;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A remote SMTP server that outbound connections are opened to and pooled by.
+ * Host names are compared case-insensitively.
+ */
+public final class Destination {
+    /**
+     * The standard SMTP relay port.
+     */
+    public static final int SMTP_PORT = 25;
+
+    private final String m_host;
+    private final int m_port;
+
+    /**
+     * Creates a destination on the standard SMTP port.
+     *
+     * @param host The host name or address.
+     */
+    public Destination(String host){
+        this(host, SMTP_PORT);
+    }
+
+    /**
+     * Creates a destination.
+     *
+     * @param host The host name or address.
+     * @param port The port (1 to 65535).
+     * @throws IllegalArgumentException If the host is empty or the port is out of range.
+     */
+    public Destination(String host, int port){
+        Objects.requireNonNull(host, "Host cannot be null");
+        if(host.isEmpty()){
+            throw new IllegalArgumentException("Host cannot be empty");
+        }
+        if(port < 1 || port > 65535){
+            throw new IllegalArgumentException("Port must be between 1 and 65535");
+        }
+        m_host = host.toLowerCase(Locale.ROOT);
+        m_port = port;
+    }
+
+    /**
+     * Gets the host.
+     *
+     * @return The lower-case host name or address.
+     */
+    public String getHost(){
+        return m_host;
+    }
+
+    /**
+     * Gets the port.
+     *
+     * @return The port.
+     */
+    public int getPort(){
+        return m_port;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if(this == other){
+            return true;
+        }
+        if(!(other instanceof Destination destination)){
+            return false;
+        }
+        return m_port == destination.m_port && m_host.equals(destination.m_host);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * m_host.hashCode() + m_port;
+    }
+
+    @Override
+    public String toString(){
+        return m_host + ":" + m_port;
+    }
+}
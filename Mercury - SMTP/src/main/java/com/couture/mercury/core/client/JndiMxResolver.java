@@ -0,0 +1,139 @@
+package com.couture.mercury.core.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Looks up mail exchangers with the JDK's JNDI DNS provider.
+ *
+ * <p>A domain without MX records is its own exchanger if it has an address record, as RFC 5321
+ * section 5.1 specifies, and a null MX (RFC 7505) means it accepts no mail. JNDI does not expose
+ * record TTLs, so every answer carries the TTL given to the constructor; put a {@link CachingMxResolver}
+ * in front of this class rather than calling it per message.</p>
+ *
+ * <p>This class is thread-safe; each lookup uses its own directory context.</p>
+ */
+public final class JndiMxResolver implements MxResolver {
+    /**
+     * Default TTL given to answers, in milliseconds.
+     */
+    public static final long DEFAULT_TTL_MILLIS = 300_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JndiMxResolver.class);
+    private static final String[] MX = {"MX"};
+    private static final String[] ADDRESS = {"A", "AAAA"};
+
+    private final Hashtable<String, String> m_environment = new Hashtable<>();
+    private final long m_ttlMillis;
+
+    /**
+     * Creates a resolver that queries the system's name servers.
+     */
+    public JndiMxResolver(){
+        this("dns:", DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a resolver.
+     *
+     * @param providerUrl The JNDI DNS URL, "dns:" for the system's name servers or "dns://host" for a given one.
+     * @param ttlMillis The TTL given to answers, in milliseconds (At least 0).
+     * @throws IllegalArgumentException If the TTL is negative.
+     */
+    public JndiMxResolver(String providerUrl, long ttlMillis){
+        Objects.requireNonNull(providerUrl, "Provider URL cannot be null");
+        if(ttlMillis < 0){
+            throw new IllegalArgumentException("TTL cannot be negative");
+        }
+        m_environment.put(DirContext.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+        m_environment.put(DirContext.PROVIDER_URL, providerUrl);
+        m_ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public MxLookup resolve(String domain){
+        DirContext context = null;
+        try{
+            context = new InitialDirContext(m_environment);
+            List<MxRecord> records = parse(context.getAttributes(domain, MX).get("MX"));
+            if(records == null){
+                return MxLookup.failed(MxLookup.Status.NO_DOMAIN, m_ttlMillis);
+            }
+            if(!records.isEmpty()){
+                return new MxLookup(MxLookup.Status.FOUND, records, m_ttlMillis);
+            }
+
+            Attributes addresses = context.getAttributes(domain, ADDRESS);
+            if(addresses.size() > 0){
+                return MxLookup.found(m_ttlMillis, new MxRecord(domain, 0));
+            }
+            return MxLookup.failed(MxLookup.Status.NO_DOMAIN, m_ttlMillis);
+        }
+        catch(NameNotFoundException e){
+            return MxLookup.failed(MxLookup.Status.NO_DOMAIN, m_ttlMillis);
+        }
+        catch(NamingException | IllegalArgumentException e){
+            LOGGER.debug("MX lookup for {} failed", domain, e);
+            return MxLookup.failed(MxLookup.Status.SERVER_FAILURE, m_ttlMillis);
+        }
+        finally{
+            close(context);
+        }
+    }
+
+    /**
+     * Parses MX record values of the form "10 mx.example.com.".
+     *
+     * @param attribute The MX attribute, or null if there are no MX records.
+     * @return The records, or null if the domain publishes a null MX.
+     * @throws NamingException If the values cannot be read.
+     */
+    private static List<MxRecord> parse(Attribute attribute) throws NamingException {
+        List<MxRecord> records = new ArrayList<>();
+        if(attribute == null){
+            return records;
+        }
+
+        NamingEnumeration<?> values = attribute.getAll();
+        while(values.hasMore()){
+            String[] fields = values.next().toString().trim().split("\\s+");
+            if(fields.length != 2){
+                continue;
+            }
+            if(fields[1].equals(".")){
+                return null;
+            }
+            records.add(new MxRecord(fields[1], Integer.parseInt(fields[0])));
+        }
+        return records;
+    }
+
+    /**
+     * Closes a directory context, ignoring failures.
+     *
+     * @param context The context, or null.
+     */
+    private static void close(DirContext context){
+        if(context == null){
+            return;
+        }
+        try{
+            context.close();
+        }
+        catch(NamingException e){
+            LOGGER.debug("Closing DNS context failed", e);
+        }
+    }
+}
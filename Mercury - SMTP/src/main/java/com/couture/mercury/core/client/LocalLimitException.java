@@ -0,0 +1,27 @@
+package com.couture.mercury.core.client;
+
+/**
+ * Thrown when the client gives up waiting on one of its own limits, a place in a domain's window or
+ * a pooled connection, or its pool is closed. The remote server was not involved, so the failure
+ * says nothing about its capacity and does not shrink its window.
+ */
+public class LocalLimitException extends SmtpClientException {
+    /**
+     * Constructs a new local limit exception.
+     *
+     * @param message Detailed error message.
+     */
+    public LocalLimitException(String message){
+        super(message);
+    }
+
+    /**
+     * Constructs a new local limit exception with a cause.
+     *
+     * @param message Detailed error message.
+     * @param cause The underlying cause.
+     */
+    public LocalLimitException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
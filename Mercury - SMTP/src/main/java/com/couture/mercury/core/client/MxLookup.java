@@ -0,0 +1,123 @@
+package com.couture.mercury.core.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The answer to a mail exchanger lookup for a domain: its exchangers, or why there are none, and how
+ * long the answer may be cached.
+ */
+public final class MxLookup {
+    /**
+     * The outcome of a lookup.
+     */
+    public enum Status {
+        /**
+         * The domain has mail exchangers, either from MX records or, lacking those, the domain's own
+         * address records as RFC 5321 section 5.1 allows.
+         */
+        FOUND,
+
+        /**
+         * The domain does not exist or accepts no mail.
+         */
+        NO_DOMAIN,
+
+        /**
+         * The name servers could not be reached or failed to answer; the domain may exist.
+         */
+        SERVER_FAILURE
+    }
+
+    private final Status m_status;
+    private final List<MxRecord> m_records;
+    private final long m_ttlMillis;
+
+    /**
+     * Creates a lookup answer.
+     *
+     * @param status The outcome.
+     * @param records The exchangers in any order; empty unless the status is {@link Status#FOUND}.
+     * @param ttlMillis How long the answer may be cached, in milliseconds (At least 0).
+     * @throws IllegalArgumentException If the records do not match the status or the TTL is negative.
+     */
+    public MxLookup(Status status, List<MxRecord> records, long ttlMillis){
+        Objects.requireNonNull(status, "Status cannot be null");
+        if((status == Status.FOUND) == records.isEmpty()){
+            throw new IllegalArgumentException("Only a found lookup has exchangers, and it needs at least one");
+        }
+        if(ttlMillis < 0){
+            throw new IllegalArgumentException("TTL cannot be negative");
+        }
+        List<MxRecord> sorted = new ArrayList<>(records);
+        Collections.sort(sorted);
+        m_status = status;
+        m_records = Collections.unmodifiableList(sorted);
+        m_ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Creates a found answer.
+     *
+     * @param ttlMillis How long the answer may be cached, in milliseconds.
+     * @param records The exchangers.
+     * @return The answer.
+     */
+    public static MxLookup found(long ttlMillis, MxRecord... records){
+        return new MxLookup(Status.FOUND, List.of(records), ttlMillis);
+    }
+
+    /**
+     * Creates an answer without exchangers.
+     *
+     * @param status {@link Status#NO_DOMAIN} or {@link Status#SERVER_FAILURE}.
+     * @param ttlMillis How long the answer may be cached, in milliseconds.
+     * @return The answer.
+     */
+    public static MxLookup failed(Status status, long ttlMillis){
+        return new MxLookup(status, List.of(), ttlMillis);
+    }
+
+    /**
+     * Gets the outcome.
+     *
+     * @return The status.
+     */
+    public Status getStatus(){
+        return m_status;
+    }
+
+    /**
+     * Gets the exchangers, most preferred first.
+     *
+     * @return The unmodifiable records, empty unless the domain was found.
+     */
+    public List<MxRecord> getRecords(){
+        return m_records;
+    }
+
+    /**
+     * Gets how long the answer may be cached.
+     *
+     * @return The TTL in milliseconds.
+     */
+    public long getTtlMillis(){
+        return m_ttlMillis;
+    }
+
+    /**
+     * Checks if the domain has exchangers.
+     *
+     * @return True if the status is {@link Status#FOUND}.
+     */
+    public boolean isFound(){
+        return m_status == Status.FOUND;
+    }
+
+    @Override
+    public String toString(){
+        return m_status == Status.FOUND ? m_records.toString() : m_status.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.couture.mercury.core.client;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * A mail exchanger of a domain, as given by an MX record: a host and its preference, lower first.
+ */
+public final class MxRecord implements Comparable<MxRecord> {
+    private final String m_host;
+    private final int m_preference;
+
+    /**
+     * Creates a record.
+     *
+     * @param host The exchanger's host name, with or without the trailing dot.
+     * @param preference The preference (0 to 65535), lower preferred.
+     * @throws IllegalArgumentException If the host is empty or the preference is out of range.
+     */
+    public MxRecord(String host, int preference){
+        Objects.requireNonNull(host, "Host cannot be null");
+        String name = host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+        if(name.isEmpty()){
+            throw new IllegalArgumentException("Host cannot be empty");
+        }
+        if(preference < 0 || preference > 65535){
+            throw new IllegalArgumentException("Preference must be between 0 and 65535");
+        }
+        m_host = name.toLowerCase(Locale.ROOT);
+        m_preference = preference;
+    }
+
+    /**
+     * Gets the exchanger's host name.
+     *
+     * @return The lower-case host name, without the trailing dot.
+     */
+    public String getHost(){
+        return m_host;
+    }
+
+    /**
+     * Gets the preference.
+     *
+     * @return The preference, lower preferred.
+     */
+    public int getPreference(){
+        return m_preference;
+    }
+
+    /**
+     * Orders records by preference.
+     *
+     * @param other The other record.
+     * @return The comparison of the preferences.
+     */
+    @Override
+    public int compareTo(MxRecord other){
+        return Integer.compare(m_preference, other.m_preference);
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if(this == other){
+            return true;
+        }
+        if(!(other instanceof MxRecord record)){
+            return false;
+        }
+        return m_preference == record.m_preference && m_host.equals(record.m_host);
+    }
+
+    @Override
+    public int hashCode(){
+        return 31 * m_host.hashCode() + m_preference;
+    }
+
+    @Override
+    public String toString(){
+        return m_preference + " " + m_host;
+    }
+}
@@ -0,0 +1,42 @@
+package com.couture.mercury.core.client;
+
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/**
+ * Finds the mail exchangers of a recipient domain.
+ *
+ * <p>Implementations report failures in the returned {@link MxLookup} rather than by throwing, so a
+ * cache in front of them can remember failures as well as answers.</p>
+ */
+public interface MxResolver {
+    /**
+     * Looks up the mail exchangers of a domain.
+     *
+     * @param domain The lower-case domain.
+     * @return The answer.
+     */
+    MxLookup resolve(String domain);
+
+    /**
+     * Adapts this resolver to the router of {@link SmtpClient#deliver(java.util.List, Function)}, sending
+     * each domain to its most preferred exchanger. A domain without exchangers fails with an
+     * {@link UncheckedIOException}, which the client reports for that domain's recipients: a domain
+     * that does not exist or accepts no mail wraps an {@link UnroutableDomainException}, reported as
+     * permanent, while a failed lookup stays temporary so the messages are retried.
+     *
+     * @return The router.
+     */
+    default Function<String, Destination> asRouter(){
+        return domain -> {
+            MxLookup lookup = resolve(domain);
+            if(lookup.getStatus() == MxLookup.Status.NO_DOMAIN){
+                throw new UncheckedIOException(new UnroutableDomainException(domain, lookup.toString()));
+            }
+            if(!lookup.isFound()){
+                throw new UncheckedIOException(new SmtpClientException("No mail exchanger for " + domain + ": " + lookup));
+            }
+            return new Destination(lookup.getRecords().get(0).getHost());
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.couture.mercury.core.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A message waiting to be relayed: its envelope and its content.
+ * Messages are compared by identity, so the same content queued twice counts as two messages.
+ */
+public final class OutboundMessage {
+    private final String m_reversePath;
+    private final List<String> m_recipients;
+    private final ByteBuffer[] m_body;
+
+    /**
+     * Creates a message.
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients, possibly at several domains.
+     * @param body The message content, headers included; buffer positions are not changed when sent.
+     */
+    public OutboundMessage(String reversePath, List<String> recipients, ByteBuffer... body){
+        m_reversePath = reversePath;
+        m_recipients = List.copyOf(Objects.requireNonNull(recipients, "Recipients cannot be null"));
+        m_body = body.clone();
+    }
+
+    /**
+     * Gets the reverse-path.
+     *
+     * @return The reverse-path, or null for a null reverse-path.
+     */
+    public String getReversePath(){
+        return m_reversePath;
+    }
+
+    /**
+     * Gets the recipients.
+     *
+     * @return An unmodifiable list of recipients.
+     */
+    public List<String> getRecipients(){
+        return m_recipients;
+    }
+
+    /**
+     * Gets the message content.
+     *
+     * @return Duplicates of the content buffers, safe to read.
+     */
+    public ByteBuffer[] getBody(){
+        ByteBuffer[] body = new ByteBuffer[m_body.length];
+        for(int i = 0; i < body.length; i++){
+            body[i] = m_body[i].duplicate();
+        }
+        return body;
+    }
+
+    /**
+     * Groups the recipients by domain, keeping their order within each domain.
+     *
+     * @return A map from lower-case domain to its recipients, in the order domains first appear.
+     */
+    public Map<String, List<String>> getRecipientsByDomain(){
+        Map<String, List<String>> byDomain = new LinkedHashMap<>();
+        for(String recipient : m_recipients){
+            byDomain.computeIfAbsent(domainOf(recipient), domain -> new ArrayList<>()).add(recipient);
+        }
+        return byDomain;
+    }
+
+    /**
+     * Gets the domain of a mailbox.
+     *
+     * @param mailbox The mailbox, such as user@example.com.
+     * @return The lower-case domain, or an empty string if the mailbox has none.
+     */
+    public static String domainOf(String mailbox){
+        int at = mailbox.lastIndexOf('@');
+        return at < 0 ? "" : mailbox.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+}
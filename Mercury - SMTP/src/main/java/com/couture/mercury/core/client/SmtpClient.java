@@ -0,0 +1,258 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Sends messages to remote SMTP servers over pooled connections.
+ *
+ * <p>Each call to {@link #send(Destination, String, List, ByteBuffer...)} borrows a connection to the
+ * destination from the client's {@link ConnectionPool}, runs one transaction and gives the connection
+ * back, so consecutive messages to the same server share one TCP connection and EHLO. Replies that
+ * refuse the message or some recipients are reported in the {@link DeliveryResult}; only failures
+ * of the connection itself are thrown, after which the connection is discarded.</p>
+ *
+ * <p>{@link #deliver(List, Function)} relays a queue of messages with as few round trips as the
+ * remote allows: recipients are grouped by domain across all messages, each domain's messages are
+ * sent back to back over one connection, and each message carries as many of the domain's recipients
+ * per transaction as {@link SmtpClientConfig#getMaxRecipientsPerTransaction()} permits. Combined with
+ * PIPELINING in {@link SmtpConnection}, a message to fifty recipients at one provider costs one
+ * envelope round trip rather than fifty transactions. Each transaction holds a place in the domain's
+ * window of the client's {@link ConcurrencyLimiter}, so concurrent callers together stay within what
+ * the domain has shown it accepts.</p>
+ *
+ * <p>This class is thread-safe; concurrent sends to one destination use separate connections.</p>
+ */
+public final class SmtpClient implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpClient.class);
+
+    private final ConnectionPool m_pool;
+    private final ConcurrencyLimiter m_limiter;
+
+    /**
+     * Creates a client.
+     *
+     * @param config The client configuration.
+     */
+    public SmtpClient(SmtpClientConfig config){
+        m_pool = new ConnectionPool(Objects.requireNonNull(config, "Client configuration cannot be null"));
+        m_limiter = new ConcurrencyLimiter(config);
+    }
+
+    /**
+     * Sends a message to a destination in a single transaction.
+     *
+     * @param destination The server to send to.
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients, all handled by the destination (At least one).
+     * @param body The message content, headers included; buffer positions are not changed.
+     * @return The replies to the transaction.
+     * @throws SmtpClientException If no connection could be obtained or the server ended the session.
+     * @throws IOException If the connection failed.
+     */
+    public DeliveryResult send(Destination destination, String reversePath, List<String> recipients,
+                               ByteBuffer... body) throws IOException {
+        SmtpConnection connection = m_pool.acquire(destination);
+        try{
+            DeliveryResult result = connection.send(reversePath, recipients, body);
+            m_pool.release(connection);
+            return result;
+        }
+        catch(IOException | RuntimeException e){
+            m_pool.invalidate(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Relays messages, grouped by recipient domain. Each domain is routed to a destination once and
+     * served over one pooled connection. A domain whose connection fails gets a 451 reply for the
+     * recipients that had not been sent, and the remaining domains are still attempted. A domain the
+     * router rejects with an {@link UnroutableDomainException} gets that exception's 550 reply instead.
+     *
+     * @param messages The messages.
+     * @param router Gives the destination for a lower-case recipient domain.
+     * @return The results of every transaction, per message.
+     */
+    public Map<OutboundMessage, List<DeliveryResult>> deliver(List<OutboundMessage> messages,
+                                                              Function<String, Destination> router){
+        Map<String, Map<OutboundMessage, List<String>>> byDomain = new LinkedHashMap<>();
+        Map<OutboundMessage, List<DeliveryResult>> results = new IdentityHashMap<>();
+        for(OutboundMessage message : messages){
+            results.put(message, new ArrayList<>());
+            for(Map.Entry<String, List<String>> entry : message.getRecipientsByDomain().entrySet()){
+                byDomain.computeIfAbsent(entry.getKey(), domain -> new LinkedHashMap<>()).put(message, entry.getValue());
+            }
+        }
+
+        for(Map.Entry<String, Map<OutboundMessage, List<String>>> entry : byDomain.entrySet()){
+            deliverToDomain(entry.getKey(), entry.getValue(), router, results);
+        }
+        return results;
+    }
+
+    /**
+     * Gets the connection pool.
+     *
+     * @return The pool.
+     */
+    public ConnectionPool getPool(){
+        return m_pool;
+    }
+
+    /**
+     * Gets the limiter of transactions in flight per domain.
+     *
+     * @return The limiter.
+     */
+    public ConcurrencyLimiter getLimiter(){
+        return m_limiter;
+    }
+
+    /**
+     * Closes the idle connections. Sends in progress finish on their own connections, which are then closed.
+     */
+    @Override
+    public void close(){
+        m_pool.close();
+    }
+
+    /**
+     * Sends every message queued for one domain over one connection, with a place in the domain's
+     * window for each transaction.
+     *
+     * <p>A place is always taken before a connection. While a connection is held, a place is only
+     * taken if one is free; otherwise the connection goes back to the pool before waiting, so a caller
+     * holding a connection never waits on the window while another holding a place waits on the pool.</p>
+     *
+     * @param domain The domain.
+     * @param messages The messages with their recipients at the domain.
+     * @param router Gives the destination for the domain.
+     * @param results The results to add to.
+     */
+    private void deliverToDomain(String domain, Map<OutboundMessage, List<String>> messages,
+                                 Function<String, Destination> router, Map<OutboundMessage, List<DeliveryResult>> results){
+        SmtpConnection connection = null;
+        ConcurrencyLimiter.Permit permit = null;
+        try{
+            Destination destination = null;
+            for(Map.Entry<OutboundMessage, List<String>> entry : messages.entrySet()){
+                OutboundMessage message = entry.getKey();
+                Deque<String> pending = new ArrayDeque<>(entry.getValue());
+                while(!pending.isEmpty()){
+                    permit = connection == null ? null : m_limiter.tryAcquire(domain);
+                    if(permit == null){
+                        if(connection != null){
+                            m_pool.release(connection);
+                            connection = null;
+                        }
+                        permit = m_limiter.acquire(domain);
+                    }
+
+                    if(connection == null){
+                        if(destination == null){
+                            destination = router.apply(domain);
+                        }
+                        connection = m_pool.acquire(destination);
+                    }
+                    else{
+                        connection.reset();
+                    }
+                    DeliveryResult result = sendBatch(connection, message, pending);
+                    permit.release(ConcurrencyLimiter.classify(result));
+                    results.get(message).add(result);
+                }
+                // Mark the message done so a later connection failure does not report it again.
+                entry.setValue(List.of());
+            }
+            if(connection != null){
+                m_pool.release(connection);
+            }
+        }
+        catch(IOException | RuntimeException e){
+            if(permit != null){
+                // Only a failure involving the remote says anything about its capacity.
+                boolean remote = e instanceof IOException && !(e instanceof LocalLimitException);
+                permit.release(remote ? ConcurrencyLimiter.Signal.CONGESTION : ConcurrencyLimiter.Signal.NEUTRAL);
+            }
+            if(connection != null){
+                m_pool.invalidate(connection);
+            }
+
+            CommandResult failure;
+            if(e instanceof UncheckedIOException && e.getCause() instanceof UnroutableDomainException unroutable){
+                // The domain will not accept mail on a later attempt either, so the recipients bounce.
+                LOGGER.info("Delivery to {} failed permanently: {}", domain, unroutable.getMessage());
+                failure = unroutable.getReply();
+            }
+            else{
+                LOGGER.warn("Delivery to {} failed", domain, e);
+                failure = new CommandResult(false, "Connection failed: " + e.getMessage(), CommandConstants.ResponseCodes.LOCAL_ERROR);
+            }
+            for(Map.Entry<OutboundMessage, List<String>> entry : messages.entrySet()){
+                if(!entry.getValue().isEmpty()){
+                    results.get(entry.getKey()).add(new DeliveryResult(Map.of(), failure));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends one transaction with as many pending recipients as allowed. Recipients the remote refused
+     * with 452 because the transaction already had enough are put back at the front of the queue for
+     * the next transaction, as RFC 5321 section 4.5.3.1.10 expects; they are left out of the result.
+     *
+     * @param connection The connection.
+     * @param message The message.
+     * @param pending The recipients still to send; those sent are removed.
+     * @return The result of the transaction.
+     * @throws IOException If the connection fails.
+     */
+    private DeliveryResult sendBatch(SmtpConnection connection, OutboundMessage message, Deque<String> pending) throws IOException {
+        int size = Math.min(pending.size(), m_pool.getConfig().getMaxRecipientsPerTransaction());
+        List<String> batch = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            batch.add(pending.pollFirst());
+        }
+
+        DeliveryResult result = connection.send(message.getReversePath(), batch, message.getBody());
+        if(!result.getTransactionReply().isSuccess()){
+            return result;
+        }
+
+        Map<String, CommandResult> replies = new LinkedHashMap<>();
+        List<String> deferred = new ArrayList<>();
+        for(Map.Entry<String, CommandResult> entry : result.getRecipientReplies().entrySet()){
+            if(entry.getValue().getResponseCode() == CommandConstants.ResponseCodes.TOO_MANY_RECIPIENTS){
+                deferred.add(entry.getKey());
+            }
+            else{
+                replies.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if(deferred.isEmpty()){
+            return result;
+        }
+
+        for(int i = deferred.size() - 1; i >= 0; i--){
+            pending.addFirst(deferred.get(i));
+        }
+        return new DeliveryResult(replies, result.getTransactionReply());
+    }
+}
@@ -0,0 +1,424 @@
+package com.couture.mercury.core.client;
+
+import java.util.Objects;
+
+/**
+ * Immutable configuration of an {@link SmtpClient} and its {@link ConnectionPool}.
+ */
+public final class SmtpClientConfig {
+    /**
+     * Default name announced with EHLO.
+     */
+    public static final String DEFAULT_HELO_NAME = "localhost";
+
+    /**
+     * Default time allowed to establish a connection, in milliseconds.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Default time allowed for any single reply, in milliseconds. RFC 5321 section 4.5.3.2 asks for
+     * up to ten minutes after the end of DATA; servers that take that long are rare.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 300_000;
+
+    /**
+     * Default maximum number of connections open to one destination.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_DESTINATION = 10;
+
+    /**
+     * Default maximum number of idle connections kept per destination.
+     */
+    public static final int DEFAULT_MAX_IDLE_PER_DESTINATION = 4;
+
+    /**
+     * Default time an idle connection is kept before it is closed, in milliseconds. Most servers drop
+     * idle clients after a few minutes, so this should stay well below that.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * Default number of transactions sent over one connection before it is retired.
+     */
+    public static final int DEFAULT_MAX_MESSAGES_PER_CONNECTION = 100;
+
+    /**
+     * Default number of recipients sent in one transaction, the minimum RFC 5321 section 4.5.3.1.8
+     * requires servers to accept.
+     */
+    public static final int DEFAULT_MAX_RECIPIENTS_PER_TRANSACTION = 100;
+
+    /**
+     * Default time to wait for a connection when a destination is at its limit, in milliseconds.
+     */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Default number of transactions allowed in flight to a new domain.
+     */
+    public static final int DEFAULT_INITIAL_DOMAIN_WINDOW = 2;
+
+    /**
+     * Default largest number of transactions allowed in flight to one domain.
+     */
+    public static final int DEFAULT_MAX_DOMAIN_WINDOW = 50;
+
+    /**
+     * Default factor a domain's window is multiplied by when the domain pushes back.
+     */
+    public static final double DEFAULT_WINDOW_BACKOFF = 0.5;
+
+    private final String m_heloName;
+    private final int m_connectTimeoutMillis;
+    private final int m_readTimeoutMillis;
+    private final int m_maxConnectionsPerDestination;
+    private final int m_maxIdlePerDestination;
+    private final long m_idleTimeoutMillis;
+    private final int m_maxMessagesPerConnection;
+    private final long m_acquireTimeoutMillis;
+    private final int m_maxRecipientsPerTransaction;
+    private final int m_initialDomainWindow;
+    private final int m_maxDomainWindow;
+    private final double m_windowBackoff;
+
+    /**
+     * Creates a configuration from a builder.
+     *
+     * @param builder The builder.
+     */
+    private SmtpClientConfig(Builder builder){
+        m_heloName = builder.m_heloName;
+        m_connectTimeoutMillis = builder.m_connectTimeoutMillis;
+        m_readTimeoutMillis = builder.m_readTimeoutMillis;
+        m_maxConnectionsPerDestination = builder.m_maxConnectionsPerDestination;
+        m_maxIdlePerDestination = builder.m_maxIdlePerDestination;
+        m_idleTimeoutMillis = builder.m_idleTimeoutMillis;
+        m_maxMessagesPerConnection = builder.m_maxMessagesPerConnection;
+        m_acquireTimeoutMillis = builder.m_acquireTimeoutMillis;
+        m_maxRecipientsPerTransaction = builder.m_maxRecipientsPerTransaction;
+        m_initialDomainWindow = builder.m_initialDomainWindow;
+        m_maxDomainWindow = builder.m_maxDomainWindow;
+        m_windowBackoff = builder.m_windowBackoff;
+    }
+
+    /**
+     * Creates a builder with the default settings.
+     *
+     * @return The builder.
+     */
+    public static Builder builder(){
+        return new Builder();
+    }
+
+    /**
+     * Gets the name announced with EHLO.
+     *
+     * @return The name.
+     */
+    public String getHeloName(){
+        return m_heloName;
+    }
+
+    /**
+     * Gets the time allowed to establish a connection.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public int getConnectTimeoutMillis(){
+        return m_connectTimeoutMillis;
+    }
+
+    /**
+     * Gets the time allowed for any single reply.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public int getReadTimeoutMillis(){
+        return m_readTimeoutMillis;
+    }
+
+    /**
+     * Gets the maximum number of connections open to one destination.
+     *
+     * @return The connection limit.
+     */
+    public int getMaxConnectionsPerDestination(){
+        return m_maxConnectionsPerDestination;
+    }
+
+    /**
+     * Gets the maximum number of idle connections kept per destination.
+     *
+     * @return The idle limit.
+     */
+    public int getMaxIdlePerDestination(){
+        return m_maxIdlePerDestination;
+    }
+
+    /**
+     * Gets the time an idle connection is kept before it is closed.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getIdleTimeoutMillis(){
+        return m_idleTimeoutMillis;
+    }
+
+    /**
+     * Gets the number of transactions sent over one connection before it is retired.
+     *
+     * @return The message limit.
+     */
+    public int getMaxMessagesPerConnection(){
+        return m_maxMessagesPerConnection;
+    }
+
+    /**
+     * Gets the time to wait for a connection when a destination is at its limit.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getAcquireTimeoutMillis(){
+        return m_acquireTimeoutMillis;
+    }
+
+    /**
+     * Gets the number of recipients sent in one transaction.
+     *
+     * @return The recipient limit.
+     */
+    public int getMaxRecipientsPerTransaction(){
+        return m_maxRecipientsPerTransaction;
+    }
+
+    /**
+     * Gets the number of transactions allowed in flight to a domain not yet heard from.
+     *
+     * @return The initial window.
+     */
+    public int getInitialDomainWindow(){
+        return m_initialDomainWindow;
+    }
+
+    /**
+     * Gets the largest number of transactions allowed in flight to one domain.
+     *
+     * @return The window limit.
+     */
+    public int getMaxDomainWindow(){
+        return m_maxDomainWindow;
+    }
+
+    /**
+     * Gets the factor a domain's window is multiplied by when the domain pushes back.
+     *
+     * @return The backoff factor.
+     */
+    public double getWindowBackoff(){
+        return m_windowBackoff;
+    }
+
+    /**
+     * Builder for {@link SmtpClientConfig}.
+     */
+    public static final class Builder {
+        private String m_heloName = DEFAULT_HELO_NAME;
+        private int m_connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private int m_readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        private int m_maxConnectionsPerDestination = DEFAULT_MAX_CONNECTIONS_PER_DESTINATION;
+        private int m_maxIdlePerDestination = DEFAULT_MAX_IDLE_PER_DESTINATION;
+        private long m_idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+        private int m_maxMessagesPerConnection = DEFAULT_MAX_MESSAGES_PER_CONNECTION;
+        private long m_acquireTimeoutMillis = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+        private int m_maxRecipientsPerTransaction = DEFAULT_MAX_RECIPIENTS_PER_TRANSACTION;
+        private int m_initialDomainWindow = DEFAULT_INITIAL_DOMAIN_WINDOW;
+        private int m_maxDomainWindow = DEFAULT_MAX_DOMAIN_WINDOW;
+        private double m_windowBackoff = DEFAULT_WINDOW_BACKOFF;
+
+        /**
+         * Creates a builder.
+         */
+        private Builder(){
+        }
+
+        /**
+         * Sets the name announced with EHLO, normally the fully-qualified domain name of this host.
+         *
+         * @param heloName The name.
+         * @return This builder.
+         * @throws IllegalArgumentException If the name is empty.
+         */
+        public Builder heloName(String heloName){
+            Objects.requireNonNull(heloName, "HELO name cannot be null");
+            if(heloName.isEmpty()){
+                throw new IllegalArgumentException("HELO name cannot be empty");
+            }
+            m_heloName = heloName;
+            return this;
+        }
+
+        /**
+         * Sets the time allowed to establish a connection.
+         *
+         * @param timeoutMillis The timeout in milliseconds (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the timeout is less than 1.
+         */
+        public Builder connectTimeoutMillis(int timeoutMillis){
+            if(timeoutMillis < 1){
+                throw new IllegalArgumentException("Connect timeout must be at least 1 millisecond");
+            }
+            m_connectTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Sets the time allowed for any single reply.
+         *
+         * @param timeoutMillis The timeout in milliseconds (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the timeout is less than 1.
+         */
+        public Builder readTimeoutMillis(int timeoutMillis){
+            if(timeoutMillis < 1){
+                throw new IllegalArgumentException("Read timeout must be at least 1 millisecond");
+            }
+            m_readTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of connections open to one destination.
+         *
+         * @param maxConnections The connection limit (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the limit is less than 1.
+         */
+        public Builder maxConnectionsPerDestination(int maxConnections){
+            if(maxConnections < 1){
+                throw new IllegalArgumentException("Maximum connections per destination must be at least 1");
+            }
+            m_maxConnectionsPerDestination = maxConnections;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of idle connections kept per destination.
+         *
+         * @param maxIdle The idle limit (At least 0).
+         * @return This builder.
+         * @throws IllegalArgumentException If the limit is negative.
+         */
+        public Builder maxIdlePerDestination(int maxIdle){
+            if(maxIdle < 0){
+                throw new IllegalArgumentException("Maximum idle connections per destination cannot be negative");
+            }
+            m_maxIdlePerDestination = maxIdle;
+            return this;
+        }
+
+        /**
+         * Sets the time an idle connection is kept before it is closed.
+         *
+         * @param timeoutMillis The timeout in milliseconds (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the timeout is less than 1.
+         */
+        public Builder idleTimeoutMillis(long timeoutMillis){
+            if(timeoutMillis < 1){
+                throw new IllegalArgumentException("Idle timeout must be at least 1 millisecond");
+            }
+            m_idleTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of transactions sent over one connection before it is retired.
+         *
+         * @param maxMessages The message limit (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the limit is less than 1.
+         */
+        public Builder maxMessagesPerConnection(int maxMessages){
+            if(maxMessages < 1){
+                throw new IllegalArgumentException("Maximum messages per connection must be at least 1");
+            }
+            m_maxMessagesPerConnection = maxMessages;
+            return this;
+        }
+
+        /**
+         * Sets the time to wait for a connection when a destination is at its limit.
+         *
+         * @param timeoutMillis The timeout in milliseconds (At least 0).
+         * @return This builder.
+         * @throws IllegalArgumentException If the timeout is negative.
+         */
+        public Builder acquireTimeoutMillis(long timeoutMillis){
+            if(timeoutMillis < 0){
+                throw new IllegalArgumentException("Acquire timeout cannot be negative");
+            }
+            m_acquireTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Sets the number of recipients sent in one transaction. Recipients beyond it, or refused by the
+         * remote with 452 as too many, are sent in further transactions over the same connection.
+         *
+         * @param maxRecipients The recipient limit (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the limit is less than 1.
+         */
+        public Builder maxRecipientsPerTransaction(int maxRecipients){
+            if(maxRecipients < 1){
+                throw new IllegalArgumentException("Maximum recipients per transaction must be at least 1");
+            }
+            m_maxRecipientsPerTransaction = maxRecipients;
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the number of transactions in flight to one domain, which adapts between
+         * one and the maximum as the domain accepts or pushes back.
+         *
+         * @param initialWindow The window for a domain not yet heard from (At least 1).
+         * @param maxWindow The largest window (At least initialWindow).
+         * @return This builder.
+         * @throws IllegalArgumentException If the windows are out of range.
+         */
+        public Builder domainWindow(int initialWindow, int maxWindow){
+            if(initialWindow < 1 || maxWindow < initialWindow){
+                throw new IllegalArgumentException("Domain windows must satisfy 1 <= initial <= max");
+            }
+            m_initialDomainWindow = initialWindow;
+            m_maxDomainWindow = maxWindow;
+            return this;
+        }
+
+        /**
+         * Sets the factor a domain's window is multiplied by when the domain pushes back.
+         *
+         * @param backoff The factor (Greater than 0 and less than 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the factor is out of range.
+         */
+        public Builder windowBackoff(double backoff){
+            if(!(backoff > 0 && backoff < 1)){
+                throw new IllegalArgumentException("Window backoff must be between 0 and 1");
+            }
+            m_windowBackoff = backoff;
+            return this;
+        }
+
+        /**
+         * Builds the configuration.
+         *
+         * @return The configuration.
+         */
+        public SmtpClientConfig build(){
+            return new SmtpClientConfig(this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an outbound connection cannot be opened or used, or the remote server gives a reply
+ * that ends the session.
+ */
+public class SmtpClientException extends IOException {
+    private final CommandResult m_reply;
+
+    /**
+     * Constructs a new client exception.
+     *
+     * @param message Detailed error message.
+     */
+    public SmtpClientException(String message){
+        this(message, (CommandResult) null);
+    }
+
+    /**
+     * Constructs a new client exception for an unexpected reply.
+     *
+     * @param message Detailed error message.
+     * @param reply The reply that caused the failure, or null.
+     */
+    public SmtpClientException(String message, CommandResult reply){
+        super(reply == null ? message : message + ": " + reply.getResponseCode() + " " + reply.getMessage());
+        m_reply = reply;
+    }
+
+    /**
+     * Constructs a new client exception with a cause.
+     *
+     * @param message Detailed error message.
+     * @param cause The underlying cause.
+     */
+    public SmtpClientException(String message, Throwable cause){
+        super(message, cause);
+        m_reply = null;
+    }
+
+    /**
+     * Gets the reply that caused the failure.
+     *
+     * @return The reply, or null if the failure was not caused by a reply.
+     */
+    public CommandResult getReply(){
+        return m_reply;
+    }
+}
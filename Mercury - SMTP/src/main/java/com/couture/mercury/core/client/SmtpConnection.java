@@ -0,0 +1,588 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.io.LineScanner;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An established outbound SMTP connection to one {@link Destination}.
+ *
+ * <p>Opening a connection reads the greeting and announces this host with EHLO, falling back to HELO
+ * for servers that do not support it, and records the extensions the server advertised. Commands are
+ * sent with {@link #execute(CommandType, String)} and each reply is returned as a {@link CommandResult}
+ * whose message holds the reply text, one line per reply line. A reply in the 2xx or 3xx range counts
+ * as a success.</p>
+ *
+ * <p>{@link #send(String, List, ByteBuffer...)} runs one whole transaction. It leaves the connection
+ * in whatever state the server ended it in, so a connection that is reused for another transaction
+ * must first be reset with {@link #reset()}; {@link ConnectionPool} does this when it hands out an
+ * idle connection. Any I/O failure or malformed reply marks the connection as unusable.</p>
+ *
+ * <p>This class is not thread-safe; a connection is used by one thread at a time.</p>
+ */
+public final class SmtpConnection implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpConnection.class);
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DOT = '.';
+    private static final byte[] CRLF = {CR, LF};
+    private static final byte[] DATA_TERMINATOR = {DOT, CR, LF};
+    private static final int REPLY_CODE_LENGTH = 3;
+    private static final int MAX_REPLY_LINE_LENGTH = 4096;
+    private static final int QUIT_TIMEOUT_MILLIS = 1_000;
+    private static final int COPY_BUFFER_SIZE = 8192;
+    private static final String PIPELINING = "PIPELINING";
+
+    private final Destination m_destination;
+    private final Socket m_socket;
+    private final InputStream m_input;
+    private final OutputStream m_output;
+    private final Map<String, String> m_extensions = new LinkedHashMap<>();
+    private byte[] m_copyBuffer;
+    private int m_messagesSent;
+    private long m_lastUsedNanos;
+    private boolean m_broken;
+    private boolean m_closed;
+
+    /**
+     * Creates a connection over a connected socket.
+     *
+     * @param destination The destination the socket is connected to.
+     * @param socket The connected socket.
+     * @throws IOException If the socket streams cannot be obtained.
+     */
+    private SmtpConnection(Destination destination, Socket socket) throws IOException {
+        m_destination = destination;
+        m_socket = socket;
+        m_input = new BufferedInputStream(socket.getInputStream());
+        m_output = new BufferedOutputStream(socket.getOutputStream());
+        m_lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Connects to a destination, reads its greeting and sends EHLO.
+     *
+     * @param destination The destination.
+     * @param config The client configuration.
+     * @return The connection, ready for a transaction.
+     * @throws SmtpClientException If the server refuses the session.
+     * @throws IOException If the connection cannot be established.
+     */
+    public static SmtpConnection open(Destination destination, SmtpClientConfig config) throws IOException {
+        Objects.requireNonNull(destination, "Destination cannot be null");
+        Objects.requireNonNull(config, "Client configuration cannot be null");
+
+        Socket socket = new Socket();
+        try{
+            socket.connect(new InetSocketAddress(destination.getHost(), destination.getPort()), config.getConnectTimeoutMillis());
+            socket.setSoTimeout(config.getReadTimeoutMillis());
+            socket.setTcpNoDelay(true);
+
+            SmtpConnection connection = new SmtpConnection(destination, socket);
+            connection.greet(config.getHeloName());
+            return connection;
+        }
+        catch(IOException | RuntimeException e){
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a command and reads its reply.
+     *
+     * @param type The command.
+     * @param argument The text after the command name, or null for none.
+     * @return The reply.
+     * @throws IOException If the connection fails or the reply is malformed.
+     */
+    public CommandResult execute(CommandType type, String argument) throws IOException {
+        writeCommand(type, argument);
+        flush();
+        return readReply();
+    }
+
+    /**
+     * Sends one transaction: MAIL, a RCPT for each recipient, and the body if any recipient was
+     * accepted. The body is dot-stuffed on the way out and terminated, with a CRLF added first if
+     * it does not end with one.
+     *
+     * <p>If the server advertised PIPELINING (RFC 2920), MAIL, every RCPT and DATA are written in one
+     * go and their replies read afterwards, so the envelope costs one round trip however many
+     * recipients it has. Otherwise each command waits for its reply.</p>
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients (At least one).
+     * @param body The message content, headers included; buffer positions are not changed.
+     * @return The replies to the transaction.
+     * @throws IllegalArgumentException If there are no recipients.
+     * @throws IOException If the connection fails or a reply is malformed.
+     */
+    public DeliveryResult send(String reversePath, List<String> recipients, ByteBuffer... body) throws IOException {
+        if(recipients.isEmpty()){
+            throw new IllegalArgumentException("A transaction needs at least one recipient");
+        }
+        if(supportsExtension(PIPELINING)){
+            return sendPipelined(reversePath, recipients, body);
+        }
+
+        CommandResult mail = execute(CommandType.MAIL, mailArgument(reversePath));
+        if(!mail.isSuccess()){
+            return new DeliveryResult(Map.of(), mail);
+        }
+
+        Map<String, CommandResult> recipientReplies = new LinkedHashMap<>();
+        for(String recipient : recipients){
+            recipientReplies.put(recipient, execute(CommandType.RCPT, rcptArgument(recipient)));
+        }
+        CommandResult rejection = allRejected(recipientReplies);
+        if(rejection != null){
+            return new DeliveryResult(recipientReplies, rejection);
+        }
+
+        CommandResult data = execute(CommandType.DATA, null);
+        return new DeliveryResult(recipientReplies, data.getResponseCode() == CommandConstants.ResponseCodes.START_MAIL_INPUT
+                ? sendContent(body) : data);
+    }
+
+    /**
+     * Resets the connection for a new transaction with RSET.
+     *
+     * @throws SmtpClientException If the server refuses the reset.
+     * @throws IOException If the connection fails.
+     */
+    public void reset() throws IOException {
+        CommandResult reply = execute(CommandType.RSET, null);
+        if(reply.getResponseCode() != CommandConstants.ResponseCodes.SUCCESS){
+            m_broken = true;
+            throw new SmtpClientException("RSET refused by " + m_destination, reply);
+        }
+    }
+
+    /**
+     * Gets the destination this connection is open to.
+     *
+     * @return The destination.
+     */
+    public Destination getDestination(){
+        return m_destination;
+    }
+
+    /**
+     * Gets the extensions advertised in the EHLO reply.
+     *
+     * @return An unmodifiable map from upper-case keyword to its parameters, empty if the server only speaks HELO.
+     */
+    public Map<String, String> getExtensions(){
+        return Collections.unmodifiableMap(m_extensions);
+    }
+
+    /**
+     * Checks if the server advertised an extension.
+     *
+     * @param keyword The extension keyword, such as PIPELINING.
+     * @return True if the keyword was advertised.
+     */
+    public boolean supportsExtension(String keyword){
+        return m_extensions.containsKey(keyword.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Gets the number of transactions that reached the end of DATA on this connection.
+     *
+     * @return The message count.
+     */
+    public int getMessagesSent(){
+        return m_messagesSent;
+    }
+
+    /**
+     * Gets when this connection last received a reply, on the {@link System#nanoTime()} clock.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getLastUsedNanos(){
+        return m_lastUsedNanos;
+    }
+
+    /**
+     * Checks if the connection can carry another command.
+     *
+     * @return False once the connection is closed or has failed.
+     */
+    public boolean isUsable(){
+        return !m_closed && !m_broken && !m_socket.isClosed();
+    }
+
+    /**
+     * Sends QUIT, if the connection is still usable, and closes the socket.
+     */
+    @Override
+    public void close(){
+        if(m_closed){
+            return;
+        }
+
+        if(isUsable()){
+            try{
+                m_socket.setSoTimeout(QUIT_TIMEOUT_MILLIS);
+                execute(CommandType.QUIT, null);
+            }
+            catch(IOException e){
+                LOGGER.debug("QUIT to {} failed", m_destination, e);
+            }
+        }
+
+        m_closed = true;
+        try{
+            m_socket.close();
+        }
+        catch(IOException e){
+            LOGGER.debug("Failed to close connection to {}", m_destination, e);
+        }
+    }
+
+    /**
+     * Reads the greeting and identifies this host, with EHLO or, if the server does not recognise it, HELO.
+     *
+     * @param heloName The name to announce.
+     * @throws IOException If the server refuses the session or the connection fails.
+     */
+    private void greet(String heloName) throws IOException {
+        CommandResult greeting = readReply();
+        if(greeting.getResponseCode() != CommandConstants.ResponseCodes.SERVICE_READY){
+            throw new SmtpClientException("Session refused by " + m_destination, greeting);
+        }
+
+        CommandResult ehlo = execute(CommandType.EHLO, heloName);
+        if(ehlo.getResponseCode() == CommandConstants.ResponseCodes.SUCCESS){
+            String[] lines = ehlo.getMessage().split("\n");
+            for(int i = 1; i < lines.length; i++){
+                String[] parts = lines[i].trim().split(" ", 2);
+                m_extensions.put(parts[0].toUpperCase(Locale.ROOT), parts.length > 1 ? parts[1] : "");
+            }
+            return;
+        }
+
+        if(ehlo.getResponseCode() / 100 == 5){
+            CommandResult helo = execute(CommandType.HELO, heloName);
+            if(helo.getResponseCode() == CommandConstants.ResponseCodes.SUCCESS){
+                return;
+            }
+            ehlo = helo;
+        }
+        throw new SmtpClientException("Greeting refused by " + m_destination, ehlo);
+    }
+
+    /**
+     * Sends a transaction with the envelope pipelined.
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients.
+     * @param body The message content.
+     * @return The replies to the transaction.
+     * @throws IOException If the connection fails or a reply is malformed.
+     */
+    private DeliveryResult sendPipelined(String reversePath, List<String> recipients, ByteBuffer... body) throws IOException {
+        writeCommand(CommandType.MAIL, mailArgument(reversePath));
+        for(String recipient : recipients){
+            writeCommand(CommandType.RCPT, rcptArgument(recipient));
+        }
+        writeCommand(CommandType.DATA, null);
+        flush();
+
+        CommandResult mail = readReply();
+        Map<String, CommandResult> recipientReplies = new LinkedHashMap<>();
+        for(String recipient : recipients){
+            recipientReplies.put(recipient, readReply());
+        }
+        CommandResult data = readReply();
+
+        // DATA was sent before its outcome was known; a server that accepted it anyway gets an empty message ended at once.
+        CommandResult failure = !mail.isSuccess() ? mail : allRejected(recipientReplies);
+        if(failure != null){
+            if(data.getResponseCode() == CommandConstants.ResponseCodes.START_MAIL_INPUT){
+                write(DATA_TERMINATOR);
+                flush();
+                readReply();
+            }
+            return new DeliveryResult(mail.isSuccess() ? recipientReplies : Map.of(), failure);
+        }
+
+        return new DeliveryResult(recipientReplies, data.getResponseCode() == CommandConstants.ResponseCodes.START_MAIL_INPUT
+                ? sendContent(body) : data);
+    }
+
+    /**
+     * Sends the body and the terminator after DATA was accepted.
+     *
+     * @param body The message content.
+     * @return The reply to the end of the content.
+     * @throws IOException If the connection fails or the reply is malformed.
+     */
+    private CommandResult sendContent(ByteBuffer... body) throws IOException {
+        writeBody(body);
+        flush();
+        CommandResult reply = readReply();
+        m_messagesSent++;
+        return reply;
+    }
+
+    /**
+     * Checks if every recipient was refused.
+     *
+     * @param recipientReplies The reply to each RCPT.
+     * @return The last refusal if no recipient was accepted, otherwise null.
+     */
+    private static CommandResult allRejected(Map<String, CommandResult> recipientReplies){
+        CommandResult last = null;
+        for(CommandResult reply : recipientReplies.values()){
+            if(reply.isSuccess()){
+                return null;
+            }
+            last = reply;
+        }
+        return last;
+    }
+
+    /**
+     * Writes the body with a dot added in front of every line that starts with one, followed by the terminator.
+     *
+     * @param body The message content.
+     * @throws IOException If the connection fails.
+     */
+    private void writeBody(ByteBuffer... body) throws IOException {
+        boolean lineStart = true;
+        for(ByteBuffer buffer : body){
+            int i = buffer.position();
+            int limit = buffer.limit();
+            while(i < limit){
+                if(lineStart && buffer.get(i) == DOT){
+                    write(DOT);
+                }
+                int lineFeed = LineScanner.indexOfLineFeed(buffer, i, limit);
+                int end = lineFeed < 0 ? limit : lineFeed + 1;
+                write(buffer, i, end);
+                lineStart = lineFeed >= 0;
+                i = end;
+            }
+        }
+
+        if(!lineStart){
+            write(CRLF);
+        }
+        write(DATA_TERMINATOR);
+    }
+
+    /**
+     * Buffers a command line.
+     *
+     * @param type The command.
+     * @param argument The text after the command name, or null for none.
+     * @throws IOException If the connection fails.
+     */
+    private void writeCommand(CommandType type, String argument) throws IOException {
+        String line = argument == null ? type.name() : type.name() + " " + argument;
+        write(line.getBytes(StandardCharsets.US_ASCII));
+        write(CRLF);
+    }
+
+    /**
+     * Reads one possibly multi-line reply.
+     *
+     * @return The reply, with the text of each line on its own line.
+     * @throws IOException If the connection fails or the reply is malformed.
+     */
+    private CommandResult readReply() throws IOException {
+        StringBuilder text = new StringBuilder();
+        int code = -1;
+        while(true){
+            String line = readLine();
+            if(line.length() < REPLY_CODE_LENGTH || (line.length() > REPLY_CODE_LENGTH
+                    && line.charAt(REPLY_CODE_LENGTH) != ' ' && line.charAt(REPLY_CODE_LENGTH) != '-')){
+                throw malformed(line);
+            }
+
+            int lineCode;
+            try{
+                lineCode = Integer.parseInt(line.substring(0, REPLY_CODE_LENGTH));
+            }
+            catch(NumberFormatException e){
+                throw malformed(line);
+            }
+            if(code >= 0 && lineCode != code){
+                throw malformed(line);
+            }
+            code = lineCode;
+
+            if(!text.isEmpty()){
+                text.append('\n');
+            }
+            text.append(line.length() > REPLY_CODE_LENGTH ? line.substring(REPLY_CODE_LENGTH + 1) : "");
+            if(line.length() == REPLY_CODE_LENGTH || line.charAt(REPLY_CODE_LENGTH) == ' '){
+                break;
+            }
+        }
+
+        m_lastUsedNanos = System.nanoTime();
+        return new CommandResult(code < 400, text.toString(), code);
+    }
+
+    /**
+     * Reads one reply line.
+     *
+     * @return The line without its CRLF.
+     * @throws IOException If the connection fails, is closed or sends an overlong line.
+     */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        try{
+            int value;
+            while((value = m_input.read()) != LF){
+                if(value < 0){
+                    throw new SmtpClientException("Connection closed by " + m_destination);
+                }
+                if(line.size() == MAX_REPLY_LINE_LENGTH){
+                    throw new SmtpClientException("Reply line too long from " + m_destination);
+                }
+                line.write(value);
+            }
+        }
+        catch(IOException e){
+            m_broken = true;
+            throw e;
+        }
+
+        String text = line.toString(StandardCharsets.US_ASCII);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /**
+     * Marks the connection as unusable after a malformed reply.
+     *
+     * @param line The offending line.
+     * @return The exception to throw.
+     */
+    private SmtpClientException malformed(String line){
+        m_broken = true;
+        return new SmtpClientException("Malformed reply from " + m_destination + ": " + line);
+    }
+
+    /**
+     * Buffers a byte.
+     *
+     * @param value The byte.
+     * @throws IOException If the connection fails.
+     */
+    private void write(byte value) throws IOException {
+        try{
+            m_output.write(value);
+        }
+        catch(IOException e){
+            m_broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Buffers bytes.
+     *
+     * @param bytes The bytes.
+     * @throws IOException If the connection fails.
+     */
+    private void write(byte[] bytes) throws IOException {
+        try{
+            m_output.write(bytes);
+        }
+        catch(IOException e){
+            m_broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Buffers a range of a buffer without changing its position.
+     *
+     * @param buffer The buffer.
+     * @param from The absolute index to start at, inclusive.
+     * @param to The absolute index to stop at, exclusive.
+     * @throws IOException If the connection fails.
+     */
+    private void write(ByteBuffer buffer, int from, int to) throws IOException {
+        try{
+            if(buffer.hasArray()){
+                m_output.write(buffer.array(), buffer.arrayOffset() + from, to - from);
+                return;
+            }
+
+            if(m_copyBuffer == null){
+                m_copyBuffer = new byte[COPY_BUFFER_SIZE];
+            }
+            for(int i = from; i < to; i += m_copyBuffer.length){
+                int length = Math.min(m_copyBuffer.length, to - i);
+                buffer.get(i, m_copyBuffer, 0, length);
+                m_output.write(m_copyBuffer, 0, length);
+            }
+        }
+        catch(IOException e){
+            m_broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Sends everything buffered.
+     *
+     * @throws IOException If the connection fails.
+     */
+    private void flush() throws IOException {
+        try{
+            m_output.flush();
+        }
+        catch(IOException e){
+            m_broken = true;
+            throw e;
+        }
+    }
+
+    /**
+     * Formats the argument of MAIL.
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @return The argument.
+     */
+    private static String mailArgument(String reversePath){
+        return "FROM:<" + (reversePath == null ? "" : reversePath) + ">";
+    }
+
+    /**
+     * Formats the argument of RCPT.
+     *
+     * @param recipient The forward-path.
+     * @return The argument.
+     */
+    private static String rcptArgument(String recipient){
+        return "TO:<" + recipient + ">";
+    }
+}
@@ -0,0 +1,34 @@
+package com.couture.mercury.core.client;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+
+/**
+ * Thrown by a router for a domain that cannot receive mail at all, because it does not exist or
+ * publishes a null MX. Unlike other client failures this one is permanent: {@link SmtpClient} reports
+ * it for the domain's recipients with a 550 reply, so the messages bounce instead of being retried.
+ */
+public class UnroutableDomainException extends SmtpClientException {
+    private final String m_domain;
+
+    /**
+     * Constructs a new unroutable domain exception.
+     *
+     * @param domain The domain.
+     * @param detail Why the domain cannot be routed.
+     */
+    public UnroutableDomainException(String domain, String detail){
+        super("No mail exchanger for " + domain + ": " + detail,
+                new CommandResult(false, "5.1.2 Domain " + domain + " accepts no mail", CommandConstants.ResponseCodes.MAILBOX_UNAVAILABLE));
+        m_domain = domain;
+    }
+
+    /**
+     * Gets the domain.
+     *
+     * @return The domain that cannot be routed.
+     */
+    public String getDomain(){
+        return m_domain;
+    }
+}
@@ -0,0 +1,202 @@
+package com.couture.mercury.core.delivery;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Immutable backoff schedule for deferred deliveries.
+ *
+ * <p>The delay before attempt n+1 grows exponentially from {@link #getInitialDelayMillis()} by
+ * {@link #getMultiplier()} per attempt and is capped at {@link #getMaxDelayMillis()}. Each delay is
+ * then drawn uniformly from its upper half, so recipients deferred together by one outage do not all
+ * come due in the same second. After {@link #getMaxAttempts()} attempts a recipient is failed.</p>
+ */
+public final class RetryPolicy {
+    /**
+     * Default delay after the first failed attempt, in milliseconds.
+     */
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 5 * 60_000;
+
+    /**
+     * Default longest delay between attempts, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 4 * 60 * 60_000;
+
+    /**
+     * Default growth of the delay per attempt.
+     */
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    /**
+     * Default number of attempts before a recipient is failed, which with the other defaults spans
+     * up to about five days.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 35;
+
+    private final long m_initialDelayMillis;
+    private final long m_maxDelayMillis;
+    private final double m_multiplier;
+    private final int m_maxAttempts;
+
+    /**
+     * Creates a policy from a builder.
+     *
+     * @param builder The builder.
+     */
+    private RetryPolicy(Builder builder){
+        m_initialDelayMillis = builder.m_initialDelayMillis;
+        m_maxDelayMillis = builder.m_maxDelayMillis;
+        m_multiplier = builder.m_multiplier;
+        m_maxAttempts = builder.m_maxAttempts;
+    }
+
+    /**
+     * Creates a builder with the default settings.
+     *
+     * @return The builder.
+     */
+    public static Builder builder(){
+        return new Builder();
+    }
+
+    /**
+     * Gets the longest delay before the next attempt, before jitter.
+     *
+     * @param attempts The attempts made so far (At least 1).
+     * @return The delay in milliseconds.
+     */
+    public long getBackoffMillis(int attempts){
+        double delay = m_initialDelayMillis * Math.pow(m_multiplier, Math.max(0, attempts - 1));
+        return (long) Math.min(delay, m_maxDelayMillis);
+    }
+
+    /**
+     * Draws the delay before the next attempt: a uniform value in the upper half of the backoff.
+     *
+     * @param attempts The attempts made so far (At least 1).
+     * @param random The source of jitter.
+     * @return The delay in milliseconds.
+     */
+    public long nextDelayMillis(int attempts, RandomGenerator random){
+        long backoff = getBackoffMillis(attempts);
+        long half = backoff / 2;
+        return half + random.nextLong(backoff - half + 1);
+    }
+
+    /**
+     * Checks if a recipient has used up its attempts.
+     *
+     * @param attempts The attempts made so far.
+     * @return True if no further attempt should be made.
+     */
+    public boolean isExhausted(int attempts){
+        return attempts >= m_maxAttempts;
+    }
+
+    /**
+     * Gets the delay after the first failed attempt.
+     *
+     * @return The delay in milliseconds.
+     */
+    public long getInitialDelayMillis(){
+        return m_initialDelayMillis;
+    }
+
+    /**
+     * Gets the longest delay between attempts.
+     *
+     * @return The delay in milliseconds.
+     */
+    public long getMaxDelayMillis(){
+        return m_maxDelayMillis;
+    }
+
+    /**
+     * Gets the growth of the delay per attempt.
+     *
+     * @return The multiplier.
+     */
+    public double getMultiplier(){
+        return m_multiplier;
+    }
+
+    /**
+     * Gets the number of attempts before a recipient is failed.
+     *
+     * @return The attempt limit.
+     */
+    public int getMaxAttempts(){
+        return m_maxAttempts;
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}.
+     */
+    public static final class Builder {
+        private long m_initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+        private long m_maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+        private double m_multiplier = DEFAULT_MULTIPLIER;
+        private int m_maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+        /**
+         * Creates a builder.
+         */
+        private Builder(){
+        }
+
+        /**
+         * Sets the delays between attempts.
+         *
+         * @param initialDelayMillis The delay after the first failed attempt in milliseconds (At least 1).
+         * @param maxDelayMillis The longest delay in milliseconds (At least initialDelayMillis).
+         * @return This builder.
+         * @throws IllegalArgumentException If the delays are out of range.
+         */
+        public Builder delays(long initialDelayMillis, long maxDelayMillis){
+            if(initialDelayMillis < 1 || maxDelayMillis < initialDelayMillis){
+                throw new IllegalArgumentException("Retry delays must satisfy 1 <= initial <= max");
+            }
+            m_initialDelayMillis = initialDelayMillis;
+            m_maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        /**
+         * Sets the growth of the delay per attempt.
+         *
+         * @param multiplier The multiplier (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the multiplier is less than 1.
+         */
+        public Builder multiplier(double multiplier){
+            if(!(multiplier >= 1)){
+                throw new IllegalArgumentException("Retry multiplier must be at least 1");
+            }
+            m_multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets the number of attempts before a recipient is failed.
+         *
+         * @param maxAttempts The attempt limit (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the limit is less than 1.
+         */
+        public Builder maxAttempts(int maxAttempts){
+            if(maxAttempts < 1){
+                throw new IllegalArgumentException("Maximum attempts must be at least 1");
+            }
+            m_maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Builds the policy.
+         *
+         * @return The policy.
+         */
+        public RetryPolicy build(){
+            return new RetryPolicy(this);
+        }
+    }
+}
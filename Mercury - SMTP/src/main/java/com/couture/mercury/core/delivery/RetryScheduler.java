@@ -0,0 +1,153 @@
+package com.couture.mercury.core.delivery;
+
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.spool.DeliveryRecord;
+import com.couture.mercury.core.spool.DeliveryState;
+import com.couture.mercury.core.spool.MessageStore;
+import com.couture.mercury.core.spool.SpoolException;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.function.LongConsumer;
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides when each undelivered recipient is attempted again.
+ *
+ * <p>Recipients are tracked by their delivery record identifier on a {@link TimingWheel} of one-second
+ * ticks, so the deferred queue after a provider outage costs 16 bytes per recipient rather than an
+ * object per recipient on a heap-ordered queue. Nothing else is kept in memory: the delivery ledger
+ * already holds the attempt count and state of every record.</p>
+ *
+ * <p>{@link #recordAttempt(long, CommandResult, long)} turns the reply to an attempt into a delivery
+ * state: 2xx delivers, 5xx fails, and anything else defers the recipient by the {@link RetryPolicy}
+ * until its attempts are used up. {@link #pollDue(long, LongConsumer)} hands out the recipients whose
+ * time has come. After a restart {@link #rebuild(long)} reloads the queue from the ledger; the time of
+ * each deferred recipient's last attempt is not stored, so it is drawn at random within its current
+ * backoff, which also spreads the restarted queue out instead of retrying it all at once.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class RetryScheduler {
+    /**
+     * Length of a tick of the scheduler's timing wheel, in milliseconds.
+     */
+    public static final long TICK_MILLIS = 1_000;
+
+    // Four levels of one-second ticks reach 194 days.
+    private static final int WHEEL_LEVELS = 4;
+
+    private final MessageStore m_store;
+    private final RetryPolicy m_policy;
+    private final TimingWheel m_wheel;
+    private final RandomGenerator m_random = new SplittableRandom();
+
+    /**
+     * Creates an empty scheduler.
+     *
+     * @param store The message store whose delivery records are scheduled.
+     * @param policy The backoff schedule.
+     * @param nowMillis The current time in milliseconds.
+     */
+    public RetryScheduler(MessageStore store, RetryPolicy policy, long nowMillis){
+        m_store = Objects.requireNonNull(store, "Message store cannot be null");
+        m_policy = Objects.requireNonNull(policy, "Retry policy cannot be null");
+        m_wheel = new TimingWheel(TICK_MILLIS, WHEEL_LEVELS, nowMillis);
+    }
+
+    /**
+     * Schedules every undelivered record of the store: pending records straight away and deferred
+     * records at a random point within their current backoff.
+     *
+     * @param nowMillis The current time in milliseconds.
+     * @return The number of records scheduled.
+     * @throws IOException If the ledger cannot be read.
+     */
+    public synchronized int rebuild(long nowMillis) throws IOException {
+        int[] count = new int[1];
+        m_store.forEachUndeliveredRecord(record -> {
+            long delay = record.getState() == DeliveryState.DEFERRED
+                    ? m_random.nextLong(m_policy.getBackoffMillis(record.getAttempts()) + 1) : 0;
+            m_wheel.schedule(record.getRecordId(), nowMillis + delay);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Schedules a record for an attempt at a given time.
+     *
+     * @param recordId The delivery record identifier.
+     * @param dueMillis When to attempt it, in milliseconds.
+     */
+    public synchronized void schedule(long recordId, long dueMillis){
+        m_wheel.schedule(recordId, dueMillis);
+    }
+
+    /**
+     * Records the reply to a delivery attempt and, for a temporary failure, schedules the next one.
+     *
+     * @param recordId The delivery record identifier.
+     * @param reply The reply that decided the recipient's outcome.
+     * @param nowMillis The current time in milliseconds.
+     * @return The new state of the record.
+     * @throws IOException If the record is unknown or the ledger cannot be updated.
+     */
+    public DeliveryState recordAttempt(long recordId, CommandResult reply, long nowMillis) throws IOException {
+        DeliveryRecord record = m_store.getDelivery(recordId);
+        if(record == null){
+            throw new SpoolException("Unknown delivery record " + recordId);
+        }
+
+        int attempts = record.getAttempts() + 1;
+        DeliveryState state;
+        if(reply.getResponseCode() / 100 == 2){
+            state = DeliveryState.DELIVERED;
+        }
+        else if(reply.getResponseCode() / 100 == 5 || m_policy.isExhausted(attempts)){
+            state = DeliveryState.FAILED;
+        }
+        else{
+            state = DeliveryState.DEFERRED;
+        }
+
+        m_store.updateDelivery(recordId, state);
+        if(state == DeliveryState.DEFERRED){
+            synchronized(this){
+                m_wheel.schedule(recordId, nowMillis + m_policy.nextDelayMillis(attempts, m_random));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Hands out every record due by a time. The action runs while the scheduler is locked and should
+     * only queue the record for delivery.
+     *
+     * @param nowMillis The current time in milliseconds.
+     * @param action Receives the identifier of each due record.
+     * @return The number of due records.
+     */
+    public synchronized int pollDue(long nowMillis, LongConsumer action){
+        return m_wheel.advance(nowMillis, action);
+    }
+
+    /**
+     * Gets the number of records waiting for an attempt.
+     *
+     * @return The scheduled record count.
+     */
+    public synchronized int size(){
+        return m_wheel.size();
+    }
+
+    /**
+     * Gets the backoff schedule.
+     *
+     * @return The policy.
+     */
+    public RetryPolicy getPolicy(){
+        return m_policy;
+    }
+}
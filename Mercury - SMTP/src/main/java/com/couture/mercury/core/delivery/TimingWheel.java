@@ -0,0 +1,220 @@
+package com.couture.mercury.core.delivery;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hierarchical timing wheel of {@code long} identifiers, for scheduling millions of deferred deliveries.
+ *
+ * <p>Time is divided into ticks. Level 0 has {@value #SLOTS} slots of one tick each; every level above
+ * has {@value #SLOTS} slots each spanning a whole rotation of the level below, so four levels of
+ * one-second ticks reach 194 days. An entry goes into the lowest level whose range covers its due tick
+ * and, each time the level below completes a rotation, the entries of the next slot up are moved down
+ * a level. Scheduling and expiry are constant time per entry, however many entries are waiting.</p>
+ *
+ * <p>Entries are stored as pairs of primitives in growable arrays per slot, 16 bytes each, rather than
+ * as objects on a heap-ordered queue. A slot's arrays are released when it drains after holding many
+ * entries, so memory follows the number of waiting entries.</p>
+ *
+ * <p>Due times beyond the range of the top level are clamped to its last slot. This class is not
+ * thread-safe; {@link RetryScheduler} guards it.</p>
+ */
+public final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long m_tickMillis;
+    private final Bucket[][] m_levels;
+    private final long m_maxDelta;
+    private long m_currentTick;
+    private int m_size;
+
+    /**
+     * Creates a wheel.
+     *
+     * @param tickMillis The length of a tick in milliseconds (At least 1).
+     * @param levels The number of levels (1 to 8).
+     * @param startMillis The current time in milliseconds.
+     * @throws IllegalArgumentException If the tick length or level count is out of range.
+     */
+    public TimingWheel(long tickMillis, int levels, long startMillis){
+        if(tickMillis < 1){
+            throw new IllegalArgumentException("Tick length must be at least 1 millisecond");
+        }
+        if(levels < 1 || levels > 8){
+            throw new IllegalArgumentException("Level count must be between 1 and 8");
+        }
+
+        m_tickMillis = tickMillis;
+        m_levels = new Bucket[levels][SLOTS];
+        for(Bucket[] level : m_levels){
+            for(int i = 0; i < SLOTS; i++){
+                level[i] = new Bucket();
+            }
+        }
+        m_maxDelta = (1L << (SLOT_BITS * levels)) - 1;
+        m_currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules an entry. An entry due at or before the current time expires on the next advance.
+     *
+     * @param id The entry.
+     * @param dueMillis When the entry is due, in milliseconds.
+     */
+    public void schedule(long id, long dueMillis){
+        insert(id, Math.max(ceilTick(dueMillis), m_currentTick + 1));
+        m_size++;
+    }
+
+    /**
+     * Advances the wheel to a time, expiring every entry due by then.
+     *
+     * @param nowMillis The current time in milliseconds.
+     * @param expired Receives each expired entry.
+     * @return The number of expired entries.
+     */
+    public int advance(long nowMillis, LongConsumer expired){
+        long target = nowMillis / m_tickMillis;
+        int count = 0;
+        while(m_currentTick < target){
+            m_currentTick++;
+            cascade();
+            count += m_levels[0][(int) (m_currentTick & SLOT_MASK)].drain(expired);
+        }
+        m_size -= count;
+        return count;
+    }
+
+    /**
+     * Gets the number of waiting entries.
+     *
+     * @return The entry count.
+     */
+    public int size(){
+        return m_size;
+    }
+
+    /**
+     * Gets the time the wheel has advanced to.
+     *
+     * @return The start of the current tick, in milliseconds.
+     */
+    public long getCurrentMillis(){
+        return m_currentTick * m_tickMillis;
+    }
+
+    /**
+     * Moves the entries of the higher levels down as the levels below complete a rotation.
+     */
+    private void cascade(){
+        for(int level = 1; level < m_levels.length; level++){
+            int shift = SLOT_BITS * level;
+            if((m_currentTick & ((1L << shift) - 1)) != 0){
+                return;
+            }
+            Bucket bucket = m_levels[level][(int) ((m_currentTick >>> shift) & SLOT_MASK)];
+            bucket.moveTo(this);
+        }
+    }
+
+    /**
+     * Places an entry in the lowest level that covers its due tick.
+     *
+     * @param id The entry.
+     * @param dueTick The due tick, at or after the current tick.
+     */
+    private void insert(long id, long dueTick){
+        long delta = Math.min(dueTick - m_currentTick, m_maxDelta);
+        dueTick = m_currentTick + delta;
+
+        int level = 0;
+        while(level < m_levels.length - 1 && delta >= 1L << (SLOT_BITS * (level + 1))){
+            level++;
+        }
+        m_levels[level][(int) ((dueTick >>> (SLOT_BITS * level)) & SLOT_MASK)].add(id, dueTick);
+    }
+
+    /**
+     * Rounds a time up to a tick, so entries never expire early.
+     *
+     * @param millis The time in milliseconds.
+     * @return The tick.
+     */
+    private long ceilTick(long millis){
+        return Math.floorDiv(millis + m_tickMillis - 1, m_tickMillis);
+    }
+
+    /**
+     * The entries of one slot, as parallel arrays of identifiers and due ticks.
+     */
+    private static final class Bucket {
+        private static final int INITIAL_CAPACITY = 8;
+        // Arrays larger than this are released when the slot drains.
+        private static final int RETAINED_CAPACITY = 1024;
+
+        private long[] m_ids = new long[0];
+        private long[] m_dueTicks = new long[0];
+        private int m_size;
+
+        /**
+         * Adds an entry.
+         *
+         * @param id The entry.
+         * @param dueTick The due tick.
+         */
+        void add(long id, long dueTick){
+            if(m_size == m_ids.length){
+                int capacity = Math.max(INITIAL_CAPACITY, m_ids.length * 2);
+                m_ids = Arrays.copyOf(m_ids, capacity);
+                m_dueTicks = Arrays.copyOf(m_dueTicks, capacity);
+            }
+            m_ids[m_size] = id;
+            m_dueTicks[m_size] = dueTick;
+            m_size++;
+        }
+
+        /**
+         * Expires every entry.
+         *
+         * @param expired Receives each entry.
+         * @return The number of entries.
+         */
+        int drain(LongConsumer expired){
+            int count = m_size;
+            long[] ids = m_ids;
+            clear();
+            for(int i = 0; i < count; i++){
+                expired.accept(ids[i]);
+            }
+            return count;
+        }
+
+        /**
+         * Re-inserts every entry into a wheel, which places them on lower levels.
+         *
+         * @param wheel The wheel.
+         */
+        void moveTo(TimingWheel wheel){
+            int count = m_size;
+            long[] ids = m_ids;
+            long[] dueTicks = m_dueTicks;
+            clear();
+            for(int i = 0; i < count; i++){
+                wheel.insert(ids[i], dueTicks[i]);
+            }
+        }
+
+        /**
+         * Empties the bucket, releasing large arrays.
+         */
+        private void clear(){
+            if(m_ids.length > RETAINED_CAPACITY){
+                m_ids = new long[0];
+                m_dueTicks = new long[0];
+            }
+            m_size = 0;
+        }
+    }
+}
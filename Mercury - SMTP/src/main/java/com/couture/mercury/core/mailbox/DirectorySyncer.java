@@ -0,0 +1,127 @@
+package com.couture.mercury.core.mailbox;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Batches directory fsyncs across concurrent deliveries.
+ *
+ * <p>A rename into a Maildir is only durable once the directory itself is forced. Deliveries hand
+ * the directories they changed to {@link #sync(Collection)}, which joins them to the open batch.
+ * While one thread forces a batch, the directories of every delivery arriving meanwhile collect
+ * in the next batch, which the first waiting thread then forces in one pass. A directory shared by
+ * many deliveries, such as a busy mailbox, is forced once per batch rather than once per message.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+final class DirectorySyncer {
+    private final ReentrantLock m_lock = new ReentrantLock();
+    private final Condition m_done = m_lock.newCondition();
+    private final AtomicLong m_syncCount = new AtomicLong();
+    private final AtomicLong m_directoriesSynced = new AtomicLong();
+    private Batch m_open = new Batch();
+    private boolean m_syncing;
+
+    /**
+     * Makes changes to directories durable, waiting until a batch containing them has been forced.
+     *
+     * @param directories The directories changed.
+     * @throws IOException If a directory could not be forced.
+     */
+    void sync(Collection<Path> directories) throws IOException {
+        m_lock.lock();
+        try{
+            Batch batch = m_open;
+            batch.m_directories.addAll(directories);
+            while(!batch.m_done){
+                if(m_syncing){
+                    m_done.awaitUninterruptibly();
+                    continue;
+                }
+
+                Batch leading = m_open;
+                m_open = new Batch();
+                m_syncing = true;
+                m_lock.unlock();
+                try{
+                    leading.m_error = force(leading.m_directories);
+                }
+                finally{
+                    m_lock.lock();
+                    m_syncing = false;
+                    leading.m_done = true;
+                    m_done.signalAll();
+                }
+            }
+
+            if(batch.m_error != null){
+                throw new IOException("Failed to sync mailbox directories", batch.m_error);
+            }
+        }
+        finally{
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of batches forced.
+     *
+     * @return The sync count.
+     */
+    long getSyncCount(){
+        return m_syncCount.get();
+    }
+
+    /**
+     * Gets the number of directory forces performed, across all batches.
+     *
+     * @return The directory force count.
+     */
+    long getDirectoriesSynced(){
+        return m_directoriesSynced.get();
+    }
+
+    /**
+     * Forces every directory of a batch.
+     *
+     * @param directories The directories.
+     * @return The first failure, or null.
+     */
+    private IOException force(Set<Path> directories){
+        m_syncCount.incrementAndGet();
+        IOException error = null;
+        for(Path directory : directories){
+            try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+                channel.force(true);
+                m_directoriesSynced.incrementAndGet();
+            }
+            catch(AccessDeniedException e){
+                // Windows cannot open directories; its filesystems journal renames themselves.
+            }
+            catch(IOException e){
+                if(error == null){
+                    error = e;
+                }
+            }
+        }
+        return error;
+    }
+
+    /**
+     * The directories of the deliveries waiting for one force pass.
+     */
+    private static final class Batch {
+        private final Set<Path> m_directories = new LinkedHashSet<>();
+        private boolean m_done;
+        private IOException m_error;
+    }
+}
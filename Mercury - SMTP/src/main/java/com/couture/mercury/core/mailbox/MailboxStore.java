@@ -0,0 +1,25 @@
+package com.couture.mercury.core.mailbox;
+
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Final delivery into the mailboxes of locally hosted recipients.
+ */
+public interface MailboxStore {
+    /**
+     * Delivers a message to local mailboxes. Returns once the message is durable in every mailbox,
+     * so the caller may acknowledge it to the client.
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path. It is written as the
+     *                    Return-Path field, ahead of the trace fields.
+     * @param recipients The normalised local recipients (At least one).
+     * @param traceHeaders The fields to write ahead of the body, after Return-Path, or null.
+     * @param body The message content; buffer positions are not changed.
+     * @throws IOException If the message could not be delivered to every mailbox.
+     */
+    void deliver(String reversePath, List<String> recipients, TraceHeaders traceHeaders, ByteBuffer... body) throws IOException;
+}
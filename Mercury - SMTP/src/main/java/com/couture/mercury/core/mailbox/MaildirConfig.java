@@ -0,0 +1,163 @@
+package com.couture.mercury.core.mailbox;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Immutable configuration of a {@link MaildirStore}.
+ */
+public final class MaildirConfig {
+    /**
+     * Default host name written into message file names.
+     */
+    public static final String DEFAULT_HOSTNAME = "localhost";
+
+    /**
+     * Default number of hashed subdirectories of each mailbox's tmp and new directories; zero keeps
+     * the standard flat layout.
+     */
+    public static final int DEFAULT_SHARD_COUNT = 0;
+
+    /**
+     * Largest number of hashed subdirectories per directory.
+     */
+    public static final int MAX_SHARD_COUNT = 256;
+
+    private final Path m_root;
+    private final String m_hostname;
+    private final int m_shardCount;
+    private final boolean m_hardLinks;
+
+    /**
+     * Creates a configuration from a builder.
+     *
+     * @param builder The builder.
+     */
+    private MaildirConfig(Builder builder){
+        m_root = builder.m_root;
+        m_hostname = builder.m_hostname;
+        m_shardCount = builder.m_shardCount;
+        m_hardLinks = builder.m_hardLinks;
+    }
+
+    /**
+     * Creates a builder for mailboxes stored under the given directory.
+     *
+     * @param root The directory holding a subdirectory per domain, created if missing.
+     * @return A builder with default settings.
+     */
+    public static Builder builder(Path root){
+        return new Builder(root);
+    }
+
+    /**
+     * Gets the directory holding a subdirectory per domain.
+     *
+     * @return The root directory.
+     */
+    public Path getRoot(){
+        return m_root;
+    }
+
+    /**
+     * Gets the host name written into message file names.
+     *
+     * @return The host name.
+     */
+    public String getHostname(){
+        return m_hostname;
+    }
+
+    /**
+     * Gets the number of hashed subdirectories of each mailbox's tmp and new directories.
+     *
+     * @return The shard count, zero for the standard flat layout.
+     */
+    public int getShardCount(){
+        return m_shardCount;
+    }
+
+    /**
+     * Checks if one message file is hard-linked into every recipient's mailbox rather than copied.
+     *
+     * @return True if hard links are tried first.
+     */
+    public boolean isHardLinks(){
+        return m_hardLinks;
+    }
+
+    /**
+     * Builder for {@link MaildirConfig}.
+     */
+    public static final class Builder {
+        private final Path m_root;
+        private String m_hostname = DEFAULT_HOSTNAME;
+        private int m_shardCount = DEFAULT_SHARD_COUNT;
+        private boolean m_hardLinks = true;
+
+        /**
+         * Creates a builder.
+         *
+         * @param root The root directory.
+         */
+        private Builder(Path root){
+            m_root = Objects.requireNonNull(root, "Maildir root cannot be null");
+        }
+
+        /**
+         * Sets the host name written into message file names, which keeps names unique when several
+         * hosts deliver to shared storage.
+         *
+         * @param hostname The host name. Characters that are not allowed in file names are replaced.
+         * @return This builder.
+         * @throws IllegalArgumentException If the host name is empty.
+         */
+        public Builder hostname(String hostname){
+            Objects.requireNonNull(hostname, "Host name cannot be null");
+            if(hostname.isEmpty()){
+                throw new IllegalArgumentException("Host name cannot be empty");
+            }
+            // Maildir reserves '/' and ':' in file names.
+            m_hostname = hostname.replace("/", "\\057").replace(":", "\\072");
+            return this;
+        }
+
+        /**
+         * Sets the number of hashed subdirectories each mailbox's tmp and new directories are split
+         * into, so a mailbox receiving millions of messages does not hold them all in one directory.
+         * Mailbox readers must know the layout when this is not zero.
+         *
+         * @param shardCount The shard count (0 to {@value #MAX_SHARD_COUNT}).
+         * @return This builder.
+         * @throws IllegalArgumentException If the count is out of range.
+         */
+        public Builder shardCount(int shardCount){
+            if(shardCount < 0 || shardCount > MAX_SHARD_COUNT){
+                throw new IllegalArgumentException("Shard count must be between 0 and " + MAX_SHARD_COUNT);
+            }
+            m_shardCount = shardCount;
+            return this;
+        }
+
+        /**
+         * Sets whether one message file is hard-linked into every recipient's mailbox. Where the
+         * filesystem refuses the link, the file is copied instead.
+         *
+         * @param hardLinks True to try hard links first.
+         * @return This builder.
+         */
+        public Builder hardLinks(boolean hardLinks){
+            m_hardLinks = hardLinks;
+            return this;
+        }
+
+        /**
+         * Builds the configuration.
+         *
+         * @return The configuration.
+         */
+        public MaildirConfig build(){
+            return new MaildirConfig(this);
+        }
+    }
+}
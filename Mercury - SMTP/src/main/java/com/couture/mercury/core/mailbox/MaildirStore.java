@@ -0,0 +1,352 @@
+package com.couture.mercury.core.mailbox;
+
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers messages into Maildir mailboxes, one per recipient at {@code root/domain/local-part}.
+ *
+ * <p>Each message is written once, behind a Return-Path field for its reverse-path and the caller's
+ * trace fields, to a uniquely named file in the first recipient's {@code tmp} directory, forced, and
+ * renamed into {@code new}, so readers never see a partial message. Every further recipient gets a
+ * hard link to the same file in its own {@code new} directory, which costs a directory entry instead
+ * of a copy of the body; where the filesystem refuses the link, as across devices, the file is copied
+ * through {@code tmp} instead. The directories changed are then forced through a
+ * {@link DirectorySyncer} shared by all deliveries, so concurrent messages to a busy mailbox share one
+ * directory fsync. Directories created on the way, such as a new mailbox or shard, are entries in
+ * their parents, so those parents are forced in the same batch, up to the root.</p>
+ *
+ * <p>With {@link MaildirConfig#getShardCount()} above zero, {@code tmp} and {@code new} are split into
+ * that many subdirectories named by two hex digits of the file name's hash, keeping directory sizes,
+ * and the cost of lookups and renames in them, bounded for mailboxes that receive millions of
+ * messages.</p>
+ *
+ * <p>Mailbox names are lower-cased; characters outside {@code [a-z0-9._+=-]} and leading dots are
+ * percent-encoded, so no address can name a path outside the root.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class MaildirStore implements MailboxStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MaildirStore.class);
+    private static final String TMP = "tmp";
+    private static final String NEW = "new";
+    private static final String CUR = "cur";
+
+    private final MaildirConfig m_config;
+    private final DirectorySyncer m_syncer = new DirectorySyncer();
+    private final Set<Path> m_createdDirectories = ConcurrentHashMap.newKeySet();
+    private final Map<String, Path> m_mailboxes = new ConcurrentHashMap<>();
+    private final long m_pid = ProcessHandle.current().pid();
+    private final AtomicLong m_sequence = new AtomicLong();
+    private final AtomicLong m_linked = new AtomicLong();
+    private final AtomicLong m_copied = new AtomicLong();
+
+    /**
+     * Creates a store.
+     *
+     * @param config The Maildir configuration.
+     */
+    public MaildirStore(MaildirConfig config){
+        m_config = Objects.requireNonNull(config, "Maildir configuration cannot be null");
+    }
+
+    @Override
+    public void deliver(String reversePath, List<String> recipients, TraceHeaders traceHeaders, ByteBuffer... body) throws IOException {
+        if(recipients.isEmpty()){
+            throw new IllegalArgumentException("A delivery needs at least one recipient");
+        }
+
+        ByteBuffer[] fields = traceHeaders == null ? body : traceHeaders.prependTo(body);
+        ByteBuffer[] content = new TraceHeaders().returnPath(reversePath).prependTo(fields);
+        long size = 0;
+        for(int i = 0; i < content.length; i++){
+            content[i] = content[i].duplicate();
+            size += content[i].remaining();
+        }
+
+        String name = uniqueName(size);
+        String shard = shardOf(name);
+        Set<Path> changed = new LinkedHashSet<>();
+        Path first = null;
+        for(String recipient : recipients){
+            Path mailbox = mailbox(recipient, changed);
+            Path target = directory(mailbox, NEW, shard, changed).resolve(name);
+            if(first == null){
+                Path tmp = directory(mailbox, TMP, shard, changed).resolve(name);
+                write(tmp, content);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                first = target;
+            }
+            else if(!link(first, target)){
+                Path tmp = directory(mailbox, TMP, shard, changed).resolve(name);
+                Files.copy(first, tmp);
+                force(tmp);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                m_copied.incrementAndGet();
+            }
+            changed.add(target.getParent());
+        }
+        m_syncer.sync(changed);
+    }
+
+    /**
+     * Gets the Maildir of a recipient, creating it on first use and forcing the directories that
+     * record its creation.
+     *
+     * @param recipient The normalised recipient address.
+     * @return The mailbox directory, holding tmp, new and cur.
+     * @throws IOException If the mailbox cannot be created.
+     * @throws IllegalArgumentException If the address has no domain part.
+     */
+    public Path getMailbox(String recipient) throws IOException {
+        Set<Path> changed = new LinkedHashSet<>();
+        Path mailbox = mailbox(recipient, changed);
+        if(!changed.isEmpty()){
+            m_syncer.sync(changed);
+        }
+        return mailbox;
+    }
+
+    /**
+     * Gets the Maildir of a recipient, creating it on first use.
+     *
+     * @param recipient The normalised recipient address.
+     * @param changed Collects the directories that gained entries and must be forced.
+     * @return The mailbox directory, holding tmp, new and cur.
+     * @throws IOException If the mailbox cannot be created.
+     * @throws IllegalArgumentException If the address has no domain part.
+     */
+    private Path mailbox(String recipient, Set<Path> changed) throws IOException {
+        Path mailbox = m_mailboxes.get(recipient);
+        if(mailbox != null){
+            return mailbox;
+        }
+
+        int at = recipient.lastIndexOf('@');
+        if(at <= 0 || at == recipient.length() - 1){
+            throw new IllegalArgumentException("Invalid recipient address: " + recipient);
+        }
+        mailbox = m_config.getRoot().resolve(encode(recipient.substring(at + 1))).resolve(encode(recipient.substring(0, at)));
+        for(String directory : new String[]{TMP, NEW, CUR}){
+            createDirectory(mailbox.resolve(directory), changed);
+        }
+        m_mailboxes.put(recipient, mailbox);
+        return mailbox;
+    }
+
+    /**
+     * Gets the number of extra recipients served by a hard link.
+     *
+     * @return The link count.
+     */
+    public long getLinkedCount(){
+        return m_linked.get();
+    }
+
+    /**
+     * Gets the number of extra recipients served by a copy because a link was refused or disabled.
+     *
+     * @return The copy count.
+     */
+    public long getCopiedCount(){
+        return m_copied.get();
+    }
+
+    /**
+     * Gets the number of directory fsync batches performed.
+     *
+     * @return The batch count.
+     */
+    public long getDirectorySyncCount(){
+        return m_syncer.getSyncCount();
+    }
+
+    /**
+     * Gets the number of directories forced, across all batches.
+     *
+     * @return The directory force count.
+     */
+    public long getDirectoriesSynced(){
+        return m_syncer.getDirectoriesSynced();
+    }
+
+    /**
+     * Gets the configuration.
+     *
+     * @return The configuration.
+     */
+    public MaildirConfig getConfig(){
+        return m_config;
+    }
+
+    /**
+     * Builds a unique file name in the form recommended for Maildir:
+     * {@code seconds.MmicrosPpidQsequence.host,S=size}.
+     *
+     * @param size The size of the message in bytes.
+     * @return The file name.
+     */
+    private String uniqueName(long size){
+        long micros = System.currentTimeMillis() * 1000 + (System.nanoTime() / 1000) % 1000;
+        return (micros / 1_000_000) + ".M" + (micros % 1_000_000) + "P" + m_pid + "Q" + m_sequence.incrementAndGet()
+                + "." + m_config.getHostname() + ",S=" + size;
+    }
+
+    /**
+     * Picks the subdirectory of a file name.
+     *
+     * @param name The file name.
+     * @return The two hex digit subdirectory, or null for the flat layout.
+     */
+    private String shardOf(String name){
+        if(m_config.getShardCount() == 0){
+            return null;
+        }
+        int hash = name.hashCode() * 0x9E3779B9;
+        return String.format("%02x", Integer.remainderUnsigned(hash, m_config.getShardCount()));
+    }
+
+    /**
+     * Gets the tmp or new directory of a mailbox for a shard, creating it on first use.
+     *
+     * @param mailbox The mailbox.
+     * @param name "tmp" or "new".
+     * @param shard The shard, or null for the flat layout.
+     * @param changed Collects the directories that gained entries and must be forced.
+     * @return The directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    private Path directory(Path mailbox, String name, String shard, Set<Path> changed) throws IOException {
+        Path directory = mailbox.resolve(name);
+        if(shard != null){
+            directory = directory.resolve(shard);
+            createDirectory(directory, changed);
+        }
+        return directory;
+    }
+
+    /**
+     * Creates a directory and its parents unless this store has already done so. The parent of each
+     * directory created, up to the root, is added to the directories to force.
+     *
+     * @param directory The directory.
+     * @param changed Collects the directories that gained entries and must be forced.
+     * @throws IOException If the directory cannot be created.
+     */
+    private void createDirectory(Path directory, Set<Path> changed) throws IOException {
+        if(m_createdDirectories.contains(directory)){
+            return;
+        }
+
+        List<Path> missing = new ArrayList<>();
+        for(Path path = directory; path != null && !Files.isDirectory(path); path = path.getParent()){
+            missing.add(path);
+        }
+        Files.createDirectories(directory);
+        for(Path path : missing){
+            Path parent = path.getParent();
+            if(parent != null && parent.startsWith(m_config.getRoot())){
+                changed.add(parent);
+            }
+        }
+        m_createdDirectories.add(directory);
+    }
+
+    /**
+     * Hard-links a delivered message into another mailbox.
+     *
+     * @param existing The delivered file.
+     * @param link The path to create.
+     * @return False if links are disabled or the filesystem refused the link.
+     */
+    private boolean link(Path existing, Path link){
+        if(!m_config.isHardLinks()){
+            return false;
+        }
+        try{
+            Files.createLink(link, existing);
+            m_linked.incrementAndGet();
+            return true;
+        }
+        catch(UnsupportedOperationException | IOException e){
+            LOGGER.debug("Hard link to {} refused, copying instead", link, e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes and forces a new file.
+     *
+     * @param path The file.
+     * @param content The content; buffer positions are advanced.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void write(Path path, ByteBuffer[] content) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+            long remaining = 0;
+            for(ByteBuffer buffer : content){
+                remaining += buffer.remaining();
+            }
+            while(remaining > 0){
+                remaining -= channel.write(content);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Forces a file's content to disk.
+     *
+     * @param path The file.
+     * @throws IOException If the file cannot be forced.
+     */
+    private static void force(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)){
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Encodes a domain or local-part as a safe directory name.
+     *
+     * @param part The address part.
+     * @return The lower-cased name with unsafe characters and leading dots percent-encoded.
+     */
+    private static String encode(String part){
+        String lower = part.toLowerCase(Locale.ROOT);
+        StringBuilder name = new StringBuilder(lower.length());
+        for(int i = 0; i < lower.length(); i++){
+            char c = lower.charAt(i);
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '+' || c == '='
+                    || c == '-' || (c == '.' && i > 0);
+            if(safe){
+                name.append(c);
+            }
+            else{
+                for(byte b : String.valueOf(c).getBytes(StandardCharsets.UTF_8)){
+                    name.append('%').append(String.format("%02x", b & 0xFF));
+                }
+            }
+        }
+        return name.toString();
+    }
+}
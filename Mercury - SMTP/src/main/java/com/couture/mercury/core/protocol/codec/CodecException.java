@@ -0,0 +1,18 @@
+package com.couture.mercury.core.protocol.codec;
+
+import java.io.IOException;
+
+/**
+ * Thrown when encoded data is malformed, truncated or written by an unsupported codec version.
+ */
+public class CodecException extends IOException {
+
+    /**
+     * Constructs a new codec exception.
+     *
+     * @param message Detailed error message.
+     */
+    public CodecException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,124 @@
+package com.couture.mercury.core.protocol.codec;
+
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.session.SessionState;
+
+/**
+ * Constants of the compact binary format.
+ * Every record starts with a one byte record tag and a one byte format version. Enum values are
+ * written through the explicit code tables below rather than their ordinals, so reordering or
+ * extending an enum never changes the meaning of data that has already been journaled.
+ */
+public final class CodecFormat {
+    /**
+     * Current format version written by the codecs.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Record tag for an encoded Command.
+     */
+    public static final int TAG_COMMAND = 'C';
+
+    /**
+     * Record tag for an encoded CommandResult.
+     */
+    public static final int TAG_COMMAND_RESULT = 'R';
+
+    /**
+     * Record tag for an encoded session snapshot.
+     */
+    public static final int TAG_SESSION = 'S';
+
+    /**
+     * Record tag for a spooled delivery envelope.
+     */
+    public static final int TAG_ENVELOPE = 'E';
+
+    /**
+     * Wire codes for command types. Append only.
+     */
+    static final CommandType[] COMMAND_TYPE_CODES = {
+            CommandType.HELO, CommandType.EHLO, CommandType.MAIL, CommandType.RCPT, CommandType.DATA,
+            CommandType.RSET, CommandType.VRFY, CommandType.EXPN, CommandType.HELP, CommandType.NOOP,
+            CommandType.QUIT
+    };
+
+    /**
+     * Wire codes for session states. Append only.
+     */
+    static final SessionState[] SESSION_STATE_CODES = {
+            SessionState.CONNECT, SessionState.HELO, SessionState.MAIL, SessionState.RCPT,
+            SessionState.DATA, SessionState.QUIT
+    };
+
+    /**
+     * Writes a record header.
+     *
+     * @param writer The writer to write to.
+     * @param tag The record tag.
+     */
+    static void writeHeader(CodecWriter writer, int tag){
+        writer.writeByte(tag);
+        writer.writeByte(VERSION);
+    }
+
+    /**
+     * Reads and verifies a record header.
+     *
+     * @param reader The reader to read from.
+     * @param expectedTag The expected record tag.
+     * @throws CodecException If the tag does not match or the version is unsupported.
+     */
+    static void readHeader(CodecReader reader, int expectedTag) throws CodecException {
+        int tag = reader.readByte();
+        if(tag != expectedTag){
+            throw new CodecException("Unexpected record tag " + tag + ", expected " + expectedTag);
+        }
+
+        int version = reader.readByte();
+        if(version < 1 || version > VERSION){
+            throw new CodecException("Unsupported format version " + version);
+        }
+    }
+
+    /**
+     * Gets the wire code of an enum constant.
+     *
+     * @param codes The code table.
+     * @param value The enum constant.
+     * @return The wire code.
+     * @throws IllegalArgumentException If the constant has no wire code.
+     */
+    static int codeOf(Object[] codes, Object value){
+        for(int i = 0; i < codes.length; i++){
+            if(codes[i] == value){
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("No wire code for " + value);
+    }
+
+    /**
+     * Resolves a wire code to an enum constant.
+     *
+     * @param codes The code table.
+     * @param code The wire code.
+     * @param <T> The enum type.
+     * @return The enum constant.
+     * @throws CodecException If the code is unknown.
+     */
+    static <T> T valueOf(T[] codes, int code) throws CodecException {
+        if(code < 0 || code >= codes.length){
+            throw new CodecException("Unknown wire code " + code);
+        }
+
+        return codes[code];
+    }
+
+    // Private constructor to prevent instantiation
+    private CodecFormat(){
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
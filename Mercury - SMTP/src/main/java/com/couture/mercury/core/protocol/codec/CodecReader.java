@@ -0,0 +1,168 @@
+package com.couture.mercury.core.protocol.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads records written by {@link CodecWriter}.
+ * Every read is bounds-checked so truncated or corrupted input fails with a {@link CodecException}
+ * instead of an unchecked exception. This class is not thread-safe.
+ */
+public final class CodecReader {
+    private final byte[] m_buffer;
+    private final int m_limit;
+    private int m_position;
+
+    /**
+     * Creates a reader over a whole array.
+     *
+     * @param buffer The encoded bytes.
+     */
+    public CodecReader(byte[] buffer){
+        this(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Creates a reader over part of an array.
+     *
+     * @param buffer The encoded bytes.
+     * @param offset The offset of the first byte to read.
+     * @param length The number of readable bytes.
+     * @throws IllegalArgumentException If the range is outside the array.
+     */
+    public CodecReader(byte[] buffer, int offset, int length){
+        if(offset < 0 || length < 0 || offset + length > buffer.length){
+            throw new IllegalArgumentException("Range is outside the buffer");
+        }
+
+        m_buffer = buffer;
+        m_position = offset;
+        m_limit = offset + length;
+    }
+
+    /**
+     * Reads a single unsigned byte.
+     *
+     * @return The byte value (0-255).
+     * @throws CodecException If the input is exhausted.
+     */
+    public int readByte() throws CodecException {
+        require(1);
+        return m_buffer[m_position++] & 0xFF;
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @return The decoded value.
+     * @throws CodecException If the varint is truncated or too long.
+     */
+    public int readVarInt() throws CodecException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                if(value < 0){
+                    throw new CodecException("Varint out of range");
+                }
+                return value;
+            }
+        }
+
+        throw new CodecException("Malformed varint");
+    }
+
+    /**
+     * Reads a long varint.
+     *
+     * @return The decoded value.
+     * @throws CodecException If the varint is truncated or too long.
+     */
+    public long readVarLong() throws CodecException {
+        long value = 0;
+        for(int shift = 0; shift < 70; shift += 7){
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                if(value < 0){
+                    throw new CodecException("Varint out of range");
+                }
+                return value;
+            }
+        }
+
+        throw new CodecException("Malformed varint");
+    }
+
+    /**
+     * Reads a non-null string.
+     *
+     * @return The decoded string.
+     * @throws CodecException If the string is truncated.
+     */
+    public String readString() throws CodecException {
+        int length = readVarInt();
+        require(length);
+
+        String value = new String(m_buffer, m_position, length, StandardCharsets.UTF_8);
+        m_position += length;
+        return value;
+    }
+
+    /**
+     * Reads a string written with {@link CodecWriter#writeNullableString(String)}.
+     *
+     * @return The decoded string, or null.
+     * @throws CodecException If the string is truncated.
+     */
+    public String readNullableString() throws CodecException {
+        int length = readVarInt();
+        if(length == 0){
+            return null;
+        }
+
+        length--;
+        require(length);
+
+        String value = new String(m_buffer, m_position, length, StandardCharsets.UTF_8);
+        m_position += length;
+        return value;
+    }
+
+    /**
+     * Reads a byte array written with {@link CodecWriter#writeByteArray(byte[])}.
+     *
+     * @return The bytes.
+     * @throws CodecException If the array is truncated.
+     */
+    public byte[] readByteArray() throws CodecException {
+        int length = readVarInt();
+        require(length);
+
+        byte[] value = Arrays.copyOfRange(m_buffer, m_position, m_position + length);
+        m_position += length;
+        return value;
+    }
+
+    /**
+     * Gets the number of unread bytes.
+     *
+     * @return The remaining byte count.
+     */
+    public int remaining(){
+        return m_limit - m_position;
+    }
+
+    /**
+     * Verifies that enough bytes remain.
+     *
+     * @param count The number of bytes about to be read.
+     * @throws CodecException If fewer bytes remain.
+     */
+    private void require(int count) throws CodecException {
+        if(count > m_limit - m_position){
+            throw new CodecException("Unexpected end of input");
+        }
+    }
+}
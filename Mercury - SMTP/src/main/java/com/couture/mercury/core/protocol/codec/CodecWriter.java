@@ -0,0 +1,196 @@
+package com.couture.mercury.core.protocol.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer used to encode records in the compact binary format.
+ * Integers are written as unsigned LEB128 varints and strings as a varint byte length followed by UTF-8.
+ *
+ * <p>A writer can be reused for many records with {@link #reset()}, keeping its backing array.
+ * This class is not thread-safe.</p>
+ */
+public final class CodecWriter {
+    private byte[] m_buffer;
+    private int m_position;
+
+    /**
+     * Creates a writer with a small initial capacity.
+     */
+    public CodecWriter(){
+        this(64);
+    }
+
+    /**
+     * Creates a writer with the given initial capacity.
+     *
+     * @param initialCapacity The initial capacity in bytes.
+     */
+    public CodecWriter(int initialCapacity){
+        m_buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value The byte to write.
+     */
+    public void writeByte(int value){
+        ensureCapacity(1);
+        m_buffer[m_position++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative integer as a varint.
+     *
+     * @param value The value to write.
+     * @throws IllegalArgumentException If value is negative.
+     */
+    public void writeVarInt(int value){
+        if(value < 0){
+            throw new IllegalArgumentException("Varint value cannot be negative");
+        }
+
+        ensureCapacity(5);
+        while((value & ~0x7F) != 0){
+            m_buffer[m_position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        m_buffer[m_position++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-negative long as a varint.
+     *
+     * @param value The value to write.
+     * @throws IllegalArgumentException If value is negative.
+     */
+    public void writeVarLong(long value){
+        if(value < 0){
+            throw new IllegalArgumentException("Varint value cannot be negative");
+        }
+
+        ensureCapacity(10);
+        while((value & ~0x7FL) != 0){
+            m_buffer[m_position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        m_buffer[m_position++] = (byte) value;
+    }
+
+    /**
+     * Writes a non-null string.
+     *
+     * @param value The string to write.
+     */
+    public void writeString(String value){
+        int length = value.length();
+
+        // Fast path for the common all-ASCII case avoids allocating an intermediate byte array.
+        boolean ascii = true;
+        for(int i = 0; i < length; i++){
+            if(value.charAt(i) >= 0x80){
+                ascii = false;
+                break;
+            }
+        }
+
+        if(ascii){
+            writeVarInt(length);
+            ensureCapacity(length);
+            for(int i = 0; i < length; i++){
+                m_buffer[m_position++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes a string that may be null. Null is encoded as length 0, and other strings as length + 1.
+     *
+     * @param value The string to write, or null.
+     */
+    public void writeNullableString(String value){
+        if(value == null){
+            writeVarInt(0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes a length-prefixed byte array.
+     *
+     * @param bytes The bytes to write.
+     */
+    public void writeByteArray(byte[] bytes){
+        writeVarInt(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes raw bytes.
+     *
+     * @param bytes The source array.
+     * @param offset The offset of the first byte to write.
+     * @param length The number of bytes to write.
+     */
+    public void writeBytes(byte[] bytes, int offset, int length){
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, m_buffer, m_position, length);
+        m_position += length;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return The encoded length.
+     */
+    public int size(){
+        return m_position;
+    }
+
+    /**
+     * Gets the backing array. Only the first {@link #size()} bytes are valid.
+     *
+     * @return The backing array.
+     */
+    public byte[] array(){
+        return m_buffer;
+    }
+
+    /**
+     * Copies the written bytes into a new array.
+     *
+     * @return The encoded bytes.
+     */
+    public byte[] toByteArray(){
+        return Arrays.copyOf(m_buffer, m_position);
+    }
+
+    /**
+     * Discards everything written so the writer can be reused.
+     */
+    public void reset(){
+        m_position = 0;
+    }
+
+    /**
+     * Grows the backing array if needed.
+     *
+     * @param additional The number of bytes about to be written.
+     */
+    private void ensureCapacity(int additional){
+        int required = m_position + additional;
+        if(required > m_buffer.length){
+            m_buffer = Arrays.copyOf(m_buffer, Math.max(required, m_buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.couture.mercury.core.protocol.codec;
+
+import com.couture.mercury.core.protocol.commands.Command;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.commands.implementation.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compact, versioned binary codec for {@link Command} and {@link CommandResult}.
+ * Replaces default Java serialization for journaling and for handing work between processes.
+ *
+ * <p>Command layout: tag, version, type code, parameter count (varint), parameters (varint length + UTF-8).</p>
+ * <p>Result layout: tag, version, flags (bit 0 = success), response code (varint), message (nullable string).</p>
+ */
+public final class CommandCodec {
+    private static final int FLAG_SUCCESS = 0x01;
+    private static final Map<CommandType, Function<String[], Command>> FACTORIES = new EnumMap<>(CommandType.class);
+
+    static {
+        FACTORIES.put(CommandType.HELO, parameters -> new HELOCommand(parameters[0]));
+        FACTORIES.put(CommandType.EHLO, parameters -> new EHLOCommand(parameters[0]));
+        FACTORIES.put(CommandType.MAIL, parameters -> new MAILCommand(parameters[0]));
+        FACTORIES.put(CommandType.RCPT, parameters -> new RCPTCommand(parameters[0]));
+        FACTORIES.put(CommandType.DATA, parameters -> new DATACommand());
+        FACTORIES.put(CommandType.RSET, parameters -> new RSETCommand());
+        FACTORIES.put(CommandType.NOOP, parameters -> new NOOPCommand());
+        FACTORIES.put(CommandType.QUIT, parameters -> new QUITCommand());
+    }
+
+    /**
+     * Encodes a command into a new byte array.
+     *
+     * @param command The command to encode.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(Command command){
+        CodecWriter writer = new CodecWriter();
+        encode(command, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes a command.
+     *
+     * @param command The command to encode.
+     * @param writer The writer to append to.
+     * @throws IllegalArgumentException If command is null.
+     */
+    public static void encode(Command command, CodecWriter writer){
+        if(command == null){
+            throw new IllegalArgumentException("Command cannot be null");
+        }
+
+        String[] parameters = command.getParameters();
+
+        CodecFormat.writeHeader(writer, CodecFormat.TAG_COMMAND);
+        writer.writeByte(CodecFormat.codeOf(CodecFormat.COMMAND_TYPE_CODES, command.getCommandType()));
+        writer.writeVarInt(parameters.length);
+        for(String parameter : parameters){
+            writer.writeString(parameter);
+        }
+    }
+
+    /**
+     * Decodes a command.
+     *
+     * @param data The encoded bytes.
+     * @return The decoded command.
+     * @throws CodecException If the data is malformed or the command type has no implementation.
+     */
+    public static Command decode(byte[] data) throws CodecException {
+        return decode(new CodecReader(data));
+    }
+
+    /**
+     * Decodes a command.
+     *
+     * @param reader The reader positioned at the start of an encoded command.
+     * @return The decoded command.
+     * @throws CodecException If the data is malformed or the command type has no implementation.
+     */
+    public static Command decode(CodecReader reader) throws CodecException {
+        CodecFormat.readHeader(reader, CodecFormat.TAG_COMMAND);
+
+        CommandType commandType = CodecFormat.valueOf(CodecFormat.COMMAND_TYPE_CODES, reader.readByte());
+        int parameterCount = reader.readVarInt();
+        if(parameterCount > reader.remaining()){
+            throw new CodecException("Parameter count " + parameterCount + " exceeds remaining input");
+        }
+
+        String[] parameters = new String[parameterCount];
+        for(int i = 0; i < parameterCount; i++){
+            parameters[i] = reader.readString();
+        }
+
+        Function<String[], Command> factory = FACTORIES.get(commandType);
+        if(factory == null){
+            throw new CodecException("No command implementation for " + commandType);
+        }
+
+        int expectedCount = expectedParameterCount(commandType);
+        if(parameterCount != expectedCount){
+            throw new CodecException(commandType + " expects " + expectedCount + " parameter(s) but "
+                    + parameterCount + " were encoded");
+        }
+
+        return factory.apply(parameters);
+    }
+
+    /**
+     * Encodes a command result into a new byte array.
+     *
+     * @param result The result to encode.
+     * @return The encoded bytes.
+     */
+    public static byte[] encodeResult(CommandResult result){
+        CodecWriter writer = new CodecWriter();
+        encodeResult(result, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes a command result.
+     *
+     * @param result The result to encode.
+     * @param writer The writer to append to.
+     * @throws IllegalArgumentException If result is null or its response code is negative.
+     */
+    public static void encodeResult(CommandResult result, CodecWriter writer){
+        if(result == null){
+            throw new IllegalArgumentException("Command result cannot be null");
+        }
+
+        CodecFormat.writeHeader(writer, CodecFormat.TAG_COMMAND_RESULT);
+        writer.writeByte(result.isSuccess() ? FLAG_SUCCESS : 0);
+        writer.writeVarInt(result.getResponseCode());
+        writer.writeNullableString(result.getMessage());
+    }
+
+    /**
+     * Decodes a command result.
+     *
+     * @param data The encoded bytes.
+     * @return The decoded result.
+     * @throws CodecException If the data is malformed.
+     */
+    public static CommandResult decodeResult(byte[] data) throws CodecException {
+        return decodeResult(new CodecReader(data));
+    }
+
+    /**
+     * Decodes a command result.
+     *
+     * @param reader The reader positioned at the start of an encoded result.
+     * @return The decoded result.
+     * @throws CodecException If the data is malformed.
+     */
+    public static CommandResult decodeResult(CodecReader reader) throws CodecException {
+        CodecFormat.readHeader(reader, CodecFormat.TAG_COMMAND_RESULT);
+
+        int flags = reader.readByte();
+        int responseCode = reader.readVarInt();
+        String message = reader.readNullableString();
+
+        return new CommandResult((flags & FLAG_SUCCESS) != 0, message, responseCode);
+    }
+
+    /**
+     * Gets the number of parameters the concrete command constructor takes.
+     *
+     * @param commandType The command type.
+     * @return The parameter count.
+     */
+    private static int expectedParameterCount(CommandType commandType){
+        switch(commandType){
+            case HELO:
+            case EHLO:
+            case MAIL:
+            case RCPT:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    // Private constructor to prevent instantiation
+    private CommandCodec(){
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
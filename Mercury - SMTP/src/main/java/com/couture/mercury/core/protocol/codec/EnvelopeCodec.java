@@ -0,0 +1,92 @@
+package com.couture.mercury.core.protocol.codec;
+
+import com.couture.mercury.core.spool.StoredEnvelope;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact, versioned binary codec for spooled delivery envelopes.
+ *
+ * <p>Layout: tag, version, body id (varlong), first delivery record id (varlong),
+ * reverse-path (nullable string), recipient count (varint), recipients (strings),
+ * prepended header fields (byte array). Envelopes written before the prepended headers were added
+ * end after the recipients and decode with no prepended headers.</p>
+ */
+public final class EnvelopeCodec {
+
+    /**
+     * Encodes a delivery envelope.
+     *
+     * @param bodyId The spool message identifier of the body.
+     * @param firstRecordId The delivery record of the first recipient.
+     * @param reversePath The reverse-path, or null.
+     * @param recipients The recipients.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(long bodyId, long firstRecordId, String reversePath, Collection<String> recipients){
+        return encode(bodyId, firstRecordId, reversePath, recipients, new byte[0]);
+    }
+
+    /**
+     * Encodes a delivery envelope with header fields to write ahead of the body on delivery.
+     *
+     * @param bodyId The spool message identifier of the body.
+     * @param firstRecordId The delivery record of the first recipient.
+     * @param reversePath The reverse-path, or null.
+     * @param recipients The recipients.
+     * @param prependedHeaders The encoded header fields, possibly empty.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(long bodyId, long firstRecordId, String reversePath, Collection<String> recipients,
+                                byte[] prependedHeaders){
+        CodecWriter writer = new CodecWriter(32 + recipients.size() * 32 + prependedHeaders.length);
+
+        CodecFormat.writeHeader(writer, CodecFormat.TAG_ENVELOPE);
+        writer.writeVarLong(bodyId);
+        writer.writeVarLong(firstRecordId);
+        writer.writeNullableString(reversePath);
+        writer.writeVarInt(recipients.size());
+        for(String recipient : recipients){
+            writer.writeString(recipient);
+        }
+        writer.writeByteArray(prependedHeaders);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a delivery envelope.
+     *
+     * @param envelopeId The spool message identifier the envelope was read from.
+     * @param data The encoded bytes.
+     * @return The envelope.
+     * @throws CodecException If the data is malformed.
+     */
+    public static StoredEnvelope decode(long envelopeId, byte[] data) throws CodecException {
+        CodecReader reader = new CodecReader(data);
+        CodecFormat.readHeader(reader, CodecFormat.TAG_ENVELOPE);
+
+        long bodyId = reader.readVarLong();
+        long firstRecordId = reader.readVarLong();
+        String reversePath = reader.readNullableString();
+        int count = reader.readVarInt();
+        if(count > reader.remaining()){
+            throw new CodecException("Recipient count " + count + " exceeds the remaining data");
+        }
+
+        List<String> recipients = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            recipients.add(reader.readString());
+        }
+
+        byte[] prependedHeaders = reader.remaining() > 0 ? reader.readByteArray() : new byte[0];
+        return new StoredEnvelope(envelopeId, bodyId, firstRecordId, reversePath, recipients, prependedHeaders);
+    }
+
+    // Private constructor to prevent instantiation
+    private EnvelopeCodec(){
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
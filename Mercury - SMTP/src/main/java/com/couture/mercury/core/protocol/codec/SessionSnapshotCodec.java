@@ -0,0 +1,103 @@
+package com.couture.mercury.core.protocol.codec;
+
+import com.couture.mercury.core.protocol.session.MailEnvelope;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+
+/**
+ * Compact, versioned binary codec for the envelope state of a session: the session state,
+ * the reverse-path and the accepted recipients. Used for journaling a transaction and for
+ * handing a session to another process.
+ *
+ * <p>Layout: tag, version, state code, reverse-path (nullable string), recipient count (varint),
+ * recipients (strings).</p>
+ */
+public final class SessionSnapshotCodec {
+
+    /**
+     * Encodes the envelope state of a session into a new byte array.
+     *
+     * @param session The session to snapshot.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(SmtpSession session){
+        CodecWriter writer = new CodecWriter(128);
+        encode(session, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encodes the envelope state of a session.
+     *
+     * @param session The session to snapshot.
+     * @param writer The writer to append to.
+     * @throws IllegalArgumentException If session is null.
+     */
+    public static void encode(SmtpSession session, CodecWriter writer){
+        if(session == null){
+            throw new IllegalArgumentException("Session cannot be null");
+        }
+
+        MailEnvelope envelope = session.getEnvelope();
+        RecipientStore recipients = envelope.getRecipients();
+
+        CodecFormat.writeHeader(writer, CodecFormat.TAG_SESSION);
+        writer.writeByte(CodecFormat.codeOf(CodecFormat.SESSION_STATE_CODES, session.getContext().getState()));
+        writer.writeNullableString(envelope.getReversePath());
+        writer.writeVarInt(recipients.size());
+        for(int i = 0; i < recipients.size(); i++){
+            writer.writeString(recipients.get(i));
+        }
+    }
+
+    /**
+     * Restores envelope state into a session, replacing its current transaction.
+     * The target is typically a freshly acquired pooled session.
+     *
+     * @param data The encoded bytes.
+     * @param target The session to restore into.
+     * @throws CodecException If the data is malformed or holds more recipients than the target accepts.
+     */
+    public static void decode(byte[] data, SmtpSession target) throws CodecException {
+        decode(new CodecReader(data), target);
+    }
+
+    /**
+     * Restores envelope state into a session, replacing its current transaction.
+     *
+     * @param reader The reader positioned at the start of an encoded snapshot.
+     * @param target The session to restore into.
+     * @throws CodecException If the data is malformed or holds more recipients than the target accepts.
+     */
+    public static void decode(CodecReader reader, SmtpSession target) throws CodecException {
+        if(target == null){
+            throw new IllegalArgumentException("Target session cannot be null");
+        }
+
+        CodecFormat.readHeader(reader, CodecFormat.TAG_SESSION);
+
+        SessionState state = CodecFormat.valueOf(CodecFormat.SESSION_STATE_CODES, reader.readByte());
+        String reversePath = reader.readNullableString();
+        int recipientCount = reader.readVarInt();
+
+        MailEnvelope envelope = target.getEnvelope();
+        envelope.reset();
+        envelope.setReversePath(reversePath);
+
+        RecipientStore recipients = envelope.getRecipients();
+        for(int i = 0; i < recipientCount; i++){
+            String recipient = reader.readString();
+            if(recipients.addRecipient(recipient) == RecipientStore.AddResult.LIMIT_EXCEEDED){
+                throw new CodecException("Snapshot holds more than " + recipients.getMaxRecipients() + " recipients");
+            }
+        }
+
+        target.getContext().setState(state);
+    }
+
+    // Private constructor to prevent instantiation
+    private SessionSnapshotCodec(){
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
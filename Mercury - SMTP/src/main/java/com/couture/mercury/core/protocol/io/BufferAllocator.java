@@ -0,0 +1,50 @@
+package com.couture.mercury.core.protocol.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Source of the fixed-size buffers a {@link MessageBuffer} keeps message content in.
+ *
+ * <p>{@link BufferPool} hands out pooled heap buffers that are reused across transactions.
+ * Other implementations may hand out off-heap memory whose lifetime is tied to the transaction:
+ * such memory is freed by {@link #releaseAll()}, which the message buffer calls on every reset.</p>
+ */
+public interface BufferAllocator {
+    /**
+     * Acquires an empty buffer.
+     *
+     * @return A cleared buffer of {@link #getBufferSize()} bytes.
+     */
+    ByteBuffer acquire();
+
+    /**
+     * Returns a buffer. The caller must not use the buffer, or any view of it, afterwards.
+     *
+     * @param buffer The buffer to return.
+     */
+    void release(ByteBuffer buffer);
+
+    /**
+     * Gets the capacity of the buffers handed out.
+     *
+     * @return The buffer size in bytes.
+     */
+    int getBufferSize();
+
+    /**
+     * Checks if the buffers handed out may only be accessed by the thread that allocated them, so
+     * content held in them must not be handed to another thread. False by default.
+     *
+     * @return True if the buffers are confined to the allocating thread.
+     */
+    default boolean isThreadConfined(){
+        return false;
+    }
+
+    /**
+     * Frees every buffer handed out since the last call. Called once all of them have been
+     * returned, when the message buffer is reset. Does nothing by default.
+     */
+    default void releaseAll(){
+    }
+}
@@ -0,0 +1,135 @@
+package com.couture.mercury.core.protocol.io;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed-size byte buffers used to hold message content in memory.
+ * Buffers are returned cleared and reused by the next message, so small messages are
+ * buffered without allocating per transaction.
+ *
+ * <p>The pool keeps at most a fixed number of idle buffers; buffers returned beyond that are left
+ * to the garbage collector. This class is thread-safe.</p>
+ */
+public final class BufferPool implements BufferAllocator {
+    /**
+     * Default maximum number of idle buffers kept by the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 4096;
+
+    private static final BufferPool SHARED = new BufferPool();
+
+    private final int m_bufferSize;
+    private final BlockingQueue<ByteBuffer> m_idle;
+    private final AtomicLong m_created = new AtomicLong();
+    private final AtomicLong m_reused = new AtomicLong();
+
+    /**
+     * Creates a pool of {@link ValidationConstants#MESSAGE_BUFFER_CHUNK_SIZE} byte buffers with the default idle limit.
+     */
+    public BufferPool(){
+        this(ValidationConstants.MESSAGE_BUFFER_CHUNK_SIZE, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Creates a buffer pool.
+     *
+     * @param bufferSize The capacity of each buffer in bytes.
+     * @param maxIdle The maximum number of idle buffers to keep (At least 1).
+     * @throws IllegalArgumentException If bufferSize or maxIdle is less than 1.
+     */
+    public BufferPool(int bufferSize, int maxIdle){
+        if(bufferSize < 1){
+            throw new IllegalArgumentException("Buffer size must be at least 1");
+        }
+        if(maxIdle < 1){
+            throw new IllegalArgumentException("Maximum idle buffers must be at least 1");
+        }
+
+        m_bufferSize = bufferSize;
+        m_idle = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Gets the pool shared by sessions that are not given their own.
+     *
+     * @return The shared pool.
+     */
+    public static BufferPool shared(){
+        return SHARED;
+    }
+
+    /**
+     * Acquires an empty buffer, reusing an idle one when available.
+     *
+     * @return A cleared buffer of {@link #getBufferSize()} bytes.
+     */
+    @Override
+    public ByteBuffer acquire(){
+        ByteBuffer buffer = m_idle.poll();
+        if(buffer != null){
+            m_reused.incrementAndGet();
+            return buffer;
+        }
+
+        m_created.incrementAndGet();
+        return ByteBuffer.allocate(m_bufferSize);
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of another size are ignored.
+     * The caller must not use the buffer, or any view of it, afterwards.
+     *
+     * @param buffer The buffer to return.
+     */
+    @Override
+    public void release(ByteBuffer buffer){
+        if(buffer.capacity() != m_bufferSize || buffer.isReadOnly()){
+            return;
+        }
+
+        buffer.clear();
+        m_idle.offer(buffer);
+    }
+
+    /**
+     * Gets the capacity of the pooled buffers.
+     *
+     * @return The buffer size in bytes.
+     */
+    @Override
+    public int getBufferSize(){
+        return m_bufferSize;
+    }
+
+    /**
+     * Gets the number of idle buffers held by the pool.
+     *
+     * @return The idle buffer count.
+     */
+    public int getIdleCount(){
+        return m_idle.size();
+    }
+
+    /**
+     * Gets the number of buffers allocated by the pool.
+     *
+     * @return The created buffer count.
+     */
+    public long getCreatedCount(){
+        return m_created.get();
+    }
+
+    /**
+     * Gets the number of acquisitions served by a recycled buffer.
+     *
+     * @return The reused buffer count.
+     */
+    public long getReusedCount(){
+        return m_reused.get();
+    }
+}
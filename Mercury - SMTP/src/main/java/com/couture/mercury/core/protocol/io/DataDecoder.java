@@ -0,0 +1,149 @@
+package com.couture.mercury.core.protocol.io;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the DATA stream: removes the dot-stuffing of RFC 5321 section 4.5.2 and stops at
+ * {@link ValidationConstants#DATA_TERMINATOR}.
+ *
+ * <p>Decoded content is returned as slices of the input, so nothing is copied. Between line
+ * starts the input is skipped with {@link LineScanner}, eight bytes at a time; only the byte after
+ * each CRLF is inspected for a leading dot. A bare LF does not start a line, so neither
+ * {@code LF . CRLF} nor {@code CRLF . LF} ends the message, and a client cannot smuggle commands
+ * past a server that reads such a sequence differently. The CRLF before the terminating dot is part
+ * of the message and is returned with it. Any state spanning two chunks, such as a line starting
+ * with a dot at the end of one chunk, is carried over to the next.</p>
+ *
+ * <p>Typical use:</p>
+ * <pre>
+ * ByteBuffer content;
+ * while((content = decoder.decode(input)) != null){
+ *     session.appendMessageData(content);
+ * }
+ * if(decoder.isComplete()){
+ *     // The input now starts at the first byte after the terminator.
+ * }
+ * </pre>
+ *
+ * <p>This class is not thread-safe; it belongs to a single session.</p>
+ */
+public final class DataDecoder {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DOT = '.';
+    private static final ByteBuffer CR_CONTENT = ByteBuffer.wrap(new byte[]{CR}).asReadOnlyBuffer();
+
+    private State m_state = State.LINE_START;
+    // Whether the byte before the current position, possibly the last of the previous chunk, is a CR.
+    private boolean m_afterCr;
+
+    /**
+     * Returns the next run of decoded content from the input, advancing the input past it.
+     * Bytes that are not content, the stuffed dots and the terminator, are skipped.
+     *
+     * @param input The bytes received from the client.
+     * @return A slice of decoded content, or null once the input is exhausted or the terminator has been consumed.
+     */
+    public ByteBuffer decode(ByteBuffer input){
+        int start = input.position();
+        int limit = input.limit();
+        int i = start;
+
+        while(i < limit){
+            switch(m_state){
+                case IN_LINE -> {
+                    int lineFeed = LineScanner.indexOfLineFeed(input, i, limit);
+                    if(lineFeed < 0){
+                        m_afterCr = input.get(limit - 1) == CR;
+                        i = limit;
+                    }
+                    else{
+                        // Only a CRLF starts a line; a bare LF is content.
+                        boolean crlf = lineFeed > i ? input.get(lineFeed - 1) == CR : m_afterCr;
+                        m_afterCr = false;
+                        i = lineFeed + 1;
+                        if(crlf){
+                            m_state = State.LINE_START;
+                        }
+                    }
+                }
+                case LINE_START -> {
+                    if(input.get(i) != DOT){
+                        m_state = State.IN_LINE;
+                        continue;
+                    }
+
+                    // Drop the leading dot: it is either stuffing or the start of the terminator.
+                    m_state = State.DOT;
+                    input.position(i + 1);
+                    if(i > start){
+                        return input.slice(start, i - start);
+                    }
+                    start = ++i;
+                }
+                case DOT -> {
+                    if(input.get(i) != CR){
+                        m_state = State.IN_LINE;
+                        continue;
+                    }
+
+                    // Hold the CR back until it is known whether an LF completes the terminator.
+                    m_state = State.DOT_CR;
+                    start = ++i;
+                    input.position(i);
+                }
+                case DOT_CR -> {
+                    if(input.get(i) == LF){
+                        m_state = State.COMPLETE;
+                        input.position(i + 1);
+                        return null;
+                    }
+
+                    m_state = State.IN_LINE;
+                    return CR_CONTENT.duplicate();
+                }
+                case COMPLETE -> {
+                    return null;
+                }
+            }
+        }
+
+        input.position(limit);
+        return start < limit ? input.slice(start, limit - start) : null;
+    }
+
+    /**
+     * Checks if the terminator has been consumed.
+     *
+     * @return True once the whole message has been decoded.
+     */
+    public boolean isComplete(){
+        return m_state == State.COMPLETE;
+    }
+
+    /**
+     * Prepares the decoder for the next message.
+     */
+    public void reset(){
+        m_state = State.LINE_START;
+        m_afterCr = false;
+    }
+
+    /**
+     * Where in the stream the decoder is.
+     */
+    private enum State {
+        // Inside a line, looking for its CRLF.
+        IN_LINE,
+        // At the first byte of a line.
+        LINE_START,
+        // After a leading dot.
+        DOT,
+        // After a leading dot and CR.
+        DOT_CR,
+        // The terminator has been consumed.
+        COMPLETE
+    }
+}
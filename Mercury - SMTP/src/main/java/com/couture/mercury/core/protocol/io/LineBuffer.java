@@ -0,0 +1,139 @@
+package com.couture.mercury.core.protocol.io;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-capacity buffer that frames CRLF-terminated SMTP command lines from a byte stream.
+ * The backing array is allocated once and reused for every line, and across sessions when pooled.
+ * Input is searched for line feeds with {@link LineScanner} and copied in bulk.
+ *
+ * <p>Lines longer than the capacity are not stored; the buffer discards input up to the next
+ * line ending and reports the line as overflowed, so the caller can answer with a 500 reply.</p>
+ */
+public final class LineBuffer {
+    private static final byte CR = '\r';
+
+    private final byte[] m_buffer;
+    private int m_length;
+    private boolean m_complete;
+    private boolean m_overflowed;
+
+    /**
+     * Creates a line buffer sized for {@link ValidationConstants#MAX_COMMAND_LENGTH}.
+     */
+    public LineBuffer(){
+        this(ValidationConstants.MAX_COMMAND_LENGTH);
+    }
+
+    /**
+     * Creates a line buffer with the given capacity, including the CRLF.
+     *
+     * @param capacity The maximum line length in bytes.
+     * @throws IllegalArgumentException If capacity is less than 2.
+     */
+    public LineBuffer(int capacity){
+        if(capacity < 2){
+            throw new IllegalArgumentException("Line buffer capacity must be at least 2");
+        }
+
+        m_buffer = new byte[capacity];
+    }
+
+    /**
+     * Consumes bytes from the source until a full line has been framed or the source is exhausted.
+     *
+     * @param source The bytes received from the client.
+     * @return True if a complete line is available, otherwise false.
+     */
+    public boolean feed(ByteBuffer source){
+        if(m_complete){
+            return true;
+        }
+
+        while(source.hasRemaining()){
+            int position = source.position();
+            int lineFeed = LineScanner.indexOfLineFeed(source, position, source.limit());
+            int end = lineFeed < 0 ? source.limit() : lineFeed + 1;
+
+            if(!m_overflowed){
+                int count = end - position;
+                int room = m_buffer.length - m_length;
+                if(count > room){
+                    count = room;
+                    m_overflowed = true;
+                }
+                source.get(position, m_buffer, m_length, count);
+                m_length += count;
+            }
+            source.position(end);
+
+            if(lineFeed >= 0 && (m_overflowed || (m_length >= 2 && m_buffer[m_length - 2] == CR))){
+                m_complete = true;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a complete line has been framed.
+     *
+     * @return True if a line is available.
+     */
+    public boolean isComplete(){
+        return m_complete;
+    }
+
+    /**
+     * Checks if the current line exceeded the buffer capacity.
+     *
+     * @return True if the line was too long.
+     */
+    public boolean isOverflowed(){
+        return m_overflowed;
+    }
+
+    /**
+     * Gets the current line, without its CRLF.
+     *
+     * @return The line decoded as US-ASCII, or null if no complete line is available or it overflowed.
+     */
+    public String getLine(){
+        if(!m_complete || m_overflowed){
+            return null;
+        }
+
+        return new String(m_buffer, 0, m_length - 2, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Gets the number of bytes currently buffered.
+     *
+     * @return The buffered byte count.
+     */
+    public int length(){
+        return m_length;
+    }
+
+    /**
+     * Gets the capacity of this buffer.
+     *
+     * @return The capacity in bytes.
+     */
+    public int capacity(){
+        return m_buffer.length;
+    }
+
+    /**
+     * Discards the current line so the next one can be framed.
+     */
+    public void clear(){
+        m_length = 0;
+        m_complete = false;
+        m_overflowed = false;
+    }
+}
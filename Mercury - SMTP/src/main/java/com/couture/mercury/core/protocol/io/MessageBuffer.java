@@ -0,0 +1,289 @@
+package com.couture.mercury.core.protocol.io;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the content of the message being received, in memory while it is small and in a
+ * spill file once it grows past a threshold.
+ *
+ * <p>Content is written into buffers taken from a {@link BufferAllocator}, by default the shared
+ * {@link BufferPool}. As soon as the message would exceed the spill threshold, the buffered
+ * content is written to a temporary file in the spill directory, the buffers are returned and
+ * all further content is appended to the file.
+ * Most messages are well below the threshold, so they never touch the disk before being spooled,
+ * and a delivery made while the transaction is still open can be served from memory through
+ * {@link #transferTo(WritableByteChannel)} or {@link #buffers()}.</p>
+ *
+ * <p>{@link #reset()} returns the buffers and deletes the spill file, readying the buffer for the
+ * next transaction. This class is not thread-safe; it belongs to a single session.</p>
+ */
+public final class MessageBuffer implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageBuffer.class);
+    private static final String SPILL_PREFIX = "mercury-";
+    private static final String SPILL_SUFFIX = ".msg";
+    // Largest region mapped at once when exposing a spill file as buffers.
+    private static final long MAX_MAPPING = 1L << 30;
+
+    private final BufferAllocator m_allocator;
+    private final long m_spillThreshold;
+    private final Path m_spillDirectory;
+    private final List<ByteBuffer> m_chunks = new ArrayList<>();
+    private FileChannel m_spillFile;
+    private long m_size;
+
+    /**
+     * Creates a message buffer on the shared pool that spills to the system temporary directory
+     * past {@link ValidationConstants#MESSAGE_SPILL_THRESHOLD}.
+     */
+    public MessageBuffer(){
+        this(BufferPool.shared(), ValidationConstants.MESSAGE_SPILL_THRESHOLD,
+                Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Creates a message buffer.
+     *
+     * @param allocator The allocator supplying the in-memory buffers.
+     * @param spillThreshold The largest message kept in memory, in bytes.
+     * @param spillDirectory The directory spill files are created in.
+     * @throws IllegalArgumentException If allocator or spillDirectory is null, or the threshold is negative.
+     */
+    public MessageBuffer(BufferAllocator allocator, long spillThreshold, Path spillDirectory){
+        if(allocator == null){
+            throw new IllegalArgumentException("Buffer allocator cannot be null");
+        }
+        if(spillThreshold < 0){
+            throw new IllegalArgumentException("Spill threshold cannot be negative");
+        }
+        if(spillDirectory == null){
+            throw new IllegalArgumentException("Spill directory cannot be null");
+        }
+
+        m_allocator = allocator;
+        m_spillThreshold = spillThreshold;
+        m_spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Appends the remaining bytes of a chunk of message content, consuming them.
+     *
+     * @param chunk The content to append.
+     * @throws IOException If the content cannot be written to the spill file.
+     */
+    public void write(ByteBuffer chunk) throws IOException {
+        int length = chunk.remaining();
+        if(m_spillFile == null && m_size + length > m_spillThreshold){
+            spill();
+        }
+
+        if(m_spillFile != null){
+            while(chunk.hasRemaining()){
+                m_spillFile.write(chunk);
+            }
+        }
+        else{
+            while(chunk.hasRemaining()){
+                ByteBuffer last = m_chunks.isEmpty() ? null : m_chunks.get(m_chunks.size() - 1);
+                if(last == null || !last.hasRemaining()){
+                    last = m_allocator.acquire();
+                    m_chunks.add(last);
+                }
+
+                int count = Math.min(last.remaining(), chunk.remaining());
+                last.put(chunk.slice(chunk.position(), count));
+                chunk.position(chunk.position() + count);
+            }
+        }
+
+        m_size += length;
+    }
+
+    /**
+     * Gets the content as read-only buffers, in order, without copying it. A spilled message is
+     * mapped from its spill file. The buffers are only valid until the next write or reset.
+     *
+     * @return The content.
+     * @throws IOException If the spill file cannot be mapped.
+     */
+    public ByteBuffer[] buffers() throws IOException {
+        if(m_spillFile == null){
+            ByteBuffer[] buffers = new ByteBuffer[m_chunks.size()];
+            for(int i = 0; i < buffers.length; i++){
+                buffers[i] = m_chunks.get(i).asReadOnlyBuffer().flip();
+            }
+            return buffers;
+        }
+
+        ByteBuffer[] buffers = new ByteBuffer[(int) ((m_size + MAX_MAPPING - 1) / MAX_MAPPING)];
+        for(int i = 0; i < buffers.length; i++){
+            long position = i * MAX_MAPPING;
+            buffers[i] = m_spillFile.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING, m_size - position));
+        }
+        return buffers;
+    }
+
+    /**
+     * Writes the whole content to a channel: in-memory content with a single gathering write where
+     * the channel supports it, spilled content straight from the spill file.
+     *
+     * @param target The channel to write to.
+     * @return The number of bytes written.
+     * @throws IOException If the content cannot be read or written.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if(m_spillFile != null){
+            long position = 0;
+            while(position < m_size){
+                position += m_spillFile.transferTo(position, m_size - position, target);
+            }
+            return m_size;
+        }
+
+        ByteBuffer[] buffers = buffers();
+        if(target instanceof GatheringByteChannel gathering){
+            long remaining = m_size;
+            while(remaining > 0){
+                remaining -= gathering.write(buffers);
+            }
+        }
+        else{
+            for(ByteBuffer buffer : buffers){
+                while(buffer.hasRemaining()){
+                    target.write(buffer);
+                }
+            }
+        }
+        return m_size;
+    }
+
+    /**
+     * Gets the number of bytes written since the last reset.
+     *
+     * @return The message size in bytes.
+     */
+    public long size(){
+        return m_size;
+    }
+
+    /**
+     * Checks if the message has been moved to a spill file.
+     *
+     * @return True if the content is on disk.
+     */
+    public boolean isSpilled(){
+        return m_spillFile != null;
+    }
+
+    /**
+     * Checks if the content may only be read by the thread that wrote it, because it is held in
+     * buffers from a thread-confined allocator. Spilled content can be read by any thread.
+     *
+     * @return True if the content must not be handed to another thread.
+     */
+    public boolean isThreadConfined(){
+        return m_spillFile == null && m_allocator.isThreadConfined();
+    }
+
+    /**
+     * Gets the memory held in allocated buffers, which is what the session should be charged for.
+     *
+     * @return The capacity of the held buffers in bytes; 0 once spilled.
+     */
+    public long getMemoryBytes(){
+        return (long) m_chunks.size() * m_allocator.getBufferSize();
+    }
+
+    /**
+     * Gets the largest message kept in memory.
+     *
+     * @return The spill threshold in bytes.
+     */
+    public long getSpillThreshold(){
+        return m_spillThreshold;
+    }
+
+    /**
+     * Discards the content, returning the buffers to the allocator and deleting the spill file.
+     * A spill file that fails to close is logged and abandoned.
+     */
+    public void reset(){
+        releaseChunks();
+        m_allocator.releaseAll();
+        m_size = 0;
+
+        FileChannel spillFile = m_spillFile;
+        m_spillFile = null;
+        if(spillFile != null){
+            try{
+                spillFile.close();
+            }
+            catch(IOException e){
+                LOGGER.warn("Failed to close message spill file", e);
+            }
+        }
+    }
+
+    /**
+     * Discards the content. Equivalent to {@link #reset()}.
+     */
+    @Override
+    public void close(){
+        reset();
+    }
+
+    @Override
+    public String toString(){
+        return "MessageBuffer{" + "size=" + m_size + ", spilled=" + isSpilled() + ", chunks=" + m_chunks.size() + '}';
+    }
+
+    /**
+     * Moves the buffered content to a new spill file and returns the buffers to the allocator.
+     *
+     * @throws IOException If the spill file cannot be created or written.
+     */
+    private void spill() throws IOException {
+        Path path = Files.createTempFile(m_spillDirectory, SPILL_PREFIX, SPILL_SUFFIX);
+        FileChannel spillFile = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+
+        try{
+            ByteBuffer[] buffers = buffers();
+            long remaining = m_size;
+            while(remaining > 0){
+                remaining -= spillFile.write(buffers);
+            }
+        }
+        catch(IOException e){
+            spillFile.close();
+            throw e;
+        }
+
+        m_spillFile = spillFile;
+        releaseChunks();
+    }
+
+    /**
+     * Returns the in-memory buffers to the allocator.
+     */
+    private void releaseChunks(){
+        for(ByteBuffer chunk : m_chunks){
+            m_allocator.release(chunk);
+        }
+        m_chunks.clear();
+    }
+}
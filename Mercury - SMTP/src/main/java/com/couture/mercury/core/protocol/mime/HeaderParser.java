@@ -0,0 +1,267 @@
+package com.couture.mercury.core.protocol.mime;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental RFC 5322 header parser fed with message content as it streams in during DATA.
+ *
+ * <p>The parser reads each chunk in place, without moving its position, so the same buffer can be
+ * handed on to the spool unchanged. Parsing stops at the blank line that separates the header
+ * section from the body; from then on {@link #feed(ByteBuffer)} returns immediately, so the body
+ * is never inspected, copied or read a second time.</p>
+ *
+ * <p>Input is the message content after dot-unstuffing, as it is stored. Folded fields are unfolded,
+ * lines longer than {@link ValidationConstants#MAX_HEADER_LINE_LENGTH} are truncated, and bare LF
+ * line endings are accepted. A line that is neither a field nor a continuation ends the header
+ * section early, as does reaching the configured section limit, in which case the parser reports
+ * itself as truncated.</p>
+ *
+ * <p>This class is not thread-safe; it belongs to a single session.</p>
+ */
+public final class HeaderParser {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte COLON = ':';
+    private static final byte SPACE = ' ';
+    private static final byte TAB = '\t';
+
+    private final MessageHeaders m_headers;
+    private final int m_maxSectionLength;
+    private final byte[] m_line = new byte[ValidationConstants.MAX_HEADER_LINE_LENGTH];
+    private final StringBuilder m_value = new StringBuilder();
+    private int m_lineLength;
+    private long m_lineStart;
+    private String m_fieldName;
+    private long m_consumed;
+    private long m_headerLength = -1;
+    private boolean m_truncated;
+
+    /**
+     * Creates a parser filling the given headers, limited to {@link ValidationConstants#MAX_HEADER_SECTION_LENGTH}.
+     *
+     * @param headers The headers to fill.
+     */
+    public HeaderParser(MessageHeaders headers){
+        this(headers, ValidationConstants.MAX_HEADER_SECTION_LENGTH);
+    }
+
+    /**
+     * Creates a parser filling the given headers.
+     *
+     * @param headers The headers to fill.
+     * @param maxSectionLength The maximum number of header bytes parsed.
+     * @throws IllegalArgumentException If headers is null or the limit is not positive.
+     */
+    public HeaderParser(MessageHeaders headers, int maxSectionLength){
+        if(headers == null){
+            throw new IllegalArgumentException("Message headers cannot be null");
+        }
+        if(maxSectionLength < 1){
+            throw new IllegalArgumentException("Header section limit must be positive");
+        }
+
+        m_headers = headers;
+        m_maxSectionLength = maxSectionLength;
+    }
+
+    /**
+     * Parses the remaining bytes of a chunk of message content, up to the end of the header section.
+     * The position and limit of the chunk are left untouched.
+     *
+     * @param chunk The next chunk of message content.
+     * @return True once the header section is complete.
+     */
+    public boolean feed(ByteBuffer chunk){
+        if(isComplete()){
+            return true;
+        }
+
+        int limit = chunk.limit();
+        for(int i = chunk.position(); i < limit; i++){
+            byte value = chunk.get(i);
+            m_consumed++;
+
+            if(value == LF){
+                int length = m_lineLength > 0 && m_line[m_lineLength - 1] == CR ? m_lineLength - 1 : m_lineLength;
+                m_lineLength = 0;
+
+                if(endOfLine(length, m_lineStart)){
+                    return true;
+                }
+                m_lineStart = m_consumed;
+            }
+            else if(m_lineLength < m_line.length){
+                m_line[m_lineLength++] = value;
+            }
+
+            if(m_consumed >= m_maxSectionLength){
+                m_truncated = true;
+                complete(m_consumed);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Signals the end of the message content. A message consisting only of header fields has no
+     * blank line, so any field still being assembled is stored here.
+     */
+    public void finish(){
+        if(isComplete()){
+            return;
+        }
+
+        if(m_lineLength > 0){
+            int length = m_line[m_lineLength - 1] == CR ? m_lineLength - 1 : m_lineLength;
+            m_lineLength = 0;
+            if(endOfLine(length, m_lineStart)){
+                return;
+            }
+        }
+
+        complete(m_consumed);
+    }
+
+    /**
+     * Checks if the end of the header section has been reached.
+     *
+     * @return True once no further input will be parsed.
+     */
+    public boolean isComplete(){
+        return m_headerLength >= 0;
+    }
+
+    /**
+     * Checks if parsing stopped at the section limit rather than at the end of the header section.
+     *
+     * @return True if the header section was larger than the limit.
+     */
+    public boolean isTruncated(){
+        return m_truncated;
+    }
+
+    /**
+     * Gets the length of the header section, including the blank separator line if there is one.
+     * This is the offset of the body within the message content.
+     *
+     * @return The header section length in bytes, or -1 if parsing is not complete.
+     */
+    public long getHeaderLength(){
+        return m_headerLength;
+    }
+
+    /**
+     * Gets the headers filled by this parser.
+     *
+     * @return The headers.
+     */
+    public MessageHeaders getHeaders(){
+        return m_headers;
+    }
+
+    /**
+     * Estimates the bytes retained by the parser and the headers it has filled.
+     *
+     * @return The approximate retained size in bytes.
+     */
+    public long getRetainedBytes(){
+        return m_line.length + m_value.capacity() * 2L + m_headers.getRetainedBytes();
+    }
+
+    /**
+     * Clears the parser and its headers for the next message.
+     */
+    public void reset(){
+        m_headers.clear();
+        m_value.setLength(0);
+        m_lineLength = 0;
+        m_lineStart = 0;
+        m_fieldName = null;
+        m_consumed = 0;
+        m_headerLength = -1;
+        m_truncated = false;
+    }
+
+    /**
+     * Handles a complete line.
+     *
+     * @param length The length of the line without its line ending.
+     * @param lineStart The offset of the line within the message content.
+     * @return True if the line ended the header section.
+     */
+    private boolean endOfLine(int length, long lineStart){
+        if(length == 0){
+            complete(m_consumed);
+            return true;
+        }
+
+        byte first = m_line[0];
+        if(first == SPACE || first == TAB){
+            if(m_fieldName == null){
+                complete(lineStart);
+                return true;
+            }
+
+            // Unfolding removes only the line break; the leading whitespace stays part of the value.
+            m_value.append(new String(m_line, 0, length, StandardCharsets.UTF_8));
+            return false;
+        }
+
+        int colon = fieldNameLength(length);
+        if(colon <= 0){
+            complete(lineStart);
+            return true;
+        }
+
+        commitField();
+        m_fieldName = new String(m_line, 0, colon, StandardCharsets.US_ASCII);
+        m_value.append(new String(m_line, colon + 1, length - colon - 1, StandardCharsets.UTF_8));
+        return false;
+    }
+
+    /**
+     * Finds the colon ending the field name of the current line.
+     *
+     * @param length The length of the line.
+     * @return The index of the colon, or -1 if the line does not start with a valid field name.
+     */
+    private int fieldNameLength(int length){
+        for(int i = 0; i < length; i++){
+            byte value = m_line[i];
+            if(value == COLON){
+                return i;
+            }
+            // RFC 5322 field names are printable US-ASCII except the colon.
+            if(value < 33 || value > 126){
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the field being assembled, if any.
+     */
+    private void commitField(){
+        if(m_fieldName != null){
+            m_headers.add(m_fieldName, m_value.toString().trim());
+            m_fieldName = null;
+        }
+        m_value.setLength(0);
+    }
+
+    /**
+     * Marks the header section as complete.
+     *
+     * @param headerLength The length of the header section.
+     */
+    private void complete(long headerLength){
+        commitField();
+        m_headerLength = headerLength;
+    }
+}
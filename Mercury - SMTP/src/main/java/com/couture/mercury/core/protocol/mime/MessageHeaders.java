@@ -0,0 +1,201 @@
+package com.couture.mercury.core.protocol.mime;
+
+import com.couture.mercury.core.protocol.session.SessionMemoryTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The header fields of a message, in the order they appear, as extracted by {@link HeaderParser}.
+ * Field values are unfolded and trimmed; names are matched case-insensitively as RFC 5322 requires.
+ *
+ * <p>Instances are owned by a session's envelope and cleared between transactions.
+ * This class is not thread-safe.</p>
+ */
+public final class MessageHeaders {
+    public static final String MESSAGE_ID = "Message-ID";
+    public static final String FROM = "From";
+    public static final String TO = "To";
+    public static final String SUBJECT = "Subject";
+    public static final String DATE = "Date";
+    public static final String CONTENT_TYPE = "Content-Type";
+    public static final String RECEIVED = "Received";
+
+    private final List<String> m_names = new ArrayList<>();
+    private final List<String> m_values = new ArrayList<>();
+    private long m_retainedBytes;
+
+    /**
+     * Appends a field.
+     *
+     * @param name The field name.
+     * @param value The unfolded field value.
+     */
+    void add(String name, String value){
+        m_names.add(name);
+        m_values.add(value);
+        m_retainedBytes += SessionMemoryTracker.estimateStringBytes(name) + SessionMemoryTracker.estimateStringBytes(value);
+    }
+
+    /**
+     * Gets the value of the first field with the given name.
+     *
+     * @param name The field name.
+     * @return The value, or null if the field is absent.
+     */
+    public String getFirst(String name){
+        for(int i = 0; i < m_names.size(); i++){
+            if(m_names.get(i).equalsIgnoreCase(name)){
+                return m_values.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the values of every field with the given name, in order.
+     *
+     * @param name The field name.
+     * @return The values, empty if the field is absent.
+     */
+    public List<String> getAll(String name){
+        List<String> values = new ArrayList<>(2);
+        for(int i = 0; i < m_names.size(); i++){
+            if(m_names.get(i).equalsIgnoreCase(name)){
+                values.add(m_values.get(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Counts the fields with the given name.
+     *
+     * @param name The field name.
+     * @return The number of occurrences.
+     */
+    public int count(String name){
+        int count = 0;
+        for(String fieldName : m_names){
+            if(fieldName.equalsIgnoreCase(name)){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the Message-ID field.
+     *
+     * @return The message identifier, or null if absent.
+     */
+    public String getMessageId(){
+        return getFirst(MESSAGE_ID);
+    }
+
+    /**
+     * Gets the From field.
+     *
+     * @return The author mailbox list, or null if absent.
+     */
+    public String getFrom(){
+        return getFirst(FROM);
+    }
+
+    /**
+     * Gets the To field.
+     *
+     * @return The recipient list, or null if absent.
+     */
+    public String getTo(){
+        return getFirst(TO);
+    }
+
+    /**
+     * Gets the Subject field.
+     *
+     * @return The subject, or null if absent.
+     */
+    public String getSubject(){
+        return getFirst(SUBJECT);
+    }
+
+    /**
+     * Gets the Date field.
+     *
+     * @return The origination date, or null if absent.
+     */
+    public String getDate(){
+        return getFirst(DATE);
+    }
+
+    /**
+     * Gets the Content-Type field.
+     *
+     * @return The content type, or null if absent.
+     */
+    public String getContentType(){
+        return getFirst(CONTENT_TYPE);
+    }
+
+    /**
+     * Gets the number of Received fields, which is the hop count used for mail loop detection.
+     *
+     * @return The Received field count.
+     */
+    public int getReceivedCount(){
+        return count(RECEIVED);
+    }
+
+    /**
+     * Gets the name of the field at a position.
+     *
+     * @param index The position in the header section.
+     * @return The field name as it appeared in the message.
+     */
+    public String getName(int index){
+        return m_names.get(index);
+    }
+
+    /**
+     * Gets the value of the field at a position.
+     *
+     * @param index The position in the header section.
+     * @return The unfolded field value.
+     */
+    public String getValue(int index){
+        return m_values.get(index);
+    }
+
+    /**
+     * Gets the number of fields.
+     *
+     * @return The field count.
+     */
+    public int size(){
+        return m_names.size();
+    }
+
+    /**
+     * Estimates the bytes retained by the stored fields.
+     *
+     * @return The approximate retained size in bytes.
+     */
+    public long getRetainedBytes(){
+        return m_retainedBytes;
+    }
+
+    /**
+     * Removes every field.
+     */
+    public void clear(){
+        m_names.clear();
+        m_values.clear();
+        m_retainedBytes = 0;
+    }
+
+    @Override
+    public String toString(){
+        return "MessageHeaders{" + "fields=" + m_names.size() + ", messageId=" + getMessageId() + '}';
+    }
+}
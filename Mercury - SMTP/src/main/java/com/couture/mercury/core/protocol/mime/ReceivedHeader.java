@@ -0,0 +1,228 @@
+package com.couture.mercury.core.protocol.mime;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+/**
+ * A Received trace field as defined by RFC 5321 section 4.4, recording one hop of a message.
+ *
+ * <pre>
+ * Received: from client.example.com (host.example.com [192.0.2.1])
+ *         by mx.example.org with ESMTP id 42
+ *         for &lt;bob@example.org&gt;; Tue, 1 Oct 2024 10:00:00 +0000
+ * </pre>
+ *
+ * <p>Values supplied by the client, such as the HELO name, are sanitised so they cannot
+ * break out of the field. Instances are immutable and created through {@link #builder(String)}.</p>
+ */
+public final class ReceivedHeader {
+    private final String m_heloName;
+    private final String m_clientHost;
+    private final String m_clientAddress;
+    private final String m_byHost;
+    private final String m_protocol;
+    private final String m_id;
+    private final String m_recipient;
+    private final ZonedDateTime m_date;
+
+    /**
+     * Creates a Received field from a builder.
+     *
+     * @param builder The builder.
+     */
+    private ReceivedHeader(Builder builder){
+        m_heloName = builder.m_heloName;
+        m_clientHost = builder.m_clientHost;
+        m_clientAddress = builder.m_clientAddress;
+        m_byHost = builder.m_byHost;
+        m_protocol = builder.m_protocol;
+        m_id = builder.m_id;
+        m_recipient = builder.m_recipient;
+        m_date = builder.m_date != null ? builder.m_date : ZonedDateTime.now();
+    }
+
+    /**
+     * Creates a builder for a Received field added by the given host.
+     *
+     * @param byHost The name of the receiving host.
+     * @return The builder.
+     */
+    public static Builder builder(String byHost){
+        return new Builder(byHost);
+    }
+
+    /**
+     * Formats the field, folded over several lines, including its name and the final CRLF.
+     *
+     * @return The formatted field.
+     */
+    public String format(){
+        StringBuilder field = new StringBuilder(160).append(MessageHeaders.RECEIVED).append(':');
+
+        if(m_heloName != null){
+            field.append(" from ").append(sanitize(m_heloName));
+            if(m_clientHost != null || m_clientAddress != null){
+                field.append(" (");
+                if(m_clientHost != null){
+                    field.append(sanitize(m_clientHost));
+                }
+                if(m_clientAddress != null){
+                    field.append(m_clientHost != null ? " [" : "[").append(sanitize(m_clientAddress)).append(']');
+                }
+                field.append(')');
+            }
+            field.append("\r\n\t");
+        }
+        else{
+            field.append(' ');
+        }
+
+        field.append("by ").append(sanitize(m_byHost));
+        if(m_protocol != null){
+            field.append(" with ").append(sanitize(m_protocol));
+        }
+        if(m_id != null){
+            field.append(" id ").append(sanitize(m_id));
+        }
+        if(m_recipient != null){
+            field.append("\r\n\tfor <").append(sanitize(m_recipient)).append('>');
+        }
+
+        return field.append("; ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(m_date)).append("\r\n").toString();
+    }
+
+    @Override
+    public String toString(){
+        return format();
+    }
+
+    /**
+     * Replaces characters that could end or corrupt the field, such as CR and LF, with '?'.
+     *
+     * @param value The value to sanitise.
+     * @return The sanitised value.
+     */
+    private static String sanitize(String value){
+        StringBuilder sanitized = null;
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c < 0x21 || c == 0x7F || c == '(' || c == ')' || c == ';'){
+                if(sanitized == null){
+                    sanitized = new StringBuilder(value);
+                }
+                sanitized.setCharAt(i, '?');
+            }
+        }
+        return sanitized != null ? sanitized.toString() : value;
+    }
+
+    /**
+     * Builder for {@link ReceivedHeader}.
+     */
+    public static final class Builder {
+        private final String m_byHost;
+        private String m_heloName;
+        private String m_clientHost;
+        private String m_clientAddress;
+        private String m_protocol = "ESMTP";
+        private String m_id;
+        private String m_recipient;
+        private ZonedDateTime m_date;
+
+        /**
+         * Creates a builder.
+         *
+         * @param byHost The name of the receiving host.
+         */
+        private Builder(String byHost){
+            m_byHost = Objects.requireNonNull(byHost, "Receiving host cannot be null");
+        }
+
+        /**
+         * Sets the name the client gave in HELO or EHLO.
+         *
+         * @param heloName The HELO name.
+         * @return This builder.
+         */
+        public Builder from(String heloName){
+            m_heloName = heloName;
+            return this;
+        }
+
+        /**
+         * Sets the client's reverse DNS name.
+         *
+         * @param clientHost The verified host name, or null if unknown.
+         * @return This builder.
+         */
+        public Builder clientHost(String clientHost){
+            m_clientHost = clientHost;
+            return this;
+        }
+
+        /**
+         * Sets the client's IP address.
+         *
+         * @param clientAddress The address literal, without brackets.
+         * @return This builder.
+         */
+        public Builder clientAddress(String clientAddress){
+            m_clientAddress = clientAddress;
+            return this;
+        }
+
+        /**
+         * Sets the protocol, for example SMTP, ESMTP, ESMTPS or ESMTPA. Defaults to ESMTP.
+         *
+         * @param protocol The protocol keyword, or null to omit the clause.
+         * @return This builder.
+         */
+        public Builder with(String protocol){
+            m_protocol = protocol;
+            return this;
+        }
+
+        /**
+         * Sets the identifier the receiving host assigned to the message.
+         *
+         * @param id The identifier, for example the spool message identifier.
+         * @return This builder.
+         */
+        public Builder id(String id){
+            m_id = id;
+            return this;
+        }
+
+        /**
+         * Sets the recipient the copy is for. Should only be set when the transaction has a single recipient.
+         *
+         * @param recipient The recipient address, without brackets.
+         * @return This builder.
+         */
+        public Builder forRecipient(String recipient){
+            m_recipient = recipient;
+            return this;
+        }
+
+        /**
+         * Sets the time the message was received. Defaults to the time the field is built.
+         *
+         * @param date The receipt time.
+         * @return This builder.
+         */
+        public Builder date(ZonedDateTime date){
+            m_date = date;
+            return this;
+        }
+
+        /**
+         * Builds the field.
+         *
+         * @return The Received field.
+         */
+        public ReceivedHeader build(){
+            return new ReceivedHeader(this);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.couture.mercury.core.protocol.mime;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Header fields added in front of a message by this server, such as Return-Path, Received and
+ * Authentication-Results.
+ *
+ * <p>The fields are kept as separate buffers and are never merged into the message itself:
+ * they are written ahead of the body with a single gathering write, either when the message is
+ * spooled ({@link #prependTo(ByteBuffer...)}) or when a stored body is delivered, so the body is
+ * not copied or rewritten to add them.</p>
+ *
+ * <p>Fields are emitted in the order they are added, which should be the order they are to
+ * appear at the top of the message. This class is not thread-safe.</p>
+ */
+public final class TraceHeaders {
+    public static final String RETURN_PATH = "Return-Path";
+    public static final String AUTHENTICATION_RESULTS = "Authentication-Results";
+
+    private final List<byte[]> m_fields = new ArrayList<>(3);
+    private int m_length;
+
+    /**
+     * Adds a Return-Path field, as done at final delivery.
+     *
+     * @param reversePath The reverse-path, without brackets. Null or empty for the null reverse-path.
+     * @return This instance.
+     */
+    public TraceHeaders returnPath(String reversePath){
+        String path = reversePath == null ? "" : reversePath;
+        return add(RETURN_PATH + ": <" + stripLineBreaks(path) + ">\r\n");
+    }
+
+    /**
+     * Adds a Received field.
+     *
+     * @param received The Received field.
+     * @return This instance.
+     */
+    public TraceHeaders received(ReceivedHeader received){
+        return add(received.format());
+    }
+
+    /**
+     * Adds an Authentication-Results field (RFC 8601).
+     *
+     * @param results The field value, starting with the authentication service identifier.
+     * @return This instance.
+     */
+    public TraceHeaders authenticationResults(String results){
+        return field(AUTHENTICATION_RESULTS, results);
+    }
+
+    /**
+     * Adds an arbitrary field. Line breaks in the value are removed.
+     *
+     * @param name The field name.
+     * @param value The field value.
+     * @return This instance.
+     */
+    public TraceHeaders field(String name, String value){
+        return add(name + ": " + stripLineBreaks(value) + "\r\n");
+    }
+
+    /**
+     * Gets the fields as buffers, one per field, ready for a gathering write.
+     *
+     * @return New buffers over the encoded fields.
+     */
+    public ByteBuffer[] toBuffers(){
+        ByteBuffer[] buffers = new ByteBuffer[m_fields.size()];
+        for(int i = 0; i < buffers.length; i++){
+            buffers[i] = ByteBuffer.wrap(m_fields.get(i));
+        }
+        return buffers;
+    }
+
+    /**
+     * Places the fields in front of a message for a gathering write, without copying either.
+     *
+     * @param message The message parts, in order.
+     * @return The fields followed by the message parts.
+     */
+    public ByteBuffer[] prependTo(ByteBuffer... message){
+        ByteBuffer[] parts = new ByteBuffer[m_fields.size() + message.length];
+        for(int i = 0; i < m_fields.size(); i++){
+            parts[i] = ByteBuffer.wrap(m_fields.get(i));
+        }
+        System.arraycopy(message, 0, parts, m_fields.size(), message.length);
+        return parts;
+    }
+
+    /**
+     * Encodes the fields into a single array, for storing alongside a shared body.
+     *
+     * @return The encoded fields.
+     */
+    public byte[] toByteArray(){
+        byte[] bytes = new byte[m_length];
+        int position = 0;
+        for(byte[] field : m_fields){
+            System.arraycopy(field, 0, bytes, position, field.length);
+            position += field.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the encoded length of the fields.
+     *
+     * @return The length in bytes.
+     */
+    public int length(){
+        return m_length;
+    }
+
+    /**
+     * Checks if no fields have been added.
+     *
+     * @return True if there are no fields.
+     */
+    public boolean isEmpty(){
+        return m_fields.isEmpty();
+    }
+
+    /**
+     * Appends an encoded field.
+     *
+     * @param field The field including its CRLF.
+     * @return This instance.
+     */
+    private TraceHeaders add(String field){
+        byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+        m_fields.add(bytes);
+        m_length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Removes CR and LF so a value cannot inject further fields.
+     *
+     * @param value The value.
+     * @return The value on a single line.
+     */
+    private static String stripLineBreaks(String value){
+        return value.indexOf('\r') < 0 && value.indexOf('\n') < 0 ? value : value.replace("\r", "").replace("\n", " ");
+    }
+}
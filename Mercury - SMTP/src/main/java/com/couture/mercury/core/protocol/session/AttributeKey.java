@@ -0,0 +1,132 @@
+package com.couture.mercury.core.protocol.session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed key for a session attribute.
+ * Each key is registered once, by name, and is assigned a fixed slot index so session
+ * contexts can store attributes in a plain array rather than a String-keyed map.
+ *
+ * <p>Keys are intended to be declared as constants (see {@link SessionAttributes}).
+ * Registering the same name again with the same type returns the existing key.</p>
+ *
+ * @param <T> The type of the attribute value.
+ */
+public final class AttributeKey<T> {
+    private static final Map<String, AttributeKey<?>> REGISTRY = new ConcurrentHashMap<>();
+    private static int s_nextIndex;
+
+    private final String m_name;
+    private final Class<T> m_type;
+    private final int m_index;
+
+    /**
+     * Creates a new attribute key. Use {@link #register(String, Class)} instead.
+     *
+     * @param name The attribute name.
+     * @param type The attribute value type.
+     * @param index The slot index assigned to the attribute.
+     */
+    private AttributeKey(String name, Class<T> type, int index){
+        m_name = name;
+        m_type = type;
+        m_index = index;
+    }
+
+    /**
+     * Registers an attribute key, or returns the existing key if the name is already registered with the same type.
+     *
+     * @param name The attribute name.
+     * @param type The attribute value type.
+     * @param <T> The type of the attribute value.
+     * @return The registered attribute key.
+     * @throws IllegalArgumentException If name is null or empty, or type is null.
+     * @throws IllegalStateException If the name is already registered with a different type.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <T> AttributeKey<T> register(String name, Class<T> type){
+        if(name == null || name.isEmpty()){
+            throw new IllegalArgumentException("Attribute name cannot be null or empty");
+        }
+
+        if(type == null){
+            throw new IllegalArgumentException("Attribute type cannot be null");
+        }
+
+        AttributeKey<?> existing = REGISTRY.get(name);
+        if(existing != null){
+            if(existing.m_type != type){
+                throw new IllegalStateException("Attribute " + name + " is already registered with type "
+                        + existing.m_type.getName());
+            }
+            return (AttributeKey<T>) existing;
+        }
+
+        AttributeKey<T> key = new AttributeKey<>(name, type, s_nextIndex++);
+        REGISTRY.put(name, key);
+        return key;
+    }
+
+    /**
+     * Looks up a registered attribute key by name.
+     *
+     * @param name The attribute name.
+     * @return The attribute key, or null if no key is registered under that name.
+     */
+    public static AttributeKey<?> forName(String name){
+        return name != null ? REGISTRY.get(name) : null;
+    }
+
+    /**
+     * Gets the number of registered keys, which is also one past the highest slot index in use.
+     *
+     * @return The number of registered keys.
+     */
+    public static synchronized int count(){
+        return s_nextIndex;
+    }
+
+    /**
+     * Gets the name of this attribute.
+     *
+     * @return The attribute name.
+     */
+    public String getName(){
+        return m_name;
+    }
+
+    /**
+     * Gets the value type of this attribute.
+     *
+     * @return The attribute value type.
+     */
+    public Class<T> getType(){
+        return m_type;
+    }
+
+    /**
+     * Gets the slot index assigned to this attribute.
+     *
+     * @return The slot index.
+     */
+    public int getIndex(){
+        return m_index;
+    }
+
+    /**
+     * Casts a raw attribute value to this key's type.
+     *
+     * @param value The raw value.
+     * @return The typed value, or null if value is null.
+     * @throws ClassCastException If the value is not of this key's type.
+     */
+    public T cast(Object value){
+        return m_type.cast(value);
+    }
+
+    @Override
+    public String toString(){
+        return "AttributeKey{" + "name=" + m_name + ", type=" + m_type.getSimpleName() + ", index=" + m_index + '}';
+    }
+}
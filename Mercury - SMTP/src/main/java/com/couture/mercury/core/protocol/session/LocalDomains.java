@@ -0,0 +1,111 @@
+package com.couture.mercury.core.protocol.session;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The immutable set of domains whose mailboxes this server hosts.
+ *
+ * <p>The set is built once from configuration, with every domain lower-cased, so checking a recipient
+ * as its RCPT is accepted costs one hash lookup. A transaction whose recipients are all local can be
+ * delivered to mailbox storage directly instead of passing through the relay queue.</p>
+ *
+ * <p>This class is immutable and thread-safe.</p>
+ */
+public final class LocalDomains {
+    private static final LocalDomains NONE = new LocalDomains(Set.of());
+
+    private final Set<String> m_domains;
+
+    /**
+     * Creates the set.
+     *
+     * @param domains The lower-case domains.
+     */
+    private LocalDomains(Set<String> domains){
+        m_domains = domains;
+    }
+
+    /**
+     * Gets the empty set, under which every recipient is remote.
+     *
+     * @return The empty set.
+     */
+    public static LocalDomains none(){
+        return NONE;
+    }
+
+    /**
+     * Creates a set from configured domains.
+     *
+     * @param domains The domains, in any case, with or without a trailing dot.
+     * @return The set.
+     * @throws IllegalArgumentException If a domain is null or empty.
+     */
+    public static LocalDomains of(Collection<String> domains){
+        Set<String> normalized = new HashSet<>();
+        for(String domain : domains){
+            String name = domain == null ? "" : domain.trim();
+            if(name.endsWith(".")){
+                name = name.substring(0, name.length() - 1);
+            }
+            if(name.isEmpty()){
+                throw new IllegalArgumentException("Local domains cannot be null or empty");
+            }
+            normalized.add(name.toLowerCase(Locale.ROOT));
+        }
+        return new LocalDomains(Set.copyOf(normalized));
+    }
+
+    /**
+     * Creates a set from configured domains.
+     *
+     * @param domains The domains, in any case.
+     * @return The set.
+     * @throws IllegalArgumentException If a domain is null or empty.
+     */
+    public static LocalDomains of(String... domains){
+        return of(Arrays.asList(domains));
+    }
+
+    /**
+     * Checks if a domain is hosted locally.
+     *
+     * @param domain The lower-case domain.
+     * @return True if the domain is in the set.
+     */
+    public boolean isLocal(String domain){
+        return m_domains.contains(domain);
+    }
+
+    /**
+     * Checks if a normalised address belongs to a local domain.
+     *
+     * @param address The address as normalised by {@link RecipientStore#normalize(String)}.
+     * @return True if the address's domain is in the set.
+     */
+    public boolean isLocalAddress(String address){
+        return !m_domains.isEmpty() && m_domains.contains(address.substring(address.lastIndexOf('@') + 1));
+    }
+
+    /**
+     * Gets the domains.
+     *
+     * @return The unmodifiable lower-case domains.
+     */
+    public Set<String> getDomains(){
+        return m_domains;
+    }
+
+    /**
+     * Checks if no domain is local.
+     *
+     * @return True if the set is empty.
+     */
+    public boolean isEmpty(){
+        return m_domains.isEmpty();
+    }
+}
@@ -0,0 +1,148 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.io.DataDecoder;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.mime.HeaderParser;
+import com.couture.mercury.core.protocol.mime.MessageHeaders;
+
+/**
+ * The envelope of a single SMTP mail transaction: the reverse-path from MAIL FROM,
+ * the forward-paths accepted with RCPT TO, the header fields parsed while DATA streams in and
+ * the message content received so far.
+ *
+ * <p>An envelope is owned by a session and reused across transactions; {@link #reset()}
+ * clears it the same way RSET clears a transaction, keeping the recipient store's arrays and
+ * returning the message buffer's memory to its pool.</p>
+ */
+public final class MailEnvelope {
+    private final RecipientStore m_recipients;
+    private final HeaderParser m_headerParser = new HeaderParser(new MessageHeaders());
+    private final MessageBuffer m_messageBuffer;
+    private final DataDecoder m_dataDecoder = new DataDecoder();
+    private String m_reversePath;
+
+    /**
+     * Creates an empty envelope with the default recipient limit and message buffer.
+     */
+    public MailEnvelope(){
+        this(new RecipientStore());
+    }
+
+    /**
+     * Creates an empty envelope backed by the given recipient store and the default message buffer.
+     *
+     * @param recipients The recipient store to use.
+     * @throws IllegalArgumentException If recipients is null.
+     */
+    public MailEnvelope(RecipientStore recipients){
+        this(recipients, new MessageBuffer());
+    }
+
+    /**
+     * Creates an empty envelope backed by the given recipient store and message buffer.
+     *
+     * @param recipients The recipient store to use.
+     * @param messageBuffer The buffer receiving the message content.
+     * @throws IllegalArgumentException If recipients or messageBuffer is null.
+     */
+    public MailEnvelope(RecipientStore recipients, MessageBuffer messageBuffer){
+        if(recipients == null){
+            throw new IllegalArgumentException("Recipient store cannot be null");
+        }
+        if(messageBuffer == null){
+            throw new IllegalArgumentException("Message buffer cannot be null");
+        }
+
+        m_recipients = recipients;
+        m_messageBuffer = messageBuffer;
+    }
+
+    /**
+     * Gets the reverse-path of this transaction.
+     *
+     * @return The reverse-path, or null if MAIL FROM has not been accepted.
+     */
+    public String getReversePath(){
+        return m_reversePath;
+    }
+
+    /**
+     * Sets the reverse-path of this transaction.
+     *
+     * @param reversePath The reverse-path. An empty string represents the null reverse-path used for bounces.
+     */
+    public void setReversePath(String reversePath){
+        m_reversePath = reversePath;
+    }
+
+    /**
+     * Gets the recipients of this transaction.
+     *
+     * @return The recipient store.
+     */
+    public RecipientStore getRecipients(){
+        return m_recipients;
+    }
+
+    /**
+     * Gets the header fields of the message, filled by the header parser during DATA.
+     *
+     * @return The message headers, empty until DATA has started.
+     */
+    public MessageHeaders getHeaders(){
+        return m_headerParser.getHeaders();
+    }
+
+    /**
+     * Gets the parser that extracts the message headers from the DATA stream.
+     *
+     * @return The header parser.
+     */
+    public HeaderParser getHeaderParser(){
+        return m_headerParser;
+    }
+
+    /**
+     * Gets the buffer holding the message content received during DATA.
+     *
+     * @return The message buffer.
+     */
+    public MessageBuffer getMessageBuffer(){
+        return m_messageBuffer;
+    }
+
+    /**
+     * Gets the decoder that removes dot-stuffing from the DATA stream and detects its end.
+     *
+     * @return The DATA decoder.
+     */
+    public DataDecoder getDataDecoder(){
+        return m_dataDecoder;
+    }
+
+    /**
+     * Checks if a mail transaction is in progress.
+     *
+     * @return True if MAIL FROM has been accepted, otherwise false.
+     */
+    public boolean isTransactionStarted(){
+        return m_reversePath != null;
+    }
+
+    /**
+     * Clears the envelope for the next transaction.
+     */
+    public void reset(){
+        m_reversePath = null;
+        m_recipients.clear();
+        m_headerParser.reset();
+        m_messageBuffer.reset();
+        m_dataDecoder.reset();
+    }
+
+    @Override
+    public String toString(){
+        return "MailEnvelope{" + "reversePath=" + m_reversePath + ", recipients=" + m_recipients.size()
+                + ", messageBytes=" + m_messageBuffer.size() + '}';
+    }
+}
@@ -0,0 +1,31 @@
+package com.couture.mercury.core.protocol.session;
+
+/**
+ * Categories of memory retained by a session, used for per-session accounting.
+ */
+public enum MemoryCategory {
+    LINE_BUFFER("Command line buffer"),
+    RECIPIENTS("Recipient store"),
+    ATTRIBUTES("Session attributes"),
+    DATA_BUFFER("Buffered message data");
+
+    private final String m_description;
+
+    /**
+     * Constructs a memory category with a description.
+     *
+     * @param description Human-readable description of the category.
+     */
+    MemoryCategory(String description){
+        m_description = description;
+    }
+
+    /**
+     * Retrieves the description of the category.
+     *
+     * @return Category description.
+     */
+    public String getDescription(){
+        return m_description;
+    }
+}
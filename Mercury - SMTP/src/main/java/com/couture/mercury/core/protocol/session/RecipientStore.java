@@ -0,0 +1,378 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Deduplicating store for the forward-paths of a single mail transaction.
+ * Addresses are normalised on insert and kept in an open-addressed hash table,
+ * giving O(1) duplicate detection without per-entry node allocations.
+ *
+ * <p>The store enforces a fixed recipient limit (by default {@link ValidationConstants#MAX_RECIPIENTS})
+ * and allocates all of its arrays up front, so {@link #clear()} on RSET or at the end of a
+ * transaction reuses them rather than reallocating.</p>
+ *
+ * <p>Normalisation strips surrounding angle brackets and whitespace and lower-cases the domain.
+ * The local-part is kept as-is, since RFC 5321 allows it to be case-sensitive.</p>
+ *
+ * <p>Each recipient is checked against the store's {@link LocalDomains} as it is added, so at the end
+ * of DATA {@link #isAllLocal()} tells without another pass whether the message can go straight to
+ * local mailboxes.</p>
+ *
+ * <p>This class is not thread-safe; it belongs to a single session.</p>
+ */
+public final class RecipientStore extends AbstractCollection<String> {
+
+    /**
+     * Outcome of adding a recipient to the store.
+     */
+    public enum AddResult {
+        ADDED,
+        DUPLICATE,
+        LIMIT_EXCEEDED,
+        INVALID
+    }
+
+    private final int m_maxRecipients;
+    private final String[] m_addresses;
+    private final int[] m_hashes;
+    private final int[] m_domainOffsets;
+    // Open-addressed table of (address index + 1), zero marks an empty slot.
+    private final int[] m_slots;
+    private final int m_mask;
+    private int m_size;
+    private long m_addressBytes;
+    private LocalDomains m_localDomains = LocalDomains.none();
+    private int m_localCount;
+
+    /**
+     * Creates a recipient store limited to {@link ValidationConstants#MAX_RECIPIENTS} recipients.
+     */
+    public RecipientStore(){
+        this(ValidationConstants.MAX_RECIPIENTS);
+    }
+
+    /**
+     * Creates a recipient store with the given recipient limit.
+     *
+     * @param maxRecipients The maximum number of distinct recipients (At least 1).
+     * @throws IllegalArgumentException If maxRecipients is less than 1.
+     */
+    public RecipientStore(int maxRecipients){
+        if(maxRecipients < 1){
+            throw new IllegalArgumentException("Maximum recipient count must be at least 1");
+        }
+
+        m_maxRecipients = maxRecipients;
+        m_addresses = new String[maxRecipients];
+        m_hashes = new int[maxRecipients];
+        m_domainOffsets = new int[maxRecipients];
+
+        // Keep the load factor at or below 0.5 so probe sequences stay short.
+        int tableSize = Integer.highestOneBit(Math.max(2, maxRecipients * 2 - 1)) << 1;
+        m_slots = new int[tableSize];
+        m_mask = tableSize - 1;
+    }
+
+    /**
+     * Normalises a forward-path for storage and comparison.
+     *
+     * @param address The address, optionally enclosed in angle brackets.
+     * @return The normalised address, or null if the address has no domain part.
+     */
+    public static String normalize(String address){
+        if(address == null){
+            return null;
+        }
+
+        String trimmed = address.trim();
+        if(trimmed.length() >= 2 && trimmed.charAt(0) == '<' && trimmed.charAt(trimmed.length() - 1) == '>'){
+            trimmed = trimmed.substring(1, trimmed.length() - 1).trim();
+        }
+
+        int at = trimmed.lastIndexOf('@');
+        if(at <= 0 || at == trimmed.length() - 1){
+            return null;
+        }
+
+        String domain = trimmed.substring(at + 1);
+        String lowerDomain = domain.toLowerCase(Locale.ROOT);
+        return lowerDomain.equals(domain) ? trimmed : trimmed.substring(0, at + 1) + lowerDomain;
+    }
+
+    /**
+     * Adds a recipient to the store.
+     *
+     * @param address The recipient address, optionally enclosed in angle brackets.
+     * @return The outcome of the insert.
+     */
+    public AddResult addRecipient(String address){
+        String normalized = normalize(address);
+        if(normalized == null){
+            return AddResult.INVALID;
+        }
+
+        int hash = spread(normalized.hashCode());
+        int slot = hash & m_mask;
+
+        while(m_slots[slot] != 0){
+            int index = m_slots[slot] - 1;
+            if(m_hashes[index] == hash && m_addresses[index].equals(normalized)){
+                return AddResult.DUPLICATE;
+            }
+            slot = (slot + 1) & m_mask;
+        }
+
+        if(m_size == m_maxRecipients){
+            return AddResult.LIMIT_EXCEEDED;
+        }
+
+        m_addresses[m_size] = normalized;
+        m_hashes[m_size] = hash;
+        m_domainOffsets[m_size] = normalized.lastIndexOf('@') + 1;
+        m_slots[slot] = ++m_size;
+        m_addressBytes += SessionMemoryTracker.estimateStringBytes(normalized);
+        if(m_localDomains.isLocalAddress(normalized)){
+            m_localCount++;
+        }
+
+        return AddResult.ADDED;
+    }
+
+    /**
+     * Adds a recipient to the store.
+     *
+     * @param address The recipient address.
+     * @return True if the recipient was added, false if it was already present.
+     * @throws IllegalArgumentException If the address has no domain part.
+     * @throws IllegalStateException If the recipient limit has been reached.
+     */
+    @Override
+    public boolean add(String address){
+        switch(addRecipient(address)){
+            case ADDED:
+                return true;
+            case DUPLICATE:
+                return false;
+            case LIMIT_EXCEEDED:
+                throw new IllegalStateException("Recipient limit of " + m_maxRecipients + " reached");
+            default:
+                throw new IllegalArgumentException("Invalid recipient address: " + address);
+        }
+    }
+
+    /**
+     * Checks if the store contains the given recipient, after normalisation.
+     *
+     * @param o The address to look up.
+     * @return True if present, otherwise false.
+     */
+    @Override
+    public boolean contains(Object o){
+        if(!(o instanceof String)){
+            return false;
+        }
+
+        String normalized = normalize((String) o);
+        if(normalized == null){
+            return false;
+        }
+
+        int hash = spread(normalized.hashCode());
+        int slot = hash & m_mask;
+
+        while(m_slots[slot] != 0){
+            int index = m_slots[slot] - 1;
+            if(m_hashes[index] == hash && m_addresses[index].equals(normalized)){
+                return true;
+            }
+            slot = (slot + 1) & m_mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the recipient at the given insertion index.
+     *
+     * @param index The insertion index.
+     * @return The normalised recipient address.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public String get(int index){
+        checkIndex(index);
+        return m_addresses[index];
+    }
+
+    /**
+     * Gets the domain of the recipient at the given insertion index.
+     *
+     * @param index The insertion index.
+     * @return The lower-cased domain of the recipient.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    public String getDomain(int index){
+        checkIndex(index);
+        return m_addresses[index].substring(m_domainOffsets[index]);
+    }
+
+    /**
+     * Groups the recipients by domain, preserving the order in which domains were first seen.
+     * Used to fan a message out to one transaction per destination.
+     *
+     * @return A map of domain to the recipients at that domain.
+     */
+    public Map<String, List<String>> groupByDomain(){
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+
+        for(int i = 0; i < m_size; i++){
+            groups.computeIfAbsent(getDomain(i), domain -> new ArrayList<>()).add(m_addresses[i]);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Sets the domains hosted locally and reclassifies the recipients already added.
+     *
+     * @param localDomains The local domains.
+     */
+    public void setLocalDomains(LocalDomains localDomains){
+        m_localDomains = Objects.requireNonNull(localDomains, "Local domains cannot be null");
+        m_localCount = 0;
+        for(int i = 0; i < m_size; i++){
+            if(localDomains.isLocalAddress(m_addresses[i])){
+                m_localCount++;
+            }
+        }
+    }
+
+    /**
+     * Gets the domains hosted locally.
+     *
+     * @return The local domains.
+     */
+    public LocalDomains getLocalDomains(){
+        return m_localDomains;
+    }
+
+    /**
+     * Gets the number of recipients at local domains.
+     *
+     * @return The local recipient count.
+     */
+    public int getLocalCount(){
+        return m_localCount;
+    }
+
+    /**
+     * Checks if the store has recipients and all of them are at local domains.
+     *
+     * @return True if the transaction needs no relaying.
+     */
+    public boolean isAllLocal(){
+        return m_size > 0 && m_localCount == m_size;
+    }
+
+    /**
+     * Gets the maximum number of recipients this store accepts.
+     *
+     * @return The recipient limit.
+     */
+    public int getMaxRecipients(){
+        return m_maxRecipients;
+    }
+
+    /**
+     * Checks if the recipient limit has been reached.
+     *
+     * @return True if no further recipients can be added.
+     */
+    public boolean isFull(){
+        return m_size == m_maxRecipients;
+    }
+
+    /**
+     * Estimates the bytes retained by this store: its preallocated arrays plus the stored addresses.
+     *
+     * @return The approximate retained size in bytes.
+     */
+    public long getRetainedBytes(){
+        // Three int arrays and one reference array sized for the limit, plus the slot table.
+        long arrays = 4L * SessionMemoryTracker.ARRAY_HEADER_BYTES + m_maxRecipients * 16L + m_slots.length * 4L;
+        return arrays + m_addressBytes;
+    }
+
+    @Override
+    public int size(){
+        return m_size;
+    }
+
+    /**
+     * Removes all recipients while keeping the backing arrays for reuse.
+     */
+    @Override
+    public void clear(){
+        if(m_size == 0){
+            return;
+        }
+
+        Arrays.fill(m_slots, 0);
+        Arrays.fill(m_addresses, 0, m_size, null);
+        m_size = 0;
+        m_addressBytes = 0;
+        m_localCount = 0;
+    }
+
+    @Override
+    public Iterator<String> iterator(){
+        return new Iterator<>() {
+            private int m_next;
+
+            @Override
+            public boolean hasNext(){
+                return m_next < m_size;
+            }
+
+            @Override
+            public String next(){
+                if(m_next >= m_size){
+                    throw new NoSuchElementException();
+                }
+                return m_addresses[m_next++];
+            }
+        };
+    }
+
+    /**
+     * Spreads the higher bits of a hash code into the lower bits used for slot selection.
+     *
+     * @param hashCode The original hash code.
+     * @return The spread hash code.
+     */
+    private static int spread(int hashCode){
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    /**
+     * Verifies an insertion index is within range.
+     *
+     * @param index The index to check.
+     * @throws IndexOutOfBoundsException If the index is out of range.
+     */
+    private void checkIndex(int index){
+        if(index < 0 || index >= m_size){
+            throw new IndexOutOfBoundsException("Recipient index " + index + " out of range for size " + m_size);
+        }
+    }
+}
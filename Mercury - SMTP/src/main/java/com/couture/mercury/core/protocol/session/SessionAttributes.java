@@ -0,0 +1,41 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.util.CommandConstants;
+
+/**
+ * Well-known typed session attribute keys.
+ * Registered once at class load so every session context shares the same slot layout.
+ */
+public final class SessionAttributes {
+
+    /**
+     * Recipients accepted for the current mail transaction.
+     */
+    public static final AttributeKey<RecipientStore> RECIPIENTS =
+            AttributeKey.register(CommandConstants.Attributes.RECIPIENTS_KEY, RecipientStore.class);
+
+    /**
+     * Reverse-path given with MAIL FROM for the current mail transaction.
+     */
+    public static final AttributeKey<String> REVERSE_PATH =
+            AttributeKey.register(CommandConstants.Attributes.REVERSE_PATH_KEY, String.class);
+
+    /**
+     * Client domain given with HELO/EHLO.
+     */
+    public static final AttributeKey<String> CLIENT_DOMAIN =
+            AttributeKey.register(CommandConstants.Attributes.CLIENT_DOMAIN_KEY, String.class);
+
+    /**
+     * Forces the well-known keys to be registered.
+     * Calling this triggers class initialisation, which is all that is needed.
+     */
+    static void load() {
+        // Intentionally empty
+    }
+
+    // Private constructor to prevent instantiation
+    private SessionAttributes() {
+        throw new UnsupportedOperationException("Utility class cannot be instantiated");
+    }
+}
@@ -35,4 +35,31 @@ public interface SessionContext {
      * @param value The attribute value, or null to remove the attribute.
      */
     void setAttribute(String key, Object value);
+
+    /**
+     * Gets a typed attribute from this session.
+     * Implementations backed by attribute slots should override this to avoid the name lookup.
+     *
+     * @param key The attribute key.
+     * @param <T> The type of the attribute value.
+     * @return The attribute value, or null if not found.
+     * @throws ClassCastException If the stored value is not of the key's type.
+     */
+    default <T> T getAttribute(AttributeKey<T> key) {
+        return key != null ? key.cast(getAttribute(key.getName())) : null;
+    }
+
+    /**
+     * Sets a typed attribute in this session.
+     * Implementations backed by attribute slots should override this to avoid the name lookup.
+     *
+     * @param key The attribute key.
+     * @param value The attribute value, or null to remove the attribute.
+     * @param <T> The type of the attribute value.
+     */
+    default <T> void setAttribute(AttributeKey<T> key, T value) {
+        if (key != null) {
+            setAttribute(key.getName(), value);
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.couture.mercury.core.protocol.session;
+
+import java.lang.ref.Cleaner;
+
+/**
+ * A connection's claim on a pooled {@link SmtpSession}.
+ * Closing the lease recycles the session and returns it to its {@link SessionPool};
+ * the session must not be used afterwards.
+ *
+ * <p>Leases should be closed exactly once, typically when the connection is closed. Closing
+ * an already closed lease has no effect. If the session's transaction is handed to another
+ * thread at the time (see {@link SmtpSession#beginHandoff()}), the session is recycled once the
+ * handoff ends rather than at once.</p>
+ */
+public final class SessionLease implements AutoCloseable {
+    private final SessionPool m_pool;
+    private final SessionPool.LeakTracker m_tracker;
+    private SmtpSession m_session;
+    private Cleaner.Cleanable m_cleanable;
+
+    /**
+     * Creates a lease. Leases are created by {@link SessionPool#acquire()}.
+     *
+     * @param pool The owning pool.
+     * @param session The leased session.
+     * @param tracker The leak tracker for this lease.
+     */
+    SessionLease(SessionPool pool, SmtpSession session, SessionPool.LeakTracker tracker){
+        m_pool = pool;
+        m_session = session;
+        m_tracker = tracker;
+    }
+
+    /**
+     * Sets the cleaner registration for this lease.
+     *
+     * @param cleanable The cleaner registration.
+     */
+    void setCleanable(Cleaner.Cleanable cleanable){
+        m_cleanable = cleanable;
+    }
+
+    /**
+     * Gets the leased session.
+     *
+     * @return The session.
+     * @throws IllegalStateException If the lease has been closed.
+     */
+    public SmtpSession getSession(){
+        SmtpSession session = m_session;
+        if(session == null){
+            throw new IllegalStateException("Session lease has already been closed");
+        }
+        return session;
+    }
+
+    /**
+     * Checks if this lease has been closed.
+     *
+     * @return True if closed, otherwise false.
+     */
+    public boolean isClosed(){
+        return m_session == null;
+    }
+
+    /**
+     * Recycles the session and returns it to the pool, once any handoff in progress has ended.
+     */
+    @Override
+    public void close(){
+        SmtpSession session = m_session;
+        if(session == null){
+            return;
+        }
+
+        m_session = null;
+        m_tracker.markReleased();
+        m_cleanable.clean();
+        SessionPool pool = m_pool;
+        session.whenIdle(() -> pool.release(session));
+    }
+}
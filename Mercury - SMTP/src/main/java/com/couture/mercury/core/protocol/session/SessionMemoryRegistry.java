@@ -0,0 +1,163 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the memory retained by all live sessions against a global budget and reports
+ * the heaviest sessions.
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class SessionMemoryRegistry {
+    private final long m_globalBudget;
+    private final AtomicLong m_retainedBytes = new AtomicLong();
+    private final AtomicLong m_nextSessionId = new AtomicLong();
+    private final Set<SessionMemoryTracker> m_trackers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a registry with the default global budget of {@link ValidationConstants#GLOBAL_SESSION_MEMORY_BUDGET}.
+     */
+    public SessionMemoryRegistry(){
+        this(ValidationConstants.GLOBAL_SESSION_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a registry with the given global budget.
+     *
+     * @param globalBudget The maximum number of bytes retained across all sessions (At least 1).
+     * @throws IllegalArgumentException If globalBudget is less than 1.
+     */
+    public SessionMemoryRegistry(long globalBudget){
+        if(globalBudget < 1){
+            throw new IllegalArgumentException("Global memory budget must be at least 1 byte");
+        }
+
+        m_globalBudget = globalBudget;
+    }
+
+    /**
+     * Registers a session's tracker.
+     *
+     * @param tracker The tracker to register.
+     */
+    public void register(SessionMemoryTracker tracker){
+        if(m_trackers.add(tracker)){
+            tracker.attach(this, m_nextSessionId.incrementAndGet());
+        }
+    }
+
+    /**
+     * Unregisters a session's tracker, releasing its charges from the global total.
+     *
+     * @param tracker The tracker to unregister.
+     */
+    public void unregister(SessionMemoryTracker tracker){
+        if(m_trackers.remove(tracker)){
+            tracker.detach();
+        }
+    }
+
+    /**
+     * Gets the trackers of the sessions retaining the most memory, heaviest first.
+     *
+     * @param count The maximum number of sessions to return.
+     * @return The heaviest sessions.
+     */
+    public List<SessionMemoryTracker> getTopSessions(int count){
+        if(count <= 0){
+            return new ArrayList<>();
+        }
+
+        // Keep a min-heap of the current top entries, keyed on a snapshot of each total.
+        PriorityQueue<long[]> heap = new PriorityQueue<>(count + 1, Comparator.comparingLong(entry -> entry[0]));
+        List<SessionMemoryTracker> trackers = new ArrayList<>(m_trackers);
+
+        for(int i = 0; i < trackers.size(); i++){
+            heap.add(new long[]{trackers.get(i).getRetainedBytes(), i});
+            if(heap.size() > count){
+                heap.poll();
+            }
+        }
+
+        List<SessionMemoryTracker> top = new ArrayList<>(heap.size());
+        while(!heap.isEmpty()){
+            top.add(trackers.get((int) heap.poll()[1]));
+        }
+
+        Collections.reverse(top);
+        return top;
+    }
+
+    /**
+     * Gets the number of registered sessions.
+     *
+     * @return The session count.
+     */
+    public int getSessionCount(){
+        return m_trackers.size();
+    }
+
+    /**
+     * Gets the bytes retained across all registered sessions.
+     *
+     * @return The retained bytes.
+     */
+    public long getRetainedBytes(){
+        return m_retainedBytes.get();
+    }
+
+    /**
+     * Gets the global budget.
+     *
+     * @return The global budget in bytes.
+     */
+    public long getGlobalBudget(){
+        return m_globalBudget;
+    }
+
+    /**
+     * Reserves bytes against the global budget.
+     *
+     * @param bytes The bytes to reserve.
+     * @return True if reserved, false if the reservation would exceed the global budget.
+     */
+    boolean tryReserve(long bytes){
+        while(true){
+            long current = m_retainedBytes.get();
+            long next = current + bytes;
+            if(next > m_globalBudget){
+                return false;
+            }
+            if(m_retainedBytes.compareAndSet(current, next)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves bytes regardless of the global budget, for charges made before registration.
+     *
+     * @param bytes The bytes to reserve.
+     */
+    void forceReserve(long bytes){
+        m_retainedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Releases previously reserved bytes.
+     *
+     * @param bytes The bytes to release.
+     */
+    void release(long bytes){
+        m_retainedBytes.addAndGet(-bytes);
+    }
+}
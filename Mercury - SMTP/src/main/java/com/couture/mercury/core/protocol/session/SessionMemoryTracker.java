@@ -0,0 +1,243 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import com.couture.mercury.core.protocol.util.ValidationErrorMessages;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Accounts for the bytes retained by a single session, by {@link MemoryCategory}.
+ * Charges beyond the session budget fail with a 552 response, and charges that would push all
+ * sessions past the global budget of the {@link SessionMemoryRegistry} fail with a 452 response,
+ * so a few abusive clients cannot grow the heap for everyone else.
+ *
+ * <p>Charges are made by the thread serving the session. Retained totals may be read from
+ * any thread, for example to report the heaviest sessions.</p>
+ */
+public final class SessionMemoryTracker {
+    /**
+     * Approximate size of an array object header, used by memory estimates.
+     */
+    public static final int ARRAY_HEADER_BYTES = 16;
+
+    // Approximate fixed cost of a String: object header, fields and its backing array header.
+    private static final int STRING_OVERHEAD_BYTES = 24 + ARRAY_HEADER_BYTES;
+
+    private final long m_budget;
+    private final long[] m_categoryBytes = new long[MemoryCategory.values().length];
+    private volatile long m_retainedBytes;
+    private volatile SessionMemoryRegistry m_registry;
+    private volatile long m_sessionId;
+    private volatile boolean m_exceeded;
+
+    /**
+     * Creates a tracker with the default budget of {@link ValidationConstants#SESSION_MEMORY_BUDGET}.
+     */
+    public SessionMemoryTracker(){
+        this(ValidationConstants.SESSION_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a tracker with the given budget.
+     *
+     * @param budget The maximum number of bytes the session may retain (At least 1).
+     * @throws IllegalArgumentException If budget is less than 1.
+     */
+    public SessionMemoryTracker(long budget){
+        if(budget < 1){
+            throw new IllegalArgumentException("Session memory budget must be at least 1 byte");
+        }
+
+        m_budget = budget;
+    }
+
+    /**
+     * Estimates the bytes retained by a string.
+     * Assumes compact (Latin-1) strings, which covers SMTP addresses and command lines.
+     *
+     * @param value The string, or null.
+     * @return The approximate retained size in bytes.
+     */
+    public static long estimateStringBytes(String value){
+        return value != null ? STRING_OVERHEAD_BYTES + value.length() : 0;
+    }
+
+    /**
+     * Charges retained bytes to a category.
+     *
+     * @param category The category the bytes belong to.
+     * @param bytes The number of bytes to charge.
+     * @throws CommandException With a 552 response if the session budget is exceeded, or a 452
+     *                          response if the global budget is exceeded. Nothing is charged in either case.
+     */
+    public void charge(MemoryCategory category, long bytes) throws CommandException {
+        if(bytes <= 0){
+            return;
+        }
+
+        if(m_retainedBytes + bytes > m_budget){
+            m_exceeded = true;
+            throw new CommandException(ValidationErrorMessages.SESSION_MEMORY_EXCEEDED,
+                    CommandConstants.ResponseCodes.EXCEEDED_STORAGE_ALLOCATION);
+        }
+
+        SessionMemoryRegistry registry = m_registry;
+        if(registry != null && !registry.tryReserve(bytes)){
+            throw new CommandException(ValidationErrorMessages.SERVER_MEMORY_EXHAUSTED,
+                    CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE);
+        }
+
+        m_categoryBytes[category.ordinal()] += bytes;
+        m_retainedBytes += bytes;
+    }
+
+    /**
+     * Releases bytes previously charged to a category.
+     *
+     * @param category The category the bytes belong to.
+     * @param bytes The number of bytes to release; clamped to what is charged.
+     */
+    public void release(MemoryCategory category, long bytes){
+        if(bytes <= 0){
+            return;
+        }
+
+        int index = category.ordinal();
+        long released = Math.min(bytes, m_categoryBytes[index]);
+        m_categoryBytes[index] -= released;
+        m_retainedBytes -= released;
+
+        SessionMemoryRegistry registry = m_registry;
+        if(registry != null){
+            registry.release(released);
+        }
+    }
+
+    /**
+     * Sets the bytes retained by a category to an absolute value, charging or releasing the difference.
+     *
+     * @param category The category to update.
+     * @param bytes The number of bytes now retained by the category.
+     * @throws CommandException If the increase exceeds the session or global budget.
+     */
+    public void update(MemoryCategory category, long bytes) throws CommandException {
+        long delta = bytes - m_categoryBytes[category.ordinal()];
+        if(delta > 0){
+            charge(category, delta);
+        }
+        else{
+            release(category, -delta);
+        }
+    }
+
+    /**
+     * Releases everything charged to a category.
+     *
+     * @param category The category to clear.
+     */
+    public void releaseAll(MemoryCategory category){
+        release(category, m_categoryBytes[category.ordinal()]);
+    }
+
+    /**
+     * Releases all charges and clears the exceeded flag, for a recycled session.
+     */
+    public void reset(){
+        for(MemoryCategory category : MemoryCategory.values()){
+            releaseAll(category);
+        }
+        m_exceeded = false;
+    }
+
+    /**
+     * Gets the bytes retained by a category.
+     *
+     * @param category The category.
+     * @return The retained bytes.
+     */
+    public long getRetainedBytes(MemoryCategory category){
+        return m_categoryBytes[category.ordinal()];
+    }
+
+    /**
+     * Gets the total bytes retained by the session.
+     *
+     * @return The retained bytes.
+     */
+    public long getRetainedBytes(){
+        return m_retainedBytes;
+    }
+
+    /**
+     * Gets a breakdown of the retained bytes by category.
+     *
+     * @return A map of category to retained bytes.
+     */
+    public Map<MemoryCategory, Long> getBreakdown(){
+        Map<MemoryCategory, Long> breakdown = new EnumMap<>(MemoryCategory.class);
+        for(MemoryCategory category : MemoryCategory.values()){
+            breakdown.put(category, m_categoryBytes[category.ordinal()]);
+        }
+        return breakdown;
+    }
+
+    /**
+     * Gets the budget of the session.
+     *
+     * @return The budget in bytes.
+     */
+    public long getBudget(){
+        return m_budget;
+    }
+
+    /**
+     * Checks if the session has tried to exceed its budget since it was last reset.
+     *
+     * @return True if the budget was exceeded.
+     */
+    public boolean isExceeded(){
+        return m_exceeded;
+    }
+
+    /**
+     * Gets the identifier assigned when the session was registered.
+     *
+     * @return The session identifier, or 0 if not registered.
+     */
+    public long getSessionId(){
+        return m_sessionId;
+    }
+
+    /**
+     * Attaches this tracker to a registry, transferring its current charges to the global total.
+     *
+     * @param registry The registry.
+     * @param sessionId The identifier assigned to the session.
+     */
+    void attach(SessionMemoryRegistry registry, long sessionId){
+        m_sessionId = sessionId;
+        m_registry = registry;
+        registry.forceReserve(m_retainedBytes);
+    }
+
+    /**
+     * Detaches this tracker from its registry, removing its charges from the global total.
+     */
+    void detach(){
+        SessionMemoryRegistry registry = m_registry;
+        if(registry != null){
+            registry.release(m_retainedBytes);
+        }
+        m_registry = null;
+        m_sessionId = 0;
+    }
+
+    @Override
+    public String toString(){
+        return "SessionMemoryTracker{" + "sessionId=" + m_sessionId + ", retained=" + m_retainedBytes
+                + ", budget=" + m_budget + ", breakdown=" + getBreakdown() + '}';
+    }
+}
@@ -0,0 +1,278 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of recyclable SMTP sessions.
+ * Each connection acquires a {@link SessionLease} and closes it when the connection ends; the
+ * session is then reset with {@link SmtpSession#recycle()} and kept for the next connection,
+ * so high-churn traffic does not allocate a new session graph per connection.
+ *
+ * <p>Leases that become unreachable without being closed are reported as leaks. The message
+ * buffer of the session they held is reset, closing any spill file and returning its pooled
+ * buffers, and the session itself is left to the garbage collector while the pool allocates a
+ * replacement. Optionally the acquiring stack trace can be recorded to help find the leaking caller.</p>
+ *
+ * <p>When given a {@link SessionMemoryRegistry}, the pool registers each leased session's memory
+ * tracker with it, so every live session is held to the global memory budget.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class SessionPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPool.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /**
+     * Default maximum number of idle sessions kept by the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 1024;
+
+    private final BlockingQueue<SmtpSession> m_idle;
+    private final boolean m_recordAcquisitionTraces;
+    private final SessionMemoryRegistry m_memoryRegistry;
+    private final Supplier<SmtpSession> m_sessionFactory;
+    private final AtomicInteger m_outstanding = new AtomicInteger();
+    private final AtomicLong m_created = new AtomicLong();
+    private final AtomicLong m_reused = new AtomicLong();
+    private final AtomicLong m_leaked = new AtomicLong();
+
+    /**
+     * Creates a session pool with the default idle limit and no acquisition traces.
+     */
+    public SessionPool(){
+        this(DEFAULT_MAX_IDLE, false);
+    }
+
+    /**
+     * Creates a session pool.
+     *
+     * @param maxIdle The maximum number of idle sessions to keep (At least 1).
+     * @param recordAcquisitionTraces If true, the stack trace of each acquisition is recorded and logged on a leak.
+     * @throws IllegalArgumentException If maxIdle is less than 1.
+     */
+    public SessionPool(int maxIdle, boolean recordAcquisitionTraces){
+        this(maxIdle, recordAcquisitionTraces, null);
+    }
+
+    /**
+     * Creates a session pool that accounts leased sessions against a memory registry.
+     *
+     * @param maxIdle The maximum number of idle sessions to keep (At least 1).
+     * @param recordAcquisitionTraces If true, the stack trace of each acquisition is recorded and logged on a leak.
+     * @param memoryRegistry The registry leased sessions are registered with, or null for no global accounting.
+     * @throws IllegalArgumentException If maxIdle is less than 1.
+     */
+    public SessionPool(int maxIdle, boolean recordAcquisitionTraces, SessionMemoryRegistry memoryRegistry){
+        this(maxIdle, recordAcquisitionTraces, memoryRegistry, SmtpSession::new);
+    }
+
+    /**
+     * Creates a session pool that allocates sessions with the given factory, for example to give each
+     * session its own message buffer allocator.
+     *
+     * @param maxIdle The maximum number of idle sessions to keep (At least 1).
+     * @param recordAcquisitionTraces If true, the stack trace of each acquisition is recorded and logged on a leak.
+     * @param memoryRegistry The registry leased sessions are registered with, or null for no global accounting.
+     * @param sessionFactory Creates a session in the CONNECT state when no idle one is available.
+     * @throws IllegalArgumentException If maxIdle is less than 1 or sessionFactory is null.
+     */
+    public SessionPool(int maxIdle, boolean recordAcquisitionTraces, SessionMemoryRegistry memoryRegistry,
+                       Supplier<SmtpSession> sessionFactory){
+        if(maxIdle < 1){
+            throw new IllegalArgumentException("Maximum idle sessions must be at least 1");
+        }
+        if(sessionFactory == null){
+            throw new IllegalArgumentException("Session factory cannot be null");
+        }
+
+        m_idle = new ArrayBlockingQueue<>(maxIdle);
+        m_recordAcquisitionTraces = recordAcquisitionTraces;
+        m_memoryRegistry = memoryRegistry;
+        m_sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Acquires a session for a new connection, reusing an idle one when available.
+     *
+     * @return A lease on a session in the CONNECT state.
+     */
+    public SessionLease acquire(){
+        SmtpSession session = m_idle.poll();
+        if(session != null){
+            m_reused.incrementAndGet();
+        }
+        else{
+            session = m_sessionFactory.get();
+            m_created.incrementAndGet();
+        }
+
+        m_outstanding.incrementAndGet();
+
+        SessionMemoryTracker memoryTracker = session.getMemoryTracker();
+        if(m_memoryRegistry != null){
+            m_memoryRegistry.register(memoryTracker);
+        }
+
+        LeakTracker tracker = new LeakTracker(this, memoryTracker, session.getEnvelope().getMessageBuffer(),
+                m_recordAcquisitionTraces ? new Throwable("Session acquired here") : null);
+        SessionLease lease = new SessionLease(this, session, tracker);
+        lease.setCleanable(CLEANER.register(lease, tracker));
+        session.setLease(lease);
+        return lease;
+    }
+
+    /**
+     * Returns a session to the pool. Called by {@link SessionLease#close()}, once any handoff of
+     * the session's transaction has ended.
+     *
+     * @param session The session being returned.
+     */
+    void release(SmtpSession session){
+        m_outstanding.decrementAndGet();
+        session.setLease(null);
+        if(m_memoryRegistry != null){
+            m_memoryRegistry.unregister(session.getMemoryTracker());
+        }
+        session.recycle();
+
+        if(!m_idle.offer(session)){
+            LOGGER.debug("Session pool is full, discarding returned session");
+        }
+    }
+
+    /**
+     * Gets the number of sessions currently leased out.
+     *
+     * @return The outstanding lease count.
+     */
+    public int getOutstandingCount(){
+        return m_outstanding.get();
+    }
+
+    /**
+     * Gets the number of idle sessions held by the pool.
+     *
+     * @return The idle session count.
+     */
+    public int getIdleCount(){
+        return m_idle.size();
+    }
+
+    /**
+     * Gets the number of sessions allocated by the pool.
+     *
+     * @return The created session count.
+     */
+    public long getCreatedCount(){
+        return m_created.get();
+    }
+
+    /**
+     * Gets the number of acquisitions served by a recycled session.
+     *
+     * @return The reused session count.
+     */
+    public long getReusedCount(){
+        return m_reused.get();
+    }
+
+    /**
+     * Gets the number of leases that were garbage collected without being closed.
+     *
+     * @return The leaked session count.
+     */
+    public long getLeakedCount(){
+        return m_leaked.get();
+    }
+
+    /**
+     * Gets the memory registry leased sessions are registered with.
+     *
+     * @return The memory registry, or null if there is no global accounting.
+     */
+    public SessionMemoryRegistry getMemoryRegistry(){
+        return m_memoryRegistry;
+    }
+
+    /**
+     * Records a leaked lease.
+     *
+     * @param memoryTracker The memory tracker of the leaked session.
+     * @param acquisitionTrace The stack trace of the acquisition, or null if traces are not recorded.
+     */
+    private void onLeak(SessionMemoryTracker memoryTracker, Throwable acquisitionTrace){
+        m_outstanding.decrementAndGet();
+        m_leaked.incrementAndGet();
+        if(m_memoryRegistry != null){
+            m_memoryRegistry.unregister(memoryTracker);
+        }
+
+        if(acquisitionTrace != null){
+            LOGGER.error("Session lease was garbage collected without being closed", acquisitionTrace);
+        }
+        else{
+            LOGGER.error("Session lease was garbage collected without being closed. "
+                    + "Enable acquisition traces on the SessionPool to find the caller.");
+        }
+    }
+
+    /**
+     * Cleaner action registered for each lease. Must not reference the lease itself,
+     * otherwise the lease could never become unreachable.
+     */
+    static final class LeakTracker implements Runnable {
+        private final SessionPool m_pool;
+        private final SessionMemoryTracker m_memoryTracker;
+        private final MessageBuffer m_messageBuffer;
+        private final Throwable m_acquisitionTrace;
+        private volatile boolean m_released;
+
+        /**
+         * Creates a leak tracker.
+         *
+         * @param pool The owning pool.
+         * @param memoryTracker The memory tracker of the leased session, released from the registry on a leak.
+         * @param messageBuffer The message buffer of the leased session, reset on a leak.
+         * @param acquisitionTrace The stack trace of the acquisition, or null.
+         */
+        LeakTracker(SessionPool pool, SessionMemoryTracker memoryTracker, MessageBuffer messageBuffer,
+                    Throwable acquisitionTrace){
+            m_pool = pool;
+            m_memoryTracker = memoryTracker;
+            m_messageBuffer = messageBuffer;
+            m_acquisitionTrace = acquisitionTrace;
+        }
+
+        /**
+         * Marks the lease as properly released so the cleaner action becomes a no-op.
+         */
+        void markReleased(){
+            m_released = true;
+        }
+
+        @Override
+        public void run(){
+            if(m_released){
+                return;
+            }
+
+            try{
+                m_messageBuffer.reset();
+            }
+            catch(RuntimeException e){
+                // For example a confined arena, which only the thread that opened it may close.
+                LOGGER.warn("Could not release the message buffer of a leaked session", e);
+            }
+            m_pool.onLeak(m_memoryTracker, m_acquisitionTrace);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.couture.mercury.core.protocol.session;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.io.DataDecoder;
+import com.couture.mercury.core.protocol.io.LineBuffer;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.mime.HeaderParser;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import com.couture.mercury.core.protocol.util.ValidationErrorMessages;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The per-connection object graph of an SMTP session: the session context, the envelope
+ * of the current transaction, the command line buffer and the session's memory accounting.
+ *
+ * <p>Sessions are designed to be recycled by {@link SessionPool}. {@link #resetTransaction()}
+ * has RSET semantics and {@link #recycle()} extends it to the whole connection, so the same
+ * instance can serve the next client without allocating a fresh graph.</p>
+ *
+ * <p>A transaction handed to another thread, for example to be written to the spool, is marked
+ * with {@link #beginHandoff()} and {@link #endHandoff()}. While a handoff is in progress the
+ * session is not recycled: closing its lease returns it to the pool only once the handoff ends.</p>
+ */
+public final class SmtpSession {
+    private final SmtpSessionContext m_context;
+    private final MailEnvelope m_envelope;
+    private final LineBuffer m_lineBuffer;
+    private final SessionMemoryTracker m_memoryTracker;
+    // Bytes of header parser state currently charged under DATA_BUFFER.
+    private long m_headerBytes;
+    // Bytes of pooled message buffers currently charged under DATA_BUFFER.
+    private long m_messageBytes;
+    // Handoffs in progress and the action deferred until the last one ends; guarded by this.
+    private int m_handoffs;
+    private Runnable m_afterHandoff;
+    // Keeps the lease reachable for as long as the session is, so a session still referenced by a
+    // handoff is never reported as leaked and reset under the thread reading it.
+    private SessionLease m_lease;
+
+    /**
+     * Creates a new session in the CONNECT state with the default memory budget.
+     */
+    public SmtpSession(){
+        this(ValidationConstants.SESSION_MEMORY_BUDGET);
+    }
+
+    /**
+     * Creates a new session in the CONNECT state.
+     *
+     * @param memoryBudget The maximum number of bytes the session may retain.
+     * @throws IllegalArgumentException If the budget cannot hold the session's fixed buffers.
+     */
+    public SmtpSession(long memoryBudget){
+        this(memoryBudget, new MessageBuffer());
+    }
+
+    /**
+     * Creates a new session in the CONNECT state that receives message content into the given buffer.
+     *
+     * @param memoryBudget The maximum number of bytes the session may retain.
+     * @param messageBuffer The buffer receiving message content during DATA.
+     * @throws IllegalArgumentException If the budget cannot hold the session's fixed buffers, or messageBuffer is null.
+     */
+    public SmtpSession(long memoryBudget, MessageBuffer messageBuffer){
+        m_context = new SmtpSessionContext();
+        m_envelope = new MailEnvelope(new RecipientStore(), messageBuffer);
+        m_lineBuffer = new LineBuffer();
+        m_memoryTracker = new SessionMemoryTracker(memoryBudget);
+        bindEnvelope();
+        accountFixedMemory();
+    }
+
+    /**
+     * Gets the session context.
+     *
+     * @return The session context.
+     */
+    public SmtpSessionContext getContext(){
+        return m_context;
+    }
+
+    /**
+     * Gets the envelope of the current mail transaction.
+     *
+     * @return The mail envelope.
+     */
+    public MailEnvelope getEnvelope(){
+        return m_envelope;
+    }
+
+    /**
+     * Gets the command line buffer.
+     *
+     * @return The line buffer.
+     */
+    public LineBuffer getLineBuffer(){
+        return m_lineBuffer;
+    }
+
+    /**
+     * Gets the memory tracker of this session.
+     * Components that buffer message data charge it under {@link MemoryCategory#DATA_BUFFER}.
+     *
+     * @return The memory tracker.
+     */
+    public SessionMemoryTracker getMemoryTracker(){
+        return m_memoryTracker;
+    }
+
+    /**
+     * Sets the domains hosted locally, against which each recipient is checked as it is added.
+     * The setting survives {@link #recycle()}, so a pool's session factory can set it once.
+     *
+     * @param localDomains The local domains.
+     */
+    public void setLocalDomains(LocalDomains localDomains){
+        m_envelope.getRecipients().setLocalDomains(localDomains);
+    }
+
+    /**
+     * Adds a recipient to the current transaction, charging its memory to the session.
+     *
+     * @param address The recipient address.
+     * @return The outcome of the insert.
+     * @throws CommandException If storing the recipient would exceed the session or global memory budget.
+     */
+    public RecipientStore.AddResult addRecipient(String address) throws CommandException {
+        long estimate = SessionMemoryTracker.estimateStringBytes(address);
+        m_memoryTracker.charge(MemoryCategory.RECIPIENTS, estimate);
+
+        RecipientStore recipients = m_envelope.getRecipients();
+        RecipientStore.AddResult result = recipients.addRecipient(address);
+
+        // Settle the estimate against what the store actually retains.
+        m_memoryTracker.update(MemoryCategory.RECIPIENTS, recipients.getRetainedBytes());
+        return result;
+    }
+
+    /**
+     * Passes a chunk of message content through the envelope's header parser, charging the
+     * parsed fields to the session. The chunk itself is not consumed, so the caller can spool it
+     * as is; once the header section is complete this returns without looking at the chunk.
+     *
+     * @param chunk The next chunk of message content, after dot-unstuffing.
+     * @return True once the header section is complete.
+     * @throws CommandException If the parsed headers exceed the session or global memory budget.
+     */
+    public boolean parseHeaders(ByteBuffer chunk) throws CommandException {
+        HeaderParser parser = m_envelope.getHeaderParser();
+        if(parser.isComplete()){
+            return true;
+        }
+
+        boolean complete = parser.feed(chunk);
+        long retained = parser.getRetainedBytes();
+        if(retained > m_headerBytes){
+            m_memoryTracker.charge(MemoryCategory.DATA_BUFFER, retained - m_headerBytes);
+            m_headerBytes = retained;
+        }
+        return complete;
+    }
+
+    /**
+     * Consumes a chunk of message content: the header parser sees it first, then it is appended to
+     * the envelope's message buffer. Pooled buffer memory is charged to the session while the
+     * message is held in memory and released once the buffer spills to disk.
+     *
+     * @param chunk The next chunk of message content, after dot-unstuffing.
+     * @throws CommandException If the session or global memory budget is exceeded, or the content
+     *                          cannot be written to the spill file.
+     */
+    public void appendMessageData(ByteBuffer chunk) throws CommandException {
+        parseHeaders(chunk);
+
+        MessageBuffer buffer = m_envelope.getMessageBuffer();
+        try{
+            buffer.write(chunk);
+        }
+        catch(IOException e){
+            throw new CommandException(ValidationErrorMessages.MESSAGE_BUFFER_FAILED, e,
+                    CommandConstants.ResponseCodes.LOCAL_ERROR);
+        }
+
+        // A failed charge leaves the content buffered; the transaction is expected to be reset after the error reply.
+        long retained = buffer.getMemoryBytes();
+        if(retained > m_messageBytes){
+            m_memoryTracker.charge(MemoryCategory.DATA_BUFFER, retained - m_messageBytes);
+        }
+        else if(retained < m_messageBytes){
+            m_memoryTracker.release(MemoryCategory.DATA_BUFFER, m_messageBytes - retained);
+        }
+        m_messageBytes = retained;
+    }
+
+    /**
+     * Consumes raw DATA input as received from the client: dot-stuffing is removed and the decoded
+     * content is passed to {@link #appendMessageData(ByteBuffer)}, up to the end-of-data terminator.
+     *
+     * @param input The bytes received from the client. Once the terminator has been consumed, the
+     *              input is left positioned at the first byte after it, which belongs to the next command.
+     * @return True once the terminator has been received.
+     * @throws CommandException If the message content cannot be buffered.
+     */
+    public boolean receiveData(ByteBuffer input) throws CommandException {
+        DataDecoder decoder = m_envelope.getDataDecoder();
+        ByteBuffer content;
+        while((content = decoder.decode(input)) != null){
+            appendMessageData(content);
+        }
+        if(decoder.isComplete()){
+            m_envelope.getHeaderParser().finish();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Re-estimates the memory retained by session attributes.
+     * Should be called after attributes are changed on the command path.
+     *
+     * @throws CommandException If the attributes exceed the session or global memory budget.
+     */
+    public void updateAttributeMemory() throws CommandException {
+        m_memoryTracker.update(MemoryCategory.ATTRIBUTES, m_context.estimateRetainedBytes());
+    }
+
+    /**
+     * Marks the current transaction as handed to another thread, which reads the envelope's message
+     * buffer until {@link #endHandoff()} is called. The session is not recycled in the meantime.
+     */
+    public synchronized void beginHandoff(){
+        m_handoffs++;
+    }
+
+    /**
+     * Ends a handoff started with {@link #beginHandoff()}. If it was the last one and the session's
+     * lease was closed meanwhile, the session is recycled and returned to its pool on the calling thread.
+     *
+     * @throws IllegalStateException If no handoff is in progress.
+     */
+    public void endHandoff(){
+        Runnable action;
+        synchronized(this){
+            if(m_handoffs == 0){
+                throw new IllegalStateException("No handoff in progress");
+            }
+            m_handoffs--;
+            if(m_handoffs > 0 || m_afterHandoff == null){
+                return;
+            }
+            action = m_afterHandoff;
+            m_afterHandoff = null;
+        }
+        action.run();
+    }
+
+    /**
+     * Checks if a handoff is in progress.
+     *
+     * @return True if another thread may be reading the transaction.
+     */
+    public synchronized boolean isHandedOff(){
+        return m_handoffs > 0;
+    }
+
+    /**
+     * Aborts the current mail transaction, as RSET does.
+     * The envelope is cleared and the session returns to the HELO state if the client has identified itself.
+     */
+    public void resetTransaction(){
+        m_envelope.reset();
+        m_context.setAttribute(SessionAttributes.REVERSE_PATH, null);
+
+        if(m_context.getState() != SessionState.CONNECT){
+            m_context.setState(SessionState.HELO);
+        }
+
+        m_memoryTracker.releaseAll(MemoryCategory.DATA_BUFFER);
+        m_headerBytes = 0;
+        m_messageBytes = 0;
+        long recipientBytes = m_memoryTracker.getRetainedBytes(MemoryCategory.RECIPIENTS);
+        m_memoryTracker.release(MemoryCategory.RECIPIENTS, recipientBytes - m_envelope.getRecipients().getRetainedBytes());
+    }
+
+    /**
+     * Resets the whole session so it can serve a new connection.
+     * Clears the transaction, all session attributes, any partially framed line and all memory charges.
+     */
+    public void recycle(){
+        m_envelope.reset();
+        m_lineBuffer.clear();
+        m_context.reset();
+        m_memoryTracker.reset();
+        m_headerBytes = 0;
+        m_messageBytes = 0;
+        bindEnvelope();
+        accountFixedMemory();
+    }
+
+    /**
+     * Runs an action once no handoff is in progress: at once if none is, otherwise on the thread
+     * that ends the last one. Used by {@link SessionLease#close()} to defer recycling.
+     *
+     * @param action The action to run.
+     */
+    void whenIdle(Runnable action){
+        synchronized(this){
+            if(m_handoffs > 0){
+                m_afterHandoff = action;
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Sets the lease the session is currently held by.
+     *
+     * @param lease The lease, or null once the session is back in its pool.
+     */
+    void setLease(SessionLease lease){
+        m_lease = lease;
+    }
+
+    /**
+     * Exposes the envelope's recipient store through the session context so validation steps can read it.
+     */
+    private void bindEnvelope(){
+        m_context.setAttribute(SessionAttributes.RECIPIENTS, m_envelope.getRecipients());
+    }
+
+    /**
+     * Charges the buffers every session retains regardless of client activity.
+     *
+     * @throws IllegalArgumentException If the budget cannot hold the fixed buffers.
+     */
+    private void accountFixedMemory(){
+        try{
+            m_memoryTracker.charge(MemoryCategory.LINE_BUFFER,
+                    SessionMemoryTracker.ARRAY_HEADER_BYTES + m_lineBuffer.capacity());
+            m_memoryTracker.charge(MemoryCategory.RECIPIENTS, m_envelope.getRecipients().getRetainedBytes());
+            m_memoryTracker.charge(MemoryCategory.ATTRIBUTES, m_context.estimateRetainedBytes());
+        }
+        catch(CommandException e){
+            throw new IllegalArgumentException("Session memory budget of " + m_memoryTracker.getBudget()
+                    + " bytes cannot hold the fixed session buffers", e);
+        }
+    }
+}
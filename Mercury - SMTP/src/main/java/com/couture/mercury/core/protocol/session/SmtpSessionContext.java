@@ -0,0 +1,194 @@
+package com.couture.mercury.core.protocol.session;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Production implementation of SessionContext.
+ * Attributes are stored in a small array indexed by {@link AttributeKey#getIndex()},
+ * so typed attribute access on the command path is a bounds check and an array read
+ * rather than a hash lookup.
+ *
+ * <p>String-keyed access is still supported for existing callers; names are resolved to
+ * their registered key. Unknown names are kept in a map owned by this context rather than
+ * registered as global keys, so arbitrary names cannot grow the registry or every other
+ * context's slot array.</p>
+ *
+ * <p>This class is not thread-safe; a session context belongs to a single connection.</p>
+ */
+public class SmtpSessionContext implements SessionContext {
+    static {
+        // Register the well-known keys first so name-based access always resolves them to their slots.
+        SessionAttributes.load();
+    }
+
+    private SessionState m_state;
+    private Object[] m_values;
+    // Attributes whose names have no registered key, created on first use.
+    private Map<String, Object> m_unregistered;
+
+    /**
+     * Creates a session context in the CONNECT state.
+     */
+    public SmtpSessionContext(){
+        m_state = SessionState.CONNECT;
+        m_values = new Object[AttributeKey.count()];
+    }
+
+    @Override
+    public SessionState getState(){
+        return m_state;
+    }
+
+    @Override
+    public void setState(SessionState sessionState){
+        m_state = Objects.requireNonNull(sessionState, "Session state cannot be null");
+    }
+
+    @Override
+    public Object getAttribute(String key){
+        AttributeKey<?> attributeKey = AttributeKey.forName(key);
+        if(attributeKey != null){
+            return getValue(attributeKey.getIndex());
+        }
+        return m_unregistered != null ? m_unregistered.get(key) : null;
+    }
+
+    /**
+     * Sets an attribute in this session.
+     *
+     * @param key The attribute key.
+     * @param value The attribute value, or null to remove the attribute.
+     * @throws IllegalArgumentException If the value does not match the registered type for the key.
+     */
+    @Override
+    public void setAttribute(String key, Object value){
+        if(key == null){
+            return;
+        }
+
+        AttributeKey<?> attributeKey = AttributeKey.forName(key);
+        if(attributeKey == null){
+            if(value != null){
+                if(m_unregistered == null){
+                    m_unregistered = new HashMap<>();
+                }
+                m_unregistered.put(key, value);
+            }
+            else if(m_unregistered != null){
+                m_unregistered.remove(key);
+            }
+            return;
+        }
+
+        if(value != null && !attributeKey.getType().isInstance(value)){
+            throw new IllegalArgumentException("Attribute " + key + " requires a value of type "
+                    + attributeKey.getType().getName() + " but got " + value.getClass().getName());
+        }
+
+        setValue(attributeKey.getIndex(), value);
+    }
+
+    @Override
+    public <T> T getAttribute(AttributeKey<T> key){
+        return key != null ? key.cast(getValue(key.getIndex())) : null;
+    }
+
+    @Override
+    public <T> void setAttribute(AttributeKey<T> key, T value){
+        if(key != null){
+            setValue(key.getIndex(), value);
+        }
+    }
+
+    /**
+     * Estimates the bytes retained by this context's attributes.
+     * Recipient stores are accounted for separately and are not included.
+     *
+     * @return The approximate retained size in bytes.
+     */
+    public long estimateRetainedBytes(){
+        long bytes = SessionMemoryTracker.ARRAY_HEADER_BYTES + 8L * m_values.length;
+        for(Object value : m_values){
+            if(value instanceof String){
+                bytes += SessionMemoryTracker.estimateStringBytes((String) value);
+            }
+            else if(value != null && !(value instanceof RecipientStore)){
+                bytes += 16;
+            }
+        }
+        if(m_unregistered != null){
+            for(Map.Entry<String, Object> entry : m_unregistered.entrySet()){
+                // A hash map node with its key, plus the value as above.
+                bytes += 32 + SessionMemoryTracker.estimateStringBytes(entry.getKey());
+                bytes += entry.getValue() instanceof String ? SessionMemoryTracker.estimateStringBytes((String) entry.getValue()) : 16;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Removes all attributes and returns the session to the CONNECT state.
+     * The attribute array is kept for reuse.
+     */
+    public void reset(){
+        Arrays.fill(m_values, null);
+        if(m_unregistered != null){
+            m_unregistered.clear();
+        }
+        m_state = SessionState.CONNECT;
+    }
+
+    /**
+     * Reads the value in an attribute slot.
+     *
+     * @param index The slot index.
+     * @return The value, or null if the slot is empty or beyond the current array.
+     */
+    private Object getValue(int index){
+        return index < m_values.length ? m_values[index] : null;
+    }
+
+    /**
+     * Writes the value in an attribute slot, growing the array if keys were registered after construction.
+     *
+     * @param index The slot index.
+     * @param value The value, or null to clear the slot.
+     */
+    private void setValue(int index, Object value){
+        if(index >= m_values.length){
+            if(value == null){
+                return;
+            }
+            m_values = Arrays.copyOf(m_values, Math.max(index + 1, AttributeKey.count()));
+        }
+
+        m_values[index] = value;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder attributes = new StringBuilder("{");
+        for(int i = 0; i < m_values.length; i++){
+            if(m_values[i] != null){
+                if(attributes.length() > 1){
+                    attributes.append(", ");
+                }
+                attributes.append(i).append('=').append(m_values[i]);
+            }
+        }
+        if(m_unregistered != null){
+            for(Map.Entry<String, Object> entry : m_unregistered.entrySet()){
+                if(attributes.length() > 1){
+                    attributes.append(", ");
+                }
+                attributes.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        attributes.append('}');
+
+        return "SmtpSessionContext{" + "state=" + m_state + ", attributes=" + attributes + '}';
+    }
+}
@@ -88,6 +88,31 @@ public final class CommandConstants {
          */
         public static final int START_MAIL_INPUT = 354;
 
+        /**
+         * Local error in processing response code.
+         */
+        public static final int LOCAL_ERROR = 451;
+
+        /**
+         * Too many recipients response code.
+         */
+        public static final int TOO_MANY_RECIPIENTS = 452;
+
+        /**
+         * Insufficient system storage response code.
+         */
+        public static final int INSUFFICIENT_STORAGE = 452;
+
+        /**
+         * Exceeded storage allocation response code.
+         */
+        public static final int EXCEEDED_STORAGE_ALLOCATION = 552;
+
+        /**
+         * Mailbox unavailable response code.
+         */
+        public static final int MAILBOX_UNAVAILABLE = 550;
+
         /**
          * Syntax error response code.
          */
@@ -123,6 +148,16 @@ public final class CommandConstants {
          */
         public static final String RECIPIENTS_KEY = "RECIPIENTS";
 
+        /**
+         * Session attribute key for the reverse-path given with MAIL FROM.
+         */
+        public static final String REVERSE_PATH_KEY = "REVERSE_PATH";
+
+        /**
+         * Session attribute key for the client domain given with HELO/EHLO.
+         */
+        public static final String CLIENT_DOMAIN_KEY = "CLIENT_DOMAIN";
+
         /**
          * Minimum number of recipients required for DATA command.
          */
@@ -11,6 +11,16 @@ public class ValidationConstants {
     public static final int MAX_FORWARD_PATH_LENGTH = 256; // Maximum length for forward path
     public static final int MAX_REVERSE_PATH_LENGTH = 256; // Maximum length for reverse path
 
+    // RFC 5322 Limits
+    public static final int MAX_HEADER_LINE_LENGTH = 1000; // Maximum header line length including CRLF
+    public static final int MAX_HEADER_SECTION_LENGTH = 64 * 1024; // Header bytes parsed before the rest is treated as body
+
+    // Memory limits (in bytes)
+    public static final long SESSION_MEMORY_BUDGET = 1L << 20; // 1 MiB retained per session
+    public static final long GLOBAL_SESSION_MEMORY_BUDGET = 256L << 20; // 256 MiB retained across all sessions
+    public static final long MESSAGE_SPILL_THRESHOLD = 64 * 1024; // Message bytes kept in memory before spilling to disk
+    public static final int MESSAGE_BUFFER_CHUNK_SIZE = 8 * 1024; // Size of the pooled buffers holding message content
+
     // Timeout values (in milliseconds)
     public static final long COMMAND_TIMEOUT = 300_000; // 5 minutes for regular commands
     public static final long DATA_TIMEOUT = 600_000; // 10 minutes for DATA transmission
@@ -33,6 +33,7 @@ public class ValidationErrorMessages {
     public static final String RCPT_INVALID_ADDRESS_FORMAT = "RCPT TO command has invalid address format";
     public static final String RCPT_MISSING_TO_PARAMETER = "RCPT command requires TO: parameter";
     public static final String RCPT_NO_RECIPIENTS = "No recipients specified before DATA command";
+    public static final String RCPT_TOO_MANY_RECIPIENTS = "Too many recipients, maximum is %d";
     public static final String DATA_UNEXPECTED_PARAMETERS = "DATA command should not have parameters";
 
     // Email address and domain validation
@@ -45,6 +46,12 @@ public class ValidationErrorMessages {
     public static final String NO_MAIL_TRANSACTION = "No mail transaction in progress";
     public static final String TRANSACTION_ALREADY_IN_PROGRESS = "Mail transaction already in progress";
 
+    // Resource errors
+    public static final String SESSION_MEMORY_EXCEEDED = "Exceeded storage allocation for this session";
+    public static final String SERVER_MEMORY_EXHAUSTED = "Insufficient system storage";
+    public static final String MESSAGE_BUFFER_FAILED = "Local error buffering message content";
+    public static final String SPOOL_UNDER_PRESSURE = "Insufficient system storage, try again later";
+
     /**
      * Private constructor to prevent instantiation of this utility class.
      */
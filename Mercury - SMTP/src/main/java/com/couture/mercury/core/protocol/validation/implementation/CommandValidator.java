@@ -3,14 +3,17 @@ package com.couture.mercury.core.protocol.validation.implementation;
 import com.couture.mercury.core.protocol.commands.Command;
 import com.couture.mercury.core.protocol.commands.CommandType;
 import com.couture.mercury.core.protocol.session.SessionContext;
+import com.couture.mercury.core.protocol.util.ValidationErrorMessages;
 import com.couture.mercury.core.protocol.validation.ValidationChainBuilder;
 import com.couture.mercury.core.protocol.validation.ValidationStep;
+import com.couture.mercury.core.protocol.validation.result.BatchValidationResult;
 import com.couture.mercury.core.protocol.validation.result.ValidationResult;
 import com.couture.mercury.core.protocol.validation.result.ValidationResultFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -86,4 +89,66 @@ public final class CommandValidator {
 
         return result;
     }
+
+    /**
+     * Validates a pipelined batch of SMTP commands in a single pass.
+     * Each command is validated against the session state produced by the commands before it
+     * (e.g. MAIL, then RCPT..., then DATA), without mutating the real session context.
+     * Commands that fail validation do not affect the simulated state, matching how a server
+     * would reject them individually. Each command goes through its validation chain as with
+     * {@link #validate(Command, SessionContext)}; only its first error is kept in the batch result.
+     *
+     * @param commands The pipelined commands in the order they were received.
+     * @param context The current session context, which is only read.
+     * @return A result holding the outcome of every command in the batch.
+     * @throws IllegalArgumentException If commands is null.
+     */
+    public static BatchValidationResult validateAll(List<? extends Command> commands, SessionContext context) {
+        if (commands == null) {
+            throw new IllegalArgumentException("Command batch cannot be null");
+        }
+
+        int size = commands.size();
+        BatchValidationResult results = new BatchValidationResult(size);
+
+        if (context == null) {
+            LOGGER.warn("Null session context provided for batch validation");
+            for (int i = 0; i < size; i++) {
+                results.setFailure(i, ValidationErrorMessages.NULL_SESSION);
+            }
+            return results;
+        }
+
+        SimulatedSessionContext simulatedContext = new SimulatedSessionContext(context);
+
+        for (int i = 0; i < size; i++) {
+            Command command = commands.get(i);
+            if (command == null) {
+                results.setFailure(i, ValidationErrorMessages.NULL_COMMAND);
+                continue;
+            }
+
+            CommandType commandType = command.getCommandType();
+            ValidationStep validationChain = VALIDATION_CHAINS.get(commandType);
+            if (validationChain == null) {
+                results.setFailure(i, "Unsupported command type: " + commandType);
+                continue;
+            }
+
+            ValidationResult result = validationChain.validate(command, simulatedContext);
+            if (!result.isValid()) {
+                List<String> errors = result.getErrors();
+                results.setFailure(i, errors.isEmpty() ? ValidationErrorMessages.INTERNAL_VALIDATION_ERROR : errors.get(0));
+                continue;
+            }
+
+            String applyError = simulatedContext.apply(commandType, command.getParameters());
+            if (applyError != null) {
+                results.setFailure(i, applyError);
+            }
+        }
+
+        LOGGER.debug("Validated batch of {} commands with {} failure(s)", size, results.getFailureCount());
+        return results;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package com.couture.mercury.core.protocol.validation.implementation;
+
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import com.couture.mercury.core.protocol.session.SessionContext;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.protocol.util.ValidationErrorMessages;
+
+import java.util.Collection;
+
+/**
+ * Session context overlay used to validate pipelined command batches.
+ * Tracks the session state and recipients the batch would produce, while reading every other
+ * attribute through to the real session context, which is never modified.
+ */
+final class SimulatedSessionContext implements SessionContext {
+    private final SessionContext m_delegate;
+    private final RecipientStore m_recipients;
+    private SessionState m_state;
+
+    /**
+     * Creates a simulated context seeded from the real session.
+     *
+     * @param delegate The real session context.
+     */
+    SimulatedSessionContext(SessionContext delegate){
+        m_delegate = delegate;
+        m_state = delegate.getState();
+        m_recipients = new RecipientStore();
+
+        Object existing = delegate.getAttribute(CommandConstants.Attributes.RECIPIENTS_KEY);
+        if(existing instanceof Collection){
+            addAll((Collection<?>) existing);
+        }
+    }
+
+    @Override
+    public SessionState getState(){
+        return m_state;
+    }
+
+    @Override
+    public void setState(SessionState sessionState){
+        m_state = sessionState;
+    }
+
+    @Override
+    public Object getAttribute(String key){
+        if(CommandConstants.Attributes.RECIPIENTS_KEY.equals(key)){
+            return m_recipients.isEmpty() ? null : m_recipients;
+        }
+
+        return m_delegate.getAttribute(key);
+    }
+
+    /**
+     * Attributes are never written through to the real session during simulation.
+     * Only the recipients attribute is tracked, everything else is ignored.
+     */
+    @Override
+    public void setAttribute(String key, Object value){
+        if(CommandConstants.Attributes.RECIPIENTS_KEY.equals(key)){
+            m_recipients.clear();
+
+            if(value instanceof Collection){
+                addAll((Collection<?>) value);
+            }
+        }
+    }
+
+    /**
+     * Applies the effect of a successfully validated command to the simulated session,
+     * mirroring the state transitions defined by RFC 5321.
+     *
+     * @param commandType The type of the command that passed validation.
+     * @param parameters The parameters of the command.
+     * @return An error message if applying the command failed, otherwise null.
+     */
+    String apply(CommandType commandType, String[] parameters){
+        switch(commandType){
+            case HELO:
+            case EHLO:
+            case RSET:
+                m_recipients.clear();
+                m_state = SessionState.HELO;
+                break;
+            case MAIL:
+                m_recipients.clear();
+                m_state = SessionState.MAIL;
+                break;
+            case RCPT:
+                String forwardPath = parameters.length > 0 ? extractPath(parameters[0]) : null;
+                RecipientStore.AddResult added = m_recipients.addRecipient(forwardPath);
+                if(added == RecipientStore.AddResult.LIMIT_EXCEEDED){
+                    return String.format(ValidationErrorMessages.RCPT_TOO_MANY_RECIPIENTS, m_recipients.getMaxRecipients());
+                }
+                if(added == RecipientStore.AddResult.INVALID){
+                    return ValidationErrorMessages.RCPT_INVALID_ADDRESS_FORMAT;
+                }
+                m_state = SessionState.RCPT;
+                break;
+            case DATA:
+                m_state = SessionState.DATA;
+                break;
+            case QUIT:
+                m_state = SessionState.QUIT;
+                break;
+            default:
+                // NOOP and informational commands leave the session untouched.
+                break;
+        }
+
+        return null;
+    }
+
+    /**
+     * Copies recipients into the simulated store, ignoring entries that cannot be stored.
+     *
+     * @param recipients The recipients to copy.
+     */
+    private void addAll(Collection<?> recipients){
+        for(Object recipient : recipients){
+            if(recipient instanceof String){
+                m_recipients.addRecipient(extractPath((String) recipient));
+            }
+        }
+    }
+
+    /**
+     * Extracts the path from a RCPT parameter, dropping the "TO:" prefix if present.
+     *
+     * @param parameter The RCPT parameter or bare path.
+     * @return The path portion of the parameter.
+     */
+    private static String extractPath(String parameter){
+        return parameter.regionMatches(true, 0, "TO:", 0, 3) ? parameter.substring(3) : parameter;
+    }
+}
@@ -0,0 +1,123 @@
+package com.couture.mercury.core.protocol.validation.result;
+
+/**
+ * Represents the result of validating a pipelined batch of commands.
+ * Keeps a single error slot per command rather than holding on to one ValidationResult per command,
+ * with a null slot meaning the command at that index passed validation. The validation chains
+ * still produce a ValidationResult for each command while the batch is validated.
+ */
+public final class BatchValidationResult {
+    private final String[] m_errors;
+    private int m_failureCount;
+
+    /**
+     * Creates a batch validation result where every command is initially considered valid.
+     *
+     * @param size The number of commands in the batch.
+     * @throws IllegalArgumentException If size is negative.
+     */
+    public BatchValidationResult(int size){
+        if(size < 0){
+            throw new IllegalArgumentException("Batch size cannot be negative");
+        }
+
+        m_errors = new String[size];
+    }
+
+    /**
+     * Gets the number of commands covered by this result.
+     *
+     * @return The batch size.
+     */
+    public int size(){
+        return m_errors.length;
+    }
+
+    /**
+     * Checks if the command at the given index passed validation.
+     *
+     * @param index The index of the command in the batch.
+     * @return True if valid, otherwise false.
+     */
+    public boolean isValid(int index){
+        return m_errors[index] == null;
+    }
+
+    /**
+     * Checks if every command in the batch passed validation.
+     *
+     * @return True if all commands are valid, otherwise false.
+     */
+    public boolean isAllValid(){
+        return m_failureCount == 0;
+    }
+
+    /**
+     * Gets the number of commands that failed validation.
+     *
+     * @return The failure count.
+     */
+    public int getFailureCount(){
+        return m_failureCount;
+    }
+
+    /**
+     * Gets the validation error for the command at the given index.
+     *
+     * @param index The index of the command in the batch.
+     * @return The error message, or null if the command is valid.
+     */
+    public String getError(int index){
+        return m_errors[index];
+    }
+
+    /**
+     * Gets the index of the first command that failed validation.
+     *
+     * @return The index of the first failure, or -1 if all commands are valid.
+     */
+    public int firstFailureIndex(){
+        if(m_failureCount == 0){
+            return -1;
+        }
+
+        for(int i = 0; i < m_errors.length; i++){
+            if(m_errors[i] != null){
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Expands the result for a single command into a full ValidationResult.
+     * Intended for callers that need to hand a single outcome to existing APIs.
+     *
+     * @param index The index of the command in the batch.
+     * @return A ValidationResult for the command at the given index.
+     */
+    public ValidationResult toValidationResult(int index){
+        String error = m_errors[index];
+        return error == null ? ValidationResultFactory.success() : ValidationResultFactory.failure(error);
+    }
+
+    /**
+     * Records a failure for the command at the given index.
+     *
+     * @param index The index of the command in the batch.
+     * @param error The error message describing the failure.
+     * @throws IllegalArgumentException If error is null or empty.
+     */
+    public void setFailure(int index, String error){
+        if(error == null || error.isEmpty()){
+            throw new IllegalArgumentException("Error message cannot be null or empty");
+        }
+
+        if(m_errors[index] == null){
+            m_failureCount++;
+        }
+
+        m_errors[index] = error;
+    }
+}
@@ -0,0 +1,339 @@
+package com.couture.mercury.core.spool;
+
+import com.couture.mercury.core.mailbox.MailboxStore;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+import com.couture.mercury.core.protocol.session.MailEnvelope;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves spool writes off the threads that serve connections.
+ *
+ * <p>Stores are queued to a small pool of I/O threads owned by this writer, sized by
+ * {@link SpoolConfig#getIoThreads()} and bounded by {@link SpoolConfig#getIoQueueCapacity()}.
+ * The calling thread only enqueues the write, so a slow disk stalls the sessions waiting on
+ * this spool and never the reactor thread that serves them alongside other connections. Each
+ * spool should have its own writer, so one slow disk cannot hold up writes to another.
+ * When the queue is full the write is refused immediately with a 452 reply.</p>
+ *
+ * <p>{@link #acceptMessage(SmtpSession, TraceHeaders, Executor)} is the end of the DATA path: it
+ * stores the session's transaction and, once the message is durable under the listener's fsync
+ * policy, resumes the session on the executor of its choice with the final reply. The reverse-path
+ * and recipients are copied on the calling thread; the message buffer is read by the I/O thread,
+ * so the session must not read further input until the reply, and is held in a handoff
+ * ({@link SmtpSession#beginHandoff()}) until then: a lease closed meanwhile, for example because
+ * the client disconnected, recycles the session only once the write has finished with it.
+ * Content held in thread-confined memory, such as a confined off-heap arena, is written on the
+ * calling thread instead, since no other thread may read it; sessions that must never wait on the
+ * disk should allocate their message buffers from memory that can be shared.</p>
+ *
+ * <p>When given a {@link SpoolPressure} monitor, the writer reports the bytes of each write from the
+ * moment it is queued until it is durable, along with how long that took, so the receive path can
+ * back off before the queue fills.</p>
+ *
+ * <p>When given a {@link MailboxStore}, a transaction whose recipients are all at local domains, as
+ * classified by {@link RecipientStore#isAllLocal()} while the recipients were accepted, skips the
+ * spool: it is written straight to the mailboxes on the same I/O threads and acknowledged once
+ * durable there, so it never enters the relay queue, the retry scheduler or DNS resolution.
+ * Transactions with any remote recipient are spooled as before.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class AsyncSpoolWriter implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSpoolWriter.class);
+    private static final String QUEUED_REPLY = "OK: queued as %d";
+    private static final String DELIVERED_REPLY = "OK: delivered";
+    private static final String QUEUE_FULL_REPLY = "Insufficient system storage, try again later";
+    private static final String STORE_FAILED_REPLY = "Local error in processing";
+
+    private final MessageStore m_store;
+    private final SpoolWriter m_writer;
+    private final ThreadPoolExecutor m_executor;
+    private final SpoolPressure m_pressure;
+    private final MailboxStore m_mailboxes;
+    private final AtomicLong m_rejected = new AtomicLong();
+    private final AtomicLong m_deliveredLocally = new AtomicLong();
+
+    /**
+     * Creates an asynchronous writer for a listener, with the I/O pool settings of its spool.
+     *
+     * @param store The message store.
+     * @param writer The listener's spool writer, which must belong to the store's spool.
+     * @throws IllegalArgumentException If the writer belongs to a different spool.
+     */
+    public AsyncSpoolWriter(MessageStore store, SpoolWriter writer){
+        this(store, writer, null);
+    }
+
+    /**
+     * Creates an asynchronous writer for a listener that reports to a pressure monitor.
+     *
+     * @param store The message store.
+     * @param writer The listener's spool writer, which must belong to the store's spool.
+     * @param pressure The monitor to report writes to, or null for none.
+     * @throws IllegalArgumentException If the writer belongs to a different spool.
+     */
+    public AsyncSpoolWriter(MessageStore store, SpoolWriter writer, SpoolPressure pressure){
+        this(store, writer, pressure, null);
+    }
+
+    /**
+     * Creates an asynchronous writer for a listener that delivers all-local transactions directly to
+     * mailbox storage.
+     *
+     * @param store The message store.
+     * @param writer The listener's spool writer, which must belong to the store's spool.
+     * @param pressure The monitor to report writes to, or null for none.
+     * @param mailboxes The local mailbox storage, or null to spool every transaction.
+     * @throws IllegalArgumentException If the writer belongs to a different spool.
+     */
+    public AsyncSpoolWriter(MessageStore store, SpoolWriter writer, SpoolPressure pressure, MailboxStore mailboxes){
+        m_pressure = pressure;
+        m_mailboxes = mailboxes;
+        m_store = Objects.requireNonNull(store, "Message store cannot be null");
+        m_writer = Objects.requireNonNull(writer, "Spool writer cannot be null");
+        if(writer.getSpool() != store.getSpool()){
+            throw new IllegalArgumentException("Spool writer belongs to a different spool");
+        }
+
+        SpoolConfig config = writer.getSpool().getConfig();
+        AtomicInteger threadCount = new AtomicInteger();
+        m_executor = new ThreadPoolExecutor(config.getIoThreads(), config.getIoThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getIoQueueCapacity()), task -> {
+                    Thread thread = new Thread(task, "spool-io-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Stores a transaction on an I/O thread.
+     *
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients; read on the I/O thread.
+     * @param traceHeaders The fields to prepend on delivery, or null.
+     * @param body The message body; read on the I/O thread.
+     * @return A future completed with the envelope once it is durable, or failed with a
+     *         {@link SpoolException} if the write was refused or failed.
+     */
+    public CompletableFuture<StoredEnvelope> store(String reversePath, Collection<String> recipients,
+                                                   TraceHeaders traceHeaders, ByteBuffer... body){
+        long bytes = 0;
+        for(ByteBuffer buffer : body){
+            bytes += buffer.remaining();
+        }
+        return submit(bytes, m_executor, () -> m_store.store(m_writer, reversePath, recipients, traceHeaders, body));
+    }
+
+    /**
+     * Stores the current transaction of a session on an I/O thread, or delivers it to local mailboxes
+     * if every recipient is local, and produces the reply to the end of DATA: 250 once the message is
+     * durable, 452 if the I/O queue is full or 451 if the write failed. The transaction is reset on
+     * the resume executor just before the reply is delivered, so the caller only has to send it and
+     * resume reading.
+     *
+     * @param session The session whose transaction is complete.
+     * @param traceHeaders The fields to prepend on delivery, or null.
+     * @param resume The executor the session is resumed on, typically its reactor.
+     * @return A future completed on the resume executor with the reply.
+     */
+    public CompletableFuture<CommandResult> acceptMessage(SmtpSession session, TraceHeaders traceHeaders, Executor resume){
+        MailEnvelope envelope = session.getEnvelope();
+        MessageBuffer message = envelope.getMessageBuffer();
+        String reversePath = envelope.getReversePath();
+        List<String> recipients = List.copyOf(envelope.getRecipients());
+        StoreTask<String> task;
+        if(m_mailboxes != null && envelope.getRecipients().isAllLocal()){
+            task = () -> {
+                m_mailboxes.deliver(reversePath, recipients, traceHeaders, message.buffers());
+                m_deliveredLocally.incrementAndGet();
+                return CompletableFuture.completedFuture(DELIVERED_REPLY);
+            };
+        }
+        else{
+            task = () -> m_store.store(m_writer, reversePath, recipients, traceHeaders, message.buffers())
+                    .thenApply(stored -> String.format(QUEUED_REPLY, stored.getEnvelopeId()));
+        }
+
+        session.beginHandoff();
+        Executor executor = message.isThreadConfined() ? Runnable::run : m_executor;
+        CompletableFuture<String> written = submit(message.size(), executor, task);
+        CompletableFuture<CommandResult> result = written.handleAsync((reply, error) -> {
+            try{
+                session.resetTransaction();
+            }
+            finally{
+                session.endHandoff();
+            }
+
+            if(error == null){
+                return new CommandResult(true, reply, CommandConstants.ResponseCodes.SUCCESS);
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if(cause instanceof QueueFullException){
+                return new CommandResult(false, QUEUE_FULL_REPLY, CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE);
+            }
+
+            LOGGER.warn("Failed to spool message", cause);
+            return new CommandResult(false, STORE_FAILED_REPLY, CommandConstants.ResponseCodes.LOCAL_ERROR);
+        }, resume);
+
+        result.whenComplete((reply, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if(cause instanceof RejectedExecutionException){
+                // The session's executor is gone, so nothing will resume it; end the handoff here so it can be recycled.
+                LOGGER.debug("Resume executor refused the reply, releasing the transaction", cause);
+                try{
+                    session.resetTransaction();
+                }
+                catch(RuntimeException e){
+                    LOGGER.warn("Could not reset the transaction of an abandoned session", e);
+                }
+                finally{
+                    session.endHandoff();
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Gets the number of writes waiting for an I/O thread.
+     *
+     * @return The queued write count.
+     */
+    public int getQueuedCount(){
+        return m_executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of transactions delivered straight to local mailboxes.
+     *
+     * @return The local delivery count.
+     */
+    public long getDeliveredLocallyCount(){
+        return m_deliveredLocally.get();
+    }
+
+    /**
+     * Gets the number of writes refused because the queue was full.
+     *
+     * @return The rejected write count.
+     */
+    public long getRejectedCount(){
+        return m_rejected.get();
+    }
+
+    /**
+     * Stops accepting writes and waits for queued ones to be handed to the spool.
+     * Must be called before the spool is closed.
+     */
+    @Override
+    public void close(){
+        m_executor.shutdown();
+        try{
+            if(!m_executor.awaitTermination(1, TimeUnit.MINUTES)){
+                LOGGER.warn("Spool I/O threads did not finish within a minute");
+            }
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a store on an I/O thread.
+     *
+     * @param bytes The size of the message, reported to the pressure monitor.
+     * @param executor The I/O pool, or a direct executor for content only the calling thread may read.
+     * @param task The store, which writes the message and returns a future for its durability.
+     * @param <T> The result of the store.
+     * @return A future completed once the message is durable.
+     */
+    private <T> CompletableFuture<T> submit(long bytes, Executor executor, StoreTask<T> task){
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        if(m_pressure != null){
+            m_pressure.writeQueued(bytes);
+        }
+
+        try{
+            executor.execute(() -> {
+                try{
+                    task.run().whenComplete((value, error) -> {
+                        if(error != null){
+                            result.completeExceptionally(error);
+                        }
+                        else{
+                            result.complete(value);
+                        }
+                    });
+                }
+                catch(IOException | RuntimeException e){
+                    result.completeExceptionally(e);
+                }
+            });
+            if(m_pressure != null){
+                result.whenComplete((value, error) -> m_pressure.writeCompleted(bytes, System.nanoTime() - queuedAt));
+            }
+        }
+        catch(RejectedExecutionException e){
+            if(m_pressure != null){
+                m_pressure.writeRefused(bytes);
+            }
+            m_rejected.incrementAndGet();
+            result.completeExceptionally(new QueueFullException());
+        }
+        return result;
+    }
+
+    /**
+     * A store performed on an I/O thread.
+     *
+     * @param <T> The result of the store.
+     */
+    @FunctionalInterface
+    private interface StoreTask<T> {
+        /**
+         * Writes the message.
+         *
+         * @return A future completed once the message is durable.
+         * @throws IOException If the message cannot be read or written.
+         */
+        CompletableFuture<T> run() throws IOException;
+    }
+
+    /**
+     * Signals that a write was refused because the I/O queue was full.
+     */
+    static final class QueueFullException extends SpoolException {
+        /**
+         * Creates the exception.
+         */
+        QueueFullException(){
+            super("Spool I/O queue is full");
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.couture.mercury.core.spool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block compression of spooled bodies.
+ *
+ * <p>A body is split into fixed-size blocks of uncompressed data and each block is deflated
+ * independently, so a range of the body can be read by inflating only the blocks that cover it.
+ * A compressed record body has the following layout:</p>
+ * <pre>
+ *   int   uncompressed length
+ *   int   block size
+ *   int   block count
+ *   int[] end offset of each compressed block, relative to the first block
+ *   byte[] compressed blocks
+ * </pre>
+ *
+ * <p>Compression reads the body parts block by block as they were handed to the spool, without
+ * first joining them. Deflaters and inflaters are cached per thread. This class is thread-safe.</p>
+ */
+final class BlockCompressor {
+    /**
+     * Size of the fixed part of the container header.
+     */
+    static final int HEADER_SIZE = 12;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final int m_blockSize;
+    private final ThreadLocal<Deflater> m_deflater;
+
+    /**
+     * Creates a compressor.
+     *
+     * @param level The Deflater level.
+     * @param blockSize The number of uncompressed bytes per block.
+     */
+    BlockCompressor(int level, int blockSize){
+        m_blockSize = blockSize;
+        m_deflater = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    /**
+     * Compresses a body. The positions of the parts are not changed.
+     *
+     * @param parts The body parts, in order.
+     * @param length The total body length.
+     * @return The container header and the compressed blocks, or null if the body does not shrink.
+     */
+    ByteBuffer[] compress(ByteBuffer[] parts, long length){
+        int blockCount = (int) ((length + m_blockSize - 1) / m_blockSize);
+        int headerLength = headerLength(blockCount);
+        if(length <= headerLength){
+            return null;
+        }
+
+        // Output that would not be smaller than the body is abandoned as soon as it fills this buffer.
+        byte[] output = new byte[(int) (length - headerLength)];
+        int outputLength = 0;
+        int[] ends = new int[blockCount];
+        Deflater deflater = m_deflater.get();
+
+        int partIndex = 0;
+        ByteBuffer part = parts.length > 0 ? parts[0].duplicate() : null;
+        for(int block = 0; block < blockCount; block++){
+            deflater.reset();
+            long blockRemaining = Math.min(m_blockSize, length - (long) block * m_blockSize);
+
+            while(blockRemaining > 0){
+                while(!part.hasRemaining()){
+                    part = parts[++partIndex].duplicate();
+                }
+
+                int take = (int) Math.min(part.remaining(), blockRemaining);
+                ByteBuffer input = part.slice(part.position(), take);
+                deflater.setInput(input);
+                while(!deflater.needsInput()){
+                    if(outputLength == output.length){
+                        return null;
+                    }
+                    outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+                }
+
+                part.position(part.position() + take);
+                blockRemaining -= take;
+            }
+
+            deflater.finish();
+            while(!deflater.finished()){
+                if(outputLength == output.length){
+                    return null;
+                }
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+            }
+            ends[block] = outputLength;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength);
+        header.putInt((int) length).putInt(m_blockSize).putInt(blockCount);
+        for(int end : ends){
+            header.putInt(end);
+        }
+        header.flip();
+
+        return new ByteBuffer[]{header, ByteBuffer.wrap(output, 0, outputLength)};
+    }
+
+    /**
+     * Computes the length of a container header.
+     *
+     * @param blockCount The number of blocks.
+     * @return The header length in bytes.
+     */
+    static int headerLength(int blockCount){
+        return HEADER_SIZE + blockCount * 4;
+    }
+
+    /**
+     * Reads the container header of a compressed record.
+     *
+     * @param segment The segment holding the record.
+     * @param recordOffset The offset of the record.
+     * @param storedLength The stored body length, used to validate the header.
+     * @return The container header.
+     * @throws IOException If the header cannot be read or is malformed.
+     */
+    static Container readContainer(SpoolSegment segment, long recordOffset, int storedLength) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(HEADER_SIZE);
+        segment.readBody(recordOffset, 0, fixed);
+        int length = fixed.getInt(0);
+        int blockSize = fixed.getInt(4);
+        int blockCount = fixed.getInt(8);
+
+        if(length < 0 || blockSize < 1 || blockCount < 0 || headerLength(blockCount) > storedLength
+                || (long) blockCount * blockSize < length){
+            throw new SpoolException("Malformed compressed record at offset " + recordOffset + " of segment " + segment.getId());
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(blockCount * 4);
+        segment.readBody(recordOffset, HEADER_SIZE, table);
+        int[] ends = new int[blockCount];
+        for(int i = 0; i < blockCount; i++){
+            ends[i] = table.getInt(i * 4);
+        }
+
+        return new Container(length, blockSize, ends);
+    }
+
+    /**
+     * Reads a range of a compressed body, inflating only the blocks that cover it.
+     *
+     * @param segment The segment holding the record.
+     * @param recordOffset The offset of the record.
+     * @param container The container header.
+     * @param offset The offset of the range within the uncompressed body.
+     * @param destination The buffer to fill; its remaining space is the length of the range.
+     * @throws IOException If the blocks cannot be read or inflated.
+     */
+    static void readRange(SpoolSegment segment, long recordOffset, Container container, long offset, ByteBuffer destination)
+            throws IOException {
+        if(offset < 0 || offset + destination.remaining() > container.m_length){
+            throw new SpoolException("Range " + offset + "+" + destination.remaining() + " is outside the body of "
+                    + container.m_length + " bytes");
+        }
+
+        byte[] block = new byte[container.m_blockSize];
+        long position = offset;
+        while(destination.hasRemaining()){
+            int index = (int) (position / container.m_blockSize);
+            int blockLength = inflateBlock(segment, recordOffset, container, index, block);
+            int from = (int) (position - (long) index * container.m_blockSize);
+            int count = Math.min(blockLength - from, destination.remaining());
+            destination.put(block, from, count);
+            position += count;
+        }
+    }
+
+    /**
+     * Inflates a whole compressed body into a channel, one block at a time.
+     *
+     * @param segment The segment holding the record.
+     * @param recordOffset The offset of the record.
+     * @param container The container header.
+     * @param target The channel to write to.
+     * @throws IOException If the blocks cannot be read or inflated, or the write fails.
+     */
+    static void transferTo(SpoolSegment segment, long recordOffset, Container container, WritableByteChannel target)
+            throws IOException {
+        byte[] block = new byte[container.m_blockSize];
+        for(int index = 0; index < container.m_ends.length; index++){
+            int blockLength = inflateBlock(segment, recordOffset, container, index, block);
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, blockLength);
+            while(buffer.hasRemaining()){
+                target.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads and inflates one block.
+     *
+     * @param segment The segment holding the record.
+     * @param recordOffset The offset of the record.
+     * @param container The container header.
+     * @param index The block index.
+     * @param block Receives the uncompressed block.
+     * @return The uncompressed length of the block.
+     * @throws IOException If the block cannot be read or inflated.
+     */
+    private static int inflateBlock(SpoolSegment segment, long recordOffset, Container container, int index, byte[] block)
+            throws IOException {
+        int start = index == 0 ? 0 : container.m_ends[index - 1];
+        byte[] compressed = new byte[container.m_ends[index] - start];
+        segment.readBody(recordOffset, headerLength(container.m_ends.length) + start, ByteBuffer.wrap(compressed));
+
+        int expected = (int) Math.min(container.m_blockSize, container.m_length - (long) index * container.m_blockSize);
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed);
+
+        try{
+            int inflated = 0;
+            while(inflated < expected){
+                int count = inflater.inflate(block, inflated, expected - inflated);
+                if(count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+                inflated += count;
+            }
+            if(inflated != expected){
+                throw new SpoolException("Compressed block " + index + " at offset " + recordOffset + " is truncated");
+            }
+            return inflated;
+        }
+        catch(DataFormatException e){
+            throw new SpoolException("Compressed block " + index + " at offset " + recordOffset + " is corrupt", e);
+        }
+    }
+
+    /**
+     * The parsed header of a compressed record.
+     */
+    static final class Container {
+        private final int m_length;
+        private final int m_blockSize;
+        private final int[] m_ends;
+
+        /**
+         * Creates a container header.
+         *
+         * @param length The uncompressed body length.
+         * @param blockSize The uncompressed block size.
+         * @param ends The end offset of each compressed block.
+         */
+        private Container(int length, int blockSize, int[] ends){
+            m_length = length;
+            m_blockSize = blockSize;
+            m_ends = ends;
+        }
+
+        /**
+         * Gets the uncompressed body length.
+         *
+         * @return The length in bytes.
+         */
+        int getLength(){
+            return m_length;
+        }
+    }
+}
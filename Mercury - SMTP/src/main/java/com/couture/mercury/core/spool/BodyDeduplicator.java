@@ -0,0 +1,129 @@
+package com.couture.mercury.core.spool;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the content hashes of recently stored bodies, so a body submitted again within the
+ * dedup window (for example the same newsletter sent in several transactions) is referenced
+ * instead of stored a second time.
+ *
+ * <p>Entries are kept in insertion order, and since every entry lives for the same window the
+ * oldest entries expire first and are purged from the head of the map. This class is thread-safe.</p>
+ */
+final class BodyDeduplicator {
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final long m_windowNanos;
+    private final Map<ByteBuffer, Entry> m_entries = new LinkedHashMap<>();
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param windowMillis How long a stored body may be reused, in milliseconds. Zero disables deduplication.
+     */
+    BodyDeduplicator(long windowMillis){
+        if(windowMillis < 0){
+            throw new IllegalArgumentException("Dedup window cannot be negative");
+        }
+        m_windowNanos = windowMillis * 1_000_000L;
+    }
+
+    /**
+     * Checks if deduplication is enabled.
+     *
+     * @return True if the window is positive.
+     */
+    boolean isEnabled(){
+        return m_windowNanos > 0;
+    }
+
+    /**
+     * Computes the content hash of a body without consuming its buffers.
+     *
+     * @param parts The body parts, in order.
+     * @return The digest.
+     */
+    static byte[] digest(ByteBuffer[] parts){
+        MessageDigest digest;
+        try{
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch(NoSuchAlgorithmException e){
+            // Every Java platform is required to provide SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        for(ByteBuffer part : parts){
+            digest.update(part.duplicate());
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Looks up a body stored within the window.
+     *
+     * @param digest The content hash of the body.
+     * @return The spool identifier of the body, or -1 if none is known.
+     */
+    synchronized long find(byte[] digest){
+        long now = System.nanoTime();
+        purge(now);
+
+        Entry entry = m_entries.get(ByteBuffer.wrap(digest));
+        return entry != null ? entry.m_bodyId : -1;
+    }
+
+    /**
+     * Records a durably stored body.
+     *
+     * @param digest The content hash of the body.
+     * @param bodyId The spool identifier of the body.
+     */
+    synchronized void remember(byte[] digest, long bodyId){
+        long now = System.nanoTime();
+        purge(now);
+
+        ByteBuffer key = ByteBuffer.wrap(digest);
+        m_entries.remove(key);
+        m_entries.put(key, new Entry(bodyId, now + m_windowNanos));
+    }
+
+    /**
+     * Gets the number of bodies currently remembered.
+     *
+     * @return The entry count, including entries that have expired but not yet been purged.
+     */
+    synchronized int size(){
+        return m_entries.size();
+    }
+
+    /**
+     * Removes expired entries from the head of the map.
+     *
+     * @param now The current time in nanoseconds.
+     */
+    private void purge(long now){
+        Iterator<Entry> entries = m_entries.values().iterator();
+        while(entries.hasNext() && entries.next().m_expiresAt - now <= 0){
+            entries.remove();
+        }
+    }
+
+    /**
+     * A remembered body.
+     */
+    private static final class Entry {
+        private final long m_bodyId;
+        private final long m_expiresAt;
+
+        private Entry(long bodyId, long expiresAt){
+            m_bodyId = bodyId;
+            m_expiresAt = expiresAt;
+        }
+    }
+}
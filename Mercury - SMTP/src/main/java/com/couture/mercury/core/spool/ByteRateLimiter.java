@@ -0,0 +1,58 @@
+package com.couture.mercury.core.spool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a single background task to a byte rate.
+ * Permits accrue continuously up to one second's worth, so short bursts are allowed but the
+ * long-run rate never exceeds the budget.
+ */
+final class ByteRateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long m_bytesPerSecond;
+    private double m_available;
+    private long m_lastRefill;
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param bytesPerSecond The budget in bytes per second.
+     */
+    ByteRateLimiter(long bytesPerSecond){
+        m_bytesPerSecond = bytesPerSecond;
+        m_available = bytesPerSecond;
+        m_lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes permits for a number of bytes, sleeping until enough have accrued.
+     *
+     * @param bytes The number of bytes about to be read or written.
+     * @throws InterruptedException If interrupted while sleeping.
+     */
+    void acquire(long bytes) throws InterruptedException {
+        refill();
+        m_available -= bytes;
+
+        while(m_available < 0){
+            long waitNanos = (long) (-m_available * NANOS_PER_SECOND / m_bytesPerSecond);
+            LockSupport.parkNanos(this, Math.max(waitNanos, 1));
+            if(Thread.interrupted()){
+                throw new InterruptedException("Interrupted while waiting for compaction I/O budget");
+            }
+            refill();
+        }
+    }
+
+    /**
+     * Accrues permits for the time elapsed since the last refill.
+     */
+    private void refill(){
+        long now = System.nanoTime();
+        m_available = Math.min(m_bytesPerSecond,
+                m_available + (double) (now - m_lastRefill) * m_bytesPerSecond / NANOS_PER_SECOND);
+        m_lastRefill = now;
+    }
+}
@@ -0,0 +1,18 @@
+package com.couture.mercury.core.spool;
+
+import java.io.IOException;
+
+/**
+ * A file kept alongside the spool that reclaims its own dead records on every compaction pass,
+ * for example the delivery ledger. See {@link MessageSpool#addCompactionParticipant(CompactionParticipant)}.
+ */
+interface CompactionParticipant {
+    /**
+     * Reclaims records that are no longer needed.
+     *
+     * @param maxEntries The maximum number of records to examine.
+     * @return The number of records reclaimed.
+     * @throws IOException If the file cannot be read or rewritten.
+     */
+    long compact(int maxEntries) throws IOException;
+}
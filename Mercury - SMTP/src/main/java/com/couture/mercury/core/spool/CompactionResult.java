@@ -0,0 +1,105 @@
+package com.couture.mercury.core.spool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a single compaction pass.
+ */
+public final class CompactionResult {
+    private final int m_segmentsDeleted;
+    private final int m_segmentsRewritten;
+    private final long m_messagesRelocated;
+    private final long m_bytesCopied;
+    private final long m_bytesReclaimed;
+    private final long m_durationNanos;
+
+    /**
+     * Creates a compaction result.
+     *
+     * @param segmentsDeleted The number of segment files deleted.
+     * @param segmentsRewritten The number of segments whose live records were copied before deletion.
+     * @param messagesRelocated The number of live messages copied.
+     * @param bytesCopied The number of record bytes copied.
+     * @param bytesReclaimed The net disk space released.
+     * @param durationNanos The time taken by the pass.
+     */
+    CompactionResult(int segmentsDeleted, int segmentsRewritten, long messagesRelocated, long bytesCopied,
+                     long bytesReclaimed, long durationNanos){
+        m_segmentsDeleted = segmentsDeleted;
+        m_segmentsRewritten = segmentsRewritten;
+        m_messagesRelocated = messagesRelocated;
+        m_bytesCopied = bytesCopied;
+        m_bytesReclaimed = bytesReclaimed;
+        m_durationNanos = durationNanos;
+    }
+
+    /**
+     * Gets the number of segment files deleted.
+     *
+     * @return The segment count, including rewritten segments.
+     */
+    public int getSegmentsDeleted(){
+        return m_segmentsDeleted;
+    }
+
+    /**
+     * Gets the number of segments whose live records were copied before deletion.
+     *
+     * @return The segment count.
+     */
+    public int getSegmentsRewritten(){
+        return m_segmentsRewritten;
+    }
+
+    /**
+     * Gets the number of live messages copied.
+     *
+     * @return The message count.
+     */
+    public long getMessagesRelocated(){
+        return m_messagesRelocated;
+    }
+
+    /**
+     * Gets the number of record bytes copied.
+     *
+     * @return The byte count.
+     */
+    public long getBytesCopied(){
+        return m_bytesCopied;
+    }
+
+    /**
+     * Gets the net disk space released: deleted segment sizes minus the bytes copied.
+     *
+     * @return The byte count.
+     */
+    public long getBytesReclaimed(){
+        return m_bytesReclaimed;
+    }
+
+    /**
+     * Gets the time taken by the pass.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getDurationMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(m_durationNanos);
+    }
+
+    /**
+     * Gets the rate at which the pass reclaimed space.
+     *
+     * @return The throughput in bytes per second, or 0 if nothing was reclaimed.
+     */
+    public double getThroughputBytesPerSecond(){
+        return m_durationNanos > 0 ? m_bytesReclaimed * (double) TimeUnit.SECONDS.toNanos(1) / m_durationNanos : 0;
+    }
+
+    @Override
+    public String toString(){
+        return "CompactionResult{" + "segmentsDeleted=" + m_segmentsDeleted + ", segmentsRewritten=" + m_segmentsRewritten
+                + ", messagesRelocated=" + m_messagesRelocated + ", bytesCopied=" + m_bytesCopied
+                + ", bytesReclaimed=" + m_bytesReclaimed + ", durationMillis=" + getDurationMillis() + '}';
+    }
+}
@@ -0,0 +1,337 @@
+package com.couture.mercury.core.spool;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Memory-mapped ledger of per-recipient delivery records.
+ *
+ * <p>Record identifiers are assigned sequentially from 1 and each record is a fixed slot:</p>
+ * <pre>
+ *   header   int magic, int version, long nextRecordId, long lowWatermark, long baseRecordId
+ *   record   long bodyId, long envelopeId, int recipientIndex, int attempts, byte state, 7 bytes padding
+ * </pre>
+ *
+ * <p>The record of identifier {@code id} lives in slot {@code id - baseRecordId}. The low watermark
+ * is the lowest identifier that may still await delivery; scans start there, so they cost the
+ * undelivered backlog rather than every record ever written. {@link #compact(int)} advances the
+ * watermark and, once a large enough prefix of final records has built up below it, rewrites the
+ * ledger without them. Headers written before these fields existed read as zero, meaning both
+ * start at 1.</p>
+ *
+ * <p>The ledger takes part in the spool's fsync (see {@link MessageSpool#addSyncParticipant}),
+ * so the records of a transaction are durable when its envelope is. This class is thread-safe.</p>
+ */
+final class DeliveryLedger implements Flushable, Closeable, CompactionParticipant {
+    /**
+     * Name of the ledger file in the spool directory.
+     */
+    static final String FILE_NAME = "delivery.ldg";
+
+    private static final String COMPACTION_SUFFIX = ".compact";
+    private static final int LEDGER_MAGIC = 0x4D4C4447;
+    private static final int LEDGER_VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int RECORD_SIZE = 32;
+
+    private static final int HEADER_NEXT_ID = 8;
+    private static final int HEADER_LOW_WATERMARK = 16;
+    private static final int HEADER_BASE_ID = 24;
+
+    private static final int RECORD_BODY_ID = 0;
+    private static final int RECORD_ENVELOPE_ID = 8;
+    private static final int RECORD_RECIPIENT_INDEX = 16;
+    private static final int RECORD_ATTEMPTS = 20;
+    private static final int RECORD_STATE = 24;
+
+    private final Path m_path;
+    // First identifiers of ranges allocated but not yet filled or abandoned; the watermark stops at the lowest.
+    private final TreeSet<Long> m_unfilled = new TreeSet<>();
+    private MappedSlotFile m_file;
+    private MappedByteBuffer m_header;
+    private long m_nextRecordId;
+    private long m_baseRecordId;
+
+    /**
+     * Opens or creates the ledger in a spool directory.
+     *
+     * @param directory The spool directory.
+     * @throws IOException If the ledger cannot be opened or is not a delivery ledger.
+     */
+    DeliveryLedger(Path directory) throws IOException {
+        m_path = directory.resolve(FILE_NAME);
+        Files.deleteIfExists(m_path.resolveSibling(FILE_NAME + COMPACTION_SUFFIX));
+        m_file = new MappedSlotFile(m_path, HEADER_SIZE, RECORD_SIZE);
+        m_header = m_file.header();
+
+        if(m_file.isCreated()){
+            m_header.putInt(0, LEDGER_MAGIC);
+            m_header.putInt(4, LEDGER_VERSION);
+            m_header.putLong(HEADER_NEXT_ID, 1);
+        }
+        else if(m_header.getInt(0) != LEDGER_MAGIC || m_header.getInt(4) != LEDGER_VERSION){
+            m_file.close();
+            throw new SpoolException("Not a supported delivery ledger: " + m_file.getPath());
+        }
+
+        m_nextRecordId = m_header.getLong(HEADER_NEXT_ID);
+        m_baseRecordId = Math.max(1, m_header.getLong(HEADER_BASE_ID));
+    }
+
+    /**
+     * Reserves a contiguous range of record identifiers. The range holds back the low watermark
+     * until it is filled or abandoned.
+     *
+     * @param count The number of records.
+     * @return The first identifier of the range.
+     */
+    synchronized long allocate(int count){
+        long first = m_nextRecordId;
+        m_nextRecordId += count;
+        m_header.putLong(HEADER_NEXT_ID, m_nextRecordId);
+        m_unfilled.add(first);
+        return first;
+    }
+
+    /**
+     * Writes pending records for every recipient of an envelope.
+     *
+     * @param firstRecordId The first identifier of the reserved range.
+     * @param count The number of recipients.
+     * @param bodyId The spool identifier of the body.
+     * @param envelopeId The spool identifier of the envelope.
+     * @throws IOException If the ledger cannot be extended.
+     */
+    synchronized void fill(long firstRecordId, int count, long bodyId, long envelopeId) throws IOException {
+        for(int i = 0; i < count; i++){
+            long slot = firstRecordId + i - m_baseRecordId;
+            MappedByteBuffer chunk = m_file.chunkFor(slot, true);
+            int position = m_file.slotPosition(slot);
+            chunk.putLong(position + RECORD_BODY_ID, bodyId);
+            chunk.putLong(position + RECORD_ENVELOPE_ID, envelopeId);
+            chunk.putInt(position + RECORD_RECIPIENT_INDEX, i);
+            chunk.putInt(position + RECORD_ATTEMPTS, 0);
+            chunk.put(position + RECORD_STATE, (byte) DeliveryState.PENDING.getCode());
+            m_file.markDirty(slot);
+        }
+        m_unfilled.remove(firstRecordId);
+    }
+
+    /**
+     * Gives up a reserved range whose envelope was never written. Its slots stay empty and no
+     * longer hold back the low watermark. Does nothing if the range was filled.
+     *
+     * @param firstRecordId The first identifier of the reserved range.
+     */
+    synchronized void abandon(long firstRecordId){
+        m_unfilled.remove(firstRecordId);
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @param recordId The record identifier.
+     * @return The record, or null if it does not exist or was reclaimed by compaction.
+     * @throws IOException If the ledger cannot be read.
+     */
+    synchronized DeliveryRecord get(long recordId) throws IOException {
+        if(recordId < m_baseRecordId || recordId >= m_nextRecordId){
+            return null;
+        }
+
+        long slot = recordId - m_baseRecordId;
+        MappedByteBuffer chunk = m_file.chunkFor(slot, false);
+        if(chunk == null){
+            return null;
+        }
+
+        int position = m_file.slotPosition(slot);
+        DeliveryState state = DeliveryState.fromCode(chunk.get(position + RECORD_STATE));
+        if(state == null){
+            return null;
+        }
+
+        return new DeliveryRecord(recordId, chunk.getLong(position + RECORD_ENVELOPE_ID), chunk.getLong(position + RECORD_BODY_ID),
+                chunk.getInt(position + RECORD_RECIPIENT_INDEX), state, chunk.getInt(position + RECORD_ATTEMPTS));
+    }
+
+    /**
+     * Records the outcome of a delivery attempt.
+     * Records in a final state are left untouched.
+     *
+     * @param recordId The record identifier.
+     * @param state The new state.
+     * @return The previous record, or null if it does not exist.
+     * @throws IOException If the ledger cannot be read.
+     */
+    synchronized DeliveryRecord update(long recordId, DeliveryState state) throws IOException {
+        DeliveryRecord previous = get(recordId);
+        if(previous != null && !previous.getState().isFinal()){
+            long slot = recordId - m_baseRecordId;
+            MappedByteBuffer chunk = m_file.chunkFor(slot, false);
+            int position = m_file.slotPosition(slot);
+            chunk.put(position + RECORD_STATE, (byte) state.getCode());
+            if(state != DeliveryState.PENDING){
+                chunk.putInt(position + RECORD_ATTEMPTS, previous.getAttempts() + 1);
+            }
+            m_file.markDirty(slot);
+        }
+        return previous;
+    }
+
+    /**
+     * Visits every record that still awaits delivery, from the low watermark onwards.
+     *
+     * @param action The action to run for each pending or deferred record.
+     * @throws IOException If the ledger cannot be read.
+     */
+    synchronized void forEachUndelivered(Consumer<DeliveryRecord> action) throws IOException {
+        for(long id = getLowWatermark(); id < m_nextRecordId; id++){
+            DeliveryRecord record = get(id);
+            if(record != null && !record.getState().isFinal()){
+                action.accept(record);
+            }
+        }
+    }
+
+    /**
+     * Advances the low watermark past records that are final or empty, stopping at the first
+     * record that awaits delivery or belongs to a range still being filled.
+     *
+     * @param maxEntries The maximum number of records to examine.
+     * @return The new low watermark.
+     * @throws IOException If the ledger cannot be read.
+     */
+    synchronized long advanceLowWatermark(int maxEntries) throws IOException {
+        long watermark = getLowWatermark();
+        long limit = Math.min(m_nextRecordId, watermark + maxEntries);
+        if(!m_unfilled.isEmpty()){
+            limit = Math.min(limit, m_unfilled.first());
+        }
+
+        while(watermark < limit){
+            DeliveryRecord record = get(watermark);
+            if(record != null && !record.getState().isFinal()){
+                break;
+            }
+            watermark++;
+        }
+
+        m_header.putLong(HEADER_LOW_WATERMARK, watermark);
+        return watermark;
+    }
+
+    /**
+     * Gets the low watermark: the lowest record identifier that may still await delivery.
+     *
+     * @return The low watermark.
+     */
+    synchronized long getLowWatermark(){
+        return Math.max(m_baseRecordId, m_header.getLong(HEADER_LOW_WATERMARK));
+    }
+
+    /**
+     * Advances the low watermark, then rewrites the ledger without the records below it once they
+     * fill at least one mapped chunk and outnumber the records that would be copied. The records
+     * from the watermark on are copied to a new file that is forced and renamed over the ledger,
+     * so a crash leaves either the old or the new ledger in place. The spool directory is forced
+     * after the rename, so the old ledger cannot come back once records are written to the new one.
+     *
+     * @param maxEntries The maximum number of records to examine when advancing the watermark.
+     * @return The number of records reclaimed.
+     * @throws IOException If the ledger cannot be read or rewritten.
+     */
+    @Override
+    public synchronized long compact(int maxEntries) throws IOException {
+        long watermark = advanceLowWatermark(maxEntries);
+        long reclaimable = watermark - m_baseRecordId;
+        if(reclaimable < MappedSlotFile.CHUNK_SLOTS || reclaimable < m_nextRecordId - watermark){
+            return 0;
+        }
+
+        Path compacted = m_path.resolveSibling(FILE_NAME + COMPACTION_SUFFIX);
+        Files.deleteIfExists(compacted);
+        MappedSlotFile target = new MappedSlotFile(compacted, HEADER_SIZE, RECORD_SIZE);
+        try{
+            for(long id = watermark; id < m_nextRecordId; id++){
+                MappedByteBuffer from = m_file.chunkFor(id - m_baseRecordId, false);
+                if(from == null){
+                    // The rest of the range was allocated but never filled.
+                    break;
+                }
+
+                long slot = id - watermark;
+                target.chunkFor(slot, true).put(target.slotPosition(slot), from, m_file.slotPosition(id - m_baseRecordId), RECORD_SIZE);
+                target.markDirty(slot);
+            }
+
+            MappedByteBuffer header = target.header();
+            header.putInt(0, LEDGER_MAGIC);
+            header.putInt(4, LEDGER_VERSION);
+            header.putLong(HEADER_NEXT_ID, m_nextRecordId);
+            header.putLong(HEADER_LOW_WATERMARK, watermark);
+            header.putLong(HEADER_BASE_ID, watermark);
+            target.close();
+        }
+        catch(IOException | RuntimeException e){
+            target.close();
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+
+        Files.move(compacted, m_path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(m_path.getParent());
+        m_file.close();
+        m_file = new MappedSlotFile(m_path, HEADER_SIZE, RECORD_SIZE);
+        m_header = m_file.header();
+        m_baseRecordId = watermark;
+        return reclaimable;
+    }
+
+    /**
+     * Gets the identifier of the record in the first slot of the file.
+     *
+     * @return The base record identifier; records below it have been reclaimed.
+     */
+    synchronized long getBaseRecordId(){
+        return m_baseRecordId;
+    }
+
+    /**
+     * Forces records written since the last flush, then the header.
+     */
+    @Override
+    public synchronized void flush(){
+        m_file.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        m_file.close();
+    }
+
+    /**
+     * Forces a directory, making a rename in it durable.
+     *
+     * @param directory The directory.
+     * @throws IOException If the directory cannot be forced.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+            channel.force(true);
+        }
+        catch(AccessDeniedException e){
+            // Windows cannot open directories; its filesystems journal renames themselves.
+        }
+    }
+}
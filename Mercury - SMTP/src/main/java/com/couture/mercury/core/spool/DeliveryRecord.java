@@ -0,0 +1,93 @@
+package com.couture.mercury.core.spool;
+
+/**
+ * Snapshot of the delivery state of one recipient.
+ * A record points at its envelope, which names the recipient, and at the shared body.
+ */
+public final class DeliveryRecord {
+    private final long m_recordId;
+    private final long m_envelopeId;
+    private final long m_bodyId;
+    private final int m_recipientIndex;
+    private final DeliveryState m_state;
+    private final int m_attempts;
+
+    /**
+     * Creates a delivery record snapshot.
+     *
+     * @param recordId The record identifier.
+     * @param envelopeId The spool identifier of the envelope.
+     * @param bodyId The spool identifier of the body.
+     * @param recipientIndex The index of the recipient in the envelope.
+     * @param state The delivery state.
+     * @param attempts The number of delivery attempts made.
+     */
+    public DeliveryRecord(long recordId, long envelopeId, long bodyId, int recipientIndex, DeliveryState state, int attempts){
+        m_recordId = recordId;
+        m_envelopeId = envelopeId;
+        m_bodyId = bodyId;
+        m_recipientIndex = recipientIndex;
+        m_state = state;
+        m_attempts = attempts;
+    }
+
+    /**
+     * Gets the record identifier.
+     *
+     * @return The record identifier.
+     */
+    public long getRecordId(){
+        return m_recordId;
+    }
+
+    /**
+     * Gets the spool identifier of the envelope naming the recipient.
+     *
+     * @return The envelope identifier.
+     */
+    public long getEnvelopeId(){
+        return m_envelopeId;
+    }
+
+    /**
+     * Gets the spool identifier of the shared body.
+     *
+     * @return The body identifier.
+     */
+    public long getBodyId(){
+        return m_bodyId;
+    }
+
+    /**
+     * Gets the index of the recipient in {@link StoredEnvelope#getRecipients()}.
+     *
+     * @return The recipient index.
+     */
+    public int getRecipientIndex(){
+        return m_recipientIndex;
+    }
+
+    /**
+     * Gets the delivery state.
+     *
+     * @return The state.
+     */
+    public DeliveryState getState(){
+        return m_state;
+    }
+
+    /**
+     * Gets the number of delivery attempts made.
+     *
+     * @return The attempt count.
+     */
+    public int getAttempts(){
+        return m_attempts;
+    }
+
+    @Override
+    public String toString(){
+        return "DeliveryRecord{" + "recordId=" + m_recordId + ", envelopeId=" + m_envelopeId + ", bodyId=" + m_bodyId
+                + ", recipientIndex=" + m_recipientIndex + ", state=" + m_state + ", attempts=" + m_attempts + '}';
+    }
+}
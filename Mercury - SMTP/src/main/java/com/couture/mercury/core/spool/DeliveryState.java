@@ -0,0 +1,70 @@
+package com.couture.mercury.core.spool;
+
+/**
+ * Delivery state of a single recipient of a stored message.
+ */
+public enum DeliveryState {
+    PENDING(1, "Awaiting a delivery attempt"),
+    DEFERRED(2, "Temporarily failed, will be retried"),
+    DELIVERED(3, "Accepted by the destination"),
+    FAILED(4, "Permanently failed");
+
+    private static final DeliveryState[] BY_CODE = new DeliveryState[5];
+
+    static {
+        for(DeliveryState state : values()){
+            BY_CODE[state.m_code] = state;
+        }
+    }
+
+    private final int m_code;
+    private final String m_description;
+
+    /**
+     * Constructs a delivery state.
+     *
+     * @param code The code stored in the delivery ledger. Must never change once written to disk.
+     * @param description Human-readable description of the state.
+     */
+    DeliveryState(int code, String description){
+        m_code = code;
+        m_description = description;
+    }
+
+    /**
+     * Looks up a state by its ledger code.
+     *
+     * @param code The stored code.
+     * @return The state, or null if the code is unknown (for example an unused ledger slot).
+     */
+    static DeliveryState fromCode(int code){
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Gets the code stored in the delivery ledger.
+     *
+     * @return The state code.
+     */
+    int getCode(){
+        return m_code;
+    }
+
+    /**
+     * Checks if no further delivery attempts will be made.
+     *
+     * @return True for delivered and permanently failed recipients.
+     */
+    public boolean isFinal(){
+        return this == DELIVERED || this == FAILED;
+    }
+
+    /**
+     * Retrieves the description of the state.
+     *
+     * @return State description.
+     */
+    public String getDescription(){
+        return m_description;
+    }
+}
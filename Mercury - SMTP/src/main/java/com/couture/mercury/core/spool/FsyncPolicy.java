@@ -0,0 +1,45 @@
+package com.couture.mercury.core.spool;
+
+/**
+ * Durability policies for spool writes, chosen per listener.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every message is forced to disk by the writing thread before it is acknowledged.
+     * Simplest and strictest, but caps the message rate at the IOPS of the disk.
+     */
+    PER_MESSAGE("Force each message before acknowledging it"),
+
+    /**
+     * Messages are acknowledged once a shared group commit has forced them to disk.
+     * One fsync covers every message written during the commit window, so concurrent
+     * sessions share its cost while keeping the "250 only after fsync" guarantee.
+     */
+    GROUP_WINDOW("Acknowledge after the next group commit"),
+
+    /**
+     * Messages are acknowledged as soon as they are written and forced by a later group commit.
+     * A crash can lose acknowledged messages; only suitable for listeners that accept that risk.
+     */
+    ASYNC("Acknowledge before the data is forced");
+
+    private final String m_description;
+
+    /**
+     * Constructs an fsync policy with a description.
+     *
+     * @param description Human-readable description of the policy.
+     */
+    FsyncPolicy(String description){
+        m_description = description;
+    }
+
+    /**
+     * Retrieves the description of the policy.
+     *
+     * @return Policy description.
+     */
+    public String getDescription(){
+        return m_description;
+    }
+}
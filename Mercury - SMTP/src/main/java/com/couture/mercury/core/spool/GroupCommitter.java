@@ -0,0 +1,293 @@
+package com.couture.mercury.core.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background thread that batches fsync calls across concurrent writers.
+ *
+ * <p>The first message to arrive opens a commit window. Every message written before the window
+ * closes, or before the group reaches its maximum size, is made durable by a single force of the
+ * spool's dirty segments, after which all of their futures are completed together.</p>
+ *
+ * <p>Checkpoints requested by the spool are also written from this thread, so they never
+ * stall the writers that triggered them.</p>
+ */
+final class GroupCommitter implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final MessageSpool m_spool;
+    private final long m_windowNanos;
+    private final int m_maxGroupSize;
+    private final ReentrantLock m_lock = new ReentrantLock();
+    private final Condition m_wakeUp = m_lock.newCondition();
+    private final Thread m_thread;
+    private final AtomicLong m_commitCount = new AtomicLong();
+    private final AtomicLong m_committedMessages = new AtomicLong();
+
+    private List<PendingCommit> m_pending = new ArrayList<>();
+    private List<PendingCommit> m_committing = new ArrayList<>();
+    private boolean m_flushRequested;
+    private boolean m_checkpointRequested;
+    private long m_windowStart;
+    private boolean m_running = true;
+
+    /**
+     * Creates and starts a group committer.
+     *
+     * @param spool The spool whose dirty segments are forced.
+     * @param windowMicros The commit window in microseconds.
+     * @param maxGroupSize The group size that triggers an immediate commit.
+     */
+    GroupCommitter(MessageSpool spool, long windowMicros, int maxGroupSize){
+        m_spool = spool;
+        m_windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        m_maxGroupSize = maxGroupSize;
+        m_thread = new Thread(this, "spool-group-commit");
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    /**
+     * Adds a message to the next group commit.
+     *
+     * @param messageId The message identifier, used to complete the future.
+     * @param future The future completed once the message is durable.
+     */
+    void enqueue(long messageId, CompletableFuture<Long> future){
+        m_lock.lock();
+        try{
+            if(!m_running){
+                future.completeExceptionally(new SpoolException("Spool is closed"));
+                return;
+            }
+
+            openWindow();
+            m_pending.add(new PendingCommit(messageId, future));
+            if(m_pending.size() >= m_maxGroupSize){
+                m_wakeUp.signal();
+            }
+        }
+        finally{
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Requests a force in the next commit without waiting for it, for asynchronous writes.
+     */
+    void requestFlush(){
+        m_lock.lock();
+        try{
+            if(m_running){
+                openWindow();
+                m_flushRequested = true;
+            }
+        }
+        finally{
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Requests a checkpoint after the next commit.
+     */
+    void requestCheckpoint(){
+        m_lock.lock();
+        try{
+            if(m_running){
+                openWindow();
+                m_checkpointRequested = true;
+            }
+        }
+        finally{
+            m_lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of forces performed.
+     *
+     * @return The commit count.
+     */
+    long getCommitCount(){
+        return m_commitCount.get();
+    }
+
+    /**
+     * Gets the number of messages acknowledged through group commits.
+     *
+     * @return The committed message count.
+     */
+    long getCommittedMessageCount(){
+        return m_committedMessages.get();
+    }
+
+    /**
+     * Stops the committer after committing everything still pending.
+     *
+     * @throws InterruptedException If interrupted while waiting for the thread to finish.
+     */
+    void shutdown() throws InterruptedException {
+        m_lock.lock();
+        try{
+            m_running = false;
+            m_wakeUp.signal();
+        }
+        finally{
+            m_lock.unlock();
+        }
+
+        m_thread.join();
+    }
+
+    @Override
+    public void run(){
+        while(true){
+            List<PendingCommit> group;
+            boolean checkpoint;
+
+            m_lock.lock();
+            try{
+                if(!awaitGroup()){
+                    return;
+                }
+
+                group = m_pending;
+                m_pending = m_committing;
+                m_committing = group;
+                m_flushRequested = false;
+                checkpoint = m_checkpointRequested;
+                m_checkpointRequested = false;
+            }
+            finally{
+                m_lock.unlock();
+            }
+
+            if(checkpoint){
+                checkpoint(group);
+            }
+            else{
+                commit(group);
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Waits until a group is ready: the window has elapsed, the group is full, or the committer is stopping.
+     * Must be called while holding the lock.
+     *
+     * @return True if there is a group to commit, false if the committer has stopped and nothing is pending.
+     */
+    private boolean awaitGroup(){
+        while(m_running && !hasWork()){
+            m_wakeUp.awaitUninterruptibly();
+        }
+
+        while(m_running && m_pending.size() < m_maxGroupSize){
+            long remaining = m_windowStart + m_windowNanos - System.nanoTime();
+            if(remaining <= 0){
+                break;
+            }
+
+            try{
+                m_wakeUp.awaitNanos(remaining);
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return hasWork();
+    }
+
+    /**
+     * Forces the spool and completes the futures of a group.
+     *
+     * @param group The group to commit.
+     */
+    private void commit(List<PendingCommit> group){
+        try{
+            m_spool.syncDirtySegments();
+            m_commitCount.incrementAndGet();
+            m_committedMessages.addAndGet(group.size());
+
+            for(PendingCommit pending : group){
+                pending.m_future.complete(pending.m_messageId);
+            }
+        }
+        catch(IOException | RuntimeException e){
+            LOGGER.error("Group commit of {} messages failed", group.size(), e);
+            SpoolException failure = new SpoolException("Group commit failed", e);
+            for(PendingCommit pending : group){
+                pending.m_future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint, then completes the futures of the group it made durable.
+     *
+     * @param group The group covered by the checkpoint.
+     */
+    private void checkpoint(List<PendingCommit> group){
+        try{
+            m_spool.checkpoint();
+        }
+        catch(IOException | RuntimeException e){
+            LOGGER.error("Spool checkpoint failed", e);
+        }
+
+        commit(group);
+    }
+
+    /**
+     * Starts the commit window if this is the first request since the last commit.
+     * Must be called while holding the lock.
+     */
+    private void openWindow(){
+        if(!hasWork()){
+            m_windowStart = System.nanoTime();
+            m_wakeUp.signal();
+        }
+    }
+
+    /**
+     * Checks if there is anything to commit. Must be called while holding the lock.
+     *
+     * @return True if messages or a flush are pending.
+     */
+    private boolean hasWork(){
+        return !m_pending.isEmpty() || m_flushRequested || m_checkpointRequested;
+    }
+
+    /**
+     * A message waiting for the next group commit.
+     */
+    private static final class PendingCommit {
+        private final long m_messageId;
+        private final CompletableFuture<Long> m_future;
+
+        /**
+         * Creates a pending commit.
+         *
+         * @param messageId The message identifier.
+         * @param future The future to complete.
+         */
+        PendingCommit(long messageId, CompletableFuture<Long> future){
+            m_messageId = messageId;
+            m_future = future;
+        }
+    }
+}
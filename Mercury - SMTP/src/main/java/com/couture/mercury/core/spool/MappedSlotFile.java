@@ -0,0 +1,156 @@
+package com.couture.mercury.core.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A file of fixed-size slots behind a header page, memory-mapped in chunks that are added as the
+ * file grows. Slots are addressed by a zero-based number, so lookups need no in-memory map.
+ * Chunks written since the last force are tracked so a force only touches dirty regions.
+ *
+ * <p>This class is not thread-safe; owners synchronise access.</p>
+ */
+final class MappedSlotFile implements Closeable {
+    // 32768 slots per chunk.
+    private static final int CHUNK_SHIFT = 15;
+
+    /**
+     * Number of slots mapped together; the file grows by this many slots at a time.
+     */
+    static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+
+    private final Path m_path;
+    private final FileChannel m_channel;
+    private final MappedByteBuffer m_header;
+    private final int m_headerSize;
+    private final int m_slotSize;
+    private final long m_chunkBytes;
+    private final boolean m_created;
+    private final List<MappedByteBuffer> m_chunks = new ArrayList<>();
+    private final BitSet m_dirtyChunks = new BitSet();
+
+    /**
+     * Opens or creates a slot file.
+     *
+     * @param path The file.
+     * @param headerSize The size of the header page.
+     * @param slotSize The size of a slot.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    MappedSlotFile(Path path, int headerSize, int slotSize) throws IOException {
+        m_path = path;
+        m_headerSize = headerSize;
+        m_slotSize = slotSize;
+        m_chunkBytes = (long) CHUNK_SLOTS * slotSize;
+        m_channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try{
+            m_created = m_channel.size() == 0;
+            m_header = m_channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+        }
+        catch(IOException e){
+            m_channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the file was created by this instance.
+     *
+     * @return True if the file was empty when opened.
+     */
+    boolean isCreated(){
+        return m_created;
+    }
+
+    /**
+     * Gets the file.
+     *
+     * @return The path.
+     */
+    Path getPath(){
+        return m_path;
+    }
+
+    /**
+     * Gets the mapped header page.
+     *
+     * @return The header.
+     */
+    MappedByteBuffer header(){
+        return m_header;
+    }
+
+    /**
+     * Gets the chunk holding a slot, mapping it if needed.
+     *
+     * @param slot The zero-based slot number.
+     * @param create If true, the file is extended to map a chunk that does not exist yet.
+     * @return The chunk, or null if it does not exist and create is false.
+     * @throws IOException If the chunk cannot be mapped.
+     */
+    MappedByteBuffer chunkFor(long slot, boolean create) throws IOException {
+        int chunkIndex = (int) (slot >>> CHUNK_SHIFT);
+
+        while(m_chunks.size() <= chunkIndex){
+            long start = m_headerSize + m_chunks.size() * m_chunkBytes;
+            if(!create && m_channel.size() < start + m_chunkBytes){
+                return null;
+            }
+            m_chunks.add(m_channel.map(FileChannel.MapMode.READ_WRITE, start, m_chunkBytes));
+        }
+
+        return m_chunks.get(chunkIndex);
+    }
+
+    /**
+     * Gets the position of a slot within its chunk.
+     *
+     * @param slot The zero-based slot number.
+     * @return The position in bytes.
+     */
+    int slotPosition(long slot){
+        return (int) (slot & (CHUNK_SLOTS - 1)) * m_slotSize;
+    }
+
+    /**
+     * Records that a slot has been written since the last force.
+     *
+     * @param slot The zero-based slot number.
+     */
+    void markDirty(long slot){
+        m_dirtyChunks.set((int) (slot >>> CHUNK_SHIFT));
+    }
+
+    /**
+     * Forces the chunks written since the last force.
+     */
+    void forceSlots(){
+        for(int i = m_dirtyChunks.nextSetBit(0); i >= 0; i = m_dirtyChunks.nextSetBit(i + 1)){
+            m_chunks.get(i).force();
+        }
+        m_dirtyChunks.clear();
+    }
+
+    /**
+     * Forces the dirty chunks, then the header.
+     */
+    void force(){
+        forceSlots();
+        m_header.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        m_chunks.clear();
+        m_channel.close();
+    }
+}
@@ -0,0 +1,857 @@
+package com.couture.mercury.core.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Durable store for messages accepted after DATA.
+ *
+ * <p>Message bodies are appended to fixed-size, append-only segment files, and a memory-mapped
+ * {@link SpoolIndex} maps each message identifier to its segment, offset, length and state.
+ * Durability follows the {@link FsyncPolicy} of the writer: messages written under
+ * {@link FsyncPolicy#GROUP_WINDOW} share a single fsync with every other message written during
+ * the same commit window, which is what lets the spool accept messages faster than the disk
+ * can complete individual fsync calls.</p>
+ *
+ * <p>Checkpoints record a position before which every record is durable and indexed. They are
+ * written periodically, on close and after recovery, so that opening the spool after a crash
+ * only replays the segment tail written since the last checkpoint (see {@link RecoveryReport}).</p>
+ *
+ * <p>When {@link SpoolConfig#isCompressionEnabled() compression} is on, bodies at or above the
+ * threshold are stored block compressed (see {@link BlockCompressor}). This is transparent to
+ * readers: {@link #read(long)} and {@link #transferTo} return the original bytes, and
+ * {@link #read(long, long, int)} inflates only the blocks covering the requested range.</p>
+ *
+ * <p>Each listener should obtain its own {@link SpoolWriter} through {@link #writer(FsyncPolicy)}.
+ * This class is thread-safe.</p>
+ */
+public final class MessageSpool implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageSpool.class);
+
+    private final SpoolConfig m_config;
+    private final SpoolIndex m_index;
+    private final Map<Integer, SpoolSegment> m_segments = new ConcurrentHashMap<>();
+    private final ReentrantLock m_appendLock = new ReentrantLock();
+    // Sealed segments that may still hold unforced records, guarded by the append lock.
+    private final List<SpoolSegment> m_unsynced = new ArrayList<>();
+    // Side files made durable together with the segments, such as the delivery ledger.
+    private final List<Flushable> m_syncParticipants = new CopyOnWriteArrayList<>();
+    private final List<CompactionParticipant> m_compactionParticipants = new CopyOnWriteArrayList<>();
+    private final GroupCommitter m_committer;
+    private final BlockCompressor m_compressor;
+    private final RecoveryReport m_recoveryReport;
+    private volatile SpoolSegment m_active;
+    // Messages appended since the last checkpoint request, guarded by the append lock.
+    private int m_sinceCheckpoint;
+    private volatile boolean m_closed;
+
+    /**
+     * Opens a spool.
+     *
+     * @param config The spool configuration.
+     * @param index The opened index.
+     * @param active The segment new messages are appended to.
+     * @param recoveryReport The report of the recovery performed on open.
+     */
+    private MessageSpool(SpoolConfig config, SpoolIndex index, SpoolSegment active, RecoveryReport recoveryReport){
+        m_config = config;
+        m_index = index;
+        m_active = active;
+        m_recoveryReport = recoveryReport;
+        m_committer = new GroupCommitter(this, config.getGroupCommitWindowMicros(), config.getMaxGroupSize());
+        m_compressor = config.isCompressionEnabled()
+                ? new BlockCompressor(config.getCompressionLevel(), config.getCompressionBlockSize()) : null;
+    }
+
+    /**
+     * Opens the spool in the configured directory, creating it if needed.
+     * The index is recovered from the last checkpoint and the segment tail written since then;
+     * partially written records at the end of a segment are truncated.
+     *
+     * @param config The spool configuration.
+     * @return The open spool.
+     * @throws IOException If the spool files cannot be opened.
+     */
+    public static MessageSpool open(SpoolConfig config) throws IOException {
+        Objects.requireNonNull(config, "Spool configuration cannot be null");
+        Path directory = Files.createDirectories(config.getDirectory());
+
+        TreeSet<Integer> segmentIds = new TreeSet<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)){
+            for(Path file : files){
+                int id = SpoolSegment.parseId(file.getFileName().toString());
+                if(id >= 0){
+                    segmentIds.add(id);
+                }
+            }
+        }
+
+        SpoolIndex index = new SpoolIndex(directory);
+        List<SpoolSegment> segments = new ArrayList<>();
+        RecoveryReport report;
+        try{
+            for(int id : segmentIds){
+                segments.add(SpoolSegment.open(directory, id, config.getSegmentSize()));
+            }
+            if(segments.isEmpty()){
+                segments.add(SpoolSegment.create(directory, 1, config.getSegmentSize()));
+            }
+            report = SpoolRecovery.recover(index, segments, config.getSegmentSize());
+        }
+        catch(IOException e){
+            for(SpoolSegment segment : segments){
+                segment.close();
+            }
+            index.close();
+            throw e;
+        }
+
+        MessageSpool spool = new MessageSpool(config, index, segments.get(segments.size() - 1), report);
+        for(SpoolSegment segment : segments){
+            spool.m_segments.put(segment.getId(), segment);
+        }
+        spool.loadLiveBytes(segments);
+
+        if(report.getBytesTruncated() > 0){
+            LOGGER.warn("Truncated {} bytes of partially written messages in {}", report.getBytesTruncated(), directory);
+        }
+        LOGGER.info("Opened spool in {} with {} segments, next message id {}: {}",
+                directory, segments.size(), index.getNextMessageId(), report);
+
+        // Start the next crash recovery from here rather than from the previous checkpoint.
+        spool.checkpoint();
+        return spool;
+    }
+
+    /**
+     * Creates a writer bound to a listener's fsync policy.
+     *
+     * @param fsyncPolicy The fsync policy.
+     * @return The writer.
+     */
+    public SpoolWriter writer(FsyncPolicy fsyncPolicy){
+        return new SpoolWriter(this, Objects.requireNonNull(fsyncPolicy, "Fsync policy cannot be null"));
+    }
+
+    /**
+     * Creates a writer using the configured default fsync policy.
+     *
+     * @return The writer.
+     */
+    public SpoolWriter writer(){
+        return writer(m_config.getFsyncPolicy());
+    }
+
+    /**
+     * Appends a message to the active segment and records it in the index as QUEUED.
+     *
+     * @param parts The message, as one or more buffers written with a single gathering write.
+     * @param fsyncPolicy The durability policy of the write.
+     * @return A future completed with the message identifier once the message is durable under the policy.
+     */
+    CompletableFuture<Long> append(ByteBuffer[] parts, FsyncPolicy fsyncPolicy){
+        return append(parts, fsyncPolicy, null);
+    }
+
+    /**
+     * Appends a message and runs a hook once its identifier is known, before the write is acknowledged.
+     * The hook runs under the append lock, so anything it writes to a sync participant is forced
+     * by the same fsync as the message. If the hook throws or the message cannot be forced, the
+     * message is marked delivered so its record does not stay queued without an owner.
+     *
+     * @param parts The message, as one or more buffers written with a single gathering write.
+     * @param fsyncPolicy The durability policy of the write.
+     * @param onWritten Hook receiving the message identifier, or null.
+     * @return A future completed with the message identifier once the message is durable under the policy.
+     */
+    CompletableFuture<Long> append(ByteBuffer[] parts, FsyncPolicy fsyncPolicy, LongConsumer onWritten){
+        if(m_closed){
+            return CompletableFuture.failedFuture(new SpoolException("Spool is closed"));
+        }
+
+        long length = 0;
+        for(ByteBuffer part : parts){
+            length += part.remaining();
+        }
+
+        // Compression is CPU work, so it happens before taking the append lock.
+        boolean compressed = false;
+        if(m_compressor != null && length >= m_config.getCompressionThreshold()){
+            ByteBuffer[] container = m_compressor.compress(parts, length);
+            if(container != null){
+                parts = container;
+                length = container[0].remaining() + container[1].remaining();
+                compressed = true;
+            }
+        }
+
+        if(SpoolSegment.recordSize(length) > m_config.getSegmentSize()){
+            return CompletableFuture.failedFuture(new SpoolException(
+                    "Message of " + length + " bytes does not fit in a spool segment"));
+        }
+
+        long messageId = 0;
+        SpoolSegment segment;
+
+        m_appendLock.lock();
+        try{
+            segment = m_active;
+            if(!segment.hasRoom(length)){
+                segment = rollSegment();
+            }
+
+            messageId = m_index.allocateId();
+            long offset = segment.append(messageId, parts, compressed);
+            m_index.put(messageId, segment.getId(), offset, (int) length, MessageState.QUEUED, compressed);
+            segment.addLiveBytes(SpoolSegment.recordSize(length));
+            if(onWritten != null){
+                onWritten.accept(messageId);
+            }
+
+            int interval = m_config.getCheckpointInterval();
+            if(interval > 0 && ++m_sinceCheckpoint >= interval){
+                m_sinceCheckpoint = 0;
+                m_committer.requestCheckpoint();
+            }
+        }
+        catch(IOException | UncheckedIOException e){
+            if(messageId != 0){
+                discard(messageId);
+            }
+            return CompletableFuture.failedFuture(e instanceof UncheckedIOException ? e.getCause() : e);
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+
+        switch(fsyncPolicy){
+            case PER_MESSAGE:
+                try{
+                    segment.force();
+                    flushSyncParticipants();
+                    return CompletableFuture.completedFuture(messageId);
+                }
+                catch(IOException e){
+                    discard(messageId);
+                    return CompletableFuture.failedFuture(e);
+                }
+            case ASYNC:
+                m_committer.requestFlush();
+                return CompletableFuture.completedFuture(messageId);
+            default:
+                CompletableFuture<Long> future = new CompletableFuture<>();
+                m_committer.enqueue(messageId, future);
+                return future;
+        }
+    }
+
+    /**
+     * Reads the body of a spooled message.
+     *
+     * @param messageId The message identifier.
+     * @return The message body.
+     * @throws IOException If the message is unknown or cannot be read.
+     */
+    public byte[] read(long messageId) throws IOException {
+        // A second attempt covers a record relocated by the compactor while it was being looked up.
+        for(int attempt = 0; ; attempt++){
+            SpoolEntry entry = getEntry(messageId);
+            if(entry == null){
+                throw new SpoolException("Unknown message id " + messageId);
+            }
+
+            try{
+                SpoolSegment segment = segmentOf(entry);
+                if(entry.isCompressed()){
+                    BlockCompressor.Container container = BlockCompressor.readContainer(segment, entry.getOffset(), entry.getLength());
+                    byte[] body = new byte[container.getLength()];
+                    BlockCompressor.readRange(segment, entry.getOffset(), container, 0, ByteBuffer.wrap(body));
+                    return body;
+                }
+
+                byte[] body = new byte[entry.getLength()];
+                segment.readBody(entry.getOffset(), ByteBuffer.wrap(body));
+                return body;
+            }
+            catch(SpoolException | ClosedChannelException e){
+                if(attempt > 0 || m_closed){
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a range of the body of a spooled message. For a compressed body only the blocks
+     * covering the range are read and inflated.
+     *
+     * @param messageId The message identifier.
+     * @param offset The offset of the range within the body.
+     * @param length The length of the range.
+     * @return The bytes of the range.
+     * @throws IOException If the message is unknown, the range is outside the body or it cannot be read.
+     */
+    public byte[] read(long messageId, long offset, int length) throws IOException {
+        SpoolEntry entry = locate(messageId);
+        SpoolSegment segment = segmentOf(entry);
+
+        ByteBuffer range = ByteBuffer.allocate(length);
+        if(entry.isCompressed()){
+            BlockCompressor.Container container = BlockCompressor.readContainer(segment, entry.getOffset(), entry.getLength());
+            BlockCompressor.readRange(segment, entry.getOffset(), container, offset, range);
+        }
+        else{
+            if(offset < 0 || offset + length > entry.getLength()){
+                throw new SpoolException("Range " + offset + "+" + length + " is outside the body of "
+                        + entry.getLength() + " bytes");
+            }
+            segment.readBody(entry.getOffset(), offset, range);
+        }
+        return range.array();
+    }
+
+    /**
+     * Writes a spooled message to a channel, preceded by headers that are not part of the stored body,
+     * such as Return-Path or Received. The prefix is written with a single gathering write where the
+     * channel supports it, and the body is transferred straight from its segment file, so the stored
+     * record is neither copied onto the heap nor rewritten. Compressed bodies are inflated block by block.
+     *
+     * @param messageId The message identifier.
+     * @param prefix Buffers to write before the body, possibly empty. They are consumed.
+     * @param target The channel to write to, in blocking mode.
+     * @return The number of bytes written.
+     * @throws IOException If the message is unknown or cannot be transferred.
+     */
+    public long transferTo(long messageId, ByteBuffer[] prefix, WritableByteChannel target) throws IOException {
+        SpoolEntry entry = locate(messageId);
+        SpoolSegment segment = segmentOf(entry);
+
+        long written = writeFully(prefix, target);
+        if(entry.isCompressed()){
+            BlockCompressor.Container container = BlockCompressor.readContainer(segment, entry.getOffset(), entry.getLength());
+            BlockCompressor.transferTo(segment, entry.getOffset(), container, target);
+            return written + container.getLength();
+        }
+
+        segment.transferBody(entry.getOffset(), entry.getLength(), target);
+        return written + entry.getLength();
+    }
+
+    /**
+     * Looks up the entry of a message, once more if its segment is gone, since the record may
+     * have just been relocated by the compactor.
+     *
+     * @param messageId The message identifier.
+     * @return The entry.
+     * @throws IOException If the message is unknown.
+     */
+    private SpoolEntry locate(long messageId) throws IOException {
+        SpoolEntry entry = getEntry(messageId);
+        if(entry != null && !m_segments.containsKey(entry.getSegmentId())){
+            entry = getEntry(messageId);
+        }
+        if(entry == null){
+            throw new SpoolException("Unknown message id " + messageId);
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the segment holding an entry's record, checking that the record there belongs to the entry.
+     *
+     * @param entry The entry.
+     * @return The segment.
+     * @throws IOException If the segment is missing, its record is not the entry's or cannot be read.
+     */
+    private SpoolSegment segmentOf(SpoolEntry entry) throws IOException {
+        SpoolSegment segment = m_segments.get(entry.getSegmentId());
+        if(segment == null){
+            throw new SpoolException("Segment " + entry.getSegmentId() + " of message " + entry.getMessageId() + " is missing");
+        }
+        segment.checkHeader(entry.getOffset(), entry.getMessageId(), entry.getLength());
+        return segment;
+    }
+
+    /**
+     * Gets the index entry of a message.
+     *
+     * @param messageId The message identifier.
+     * @return The entry, or null if the message is not in the spool.
+     * @throws IOException If the index cannot be read.
+     */
+    public SpoolEntry getEntry(long messageId) throws IOException {
+        return m_index.get(messageId);
+    }
+
+    /**
+     * Records a new state for a message, for example once it has been delivered or bounced.
+     *
+     * @param messageId The message identifier.
+     * @param state The new state.
+     * @throws IOException If the message is unknown or the index cannot be updated.
+     */
+    public void setState(long messageId, MessageState state) throws IOException {
+        Objects.requireNonNull(state, "Message state cannot be null");
+        SpoolEntry previous = m_index.setState(messageId, state);
+        if(previous == null){
+            throw new SpoolException("Unknown message id " + messageId);
+        }
+
+        SpoolSegment segment = m_segments.get(previous.getSegmentId());
+        if(segment != null && previous.getState().isDead() != state.isDead()){
+            long recordSize = SpoolSegment.recordSize(previous.getLength());
+            segment.addLiveBytes(state.isDead() ? -recordSize : recordSize);
+        }
+    }
+
+    /**
+     * Marks a message whose write failed as delivered, so it no longer counts as live.
+     * Does nothing if the message never reached the index.
+     *
+     * @param messageId The message identifier.
+     */
+    private void discard(long messageId){
+        try{
+            if(m_index.get(messageId) != null){
+                setState(messageId, MessageState.DELIVERED);
+            }
+        }
+        catch(IOException e){
+            LOGGER.warn("Could not discard message {} after its write failed", messageId, e);
+        }
+    }
+
+    /**
+     * Writes a checkpoint at the current end of the spool.
+     * Every segment written so far is forced, then the index, then the checkpoint position.
+     *
+     * @throws IOException If the segments cannot be forced.
+     */
+    public synchronized void checkpoint() throws IOException {
+        SpoolSegment active;
+        long size;
+        long nextMessageId;
+
+        m_appendLock.lock();
+        try{
+            active = m_active;
+            size = active.getSize();
+            nextMessageId = m_index.getNextMessageId();
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+
+        syncDirtySegments();
+        m_index.writeCheckpoint(active.getId(), size, nextMessageId);
+    }
+
+    /**
+     * Gets the report of the recovery performed when the spool was opened.
+     *
+     * @return The recovery report.
+     */
+    public RecoveryReport getRecoveryReport(){
+        return m_recoveryReport;
+    }
+
+    /**
+     * Gets the number of fsync groups committed.
+     *
+     * @return The group commit count.
+     */
+    public long getGroupCommitCount(){
+        return m_committer.getCommitCount();
+    }
+
+    /**
+     * Gets the number of messages acknowledged through group commits.
+     *
+     * @return The group-committed message count.
+     */
+    public long getGroupCommittedMessageCount(){
+        return m_committer.getCommittedMessageCount();
+    }
+
+    /**
+     * Gets the number of segment files in the spool.
+     *
+     * @return The segment count.
+     */
+    public int getSegmentCount(){
+        return m_segments.size();
+    }
+
+    /**
+     * Gets the spool configuration.
+     *
+     * @return The configuration.
+     */
+    public SpoolConfig getConfig(){
+        return m_config;
+    }
+
+    /**
+     * Gets the sealed segments, which are no longer appended to and may be compacted.
+     *
+     * @return The sealed segments in ascending identifier order.
+     */
+    List<SpoolSegment> getSealedSegments(){
+        List<SpoolSegment> sealed = new ArrayList<>();
+        int activeId = m_active.getId();
+        for(SpoolSegment segment : m_segments.values()){
+            if(segment.getId() < activeId){
+                sealed.add(segment);
+            }
+        }
+
+        sealed.sort(Comparator.comparingInt(SpoolSegment::getId));
+        return sealed;
+    }
+
+    /**
+     * Copies a live record to the active segment. Called by the compactor. The index keeps pointing
+     * at the original until {@link #commitRelocations(List)} has forced the copy.
+     *
+     * @param messageId The message identifier.
+     * @param from The segment holding the original record.
+     * @param fromOffset The offset of the original record.
+     * @param body The record body.
+     * @param compressed True if the body is block compressed.
+     * @return The copy, to be committed.
+     * @throws IOException If the copy cannot be written.
+     */
+    Relocation copyRecord(long messageId, SpoolSegment from, long fromOffset, ByteBuffer body, boolean compressed) throws IOException {
+        long recordSize = SpoolSegment.recordSize(body.remaining());
+
+        m_appendLock.lock();
+        try{
+            SpoolSegment segment = m_active;
+            if(!segment.hasRoom(body.remaining())){
+                segment = rollSegment();
+            }
+
+            long offset = segment.append(messageId, new ByteBuffer[]{body}, compressed);
+            return new Relocation(messageId, from, fromOffset, segment, offset, recordSize);
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the segments holding copied records, then points the index entry of each message at
+     * its copy. Forcing first means the mapped index can never reach disk pointing at a copy that a
+     * crash could still lose: recovery does not replay records before the checkpoint, so such an
+     * entry would point past the end of the truncated segment. Called by the compactor.
+     *
+     * @param relocations The copies made by {@link #copyRecord}.
+     * @return The number of messages relocated; the others were no longer stored at their original record.
+     * @throws IOException If a segment cannot be forced or the index cannot be read.
+     */
+    long commitRelocations(List<Relocation> relocations) throws IOException {
+        Set<SpoolSegment> targets = new LinkedHashSet<>();
+        for(Relocation relocation : relocations){
+            targets.add(relocation.m_to);
+        }
+        for(SpoolSegment target : targets){
+            target.force();
+        }
+
+        long relocated = 0;
+        m_appendLock.lock();
+        try{
+            for(Relocation relocation : relocations){
+                MessageState state = m_index.move(relocation.m_messageId, relocation.m_from.getId(), relocation.m_fromOffset,
+                        relocation.m_to.getId(), relocation.m_toOffset);
+                if(state == null){
+                    continue;
+                }
+
+                if(!state.isDead()){
+                    relocation.m_to.addLiveBytes(relocation.m_recordSize);
+                    relocation.m_from.addLiveBytes(-relocation.m_recordSize);
+                }
+                relocated++;
+            }
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+        return relocated;
+    }
+
+    /**
+     * Closes and deletes a sealed segment that no longer holds live records. Called by the compactor.
+     *
+     * @param segment The segment to delete.
+     * @throws IOException If the file cannot be deleted.
+     */
+    void dropSegment(SpoolSegment segment) throws IOException {
+        m_appendLock.lock();
+        try{
+            if(segment == m_active){
+                throw new IllegalStateException("The active segment cannot be dropped");
+            }
+            m_segments.remove(segment.getId());
+            m_unsynced.remove(segment);
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+
+        segment.close();
+        Files.deleteIfExists(segment.getPath());
+    }
+
+    /**
+     * Advances the index low watermark past dead messages, so startup scans of the index stay short.
+     *
+     * @param maxEntries The maximum number of entries to examine.
+     * @return The new low watermark.
+     * @throws IOException If the index cannot be read.
+     */
+    long advanceLowWatermark(int maxEntries) throws IOException {
+        return m_index.advanceLowWatermark(maxEntries);
+    }
+
+    /**
+     * Computes the live bytes of each segment from the index.
+     *
+     * @param segments The segments, in ascending identifier order.
+     * @throws IOException If the index cannot be read.
+     */
+    private void loadLiveBytes(List<SpoolSegment> segments) throws IOException {
+        int firstId = segments.get(0).getId();
+        long[] liveBytes = new long[segments.get(segments.size() - 1).getId() - firstId + 1];
+        m_index.sumLiveBytes(liveBytes, firstId);
+
+        for(SpoolSegment segment : segments){
+            segment.addLiveBytes(liveBytes[segment.getId() - firstId]);
+        }
+    }
+
+    /**
+     * Forces every segment written since the last sync. Called by the group committer.
+     * The force runs outside the append lock so writers are never blocked by the disk.
+     *
+     * @throws IOException If a force fails.
+     */
+    void syncDirtySegments() throws IOException {
+        List<SpoolSegment> dirty;
+
+        m_appendLock.lock();
+        try{
+            dirty = new ArrayList<>(m_unsynced.size() + 1);
+            dirty.addAll(m_unsynced);
+            dirty.add(m_active);
+            m_unsynced.clear();
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+
+        for(SpoolSegment segment : dirty){
+            segment.force();
+        }
+        flushSyncParticipants();
+    }
+
+    /**
+     * Registers a file that must be durable whenever the segments are, for example the delivery ledger.
+     * It is flushed after the segments on every group commit, per-message force and checkpoint.
+     *
+     * @param participant The file to flush.
+     */
+    void addSyncParticipant(Flushable participant){
+        m_syncParticipants.add(Objects.requireNonNull(participant, "Sync participant cannot be null"));
+    }
+
+    /**
+     * Removes a file registered with {@link #addSyncParticipant(Flushable)}.
+     *
+     * @param participant The file to remove.
+     */
+    void removeSyncParticipant(Flushable participant){
+        m_syncParticipants.remove(participant);
+    }
+
+    /**
+     * Registers a file that reclaims its dead records on every compaction pass, for example the delivery ledger.
+     *
+     * @param participant The file to compact.
+     */
+    void addCompactionParticipant(CompactionParticipant participant){
+        m_compactionParticipants.add(Objects.requireNonNull(participant, "Compaction participant cannot be null"));
+    }
+
+    /**
+     * Removes a file registered with {@link #addCompactionParticipant(CompactionParticipant)}.
+     *
+     * @param participant The file to remove.
+     */
+    void removeCompactionParticipant(CompactionParticipant participant){
+        m_compactionParticipants.remove(participant);
+    }
+
+    /**
+     * Compacts every registered compaction participant. Called by the compactor on each pass.
+     *
+     * @param maxEntries The maximum number of records each participant examines.
+     * @throws IOException If a participant cannot be compacted.
+     */
+    void compactParticipants(int maxEntries) throws IOException {
+        for(CompactionParticipant participant : m_compactionParticipants){
+            participant.compact(maxEntries);
+        }
+    }
+
+    /**
+     * Flushes every registered sync participant.
+     *
+     * @throws IOException If a flush fails.
+     */
+    private void flushSyncParticipants() throws IOException {
+        for(Flushable participant : m_syncParticipants){
+            participant.flush();
+        }
+    }
+
+    /**
+     * Writes every remaining byte of a group of buffers.
+     *
+     * @param buffers The buffers to write.
+     * @param target The channel to write to.
+     * @return The number of bytes written.
+     * @throws IOException If the write fails.
+     */
+    private static long writeFully(ByteBuffer[] buffers, WritableByteChannel target) throws IOException {
+        long remaining = 0;
+        for(ByteBuffer buffer : buffers){
+            remaining += buffer.remaining();
+        }
+
+        long total = remaining;
+        if(target instanceof GatheringByteChannel){
+            GatheringByteChannel gathering = (GatheringByteChannel) target;
+            while(remaining > 0){
+                remaining -= gathering.write(buffers);
+            }
+            return total;
+        }
+
+        for(ByteBuffer buffer : buffers){
+            while(buffer.hasRemaining()){
+                target.write(buffer);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Seals the active segment and starts a new one. Must be called while holding the append lock.
+     *
+     * @return The new active segment.
+     * @throws IOException If the segment file cannot be created.
+     */
+    private SpoolSegment rollSegment() throws IOException {
+        SpoolSegment sealed = m_active;
+        SpoolSegment next = SpoolSegment.create(m_config.getDirectory(), sealed.getId() + 1, m_config.getSegmentSize());
+
+        m_segments.put(next.getId(), next);
+        m_unsynced.add(sealed);
+        m_active = next;
+
+        LOGGER.debug("Sealed spool segment {} at {} bytes", sealed.getId(), sealed.getSize());
+        return next;
+    }
+
+    /**
+     * Commits pending writes, writes a final checkpoint and closes the spool.
+     *
+     * @throws IOException If the spool files cannot be forced or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if(m_closed){
+            return;
+        }
+        m_closed = true;
+
+        try{
+            m_committer.shutdown();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        checkpoint();
+
+        m_appendLock.lock();
+        try{
+            for(SpoolSegment segment : m_segments.values()){
+                segment.close();
+            }
+            m_index.close();
+        }
+        finally{
+            m_appendLock.unlock();
+        }
+    }
+
+    /**
+     * A record copied by the compactor whose index entry has not been moved to the copy yet.
+     */
+    static final class Relocation {
+        private final long m_messageId;
+        private final SpoolSegment m_from;
+        private final long m_fromOffset;
+        private final SpoolSegment m_to;
+        private final long m_toOffset;
+        private final long m_recordSize;
+
+        /**
+         * Creates a relocation.
+         *
+         * @param messageId The message identifier.
+         * @param from The segment holding the original record.
+         * @param fromOffset The offset of the original record.
+         * @param to The segment holding the copy.
+         * @param toOffset The offset of the copy.
+         * @param recordSize The size of the record on disk.
+         */
+        private Relocation(long messageId, SpoolSegment from, long fromOffset, SpoolSegment to, long toOffset, long recordSize){
+            m_messageId = messageId;
+            m_from = from;
+            m_fromOffset = fromOffset;
+            m_to = to;
+            m_toOffset = toOffset;
+            m_recordSize = recordSize;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.couture.mercury.core.spool;
+
+/**
+ * Lifecycle state of a spooled message, as recorded in the spool index.
+ */
+public enum MessageState {
+    QUEUED(1, "Awaiting delivery"),
+    DELIVERED(2, "Delivered to every recipient"),
+    BOUNCED(3, "Returned to the sender");
+
+    private static final MessageState[] BY_CODE = new MessageState[4];
+
+    static {
+        for(MessageState state : values()){
+            BY_CODE[state.m_code] = state;
+        }
+    }
+
+    private final int m_code;
+    private final String m_description;
+
+    /**
+     * Constructs a message state.
+     *
+     * @param code The code stored in the spool index. Must never change once written to disk.
+     * @param description Human-readable description of the state.
+     */
+    MessageState(int code, String description){
+        m_code = code;
+        m_description = description;
+    }
+
+    /**
+     * Looks up a state by its index code.
+     *
+     * @param code The stored code.
+     * @return The state, or null if the code is unknown (for example an unused index slot).
+     */
+    static MessageState fromCode(int code){
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Gets the code stored in the spool index.
+     *
+     * @return The state code.
+     */
+    int getCode(){
+        return m_code;
+    }
+
+    /**
+     * Checks if the message no longer needs its spooled body.
+     *
+     * @return True if the message space can be reclaimed.
+     */
+    public boolean isDead(){
+        return this != QUEUED;
+    }
+
+    /**
+     * Retrieves the description of the state.
+     *
+     * @return State description.
+     */
+    public String getDescription(){
+        return m_description;
+    }
+}
@@ -0,0 +1,530 @@
+package com.couture.mercury.core.spool;
+
+import com.couture.mercury.core.protocol.codec.EnvelopeCodec;
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+import com.couture.mercury.core.protocol.session.MailEnvelope;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stores accepted transactions as a single body shared by per-recipient delivery records.
+ *
+ * <p>A transaction is written to the spool as two records: the body, and a small envelope holding
+ * the reverse-path, the recipients and a reference to the body (see {@link EnvelopeCodec}).
+ * Each recipient gets a {@link DeliveryRecord} in a memory-mapped ledger that is forced with the
+ * spool, so a message to 100 recipients is stored once rather than 100 times.</p>
+ *
+ * <p>Bodies are also deduplicated by content hash: a body identical to one stored within the dedup
+ * window, and not yet fully delivered, is referenced by the new envelope instead of written again.</p>
+ *
+ * <p>Once every recipient of an envelope reaches a final state the envelope is marked
+ * {@link MessageState#DELIVERED}, and once every envelope referencing a body is done the body is
+ * too, which makes both reclaimable by the {@link SpoolCompactor}. The same passes reclaim the
+ * delivery records below the oldest one still awaiting delivery, so reopening the store scans the
+ * undelivered backlog rather than every record ever written. This class is thread-safe.</p>
+ */
+public final class MessageStore implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStore.class);
+
+    /**
+     * Default time a stored body may be reused by identical bodies, in milliseconds.
+     */
+    public static final long DEFAULT_DEDUP_WINDOW_MILLIS = 60_000;
+
+    private final MessageSpool m_spool;
+    private final DeliveryLedger m_ledger;
+    private final BodyDeduplicator m_deduplicator;
+    // Undelivered recipients per envelope, and envelopes still referencing each body.
+    private final Map<Long, Integer> m_pendingByEnvelope = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> m_pendingByBody = new ConcurrentHashMap<>();
+    private final AtomicLong m_bodiesStored = new AtomicLong();
+    private final AtomicLong m_bodiesDeduplicated = new AtomicLong();
+
+    /**
+     * Creates a message store.
+     *
+     * @param spool The spool holding bodies and envelopes.
+     * @param ledger The delivery ledger.
+     * @param dedupWindowMillis The dedup window in milliseconds.
+     */
+    private MessageStore(MessageSpool spool, DeliveryLedger ledger, long dedupWindowMillis){
+        m_spool = spool;
+        m_ledger = ledger;
+        m_deduplicator = new BodyDeduplicator(dedupWindowMillis);
+    }
+
+    /**
+     * Opens the message store of a spool with the default dedup window.
+     *
+     * @param spool The open spool.
+     * @return The message store.
+     * @throws IOException If the delivery ledger cannot be opened.
+     */
+    public static MessageStore open(MessageSpool spool) throws IOException {
+        return open(spool, DEFAULT_DEDUP_WINDOW_MILLIS);
+    }
+
+    /**
+     * Opens the message store of a spool and rebuilds the pending delivery counts from its ledger.
+     *
+     * @param spool The open spool.
+     * @param dedupWindowMillis How long a stored body may be reused, in milliseconds. Zero disables deduplication.
+     * @return The message store.
+     * @throws IOException If the delivery ledger cannot be opened or read.
+     */
+    public static MessageStore open(MessageSpool spool, long dedupWindowMillis) throws IOException {
+        Objects.requireNonNull(spool, "Spool cannot be null");
+        if(dedupWindowMillis < 0){
+            throw new IllegalArgumentException("Dedup window cannot be negative");
+        }
+
+        DeliveryLedger ledger = new DeliveryLedger(spool.getConfig().getDirectory());
+        MessageStore store = new MessageStore(spool, ledger, dedupWindowMillis);
+        try{
+            store.rebuild();
+        }
+        catch(IOException e){
+            ledger.close();
+            throw e;
+        }
+
+        spool.addSyncParticipant(ledger);
+        spool.addCompactionParticipant(ledger);
+        return store;
+    }
+
+    /**
+     * Stores the transaction held in a session's envelope: its reverse-path, recipients and message content.
+     *
+     * @param writer The listener's spool writer.
+     * @param envelope The session's envelope, read on the calling thread.
+     * @return A future completed with the envelope once the body, envelope and delivery records are durable.
+     */
+    public CompletableFuture<StoredEnvelope> store(SpoolWriter writer, MailEnvelope envelope){
+        return store(writer, envelope, null);
+    }
+
+    /**
+     * Stores the transaction held in a session's envelope with trace fields, such as Received, that
+     * are kept with the envelope and written ahead of the body on delivery.
+     *
+     * @param writer The listener's spool writer.
+     * @param envelope The session's envelope, read on the calling thread.
+     * @param traceHeaders The fields to prepend on delivery, or null.
+     * @return A future completed with the envelope once the body, envelope and delivery records are
+     *         durable, or failed if the message content cannot be read.
+     */
+    public CompletableFuture<StoredEnvelope> store(SpoolWriter writer, MailEnvelope envelope, TraceHeaders traceHeaders){
+        ByteBuffer[] body;
+        try{
+            body = envelope.getMessageBuffer().buffers();
+        }
+        catch(IOException e){
+            return CompletableFuture.failedFuture(e);
+        }
+        return store(writer, envelope.getReversePath(), envelope.getRecipients(), traceHeaders, body);
+    }
+
+    /**
+     * Stores a transaction.
+     *
+     * @param writer The listener's spool writer.
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients. They are normalised and duplicates are dropped.
+     * @param body The message body, as one or more buffers.
+     * @return A future completed with the envelope once the body, envelope and delivery records are durable.
+     */
+    public CompletableFuture<StoredEnvelope> store(SpoolWriter writer, String reversePath, Collection<String> recipients, ByteBuffer... body){
+        return store(writer, reversePath, recipients, null, body);
+    }
+
+    /**
+     * Stores a transaction with trace fields that are kept with the envelope and written ahead of
+     * the body on delivery. Keeping them out of the body lets identical bodies be shared even
+     * though each transaction has its own Received field.
+     *
+     * @param writer The listener's spool writer.
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients. They are normalised and duplicates are dropped.
+     * @param traceHeaders The fields to prepend on delivery, or null.
+     * @param body The message body, as one or more buffers.
+     * @return A future completed with the envelope once the body, envelope and delivery records are durable.
+     */
+    public CompletableFuture<StoredEnvelope> store(SpoolWriter writer, String reversePath, Collection<String> recipients,
+                                                   TraceHeaders traceHeaders, ByteBuffer... body){
+        Objects.requireNonNull(writer, "Spool writer cannot be null");
+        if(writer.getSpool() != m_spool){
+            throw new IllegalArgumentException("Spool writer belongs to a different spool");
+        }
+
+        Set<String> normalized = new LinkedHashSet<>();
+        for(String recipient : recipients){
+            String address = RecipientStore.normalize(recipient);
+            if(address != null){
+                normalized.add(address);
+            }
+        }
+        if(normalized.isEmpty()){
+            return CompletableFuture.failedFuture(new SpoolException("A transaction needs at least one recipient"));
+        }
+        List<String> recipientList = List.copyOf(normalized);
+
+        byte[] digest = m_deduplicator.isEnabled() ? BodyDeduplicator.digest(body) : null;
+        CompletableFuture<Long> bodyDurable = digest != null ? reuseBody(digest) : null;
+
+        long bodyId;
+        if(bodyDurable != null){
+            bodyId = bodyDurable.join();
+            m_bodiesDeduplicated.incrementAndGet();
+        }
+        else{
+            long[] written = new long[1];
+            bodyDurable = writer.append(body, id -> {
+                m_pendingByBody.put(id, 1);
+                written[0] = id;
+            });
+            if(written[0] == 0){
+                return bodyDurable.thenApply(id -> null);
+            }
+
+            bodyId = written[0];
+            m_bodiesStored.incrementAndGet();
+            if(digest != null){
+                bodyDurable.thenAccept(id -> m_deduplicator.remember(digest, id));
+            }
+        }
+
+        int count = recipientList.size();
+        long firstRecordId = m_ledger.allocate(count);
+        byte[] prepended = traceHeaders != null ? traceHeaders.toByteArray() : new byte[0];
+        ByteBuffer envelope = ByteBuffer.wrap(EnvelopeCodec.encode(bodyId, firstRecordId, reversePath, recipientList, prepended));
+
+        long[] envelopeIds = new long[1];
+        CompletableFuture<Long> envelopeDurable = writer.append(new ByteBuffer[]{envelope}, envelopeId -> {
+            envelopeIds[0] = envelopeId;
+            try{
+                m_ledger.fill(firstRecordId, count, bodyId, envelopeId);
+            }
+            catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            m_pendingByEnvelope.put(envelopeId, count);
+        });
+
+        // Both writes must have settled before cleaning up, so a failed body never leaves a queued envelope behind.
+        CompletableFuture.allOf(bodyDurable, envelopeDurable).whenComplete((ignored, error) -> {
+            if(error != null){
+                discardEnvelope(envelopeIds[0], firstRecordId, count);
+                releaseBody(bodyId);
+            }
+        });
+
+        return bodyDurable.thenCombine(envelopeDurable,
+                (storedBodyId, envelopeId) -> new StoredEnvelope(envelopeId, bodyId, firstRecordId, reversePath, recipientList, prepended));
+    }
+
+    /**
+     * Records the outcome of a delivery attempt. When the last recipient of an envelope reaches a
+     * final state, the envelope is marked delivered, and the body once no envelope references it.
+     *
+     * @param recordId The delivery record identifier.
+     * @param state The new state.
+     * @throws IOException If the record is unknown or the spool cannot be updated.
+     * @throws IllegalStateException If the record is already in a final state.
+     */
+    public void updateDelivery(long recordId, DeliveryState state) throws IOException {
+        Objects.requireNonNull(state, "Delivery state cannot be null");
+
+        DeliveryRecord previous = m_ledger.update(recordId, state);
+        if(previous == null){
+            throw new SpoolException("Unknown delivery record " + recordId);
+        }
+        if(previous.getState().isFinal()){
+            throw new IllegalStateException("Delivery record " + recordId + " is already " + previous.getState());
+        }
+        if(!state.isFinal()){
+            return;
+        }
+
+        long envelopeId = previous.getEnvelopeId();
+        boolean[] done = new boolean[1];
+        m_pendingByEnvelope.computeIfPresent(envelopeId, (id, remaining) -> {
+            done[0] = remaining <= 1;
+            return done[0] ? null : remaining - 1;
+        });
+
+        if(done[0]){
+            m_spool.setState(envelopeId, MessageState.DELIVERED);
+            releaseBody(previous.getBodyId());
+        }
+    }
+
+    /**
+     * Reads a stored envelope.
+     *
+     * @param envelopeId The spool identifier of the envelope.
+     * @return The envelope.
+     * @throws IOException If the envelope is unknown or malformed.
+     */
+    public StoredEnvelope readEnvelope(long envelopeId) throws IOException {
+        return EnvelopeCodec.decode(envelopeId, m_spool.read(envelopeId));
+    }
+
+    /**
+     * Reads the body of a stored envelope.
+     *
+     * @param envelope The envelope.
+     * @return The message body.
+     * @throws IOException If the body cannot be read.
+     */
+    public byte[] readBody(StoredEnvelope envelope) throws IOException {
+        return m_spool.read(envelope.getBodyId());
+    }
+
+    /**
+     * Writes a stored message to a channel: the envelope's prepended fields, then the given extra
+     * fields (for example Return-Path at final delivery), then the shared body transferred
+     * directly from the spool. The fields go out in one gathering write and the body is never
+     * copied onto the heap or rewritten.
+     *
+     * @param envelope The envelope.
+     * @param extraHeaders Fields to write in front of the envelope's fields, or null.
+     * @param target The channel to write to, in blocking mode.
+     * @return The number of bytes written.
+     * @throws IOException If the body cannot be transferred.
+     */
+    public long transferTo(StoredEnvelope envelope, TraceHeaders extraHeaders, WritableByteChannel target) throws IOException {
+        ByteBuffer stored = envelope.getPrependedHeaders();
+        ByteBuffer[] prefix = extraHeaders != null ? extraHeaders.prependTo(stored) : new ByteBuffer[]{stored};
+        return m_spool.transferTo(envelope.getBodyId(), prefix, target);
+    }
+
+    /**
+     * Gets the delivery records of every recipient of an envelope.
+     *
+     * @param envelope The envelope.
+     * @return The records, in recipient order.
+     * @throws IOException If the ledger cannot be read.
+     */
+    public List<DeliveryRecord> getDeliveries(StoredEnvelope envelope) throws IOException {
+        List<DeliveryRecord> records = new ArrayList<>(envelope.getRecipients().size());
+        for(int i = 0; i < envelope.getRecipients().size(); i++){
+            records.add(m_ledger.get(envelope.getFirstRecordId() + i));
+        }
+        return records;
+    }
+
+    /**
+     * Gets a delivery record.
+     *
+     * @param recordId The record identifier.
+     * @return The record, or null if it does not exist.
+     * @throws IOException If the ledger cannot be read.
+     */
+    public DeliveryRecord getDelivery(long recordId) throws IOException {
+        return m_ledger.get(recordId);
+    }
+
+    /**
+     * Gets every delivery record that still awaits delivery, for example to rebuild a retry queue.
+     *
+     * @return The pending and deferred records.
+     * @throws IOException If the ledger cannot be read.
+     */
+    public List<DeliveryRecord> getUndeliveredRecords() throws IOException {
+        List<DeliveryRecord> records = new ArrayList<>();
+        forEachUndeliveredRecord(records::add);
+        return records;
+    }
+
+    /**
+     * Visits every delivery record that still awaits delivery without collecting them, for rebuilding
+     * queues too large to hold as a list of records.
+     *
+     * @param action The action to run for each pending or deferred record.
+     * @throws IOException If the ledger cannot be read.
+     */
+    public void forEachUndeliveredRecord(Consumer<DeliveryRecord> action) throws IOException {
+        m_ledger.forEachUndelivered(record -> {
+            if(m_pendingByEnvelope.containsKey(record.getEnvelopeId())){
+                action.accept(record);
+            }
+        });
+    }
+
+    /**
+     * Gets the spool the store writes to.
+     *
+     * @return The spool.
+     */
+    public MessageSpool getSpool(){
+        return m_spool;
+    }
+
+    /**
+     * Gets the number of envelopes with undelivered recipients.
+     *
+     * @return The pending envelope count.
+     */
+    public int getPendingEnvelopeCount(){
+        return m_pendingByEnvelope.size();
+    }
+
+    /**
+     * Gets the number of bodies written to the spool since the store was opened.
+     *
+     * @return The stored body count.
+     */
+    public long getBodiesStored(){
+        return m_bodiesStored.get();
+    }
+
+    /**
+     * Gets the number of transactions that reused an identical body instead of storing one.
+     *
+     * @return The deduplicated body count.
+     */
+    public long getBodiesDeduplicated(){
+        return m_bodiesDeduplicated.get();
+    }
+
+    /**
+     * Detaches the ledger from the spool, then forces and closes it. The spool itself stays open.
+     *
+     * @throws IOException If the ledger cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        m_spool.removeCompactionParticipant(m_ledger);
+        m_spool.removeSyncParticipant(m_ledger);
+        m_ledger.flush();
+        m_ledger.close();
+    }
+
+    /**
+     * Takes a reference to a recently stored body with the same content, if it is still pending delivery.
+     *
+     * @param digest The content hash of the new body.
+     * @return A completed future holding the body identifier, or null if the body must be stored.
+     */
+    private CompletableFuture<Long> reuseBody(byte[] digest){
+        long bodyId = m_deduplicator.find(digest);
+        if(bodyId < 0){
+            return null;
+        }
+
+        Integer retained = m_pendingByBody.computeIfPresent(bodyId, (id, references) -> references + 1);
+        return retained != null ? CompletableFuture.completedFuture(bodyId) : null;
+    }
+
+    /**
+     * Cleans up after a transaction that failed to become durable. Its delivery records are failed so
+     * they no longer hold back the ledger's low watermark, and its envelope, if it reached the spool,
+     * is marked delivered so it no longer pins its segment.
+     *
+     * @param envelopeId The spool identifier of the envelope, or 0 if it was never written.
+     * @param firstRecordId The first identifier of the reserved record range.
+     * @param count The number of records in the range.
+     */
+    private void discardEnvelope(long envelopeId, long firstRecordId, int count){
+        m_ledger.abandon(firstRecordId);
+        if(envelopeId == 0){
+            return;
+        }
+
+        m_pendingByEnvelope.remove(envelopeId);
+        try{
+            for(int i = 0; i < count; i++){
+                m_ledger.update(firstRecordId + i, DeliveryState.FAILED);
+            }
+            if(isQueued(envelopeId)){
+                m_spool.setState(envelopeId, MessageState.DELIVERED);
+            }
+        }
+        catch(IOException e){
+            LOGGER.warn("Could not discard envelope {} after its write failed", envelopeId, e);
+        }
+    }
+
+    /**
+     * Drops one reference to a body, marking it delivered when none remain.
+     *
+     * @param bodyId The spool identifier of the body.
+     */
+    private void releaseBody(long bodyId){
+        boolean[] done = new boolean[1];
+        m_pendingByBody.computeIfPresent(bodyId, (id, references) -> {
+            done[0] = references <= 1;
+            return done[0] ? null : references - 1;
+        });
+
+        if(done[0]){
+            try{
+                m_spool.setState(bodyId, MessageState.DELIVERED);
+            }
+            catch(IOException e){
+                LOGGER.warn("Could not mark body {} as delivered", bodyId, e);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the pending delivery counts from the ledger. Envelopes that are no longer in the
+     * spool, for example because their transaction was lost before it became durable, are skipped.
+     *
+     * @throws IOException If the ledger or the spool index cannot be read.
+     */
+    private void rebuild() throws IOException {
+        Map<Long, Integer> pendingByEnvelope = new HashMap<>();
+        Map<Long, Long> bodyByEnvelope = new HashMap<>();
+
+        m_ledger.forEachUndelivered(record -> {
+            pendingByEnvelope.merge(record.getEnvelopeId(), 1, Integer::sum);
+            bodyByEnvelope.putIfAbsent(record.getEnvelopeId(), record.getBodyId());
+        });
+
+        for(Map.Entry<Long, Integer> pending : pendingByEnvelope.entrySet()){
+            long envelopeId = pending.getKey();
+            long bodyId = bodyByEnvelope.get(envelopeId);
+            if(isQueued(envelopeId) && isQueued(bodyId)){
+                m_pendingByEnvelope.put(envelopeId, pending.getValue());
+                m_pendingByBody.merge(bodyId, 1, Integer::sum);
+            }
+        }
+
+        if(!m_pendingByEnvelope.isEmpty()){
+            LOGGER.info("Rebuilt {} envelopes pending delivery from the delivery ledger", m_pendingByEnvelope.size());
+        }
+    }
+
+    /**
+     * Checks if a spool record is present and still queued.
+     *
+     * @param messageId The spool identifier.
+     * @return True if the record awaits delivery.
+     * @throws IOException If the index cannot be read.
+     */
+    private boolean isQueued(long messageId) throws IOException {
+        SpoolEntry entry = m_spool.getEntry(messageId);
+        return entry != null && entry.getState() == MessageState.QUEUED;
+    }
+}
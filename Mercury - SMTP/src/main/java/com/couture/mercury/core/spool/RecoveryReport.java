@@ -0,0 +1,109 @@
+package com.couture.mercury.core.spool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary of the recovery performed when a spool was opened.
+ */
+public final class RecoveryReport {
+    private final boolean m_fromCheckpoint;
+    private final int m_segmentsScanned;
+    private final long m_recordsReplayed;
+    private final long m_bytesReplayed;
+    private final long m_bytesTruncated;
+    private final long m_entriesDiscarded;
+    private final long m_durationNanos;
+
+    /**
+     * Creates a recovery report.
+     *
+     * @param fromCheckpoint True if replay started from a checkpoint rather than the first segment.
+     * @param segmentsScanned The number of segments replayed.
+     * @param recordsReplayed The number of intact records replayed.
+     * @param bytesReplayed The number of segment bytes replayed.
+     * @param bytesTruncated The number of bytes of partially written records that were discarded.
+     * @param entriesDiscarded The number of index entries removed because their record was not intact.
+     * @param durationNanos The time taken by recovery.
+     */
+    RecoveryReport(boolean fromCheckpoint, int segmentsScanned, long recordsReplayed, long bytesReplayed,
+                   long bytesTruncated, long entriesDiscarded, long durationNanos){
+        m_fromCheckpoint = fromCheckpoint;
+        m_segmentsScanned = segmentsScanned;
+        m_recordsReplayed = recordsReplayed;
+        m_bytesReplayed = bytesReplayed;
+        m_bytesTruncated = bytesTruncated;
+        m_entriesDiscarded = entriesDiscarded;
+        m_durationNanos = durationNanos;
+    }
+
+    /**
+     * Checks if replay started from a checkpoint.
+     *
+     * @return True if a checkpoint was used, false if every segment was replayed.
+     */
+    public boolean isFromCheckpoint(){
+        return m_fromCheckpoint;
+    }
+
+    /**
+     * Gets the number of segments replayed.
+     *
+     * @return The segment count.
+     */
+    public int getSegmentsScanned(){
+        return m_segmentsScanned;
+    }
+
+    /**
+     * Gets the number of intact records replayed.
+     *
+     * @return The record count.
+     */
+    public long getRecordsReplayed(){
+        return m_recordsReplayed;
+    }
+
+    /**
+     * Gets the number of segment bytes replayed.
+     *
+     * @return The byte count.
+     */
+    public long getBytesReplayed(){
+        return m_bytesReplayed;
+    }
+
+    /**
+     * Gets the number of bytes of partially written records that were truncated.
+     *
+     * @return The byte count.
+     */
+    public long getBytesTruncated(){
+        return m_bytesTruncated;
+    }
+
+    /**
+     * Gets the number of index entries removed because their record was not intact.
+     *
+     * @return The entry count.
+     */
+    public long getEntriesDiscarded(){
+        return m_entriesDiscarded;
+    }
+
+    /**
+     * Gets the time taken by recovery.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getDurationMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(m_durationNanos);
+    }
+
+    @Override
+    public String toString(){
+        return "RecoveryReport{" + "fromCheckpoint=" + m_fromCheckpoint + ", segments=" + m_segmentsScanned
+                + ", records=" + m_recordsReplayed + ", bytesReplayed=" + m_bytesReplayed
+                + ", bytesTruncated=" + m_bytesTruncated + ", entriesDiscarded=" + m_entriesDiscarded
+                + ", durationMillis=" + getDurationMillis() + '}';
+    }
+}
@@ -0,0 +1,265 @@
+package com.couture.mercury.core.spool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background compactor that reclaims the space of delivered and bounced messages.
+ *
+ * <p>Sealed segments without live records are deleted outright. Segments whose live bytes have
+ * fallen below {@link SpoolConfig#getCompactionLiveRatio()} have their remaining queued messages
+ * copied to the active segment and are then deleted. The copies are forced before any index entry
+ * is moved to them, and a checkpoint is written before any segment is deleted, so the copies and
+ * their index entries are durable first.</p>
+ *
+ * <p>All reads and copies are paced by {@link SpoolConfig#getCompactionBytesPerSecond()} so
+ * compaction does not compete with ingest for disk bandwidth. Each pass also advances the index
+ * low watermark, which bounds the index scan on startup, and compacts the files kept alongside the
+ * spool, such as the delivery ledger.</p>
+ */
+public final class SpoolCompactor implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolCompactor.class);
+
+    // Index entries examined per pass when advancing the low watermark.
+    private static final int WATERMARK_SCAN_LIMIT = 1 << 20;
+    // Records copied before the copies are forced and the index is pointed at them.
+    private static final int RELOCATION_BATCH = 1024;
+
+    private final MessageSpool m_spool;
+    private final double m_liveRatio;
+    private final ByteRateLimiter m_rateLimiter;
+    private final Object m_passLock = new Object();
+    private final AtomicLong m_passCount = new AtomicLong();
+    private final AtomicLong m_bytesReclaimed = new AtomicLong();
+    private final AtomicLong m_bytesCopied = new AtomicLong();
+    private volatile CompactionResult m_lastResult;
+    private ScheduledExecutorService m_scheduler;
+
+    /**
+     * Creates a compactor using the compaction settings of the spool's configuration.
+     *
+     * @param spool The spool to compact.
+     */
+    public SpoolCompactor(MessageSpool spool){
+        m_spool = spool;
+        m_liveRatio = spool.getConfig().getCompactionLiveRatio();
+        m_rateLimiter = new ByteRateLimiter(spool.getConfig().getCompactionBytesPerSecond());
+    }
+
+    /**
+     * Starts running compaction passes in the background at the configured interval.
+     */
+    public synchronized void start(){
+        if(m_scheduler != null){
+            return;
+        }
+
+        m_scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "spool-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        long interval = m_spool.getConfig().getCompactionIntervalMillis();
+        m_scheduler.scheduleWithFixedDelay(this::runPass, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a single compaction pass.
+     *
+     * @return The outcome of the pass.
+     * @throws IOException If a segment cannot be read, copied or deleted.
+     */
+    public CompactionResult compact() throws IOException {
+        synchronized(m_passLock){
+            long start = System.nanoTime();
+            List<SpoolSegment> reclaimable = new ArrayList<>();
+            int rewritten = 0;
+            long relocated = 0;
+            long copied = 0;
+
+            for(SpoolSegment segment : m_spool.getSealedSegments()){
+                long live = segment.getLiveBytes();
+                if(live > 0 && live >= segment.getSize() * m_liveRatio){
+                    continue;
+                }
+
+                if(live > 0){
+                    long[] moved = relocateLive(segment);
+                    relocated += moved[0];
+                    copied += moved[1];
+                    rewritten++;
+                }
+
+                if(segment.getLiveBytes() > 0){
+                    LOGGER.warn("Segment {} still has {} live bytes after compaction, keeping it",
+                            segment.getId(), segment.getLiveBytes());
+                    continue;
+                }
+                reclaimable.add(segment);
+            }
+
+            long deleted = 0;
+            if(!reclaimable.isEmpty()){
+                m_spool.checkpoint();
+                for(SpoolSegment segment : reclaimable){
+                    deleted += segment.getSize();
+                    m_spool.dropSegment(segment);
+                }
+            }
+
+            m_spool.advanceLowWatermark(WATERMARK_SCAN_LIMIT);
+            m_spool.compactParticipants(WATERMARK_SCAN_LIMIT);
+
+            CompactionResult result = new CompactionResult(reclaimable.size(), rewritten, relocated, copied,
+                    deleted - copied, System.nanoTime() - start);
+            m_passCount.incrementAndGet();
+            m_bytesReclaimed.addAndGet(result.getBytesReclaimed());
+            m_bytesCopied.addAndGet(copied);
+            m_lastResult = result;
+            return result;
+        }
+    }
+
+    /**
+     * Gets the number of completed compaction passes.
+     *
+     * @return The pass count.
+     */
+    public long getPassCount(){
+        return m_passCount.get();
+    }
+
+    /**
+     * Gets the total disk space reclaimed by all passes.
+     *
+     * @return The reclaimed bytes.
+     */
+    public long getBytesReclaimed(){
+        return m_bytesReclaimed.get();
+    }
+
+    /**
+     * Gets the total record bytes copied by all passes.
+     *
+     * @return The copied bytes.
+     */
+    public long getBytesCopied(){
+        return m_bytesCopied.get();
+    }
+
+    /**
+     * Gets the result of the most recent pass.
+     *
+     * @return The last result, or null if no pass has completed.
+     */
+    public CompactionResult getLastResult(){
+        return m_lastResult;
+    }
+
+    /**
+     * Stops background compaction. Must be called before the spool is closed.
+     */
+    @Override
+    public synchronized void close(){
+        if(m_scheduler == null){
+            return;
+        }
+
+        m_scheduler.shutdownNow();
+        try{
+            m_scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        m_scheduler = null;
+    }
+
+    /**
+     * Runs a pass from the background scheduler, logging its outcome.
+     */
+    private void runPass(){
+        try{
+            CompactionResult result = compact();
+            if(result.getSegmentsDeleted() > 0){
+                LOGGER.info("Spool compaction reclaimed {} bytes at {} bytes/s: {}", result.getBytesReclaimed(),
+                        (long) result.getThroughputBytesPerSecond(), result);
+            }
+        }
+        catch(InterruptedIOException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(IOException | RuntimeException e){
+            LOGGER.error("Spool compaction failed", e);
+        }
+    }
+
+    /**
+     * Copies the queued messages of a segment to the active segment.
+     *
+     * @param segment The segment to empty.
+     * @return The number of messages relocated and the number of record bytes copied.
+     * @throws IOException If the segment cannot be read or a copy cannot be written.
+     */
+    private long[] relocateLive(SpoolSegment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SpoolSegment.RECORD_HEADER_SIZE);
+        long size = segment.getSize();
+        long position = 0;
+        long relocated = 0;
+        long copied = 0;
+        List<MessageSpool.Relocation> batch = new ArrayList<>();
+
+        try{
+            while(position + SpoolSegment.RECORD_HEADER_SIZE <= size){
+                m_rateLimiter.acquire(SpoolSegment.RECORD_HEADER_SIZE);
+                if(!segment.readHeader(position, header)){
+                    break;
+                }
+
+                long messageId = header.getLong(4);
+                int length = header.getInt(12);
+                long recordSize = SpoolSegment.recordSize(length);
+
+                SpoolEntry entry = m_spool.getEntry(messageId);
+                if(entry != null && !entry.getState().isDead() && entry.getSegmentId() == segment.getId()
+                        && entry.getOffset() == position){
+                    // The body is read once and written once.
+                    m_rateLimiter.acquire(2L * length);
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    segment.readBody(position, body);
+                    body.flip();
+
+                    boolean compressed = header.getInt(0) == SpoolSegment.COMPRESSED_RECORD_MAGIC;
+                    batch.add(m_spool.copyRecord(messageId, segment, position, body, compressed));
+                    copied += recordSize;
+                    if(batch.size() == RELOCATION_BATCH){
+                        relocated += m_spool.commitRelocations(batch);
+                        batch.clear();
+                    }
+                }
+
+                position += recordSize;
+            }
+            relocated += m_spool.commitRelocations(batch);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compacting segment " + segment.getId());
+        }
+
+        return new long[]{relocated, copied};
+    }
+}
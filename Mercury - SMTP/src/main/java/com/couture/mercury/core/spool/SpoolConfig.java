@@ -0,0 +1,590 @@
+package com.couture.mercury.core.spool;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * Immutable configuration of a {@link MessageSpool}.
+ */
+public final class SpoolConfig {
+    /**
+     * Default size of a segment file, in bytes.
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    /**
+     * Default group commit window, in microseconds.
+     */
+    public static final long DEFAULT_GROUP_COMMIT_WINDOW_MICROS = 2_000;
+
+    /**
+     * Default number of messages that triggers a group commit before the window elapses.
+     */
+    public static final int DEFAULT_MAX_GROUP_SIZE = 256;
+
+    /**
+     * Default number of appended messages between automatic checkpoints.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
+
+    /**
+     * Default live-byte ratio below which a sealed segment is rewritten by the compactor.
+     */
+    public static final double DEFAULT_COMPACTION_LIVE_RATIO = 0.5;
+
+    /**
+     * Default I/O budget of the compactor, in bytes per second.
+     */
+    public static final long DEFAULT_COMPACTION_BYTES_PER_SECOND = 32L << 20;
+
+    /**
+     * Default pause between compaction passes, in milliseconds.
+     */
+    public static final long DEFAULT_COMPACTION_INTERVAL_MILLIS = 30_000;
+
+    /**
+     * Default minimum body size for compression; zero leaves compression off.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 0;
+
+    /**
+     * Default Deflater level, favouring speed since compression runs on the accepting thread.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    /**
+     * Default number of uncompressed bytes per independently compressed block.
+     */
+    public static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 64 << 10;
+
+    /**
+     * Default number of threads performing asynchronous spool writes.
+     */
+    public static final int DEFAULT_IO_THREADS = 2;
+
+    /**
+     * Default number of asynchronous spool writes that may wait for an I/O thread.
+     */
+    public static final int DEFAULT_IO_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Default bytes of queued spool writes at which new mail is refused and DATA reads are paused.
+     */
+    public static final long DEFAULT_PRESSURE_HIGH_BYTES = 256L << 20;
+
+    /**
+     * Default bytes of queued spool writes at which the receive path resumes.
+     */
+    public static final long DEFAULT_PRESSURE_LOW_BYTES = 128L << 20;
+
+    /**
+     * Default average spool write latency, in milliseconds, at which the receive path is throttled.
+     */
+    public static final long DEFAULT_PRESSURE_HIGH_LATENCY_MILLIS = 500;
+
+    /**
+     * Default average spool write latency, in milliseconds, at which the receive path resumes.
+     */
+    public static final long DEFAULT_PRESSURE_LOW_LATENCY_MILLIS = 100;
+
+    private final Path m_directory;
+    private final long m_segmentSize;
+    private final FsyncPolicy m_fsyncPolicy;
+    private final long m_groupCommitWindowMicros;
+    private final int m_maxGroupSize;
+    private final int m_checkpointInterval;
+    private final double m_compactionLiveRatio;
+    private final long m_compactionBytesPerSecond;
+    private final long m_compactionIntervalMillis;
+    private final int m_compressionThreshold;
+    private final int m_compressionLevel;
+    private final int m_compressionBlockSize;
+    private final int m_ioThreads;
+    private final int m_ioQueueCapacity;
+    private final long m_pressureHighBytes;
+    private final long m_pressureLowBytes;
+    private final long m_pressureHighLatencyMillis;
+    private final long m_pressureLowLatencyMillis;
+
+    /**
+     * Creates a configuration from a builder.
+     *
+     * @param builder The builder.
+     */
+    private SpoolConfig(Builder builder){
+        m_directory = builder.m_directory;
+        m_segmentSize = builder.m_segmentSize;
+        m_fsyncPolicy = builder.m_fsyncPolicy;
+        m_groupCommitWindowMicros = builder.m_groupCommitWindowMicros;
+        m_maxGroupSize = builder.m_maxGroupSize;
+        m_checkpointInterval = builder.m_checkpointInterval;
+        m_compactionLiveRatio = builder.m_compactionLiveRatio;
+        m_compactionBytesPerSecond = builder.m_compactionBytesPerSecond;
+        m_compactionIntervalMillis = builder.m_compactionIntervalMillis;
+        m_compressionThreshold = builder.m_compressionThreshold;
+        m_compressionLevel = builder.m_compressionLevel;
+        m_compressionBlockSize = builder.m_compressionBlockSize;
+        m_ioThreads = builder.m_ioThreads;
+        m_ioQueueCapacity = builder.m_ioQueueCapacity;
+        m_pressureHighBytes = builder.m_pressureHighBytes;
+        m_pressureLowBytes = builder.m_pressureLowBytes;
+        m_pressureHighLatencyMillis = builder.m_pressureHighLatencyMillis;
+        m_pressureLowLatencyMillis = builder.m_pressureLowLatencyMillis;
+    }
+
+    /**
+     * Creates a builder for a spool stored in the given directory.
+     *
+     * @param directory The spool directory, created if missing.
+     * @return A builder with default settings.
+     */
+    public static Builder builder(Path directory){
+        return new Builder(directory);
+    }
+
+    /**
+     * Gets the spool directory.
+     *
+     * @return The directory.
+     */
+    public Path getDirectory(){
+        return m_directory;
+    }
+
+    /**
+     * Gets the maximum size of a segment file.
+     *
+     * @return The segment size in bytes.
+     */
+    public long getSegmentSize(){
+        return m_segmentSize;
+    }
+
+    /**
+     * Gets the fsync policy used by writes that do not choose their own.
+     *
+     * @return The default fsync policy.
+     */
+    public FsyncPolicy getFsyncPolicy(){
+        return m_fsyncPolicy;
+    }
+
+    /**
+     * Gets the time a group commit waits for more messages after the first one arrives.
+     *
+     * @return The window in microseconds.
+     */
+    public long getGroupCommitWindowMicros(){
+        return m_groupCommitWindowMicros;
+    }
+
+    /**
+     * Gets the number of pending messages that triggers a group commit immediately.
+     *
+     * @return The maximum group size.
+     */
+    public int getMaxGroupSize(){
+        return m_maxGroupSize;
+    }
+
+    /**
+     * Gets the number of appended messages between automatic checkpoints.
+     * Bounds the segment tail that has to be replayed after a crash.
+     *
+     * @return The checkpoint interval, or 0 if checkpoints are only written on demand and on close.
+     */
+    public int getCheckpointInterval(){
+        return m_checkpointInterval;
+    }
+
+    /**
+     * Gets the live-byte ratio below which a sealed segment is rewritten by the compactor.
+     *
+     * @return The ratio of live record bytes to segment size.
+     */
+    public double getCompactionLiveRatio(){
+        return m_compactionLiveRatio;
+    }
+
+    /**
+     * Gets the I/O budget of the compactor, counting both bytes read and bytes copied.
+     *
+     * @return The budget in bytes per second.
+     */
+    public long getCompactionBytesPerSecond(){
+        return m_compactionBytesPerSecond;
+    }
+
+    /**
+     * Gets the pause between background compaction passes.
+     *
+     * @return The interval in milliseconds.
+     */
+    public long getCompactionIntervalMillis(){
+        return m_compactionIntervalMillis;
+    }
+
+    /**
+     * Gets the minimum body size at which bodies are compressed.
+     *
+     * @return The threshold in bytes, or 0 if compression is disabled.
+     */
+    public int getCompressionThreshold(){
+        return m_compressionThreshold;
+    }
+
+    /**
+     * Checks if bodies are compressed.
+     *
+     * @return True if a compression threshold is set.
+     */
+    public boolean isCompressionEnabled(){
+        return m_compressionThreshold > 0;
+    }
+
+    /**
+     * Gets the Deflater level used for compressed bodies.
+     *
+     * @return The level, from 1 (fastest) to 9 (smallest).
+     */
+    public int getCompressionLevel(){
+        return m_compressionLevel;
+    }
+
+    /**
+     * Gets the number of uncompressed bytes per compressed block, the unit of random access on read.
+     *
+     * @return The block size in bytes.
+     */
+    public int getCompressionBlockSize(){
+        return m_compressionBlockSize;
+    }
+
+    /**
+     * Gets the number of threads an {@link AsyncSpoolWriter} performs spool writes on.
+     *
+     * @return The thread count.
+     */
+    public int getIoThreads(){
+        return m_ioThreads;
+    }
+
+    /**
+     * Gets the number of asynchronous spool writes that may wait for an I/O thread before further
+     * writes are refused.
+     *
+     * @return The queue capacity.
+     */
+    public int getIoQueueCapacity(){
+        return m_ioQueueCapacity;
+    }
+
+    /**
+     * Gets the high-water mark of queued spool write bytes, at which {@link SpoolPressure} throttles the receive path.
+     *
+     * @return The high-water mark in bytes.
+     */
+    public long getPressureHighBytes(){
+        return m_pressureHighBytes;
+    }
+
+    /**
+     * Gets the low-water mark of queued spool write bytes, at which the receive path resumes.
+     *
+     * @return The low-water mark in bytes.
+     */
+    public long getPressureLowBytes(){
+        return m_pressureLowBytes;
+    }
+
+    /**
+     * Gets the high-water mark of the average spool write latency.
+     *
+     * @return The high-water mark in milliseconds.
+     */
+    public long getPressureHighLatencyMillis(){
+        return m_pressureHighLatencyMillis;
+    }
+
+    /**
+     * Gets the low-water mark of the average spool write latency.
+     *
+     * @return The low-water mark in milliseconds.
+     */
+    public long getPressureLowLatencyMillis(){
+        return m_pressureLowLatencyMillis;
+    }
+
+    /**
+     * Builder for {@link SpoolConfig}.
+     */
+    public static final class Builder {
+        private final Path m_directory;
+        private long m_segmentSize = DEFAULT_SEGMENT_SIZE;
+        private FsyncPolicy m_fsyncPolicy = FsyncPolicy.GROUP_WINDOW;
+        private long m_groupCommitWindowMicros = DEFAULT_GROUP_COMMIT_WINDOW_MICROS;
+        private int m_maxGroupSize = DEFAULT_MAX_GROUP_SIZE;
+        private int m_checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+        private double m_compactionLiveRatio = DEFAULT_COMPACTION_LIVE_RATIO;
+        private long m_compactionBytesPerSecond = DEFAULT_COMPACTION_BYTES_PER_SECOND;
+        private long m_compactionIntervalMillis = DEFAULT_COMPACTION_INTERVAL_MILLIS;
+        private int m_compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+        private int m_compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+        private int m_compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+        private int m_ioThreads = DEFAULT_IO_THREADS;
+        private int m_ioQueueCapacity = DEFAULT_IO_QUEUE_CAPACITY;
+        private long m_pressureHighBytes = DEFAULT_PRESSURE_HIGH_BYTES;
+        private long m_pressureLowBytes = DEFAULT_PRESSURE_LOW_BYTES;
+        private long m_pressureHighLatencyMillis = DEFAULT_PRESSURE_HIGH_LATENCY_MILLIS;
+        private long m_pressureLowLatencyMillis = DEFAULT_PRESSURE_LOW_LATENCY_MILLIS;
+
+        /**
+         * Creates a builder.
+         *
+         * @param directory The spool directory.
+         */
+        private Builder(Path directory){
+            m_directory = Objects.requireNonNull(directory, "Spool directory cannot be null");
+        }
+
+        /**
+         * Sets the maximum size of a segment file.
+         *
+         * @param segmentSize The segment size in bytes (At least 4 KiB).
+         * @return This builder.
+         * @throws IllegalArgumentException If the size is below 4 KiB.
+         */
+        public Builder segmentSize(long segmentSize){
+            if(segmentSize < 4096){
+                throw new IllegalArgumentException("Segment size must be at least 4096 bytes");
+            }
+            m_segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the default fsync policy.
+         *
+         * @param fsyncPolicy The policy.
+         * @return This builder.
+         */
+        public Builder fsyncPolicy(FsyncPolicy fsyncPolicy){
+            m_fsyncPolicy = Objects.requireNonNull(fsyncPolicy, "Fsync policy cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the group commit window.
+         *
+         * @param windowMicros The window in microseconds (0 commits as soon as the committer is free).
+         * @return This builder.
+         * @throws IllegalArgumentException If the window is negative.
+         */
+        public Builder groupCommitWindowMicros(long windowMicros){
+            if(windowMicros < 0){
+                throw new IllegalArgumentException("Group commit window cannot be negative");
+            }
+            m_groupCommitWindowMicros = windowMicros;
+            return this;
+        }
+
+        /**
+         * Sets the number of pending messages that triggers a group commit immediately.
+         *
+         * @param maxGroupSize The maximum group size (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the size is less than 1.
+         */
+        public Builder maxGroupSize(int maxGroupSize){
+            if(maxGroupSize < 1){
+                throw new IllegalArgumentException("Maximum group size must be at least 1");
+            }
+            m_maxGroupSize = maxGroupSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of appended messages between automatic checkpoints.
+         *
+         * @param checkpointInterval The interval in messages, or 0 to disable automatic checkpoints.
+         * @return This builder.
+         * @throws IllegalArgumentException If the interval is negative.
+         */
+        public Builder checkpointInterval(int checkpointInterval){
+            if(checkpointInterval < 0){
+                throw new IllegalArgumentException("Checkpoint interval cannot be negative");
+            }
+            m_checkpointInterval = checkpointInterval;
+            return this;
+        }
+
+        /**
+         * Sets the live-byte ratio below which a sealed segment is rewritten by the compactor.
+         * Segments without any live bytes are always deleted.
+         *
+         * @param liveRatio The ratio, between 0 and 1.
+         * @return This builder.
+         * @throws IllegalArgumentException If the ratio is outside [0, 1].
+         */
+        public Builder compactionLiveRatio(double liveRatio){
+            if(liveRatio < 0 || liveRatio > 1){
+                throw new IllegalArgumentException("Compaction live ratio must be between 0 and 1");
+            }
+            m_compactionLiveRatio = liveRatio;
+            return this;
+        }
+
+        /**
+         * Sets the I/O budget of the compactor.
+         *
+         * @param bytesPerSecond The budget in bytes per second (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the budget is less than 1.
+         */
+        public Builder compactionBytesPerSecond(long bytesPerSecond){
+            if(bytesPerSecond < 1){
+                throw new IllegalArgumentException("Compaction rate must be at least 1 byte per second");
+            }
+            m_compactionBytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Sets the pause between background compaction passes.
+         *
+         * @param intervalMillis The interval in milliseconds (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If the interval is less than 1.
+         */
+        public Builder compactionIntervalMillis(long intervalMillis){
+            if(intervalMillis < 1){
+                throw new IllegalArgumentException("Compaction interval must be at least 1 millisecond");
+            }
+            m_compactionIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Enables block compression for bodies of at least the given size. Smaller bodies, and bodies
+         * that do not shrink, are stored as they are.
+         *
+         * @param threshold The minimum body size in bytes, or 0 to disable compression.
+         * @return This builder.
+         * @throws IllegalArgumentException If the threshold is negative.
+         */
+        public Builder compressionThreshold(int threshold){
+            if(threshold < 0){
+                throw new IllegalArgumentException("Compression threshold cannot be negative");
+            }
+            m_compressionThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the Deflater level used for compressed bodies.
+         *
+         * @param level The level, from 1 (fastest) to 9 (smallest).
+         * @return This builder.
+         * @throws IllegalArgumentException If the level is outside [1, 9].
+         */
+        public Builder compressionLevel(int level){
+            if(level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION){
+                throw new IllegalArgumentException("Compression level must be between 1 and 9");
+            }
+            m_compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * Sets the number of uncompressed bytes per compressed block. Smaller blocks make reads of a
+         * range cheaper; larger blocks compress slightly better.
+         *
+         * @param blockSize The block size in bytes (At least 4096).
+         * @return This builder.
+         * @throws IllegalArgumentException If the block size is less than 4096.
+         */
+        public Builder compressionBlockSize(int blockSize){
+            if(blockSize < 4096){
+                throw new IllegalArgumentException("Compression block size must be at least 4096 bytes");
+            }
+            m_compressionBlockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads performing asynchronous spool writes.
+         *
+         * @param threads The thread count (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If threads is less than 1.
+         */
+        public Builder ioThreads(int threads){
+            if(threads < 1){
+                throw new IllegalArgumentException("I/O thread count must be at least 1");
+            }
+            m_ioThreads = threads;
+            return this;
+        }
+
+        /**
+         * Sets the number of asynchronous spool writes that may wait for an I/O thread.
+         *
+         * @param capacity The queue capacity (At least 1).
+         * @return This builder.
+         * @throws IllegalArgumentException If capacity is less than 1.
+         */
+        public Builder ioQueueCapacity(int capacity){
+            if(capacity < 1){
+                throw new IllegalArgumentException("I/O queue capacity must be at least 1");
+            }
+            m_ioQueueCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the water marks of queued spool write bytes. The receive path is throttled at the high
+         * mark and resumes once the queue has drained to the low mark.
+         *
+         * @param lowBytes The low-water mark in bytes (At least 0).
+         * @param highBytes The high-water mark in bytes (Greater than lowBytes).
+         * @return This builder.
+         * @throws IllegalArgumentException If lowBytes is negative or not less than highBytes.
+         */
+        public Builder pressureBytes(long lowBytes, long highBytes){
+            if(lowBytes < 0 || lowBytes >= highBytes){
+                throw new IllegalArgumentException("Pressure water marks must satisfy 0 <= low < high");
+            }
+            m_pressureLowBytes = lowBytes;
+            m_pressureHighBytes = highBytes;
+            return this;
+        }
+
+        /**
+         * Sets the water marks of the average spool write latency. The receive path is throttled at the
+         * high mark and resumes once the average has fallen to the low mark.
+         *
+         * @param lowMillis The low-water mark in milliseconds (At least 0).
+         * @param highMillis The high-water mark in milliseconds (Greater than lowMillis).
+         * @return This builder.
+         * @throws IllegalArgumentException If lowMillis is negative or not less than highMillis.
+         */
+        public Builder pressureLatencyMillis(long lowMillis, long highMillis){
+            if(lowMillis < 0 || lowMillis >= highMillis){
+                throw new IllegalArgumentException("Pressure water marks must satisfy 0 <= low < high");
+            }
+            m_pressureLowLatencyMillis = lowMillis;
+            m_pressureHighLatencyMillis = highMillis;
+            return this;
+        }
+
+        /**
+         * Builds the configuration.
+         *
+         * @return The configuration.
+         */
+        public SpoolConfig build(){
+            return new SpoolConfig(this);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.couture.mercury.core.spool;
+
+/**
+ * Snapshot of a message's entry in the spool index.
+ */
+public final class SpoolEntry {
+    private final long m_messageId;
+    private final int m_segmentId;
+    private final long m_offset;
+    private final int m_length;
+    private final MessageState m_state;
+    private final boolean m_compressed;
+
+    /**
+     * Creates an index entry snapshot.
+     *
+     * @param messageId The message identifier.
+     * @param segmentId The segment holding the message.
+     * @param offset The offset of the message record within the segment.
+     * @param length The length of the message body in bytes.
+     * @param state The state of the message.
+     */
+    public SpoolEntry(long messageId, int segmentId, long offset, int length, MessageState state){
+        this(messageId, segmentId, offset, length, state, false);
+    }
+
+    /**
+     * Creates an index entry snapshot.
+     *
+     * @param messageId The message identifier.
+     * @param segmentId The segment holding the message.
+     * @param offset The offset of the message record within the segment.
+     * @param length The length of the stored body in bytes.
+     * @param state The state of the message.
+     * @param compressed True if the body is stored block compressed.
+     */
+    public SpoolEntry(long messageId, int segmentId, long offset, int length, MessageState state, boolean compressed){
+        m_messageId = messageId;
+        m_segmentId = segmentId;
+        m_offset = offset;
+        m_length = length;
+        m_state = state;
+        m_compressed = compressed;
+    }
+
+    /**
+     * Gets the message identifier.
+     *
+     * @return The message identifier.
+     */
+    public long getMessageId(){
+        return m_messageId;
+    }
+
+    /**
+     * Gets the identifier of the segment holding the message.
+     *
+     * @return The segment identifier.
+     */
+    public int getSegmentId(){
+        return m_segmentId;
+    }
+
+    /**
+     * Gets the offset of the message record within its segment.
+     *
+     * @return The record offset.
+     */
+    public long getOffset(){
+        return m_offset;
+    }
+
+    /**
+     * Gets the length of the message body as stored. For a compressed body this is the compressed size.
+     *
+     * @return The stored body length in bytes.
+     */
+    public int getLength(){
+        return m_length;
+    }
+
+    /**
+     * Gets the state of the message.
+     *
+     * @return The message state.
+     */
+    public MessageState getState(){
+        return m_state;
+    }
+
+    /**
+     * Checks if the body is stored block compressed.
+     *
+     * @return True if the body is compressed.
+     */
+    public boolean isCompressed(){
+        return m_compressed;
+    }
+
+    @Override
+    public String toString(){
+        return "SpoolEntry{" + "messageId=" + m_messageId + ", segment=" + m_segmentId + ", offset=" + m_offset
+                + ", length=" + m_length + ", state=" + m_state + ", compressed=" + m_compressed + '}';
+    }
+}
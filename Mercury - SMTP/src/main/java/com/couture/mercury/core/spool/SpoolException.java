@@ -0,0 +1,28 @@
+package com.couture.mercury.core.spool;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the spool cannot store or read a message, or its files are inconsistent.
+ */
+public class SpoolException extends IOException {
+
+    /**
+     * Constructs a new spool exception.
+     *
+     * @param message Detailed error message.
+     */
+    public SpoolException(String message){
+        super(message);
+    }
+
+    /**
+     * Constructs a new spool exception with a cause.
+     *
+     * @param message Detailed error message.
+     * @param cause The underlying cause.
+     */
+    public SpoolException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
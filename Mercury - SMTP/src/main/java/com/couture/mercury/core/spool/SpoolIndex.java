@@ -0,0 +1,364 @@
+package com.couture.mercury.core.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Memory-mapped index of spooled messages: message-id to (segment, offset, length, state).
+ *
+ * <p>Message identifiers are assigned sequentially from 1, so the entry of a message lives at
+ * a fixed slot computed from its identifier and lookups need no hashing or in-memory map.
+ * The file is a header page followed by fixed-size entries (see {@link MappedSlotFile}):</p>
+ * <pre>
+ *   header   int magic, int version, long nextMessageId,
+ *            int checkpointSegment, long checkpointOffset, long checkpointNextId, long lowWatermark
+ *   entry    long messageId, long offset, int segmentId, int length, byte state, byte flags, 6 bytes padding
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+final class SpoolIndex implements Closeable {
+    /**
+     * Name of the index file in the spool directory.
+     */
+    static final String FILE_NAME = "spool.idx";
+
+    static final int INDEX_MAGIC = 0x4D494458;
+    static final int INDEX_VERSION = 1;
+    static final int HEADER_SIZE = 4096;
+    static final int ENTRY_SIZE = 32;
+
+    private static final int HEADER_NEXT_ID = 8;
+    private static final int HEADER_CHECKPOINT_SEGMENT = 16;
+    private static final int HEADER_CHECKPOINT_OFFSET = 24;
+    private static final int HEADER_CHECKPOINT_NEXT_ID = 32;
+    private static final int HEADER_LOW_WATERMARK = 40;
+
+    private static final int ENTRY_MESSAGE_ID = 0;
+    private static final int ENTRY_OFFSET = 8;
+    private static final int ENTRY_SEGMENT = 16;
+    private static final int ENTRY_LENGTH = 20;
+    private static final int ENTRY_STATE = 24;
+    private static final int ENTRY_FLAGS = 25;
+
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private final MappedSlotFile m_file;
+    private final MappedByteBuffer m_header;
+    private long m_nextMessageId;
+
+    /**
+     * Opens or creates the index in a spool directory.
+     *
+     * @param directory The spool directory.
+     * @throws IOException If the index cannot be opened or is not a spool index.
+     */
+    SpoolIndex(Path directory) throws IOException {
+        m_file = new MappedSlotFile(directory.resolve(FILE_NAME), HEADER_SIZE, ENTRY_SIZE);
+        m_header = m_file.header();
+
+        if(m_file.isCreated()){
+            m_header.putInt(0, INDEX_MAGIC);
+            m_header.putInt(4, INDEX_VERSION);
+            m_header.putLong(HEADER_NEXT_ID, 1);
+        }
+        else if(m_header.getInt(0) != INDEX_MAGIC){
+            m_file.close();
+            throw new SpoolException("Not a spool index: " + m_file.getPath());
+        }
+        else if(m_header.getInt(4) != INDEX_VERSION){
+            m_file.close();
+            throw new SpoolException("Unsupported spool index version " + m_header.getInt(4));
+        }
+
+        m_nextMessageId = m_header.getLong(HEADER_NEXT_ID);
+    }
+
+    /**
+     * Allocates the next message identifier.
+     *
+     * @return The identifier.
+     */
+    synchronized long allocateId(){
+        long id = m_nextMessageId++;
+        m_header.putLong(HEADER_NEXT_ID, m_nextMessageId);
+        return id;
+    }
+
+    /**
+     * Gets the identifier that will be assigned to the next message.
+     *
+     * @return The next identifier.
+     */
+    synchronized long getNextMessageId(){
+        return m_nextMessageId;
+    }
+
+    /**
+     * Raises the identifier that will be assigned to the next message. Used by recovery.
+     *
+     * @param nextMessageId The next identifier; ignored if lower than the current one.
+     */
+    synchronized void advanceNextMessageId(long nextMessageId){
+        if(nextMessageId > m_nextMessageId){
+            m_nextMessageId = nextMessageId;
+            m_header.putLong(HEADER_NEXT_ID, nextMessageId);
+        }
+    }
+
+    /**
+     * Writes the entry of a message.
+     *
+     * @param messageId The message identifier.
+     * @param segmentId The segment holding the record.
+     * @param offset The record offset.
+     * @param length The body length.
+     * @param state The message state.
+     * @param compressed True if the body is stored block compressed.
+     * @throws IOException If the index cannot be extended.
+     */
+    synchronized void put(long messageId, int segmentId, long offset, int length, MessageState state, boolean compressed)
+            throws IOException {
+        MappedByteBuffer chunk = chunkFor(messageId, true);
+        int position = entryPosition(messageId);
+        chunk.putLong(position + ENTRY_MESSAGE_ID, messageId);
+        chunk.putLong(position + ENTRY_OFFSET, offset);
+        chunk.putInt(position + ENTRY_SEGMENT, segmentId);
+        chunk.putInt(position + ENTRY_LENGTH, length);
+        chunk.put(position + ENTRY_STATE, (byte) state.getCode());
+        chunk.put(position + ENTRY_FLAGS, compressed ? FLAG_COMPRESSED : 0);
+        m_file.markDirty(messageId - 1);
+    }
+
+    /**
+     * Updates the state of a message.
+     *
+     * @param messageId The message identifier.
+     * @param state The new state.
+     * @return The previous entry, or null if the message is not in the index.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized SpoolEntry setState(long messageId, MessageState state) throws IOException {
+        SpoolEntry entry = get(messageId);
+        if(entry != null){
+            chunkFor(messageId, false).put(entryPosition(messageId) + ENTRY_STATE, (byte) state.getCode());
+            m_file.markDirty(messageId - 1);
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the entry of a message.
+     *
+     * @param messageId The message identifier.
+     * @return The entry, or null if the message is not in the index.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized SpoolEntry get(long messageId) throws IOException {
+        if(messageId < 1 || messageId >= m_nextMessageId){
+            return null;
+        }
+
+        MappedByteBuffer chunk = chunkFor(messageId, false);
+        if(chunk == null){
+            return null;
+        }
+
+        int position = entryPosition(messageId);
+        MessageState state = MessageState.fromCode(chunk.get(position + ENTRY_STATE));
+        if(state == null || chunk.getLong(position + ENTRY_MESSAGE_ID) != messageId){
+            return null;
+        }
+
+        return new SpoolEntry(messageId, chunk.getInt(position + ENTRY_SEGMENT), chunk.getLong(position + ENTRY_OFFSET),
+                chunk.getInt(position + ENTRY_LENGTH), state, (chunk.get(position + ENTRY_FLAGS) & FLAG_COMPRESSED) != 0);
+    }
+
+    /**
+     * Moves the entry of a message to a relocated copy of its record, keeping its current state.
+     * The move only happens if the entry still points at the original record.
+     *
+     * @param messageId The message identifier.
+     * @param fromSegmentId The segment of the original record.
+     * @param fromOffset The offset of the original record.
+     * @param toSegmentId The segment of the copy.
+     * @param toOffset The offset of the copy.
+     * @return The state of the moved entry, or null if the entry no longer points at the original record.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized MessageState move(long messageId, int fromSegmentId, long fromOffset, int toSegmentId, long toOffset)
+            throws IOException {
+        SpoolEntry entry = get(messageId);
+        if(entry == null || entry.getSegmentId() != fromSegmentId || entry.getOffset() != fromOffset){
+            return null;
+        }
+
+        MappedByteBuffer chunk = chunkFor(messageId, false);
+        int position = entryPosition(messageId);
+        chunk.putLong(position + ENTRY_OFFSET, toOffset);
+        chunk.putInt(position + ENTRY_SEGMENT, toSegmentId);
+        m_file.markDirty(messageId - 1);
+        return entry.getState();
+    }
+
+    /**
+     * Sums the record bytes of queued messages per segment, without allocating per entry.
+     * Only entries from the low watermark onwards are visited.
+     *
+     * @param liveBytes Receives the totals, indexed by segment identifier minus firstSegmentId.
+     * @param firstSegmentId The segment identifier stored at index 0 of liveBytes.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized void sumLiveBytes(long[] liveBytes, int firstSegmentId) throws IOException {
+        for(long id = getLowWatermark(); id < m_nextMessageId; id++){
+            MappedByteBuffer chunk = chunkFor(id, false);
+            if(chunk == null){
+                return;
+            }
+
+            int position = entryPosition(id);
+            if(chunk.get(position + ENTRY_STATE) != MessageState.QUEUED.getCode()
+                    || chunk.getLong(position + ENTRY_MESSAGE_ID) != id){
+                continue;
+            }
+
+            int slot = chunk.getInt(position + ENTRY_SEGMENT) - firstSegmentId;
+            if(slot >= 0 && slot < liveBytes.length){
+                liveBytes[slot] += SpoolSegment.recordSize(chunk.getInt(position + ENTRY_LENGTH));
+            }
+        }
+    }
+
+    /**
+     * Advances the low watermark past messages that are dead or missing.
+     * Every message below the low watermark is known not to need its record.
+     *
+     * @param maxEntries The maximum number of entries to examine.
+     * @return The new low watermark.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized long advanceLowWatermark(int maxEntries) throws IOException {
+        long watermark = getLowWatermark();
+        long limit = Math.min(m_nextMessageId, watermark + maxEntries);
+
+        while(watermark < limit){
+            SpoolEntry entry = get(watermark);
+            if(entry != null && !entry.getState().isDead()){
+                break;
+            }
+            watermark++;
+        }
+
+        m_header.putLong(HEADER_LOW_WATERMARK, watermark);
+        return watermark;
+    }
+
+    /**
+     * Gets the low watermark: the lowest message identifier that may still be queued.
+     *
+     * @return The low watermark.
+     */
+    synchronized long getLowWatermark(){
+        return Math.max(1, m_header.getLong(HEADER_LOW_WATERMARK));
+    }
+
+    /**
+     * Removes the entry of a message whose record no longer exists.
+     *
+     * @param messageId The message identifier.
+     * @throws IOException If the index cannot be read.
+     */
+    synchronized void clear(long messageId) throws IOException {
+        if(messageId < 1){
+            return;
+        }
+
+        MappedByteBuffer chunk = chunkFor(messageId, false);
+        if(chunk != null){
+            int position = entryPosition(messageId);
+            chunk.putLong(position + ENTRY_MESSAGE_ID, 0);
+            chunk.put(position + ENTRY_STATE, (byte) 0);
+            m_file.markDirty(messageId - 1);
+        }
+    }
+
+    /**
+     * Records a checkpoint: every record before the given position is durable and indexed.
+     * All entries are forced before the header, so a torn checkpoint can only leave the previous one in place.
+     *
+     * @param segmentId The active segment at the checkpoint.
+     * @param offset The size of the active segment at the checkpoint.
+     * @param nextMessageId The next message identifier at the checkpoint.
+     */
+    synchronized void writeCheckpoint(int segmentId, long offset, long nextMessageId){
+        m_file.forceSlots();
+
+        m_header.putInt(HEADER_CHECKPOINT_SEGMENT, segmentId);
+        m_header.putLong(HEADER_CHECKPOINT_OFFSET, offset);
+        m_header.putLong(HEADER_CHECKPOINT_NEXT_ID, nextMessageId);
+        m_header.force();
+    }
+
+    /**
+     * Gets the active segment recorded by the last checkpoint.
+     *
+     * @return The segment identifier, or 0 if no checkpoint was written.
+     */
+    synchronized int getCheckpointSegment(){
+        return m_header.getInt(HEADER_CHECKPOINT_SEGMENT);
+    }
+
+    /**
+     * Gets the size of the active segment recorded by the last checkpoint.
+     *
+     * @return The offset replay starts from.
+     */
+    synchronized long getCheckpointOffset(){
+        return m_header.getLong(HEADER_CHECKPOINT_OFFSET);
+    }
+
+    /**
+     * Gets the next message identifier recorded by the last checkpoint.
+     *
+     * @return The next identifier at the checkpoint.
+     */
+    synchronized long getCheckpointNextId(){
+        return m_header.getLong(HEADER_CHECKPOINT_NEXT_ID);
+    }
+
+    /**
+     * Forces the index to disk.
+     */
+    synchronized void force(){
+        m_file.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        m_file.close();
+    }
+
+    /**
+     * Gets the chunk holding the entry of a message.
+     *
+     * @param messageId The message identifier.
+     * @param create If true, the file is extended to map a chunk that does not exist yet.
+     * @return The chunk, or null if it does not exist and create is false.
+     * @throws IOException If the chunk cannot be mapped.
+     */
+    private MappedByteBuffer chunkFor(long messageId, boolean create) throws IOException {
+        return m_file.chunkFor(messageId - 1, create);
+    }
+
+    /**
+     * Gets the position of a message's entry within its chunk.
+     *
+     * @param messageId The message identifier.
+     * @return The position in bytes.
+     */
+    private int entryPosition(long messageId){
+        return m_file.slotPosition(messageId - 1);
+    }
+}
@@ -0,0 +1,269 @@
+package com.couture.mercury.core.spool;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.protocol.util.ValidationErrorMessages;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how far the spool is behind the network and decides when the receive path should back off.
+ *
+ * <p>Two signals are watched: the bytes of spool writes queued or in flight, and the average latency
+ * of those writes. When either crosses its high-water mark the level becomes {@link Level#THROTTLED}:
+ * new MAIL commands are answered with 452 through {@link #checkAcceptingMail()} and listeners such as
+ * {@link SpoolReadThrottle} stop reading from sessions in DATA. The level returns to
+ * {@link Level#NORMAL} only once both signals are at or below their low-water marks, so the receive
+ * path does not flap around a single threshold.</p>
+ *
+ * <p>The latency average only counts while writes are in flight. Once the spool has drained, a slow
+ * history cannot keep the receive path throttled with nothing left to measure it against.</p>
+ *
+ * <p>This class is thread-safe. Listeners are called on the thread that caused the transition,
+ * which may be a spool I/O thread, while the monitor's lock is held; they must not block.</p>
+ */
+public final class SpoolPressure {
+    // Weight of the newest write in the latency average.
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final long m_highBytes;
+    private final long m_lowBytes;
+    private final long m_highLatencyNanos;
+    private final long m_lowLatencyNanos;
+    private final List<Listener> m_listeners = new CopyOnWriteArrayList<>();
+
+    private long m_queuedBytes;
+    private int m_inFlight;
+    private double m_latencyNanos;
+    private volatile Level m_level = Level.NORMAL;
+
+    /**
+     * Creates a monitor with the water marks of a spool.
+     *
+     * @param config The spool configuration.
+     */
+    public SpoolPressure(SpoolConfig config){
+        Objects.requireNonNull(config, "Spool configuration cannot be null");
+        m_highBytes = config.getPressureHighBytes();
+        m_lowBytes = config.getPressureLowBytes();
+        m_highLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getPressureHighLatencyMillis());
+        m_lowLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getPressureLowLatencyMillis());
+    }
+
+    /**
+     * Adds a listener for level transitions.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener){
+        m_listeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener){
+        m_listeners.remove(listener);
+    }
+
+    /**
+     * Records a spool write that has been queued.
+     *
+     * @param bytes The bytes to be written.
+     */
+    public synchronized void writeQueued(long bytes){
+        m_queuedBytes += bytes;
+        m_inFlight++;
+        notifyListeners(updateLevel());
+    }
+
+    /**
+     * Records a spool write that has finished, successfully or not.
+     *
+     * @param bytes The bytes given to {@link #writeQueued(long)}.
+     * @param latencyNanos The time from queueing the write to its completion.
+     */
+    public synchronized void writeCompleted(long bytes, long latencyNanos){
+        m_queuedBytes -= bytes;
+        m_inFlight--;
+        m_latencyNanos = m_latencyNanos == 0 ? latencyNanos
+                : m_latencyNanos + LATENCY_WEIGHT * (latencyNanos - m_latencyNanos);
+        notifyListeners(updateLevel());
+    }
+
+    /**
+     * Records a queued spool write that was refused before reaching the disk. Its latency does not
+     * count towards the average.
+     *
+     * @param bytes The bytes given to {@link #writeQueued(long)}.
+     */
+    public synchronized void writeRefused(long bytes){
+        m_queuedBytes -= bytes;
+        m_inFlight--;
+        notifyListeners(updateLevel());
+    }
+
+    /**
+     * Refuses a new transaction while the spool is under pressure.
+     *
+     * @throws CommandException With a 452 response code if the level is {@link Level#THROTTLED}.
+     */
+    public void checkAcceptingMail() throws CommandException {
+        if(m_level == Level.THROTTLED){
+            throw new CommandException(ValidationErrorMessages.SPOOL_UNDER_PRESSURE,
+                    CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE);
+        }
+    }
+
+    /**
+     * Gets the current level.
+     *
+     * @return The level.
+     */
+    public Level getLevel(){
+        return m_level;
+    }
+
+    /**
+     * Gets the current pressure as a fraction of the high-water marks: the larger of the queued bytes
+     * and the write latency, each divided by its high-water mark. Values of 1 and above mean a mark
+     * has been crossed.
+     *
+     * @return The pressure.
+     */
+    public synchronized double getPressure(){
+        return Math.max((double) m_queuedBytes / m_highBytes, currentLatencyNanos() / m_highLatencyNanos);
+    }
+
+    /**
+     * Gets the bytes of spool writes queued or in flight.
+     *
+     * @return The queued bytes.
+     */
+    public synchronized long getQueuedBytes(){
+        return m_queuedBytes;
+    }
+
+    /**
+     * Gets the average spool write latency while writes are in flight.
+     *
+     * @return The latency in milliseconds, or 0 if no writes are in flight.
+     */
+    public synchronized long getWriteLatencyMillis(){
+        return TimeUnit.NANOSECONDS.toMillis((long) currentLatencyNanos());
+    }
+
+    /**
+     * Gets the high-water mark of queued bytes.
+     *
+     * @return The mark in bytes.
+     */
+    public long getHighBytes(){
+        return m_highBytes;
+    }
+
+    /**
+     * Gets the low-water mark of queued bytes.
+     *
+     * @return The mark in bytes.
+     */
+    public long getLowBytes(){
+        return m_lowBytes;
+    }
+
+    /**
+     * Gets the high-water mark of the write latency.
+     *
+     * @return The mark in milliseconds.
+     */
+    public long getHighLatencyMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(m_highLatencyNanos);
+    }
+
+    /**
+     * Gets the low-water mark of the write latency.
+     *
+     * @return The mark in milliseconds.
+     */
+    public long getLowLatencyMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(m_lowLatencyNanos);
+    }
+
+    /**
+     * Gets the latency that counts towards the level.
+     *
+     * @return The average latency, or 0 if no writes are in flight.
+     */
+    private double currentLatencyNanos(){
+        return m_inFlight > 0 ? m_latencyNanos : 0;
+    }
+
+    /**
+     * Moves the level across a water mark. Must be called holding this monitor's lock.
+     *
+     * @return The new level, or null if it did not change.
+     */
+    private Level updateLevel(){
+        double latency = currentLatencyNanos();
+        Level next = m_level;
+        if(m_level == Level.NORMAL && (m_queuedBytes >= m_highBytes || latency >= m_highLatencyNanos)){
+            next = Level.THROTTLED;
+        }
+        else if(m_level == Level.THROTTLED && m_queuedBytes <= m_lowBytes && latency <= m_lowLatencyNanos){
+            next = Level.NORMAL;
+        }
+
+        if(next == m_level){
+            return null;
+        }
+        m_level = next;
+        return next;
+    }
+
+    /**
+     * Tells the listeners about a transition. Must be called holding this monitor's lock, so
+     * transitions are seen in the order they happened.
+     *
+     * @param level The new level, or null if there was no transition.
+     */
+    private void notifyListeners(Level level){
+        if(level == null){
+            return;
+        }
+        for(Listener listener : m_listeners){
+            listener.onLevelChanged(level);
+        }
+    }
+
+    /**
+     * How the receive path should behave.
+     */
+    public enum Level {
+        /**
+         * The spool is keeping up; mail is accepted and DATA is read.
+         */
+        NORMAL,
+        /**
+         * The spool is behind; new mail is refused and DATA reads are paused.
+         */
+        THROTTLED
+    }
+
+    /**
+     * Receives level transitions.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called when the level changes.
+         *
+         * @param level The new level.
+         */
+        void onLevelChanged(Level level);
+    }
+}
@@ -0,0 +1,124 @@
+package com.couture.mercury.core.spool;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pauses reading from sessions in DATA while the spool is under pressure.
+ *
+ * <p>The reactor registers the selection key of a connection when it enters DATA and unregisters it
+ * when the message is complete or the connection closes. While {@link SpoolPressure} is
+ * {@link SpoolPressure.Level#THROTTLED}, {@link SelectionKey#OP_READ} is cleared on every registered
+ * key, so TCP flow control pushes back on the senders instead of their data piling up in memory. When
+ * the level returns to normal the interest is restored and the affected selectors are woken up.
+ * Connections outside DATA keep being read, so they still get their 452 replies to MAIL.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class SpoolReadThrottle implements SpoolPressure.Listener {
+    private final Set<SelectionKey> m_keys = ConcurrentHashMap.newKeySet();
+    private volatile boolean m_throttled;
+
+    /**
+     * Creates a throttle and starts listening to a monitor.
+     *
+     * @param pressure The spool pressure monitor.
+     */
+    public SpoolReadThrottle(SpoolPressure pressure){
+        Objects.requireNonNull(pressure, "Spool pressure cannot be null");
+        m_throttled = pressure.getLevel() == SpoolPressure.Level.THROTTLED;
+        pressure.addListener(this);
+    }
+
+    /**
+     * Registers the key of a connection that has entered DATA. If the spool is already under
+     * pressure, reading stops straight away.
+     *
+     * @param key The connection's selection key.
+     */
+    public void register(SelectionKey key){
+        m_keys.add(Objects.requireNonNull(key, "Selection key cannot be null"));
+        if(m_throttled){
+            pause(key);
+        }
+    }
+
+    /**
+     * Unregisters the key of a connection that has left DATA, restoring its read interest.
+     *
+     * @param key The connection's selection key.
+     */
+    public void unregister(SelectionKey key){
+        if(m_keys.remove(key) && m_throttled){
+            resume(key);
+        }
+    }
+
+    /**
+     * Gets the number of connections in DATA.
+     *
+     * @return The registered key count.
+     */
+    public int getRegisteredCount(){
+        return m_keys.size();
+    }
+
+    /**
+     * Checks if reads are paused.
+     *
+     * @return True while the spool is under pressure.
+     */
+    public boolean isThrottled(){
+        return m_throttled;
+    }
+
+    @Override
+    public void onLevelChanged(SpoolPressure.Level level){
+        m_throttled = level == SpoolPressure.Level.THROTTLED;
+        Set<Selector> selectors = new HashSet<>();
+        for(SelectionKey key : m_keys){
+            if(!key.isValid()){
+                m_keys.remove(key);
+                continue;
+            }
+            if(m_throttled){
+                pause(key);
+            }
+            else{
+                resume(key);
+                selectors.add(key.selector());
+            }
+        }
+
+        // A selector blocked with no ready keys would not notice the restored interest until woken.
+        for(Selector selector : selectors){
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Stops reading from a connection.
+     *
+     * @param key The connection's selection key.
+     */
+    private static void pause(SelectionKey key){
+        if(key.isValid()){
+            key.interestOpsAnd(~SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Resumes reading from a connection.
+     *
+     * @param key The connection's selection key.
+     */
+    private static void resume(SelectionKey key){
+        if(key.isValid()){
+            key.interestOpsOr(SelectionKey.OP_READ);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.couture.mercury.core.spool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Brings the spool index back in line with the segment files after an unclean shutdown.
+ *
+ * <p>Only the tail written since the last checkpoint is replayed: records before the checkpoint
+ * position are known to be durable and indexed. Each replayed record is verified by its magic,
+ * bounds and checksum. The first record that fails verification marks a partial write, and the
+ * segment is truncated there. Index entries allocated after the checkpoint whose record did not
+ * survive are removed.</p>
+ */
+final class SpoolRecovery {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final SpoolIndex m_index;
+    private final long m_segmentCapacity;
+    private final ByteBuffer m_buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final CRC32C m_checksum = new CRC32C();
+    private long m_bufferPosition;
+
+    private BitSet m_replayed;
+    private long m_replayBaseId;
+    private int m_segmentsScanned;
+    private long m_recordsReplayed;
+    private long m_bytesReplayed;
+    private long m_bytesTruncated;
+
+    /**
+     * Creates a recovery pass.
+     *
+     * @param index The spool index.
+     * @param segmentCapacity The configured segment size, used to bound record lengths.
+     */
+    private SpoolRecovery(SpoolIndex index, long segmentCapacity){
+        m_index = index;
+        m_segmentCapacity = segmentCapacity;
+    }
+
+    /**
+     * Recovers the spool.
+     *
+     * @param index The spool index.
+     * @param segments The segments of the spool, in ascending identifier order.
+     * @param segmentCapacity The configured segment size.
+     * @return The recovery report.
+     * @throws IOException If the segments cannot be read or truncated.
+     */
+    static RecoveryReport recover(SpoolIndex index, List<SpoolSegment> segments, long segmentCapacity) throws IOException {
+        return new SpoolRecovery(index, segmentCapacity).run(segments);
+    }
+
+    /**
+     * Runs the recovery.
+     *
+     * @param segments The segments of the spool, in ascending identifier order.
+     * @return The recovery report.
+     * @throws IOException If the segments cannot be read or truncated.
+     */
+    private RecoveryReport run(List<SpoolSegment> segments) throws IOException {
+        long start = System.nanoTime();
+
+        int checkpointSegment = m_index.getCheckpointSegment();
+        long checkpointOffset = m_index.getCheckpointOffset();
+        m_replayBaseId = m_index.getCheckpointNextId();
+
+        SpoolSegment checkpointed = find(segments, checkpointSegment);
+        boolean fromCheckpoint = checkpointed != null && checkpointOffset <= checkpointed.getSize() && m_replayBaseId > 0;
+        if(!fromCheckpoint){
+            checkpointSegment = Integer.MIN_VALUE;
+            checkpointOffset = 0;
+            m_replayBaseId = 1;
+        }
+
+        m_replayed = new BitSet();
+        for(SpoolSegment segment : segments){
+            if(segment.getId() >= checkpointSegment){
+                replay(segment, segment.getId() == checkpointSegment ? checkpointOffset : 0);
+            }
+        }
+
+        // Entries allocated after the checkpoint whose record was not found belong to torn writes.
+        long entriesDiscarded = 0;
+        long nextId = m_index.getNextMessageId();
+        for(int i = m_replayed.nextClearBit(0); m_replayBaseId + i < nextId; i = m_replayed.nextClearBit(i + 1)){
+            long id = m_replayBaseId + i;
+            if(m_index.get(id) != null){
+                m_index.clear(id);
+                entriesDiscarded++;
+            }
+        }
+
+        return new RecoveryReport(fromCheckpoint, m_segmentsScanned, m_recordsReplayed, m_bytesReplayed,
+                m_bytesTruncated, entriesDiscarded, System.nanoTime() - start);
+    }
+
+    /**
+     * Replays the records of a segment from a position, truncating the segment at the first invalid record.
+     *
+     * @param segment The segment.
+     * @param position The position to start from.
+     * @throws IOException If the segment cannot be read or truncated.
+     */
+    private void replay(SpoolSegment segment, long position) throws IOException {
+        FileChannel channel = segment.getChannel();
+        long size = channel.size();
+        long start = position;
+        m_bufferPosition = 0;
+        m_buffer.limit(0);
+        m_segmentsScanned++;
+
+        while(position + SpoolSegment.RECORD_HEADER_SIZE <= size){
+            if(!fill(channel, position, SpoolSegment.RECORD_HEADER_SIZE)){
+                break;
+            }
+
+            int base = (int) (position - m_bufferPosition);
+            long messageId = m_buffer.getLong(base + 4);
+            int length = m_buffer.getInt(base + 12);
+            int checksum = m_buffer.getInt(base + 16);
+            long recordSize = SpoolSegment.recordSize(length);
+
+            int magic = m_buffer.getInt(base);
+            if(!SpoolSegment.isRecordMagic(magic) || messageId < 1 || length < 0
+                    || recordSize > m_segmentCapacity || position + recordSize > size
+                    || !verify(channel, position, length, checksum)){
+                break;
+            }
+
+            apply(messageId, segment.getId(), position, length, magic == SpoolSegment.COMPRESSED_RECORD_MAGIC);
+            position += recordSize;
+        }
+
+        m_bytesReplayed += position - start;
+        if(position < size){
+            m_bytesTruncated += size - position;
+            segment.truncate(position);
+        }
+        else{
+            // The tail may only have reached the page cache before the crash.
+            segment.force();
+        }
+    }
+
+    /**
+     * Verifies the checksum of a record body.
+     *
+     * @param channel The segment channel.
+     * @param position The record position.
+     * @param length The body length.
+     * @param checksum The expected checksum.
+     * @return True if the body matches the checksum.
+     * @throws IOException If the body cannot be read.
+     */
+    private boolean verify(FileChannel channel, long position, int length, int checksum) throws IOException {
+        long bodyPosition = position + SpoolSegment.RECORD_HEADER_SIZE;
+        m_checksum.reset();
+
+        if(length <= READ_BUFFER_SIZE){
+            if(!fill(channel, bodyPosition, length)){
+                return false;
+            }
+            m_checksum.update(m_buffer.array(), (int) (bodyPosition - m_bufferPosition), length);
+        }
+        else{
+            ByteBuffer body = ByteBuffer.allocate(length);
+            while(body.hasRemaining()){
+                if(channel.read(body, bodyPosition + body.position()) < 0){
+                    return false;
+                }
+            }
+            body.flip();
+            m_checksum.update(body);
+        }
+
+        return (int) m_checksum.getValue() == checksum;
+    }
+
+    /**
+     * Makes sure the read buffer holds the given range of the segment, refilling it if needed.
+     *
+     * @param channel The segment channel.
+     * @param position The start of the range.
+     * @param length The length of the range, at most the buffer size.
+     * @return True if the range is buffered, false if the segment ends first.
+     * @throws IOException If the segment cannot be read.
+     */
+    private boolean fill(FileChannel channel, long position, int length) throws IOException {
+        if(position >= m_bufferPosition && position + length <= m_bufferPosition + m_buffer.limit()){
+            return true;
+        }
+
+        m_buffer.clear();
+        m_bufferPosition = position;
+        while(m_buffer.hasRemaining()){
+            if(channel.read(m_buffer, position + m_buffer.position()) <= 0){
+                break;
+            }
+        }
+        m_buffer.flip();
+
+        return m_buffer.limit() >= length;
+    }
+
+    /**
+     * Applies an intact record to the index. Existing entries keep their state; if the record is a
+     * newer copy of the message than the indexed one, the entry is moved to it.
+     *
+     * @param messageId The message identifier.
+     * @param segmentId The segment holding the record.
+     * @param offset The record offset.
+     * @param length The body length.
+     * @param compressed True if the body is block compressed.
+     * @throws IOException If the index cannot be updated.
+     */
+    private void apply(long messageId, int segmentId, long offset, int length, boolean compressed) throws IOException {
+        m_index.advanceNextMessageId(messageId + 1);
+
+        SpoolEntry existing = m_index.get(messageId);
+        if(existing == null){
+            m_index.put(messageId, segmentId, offset, length, MessageState.QUEUED, compressed);
+        }
+        else if(existing.getSegmentId() < segmentId
+                || (existing.getSegmentId() == segmentId && existing.getOffset() < offset)){
+            m_index.put(messageId, segmentId, offset, length, existing.getState(), compressed);
+        }
+
+        if(messageId >= m_replayBaseId){
+            m_replayed.set((int) (messageId - m_replayBaseId));
+        }
+        m_recordsReplayed++;
+    }
+
+    /**
+     * Finds a segment by identifier.
+     *
+     * @param segments The segments.
+     * @param id The identifier.
+     * @return The segment, or null if not present.
+     */
+    private static SpoolSegment find(List<SpoolSegment> segments, int id){
+        for(SpoolSegment segment : segments){
+            if(segment.getId() == id){
+                return segment;
+            }
+        }
+        return null;
+    }
+}
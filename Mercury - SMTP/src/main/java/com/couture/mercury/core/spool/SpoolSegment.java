@@ -0,0 +1,397 @@
+package com.couture.mercury.core.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only segment file of message records.
+ *
+ * <p>Each record is a fixed header followed by the message body:</p>
+ * <pre>
+ *   int  magic      RECORD_MAGIC, or COMPRESSED_RECORD_MAGIC for a body stored by {@link BlockCompressor}
+ *   long messageId
+ *   int  length     body length in bytes
+ *   int  checksum   CRC32C of the body
+ *   byte[length]    body
+ * </pre>
+ *
+ * <p>Appends are serialised by the owning {@link MessageSpool}; reads use positional I/O and may
+ * run concurrently with appends.</p>
+ */
+final class SpoolSegment implements Closeable {
+    /**
+     * Marker at the start of every record, used to detect torn or foreign data.
+     */
+    static final int RECORD_MAGIC = 0x4D53504C;
+
+    /**
+     * Marker at the start of a record whose body is block compressed.
+     */
+    static final int COMPRESSED_RECORD_MAGIC = 0x4D53505A;
+
+    /**
+     * Size of the record header in bytes.
+     */
+    static final int RECORD_HEADER_SIZE = 20;
+
+    private static final String FILE_PREFIX = "segment-";
+    private static final String FILE_SUFFIX = ".spool";
+
+    private final int m_id;
+    private final Path m_path;
+    private final FileChannel m_channel;
+    private final long m_capacity;
+    private final ByteBuffer m_header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private final CRC32C m_checksum = new CRC32C();
+    private final AtomicLong m_liveBytes = new AtomicLong();
+    private volatile long m_size;
+
+    /**
+     * Creates a segment over an open channel.
+     *
+     * @param id The segment identifier.
+     * @param path The segment file.
+     * @param channel The open channel.
+     * @param capacity The maximum size of the segment.
+     * @param size The current size of the segment.
+     */
+    private SpoolSegment(int id, Path path, FileChannel channel, long capacity, long size){
+        m_id = id;
+        m_path = path;
+        m_channel = channel;
+        m_capacity = capacity;
+        m_size = size;
+    }
+
+    /**
+     * Creates a new, empty segment file.
+     *
+     * @param directory The spool directory.
+     * @param id The segment identifier.
+     * @param capacity The maximum size of the segment.
+     * @return The segment.
+     * @throws IOException If the file cannot be created.
+     */
+    static SpoolSegment create(Path directory, int id, long capacity) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new SpoolSegment(id, path, channel, capacity, 0);
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param directory The spool directory.
+     * @param id The segment identifier.
+     * @param capacity The maximum size of the segment.
+     * @return The segment, positioned at its current end.
+     * @throws IOException If the file cannot be opened.
+     */
+    static SpoolSegment open(Path directory, int id, long capacity) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new SpoolSegment(id, path, channel, capacity, channel.size());
+    }
+
+    /**
+     * Gets the file name of a segment.
+     *
+     * @param id The segment identifier.
+     * @return The file name.
+     */
+    static String fileName(int id){
+        return String.format("%s%08d%s", FILE_PREFIX, id, FILE_SUFFIX);
+    }
+
+    /**
+     * Parses the segment identifier from a file name.
+     *
+     * @param fileName The file name.
+     * @return The segment identifier, or -1 if the name is not a segment file.
+     */
+    static int parseId(String fileName){
+        if(!fileName.startsWith(FILE_PREFIX) || !fileName.endsWith(FILE_SUFFIX)){
+            return -1;
+        }
+
+        try{
+            return Integer.parseInt(fileName.substring(FILE_PREFIX.length(), fileName.length() - FILE_SUFFIX.length()));
+        }
+        catch(NumberFormatException e){
+            return -1;
+        }
+    }
+
+    /**
+     * Gets the size on disk of a record.
+     *
+     * @param bodyLength The body length.
+     * @return The record size.
+     */
+    static long recordSize(long bodyLength){
+        return RECORD_HEADER_SIZE + bodyLength;
+    }
+
+    /**
+     * Checks if a record with the given body length still fits in this segment.
+     *
+     * @param bodyLength The body length.
+     * @return True if the record fits.
+     */
+    boolean hasRoom(long bodyLength){
+        return m_size + recordSize(bodyLength) <= m_capacity;
+    }
+
+    /**
+     * Checks if a value is one of the record markers.
+     *
+     * @param magic The value read at the start of a record.
+     * @return True for plain and compressed records.
+     */
+    static boolean isRecordMagic(int magic){
+        return magic == RECORD_MAGIC || magic == COMPRESSED_RECORD_MAGIC;
+    }
+
+    /**
+     * Appends a record with an uncompressed body.
+     *
+     * @param messageId The message identifier.
+     * @param parts The body, as one or more buffers. Their positions are advanced.
+     * @return The offset of the record.
+     * @throws IOException If the write fails.
+     */
+    long append(long messageId, ByteBuffer[] parts) throws IOException {
+        return append(messageId, parts, false);
+    }
+
+    /**
+     * Appends a record with a gathering write. The caller must hold the spool's append lock.
+     * If the write fails, the segment is truncated back so no partial record remains.
+     *
+     * @param messageId The message identifier.
+     * @param parts The body, as one or more buffers. Their positions are advanced.
+     * @param compressed True if the body is a {@link BlockCompressor} container.
+     * @return The offset of the record.
+     * @throws IOException If the write fails.
+     */
+    long append(long messageId, ByteBuffer[] parts, boolean compressed) throws IOException {
+        long length = 0;
+        m_checksum.reset();
+        for(ByteBuffer part : parts){
+            length += part.remaining();
+            m_checksum.update(part.duplicate());
+        }
+
+        if(length > Integer.MAX_VALUE){
+            throw new SpoolException("Message of " + length + " bytes exceeds the maximum record size");
+        }
+
+        m_header.clear();
+        m_header.putInt(compressed ? COMPRESSED_RECORD_MAGIC : RECORD_MAGIC).putLong(messageId).putInt((int) length).putInt((int) m_checksum.getValue());
+        m_header.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[parts.length + 1];
+        buffers[0] = m_header;
+        System.arraycopy(parts, 0, buffers, 1, parts.length);
+
+        long offset = m_size;
+        long total = recordSize(length);
+        try{
+            m_channel.position(offset);
+            long written = 0;
+            while(written < total){
+                written += m_channel.write(buffers);
+            }
+        }
+        catch(IOException e){
+            m_channel.truncate(offset);
+            throw e;
+        }
+
+        m_size = offset + total;
+        return offset;
+    }
+
+    /**
+     * Reads a record body into a buffer.
+     *
+     * @param offset The offset of the record.
+     * @param destination The buffer to fill; its remaining space must equal the body length.
+     * @throws IOException If the read fails or reaches the end of the segment.
+     */
+    void readBody(long offset, ByteBuffer destination) throws IOException {
+        readBody(offset, 0, destination);
+    }
+
+    /**
+     * Reads part of a record body into a buffer.
+     *
+     * @param offset The offset of the record.
+     * @param bodyOffset The offset within the body to read from.
+     * @param destination The buffer to fill.
+     * @throws IOException If the read fails or reaches the end of the segment.
+     */
+    void readBody(long offset, long bodyOffset, ByteBuffer destination) throws IOException {
+        long position = offset + RECORD_HEADER_SIZE + bodyOffset;
+        while(destination.hasRemaining()){
+            int read = m_channel.read(destination, position);
+            if(read < 0){
+                throw new SpoolException("Unexpected end of segment " + m_id + " at offset " + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Transfers a record body to a channel, letting the operating system copy it directly
+     * from the file where it can.
+     *
+     * @param offset The offset of the record.
+     * @param length The body length.
+     * @param target The channel to write to.
+     * @throws IOException If the transfer fails or reaches the end of the segment.
+     */
+    void transferBody(long offset, long length, WritableByteChannel target) throws IOException {
+        long position = offset + RECORD_HEADER_SIZE;
+        long end = position + length;
+        while(position < end){
+            long transferred = m_channel.transferTo(position, end - position, target);
+            if(transferred <= 0 && position >= m_channel.size()){
+                throw new SpoolException("Unexpected end of segment " + m_id + " at offset " + position);
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Discards everything after the given size, used by recovery to drop a partially written record.
+     *
+     * @param size The new size of the segment.
+     * @throws IOException If the file cannot be truncated.
+     */
+    void truncate(long size) throws IOException {
+        m_channel.truncate(size);
+        m_channel.force(false);
+        m_size = size;
+    }
+
+    /**
+     * Forces all written records to disk.
+     *
+     * @throws IOException If the force fails.
+     */
+    void force() throws IOException {
+        m_channel.force(false);
+    }
+
+    /**
+     * Gets the segment identifier.
+     *
+     * @return The identifier.
+     */
+    int getId(){
+        return m_id;
+    }
+
+    /**
+     * Gets the segment file.
+     *
+     * @return The path.
+     */
+    Path getPath(){
+        return m_path;
+    }
+
+    /**
+     * Gets the channel of the segment file.
+     *
+     * @return The channel.
+     */
+    FileChannel getChannel(){
+        return m_channel;
+    }
+
+    /**
+     * Gets the number of bytes written to the segment.
+     *
+     * @return The segment size.
+     */
+    long getSize(){
+        return m_size;
+    }
+
+    /**
+     * Adjusts the number of record bytes in this segment that belong to queued messages.
+     *
+     * @param delta The change in live bytes.
+     */
+    void addLiveBytes(long delta){
+        m_liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Gets the number of record bytes in this segment that belong to queued messages.
+     *
+     * @return The live bytes.
+     */
+    long getLiveBytes(){
+        return m_liveBytes.get();
+    }
+
+    /**
+     * Reads a record header.
+     *
+     * @param offset The offset of the record.
+     * @param header A buffer of at least {@link #RECORD_HEADER_SIZE} bytes, cleared and filled by this call.
+     * @return False if the segment ends before a full header or the header is not a record header.
+     * @throws IOException If the read fails.
+     */
+    boolean readHeader(long offset, ByteBuffer header) throws IOException {
+        header.clear().limit(RECORD_HEADER_SIZE);
+        while(header.hasRemaining()){
+            if(m_channel.read(header, offset + header.position()) < 0){
+                return false;
+            }
+        }
+        header.flip();
+        return isRecordMagic(header.getInt(0));
+    }
+
+    /**
+     * Checks that the record at an offset is the one an index entry expects, so a stale or damaged
+     * entry cannot serve the body of another message.
+     *
+     * @param offset The offset of the record.
+     * @param messageId The message the record should belong to.
+     * @param length The body length the record should have.
+     * @throws IOException If the read fails, or a {@link SpoolException} if the header does not match.
+     */
+    void checkHeader(long offset, long messageId, int length) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if(!readHeader(offset, header) || header.getLong(4) != messageId || header.getInt(12) != length){
+            throw new SpoolException("No record of message " + messageId + " at offset " + offset + " of segment " + m_id);
+        }
+    }
+
+    /**
+     * Gets the maximum size of the segment.
+     *
+     * @return The capacity.
+     */
+    long getCapacity(){
+        return m_capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_channel.close();
+    }
+}
@@ -0,0 +1,113 @@
+package com.couture.mercury.core.spool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * A listener's view of the spool, bound to that listener's fsync policy.
+ * Sessions of the listener acknowledge a message with 250 only once its future has completed.
+ */
+public final class SpoolWriter {
+    private final MessageSpool m_spool;
+    private final FsyncPolicy m_fsyncPolicy;
+
+    /**
+     * Creates a spool writer.
+     *
+     * @param spool The spool.
+     * @param fsyncPolicy The fsync policy of the listener.
+     */
+    SpoolWriter(MessageSpool spool, FsyncPolicy fsyncPolicy){
+        m_spool = spool;
+        m_fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Appends a message to the spool.
+     *
+     * @param message The message.
+     * @return A future completed with the message identifier once the message is durable under this writer's policy.
+     */
+    public CompletableFuture<Long> append(byte[] message){
+        return m_spool.append(new ByteBuffer[]{ByteBuffer.wrap(message)}, m_fsyncPolicy);
+    }
+
+    /**
+     * Appends a message given as several buffers with a single gathering write.
+     *
+     * @param parts The message parts, in order.
+     * @return A future completed with the message identifier once the message is durable under this writer's policy.
+     */
+    public CompletableFuture<Long> append(ByteBuffer... parts){
+        return m_spool.append(parts, m_fsyncPolicy);
+    }
+
+    /**
+     * Appends a message and runs a hook under the append lock once its identifier is known.
+     * Used to write records that must become durable together with the message.
+     *
+     * @param parts The message parts, in order.
+     * @param onWritten Hook receiving the message identifier.
+     * @return A future completed with the message identifier once the message is durable under this writer's policy.
+     */
+    CompletableFuture<Long> append(ByteBuffer[] parts, LongConsumer onWritten){
+        return m_spool.append(parts, m_fsyncPolicy, onWritten);
+    }
+
+    /**
+     * Appends a message and waits until it is durable under this writer's policy.
+     *
+     * @param message The message.
+     * @return The message identifier.
+     * @throws IOException If the message could not be stored or forced.
+     */
+    public long appendAndAwait(byte[] message) throws IOException {
+        return await(append(message));
+    }
+
+    /**
+     * Gets the fsync policy of this writer.
+     *
+     * @return The fsync policy.
+     */
+    public FsyncPolicy getFsyncPolicy(){
+        return m_fsyncPolicy;
+    }
+
+    /**
+     * Gets the spool this writer appends to.
+     *
+     * @return The spool.
+     */
+    MessageSpool getSpool(){
+        return m_spool;
+    }
+
+    /**
+     * Waits for a spool write to complete.
+     *
+     * @param future The future of the write.
+     * @return The message identifier.
+     * @throws IOException If the write failed or the wait was interrupted.
+     */
+    static long await(CompletableFuture<Long> future) throws IOException {
+        try{
+            return future.get();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the spool");
+        }
+        catch(ExecutionException e){
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            throw new SpoolException("Spool write failed", cause);
+        }
+    }
+}
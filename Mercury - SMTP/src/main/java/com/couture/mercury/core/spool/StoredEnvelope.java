@@ -0,0 +1,115 @@
+package com.couture.mercury.core.spool;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * The envelope of a stored transaction: its reverse-path and recipients, and the body they share.
+ * Envelopes are small spool records of their own, so a body referenced by several transactions is
+ * stored once. Delivery state is tracked per recipient in {@link DeliveryRecord}s numbered from
+ * {@link #getFirstRecordId()}.
+ *
+ * <p>Trace fields added by this server, such as Received, belong to the transaction rather than
+ * the body and are kept here; they are written ahead of the body when the message is delivered.</p>
+ */
+public final class StoredEnvelope {
+    private final long m_envelopeId;
+    private final long m_bodyId;
+    private final long m_firstRecordId;
+    private final String m_reversePath;
+    private final List<String> m_recipients;
+    private final byte[] m_prependedHeaders;
+
+    /**
+     * Creates a stored envelope without prepended headers.
+     *
+     * @param envelopeId The spool message identifier of the envelope record.
+     * @param bodyId The spool message identifier of the body.
+     * @param firstRecordId The delivery record of the first recipient; the others follow in order.
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients.
+     */
+    public StoredEnvelope(long envelopeId, long bodyId, long firstRecordId, String reversePath, List<String> recipients){
+        this(envelopeId, bodyId, firstRecordId, reversePath, recipients, new byte[0]);
+    }
+
+    /**
+     * Creates a stored envelope.
+     *
+     * @param envelopeId The spool message identifier of the envelope record.
+     * @param bodyId The spool message identifier of the body.
+     * @param firstRecordId The delivery record of the first recipient; the others follow in order.
+     * @param reversePath The reverse-path, or null for a null reverse-path.
+     * @param recipients The recipients.
+     * @param prependedHeaders The encoded header fields written ahead of the body on delivery.
+     */
+    public StoredEnvelope(long envelopeId, long bodyId, long firstRecordId, String reversePath, List<String> recipients,
+                          byte[] prependedHeaders){
+        m_envelopeId = envelopeId;
+        m_bodyId = bodyId;
+        m_firstRecordId = firstRecordId;
+        m_reversePath = reversePath;
+        m_recipients = List.copyOf(recipients);
+        m_prependedHeaders = prependedHeaders.clone();
+    }
+
+    /**
+     * Gets the spool message identifier of the envelope record.
+     *
+     * @return The envelope identifier.
+     */
+    public long getEnvelopeId(){
+        return m_envelopeId;
+    }
+
+    /**
+     * Gets the spool message identifier of the shared body.
+     *
+     * @return The body identifier.
+     */
+    public long getBodyId(){
+        return m_bodyId;
+    }
+
+    /**
+     * Gets the delivery record of the first recipient.
+     *
+     * @return The first delivery record identifier.
+     */
+    public long getFirstRecordId(){
+        return m_firstRecordId;
+    }
+
+    /**
+     * Gets the reverse-path.
+     *
+     * @return The reverse-path, or null for a null reverse-path.
+     */
+    public String getReversePath(){
+        return m_reversePath;
+    }
+
+    /**
+     * Gets the recipients, in the order their delivery records were allocated.
+     *
+     * @return An unmodifiable list of recipients.
+     */
+    public List<String> getRecipients(){
+        return m_recipients;
+    }
+
+    /**
+     * Gets the header fields written ahead of the body on delivery.
+     *
+     * @return A new read-only buffer over the encoded fields, empty if there are none.
+     */
+    public ByteBuffer getPrependedHeaders(){
+        return ByteBuffer.wrap(m_prependedHeaders).asReadOnlyBuffer();
+    }
+
+    @Override
+    public String toString(){
+        return "StoredEnvelope{" + "envelopeId=" + m_envelopeId + ", bodyId=" + m_bodyId + ", firstRecordId="
+                + m_firstRecordId + ", reversePath='" + m_reversePath + '\'' + ", recipients=" + m_recipients.size() + '}';
+    }
+}
@@ -0,0 +1,161 @@
+package com.couture.mercury.core.protocol.io;
+
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Allocates message buffers off the Java heap from an {@link Arena}, so message content is
+ * neither copied onto the heap nor left for the garbage collector to free.
+ *
+ * <p>Each allocator belongs to one session. The arena is opened by the first allocation of a
+ * transaction and closed by {@link #releaseAll()}, which the session's {@link MessageBuffer} calls
+ * on RSET, at the end of the transaction and when the connection closes, so the memory is freed
+ * at a known point rather than when a direct buffer happens to be collected. Buffers returned
+ * during a transaction, for example when the message spills to disk, are kept for reuse until then.</p>
+ *
+ * <p>By default the arena is confined: it can only be used by the thread that opened it, so every
+ * transaction must be driven by a single thread, otherwise allocation, reads and release fail with a
+ * {@code WrongThreadException}. Content in a confined arena is never handed to another thread
+ * ({@link #isThreadConfined()}), so, for example, an {@code AsyncSpoolWriter} writes it on the
+ * session's own thread. Sessions whose transactions are handed to I/O threads should use a shared
+ * arena instead, which any thread may read and close at a small cost per access. Between
+ * transactions no arena is open, so a pooled session may move to another thread.
+ * Requires Java 22.</p>
+ */
+public final class ArenaBufferAllocator implements BufferAllocator {
+    // Cache line alignment, so buffers never share a line.
+    private static final long ALIGNMENT = 64;
+
+    private final int m_bufferSize;
+    private final boolean m_shared;
+    private final ArrayDeque<ByteBuffer> m_free = new ArrayDeque<>();
+    private Arena m_arena;
+    private long m_allocatedBytes;
+
+    /**
+     * Creates an allocator of {@link ValidationConstants#MESSAGE_BUFFER_CHUNK_SIZE} byte buffers.
+     */
+    public ArenaBufferAllocator(){
+        this(ValidationConstants.MESSAGE_BUFFER_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates an allocator backed by confined arenas.
+     *
+     * @param bufferSize The capacity of each buffer in bytes.
+     * @throws IllegalArgumentException If bufferSize is less than 1.
+     */
+    public ArenaBufferAllocator(int bufferSize){
+        this(bufferSize, false);
+    }
+
+    /**
+     * Creates an allocator.
+     *
+     * @param bufferSize The capacity of each buffer in bytes.
+     * @param shared If true, each arena is shared, so the content may be read and freed by other threads.
+     * @throws IllegalArgumentException If bufferSize is less than 1.
+     */
+    public ArenaBufferAllocator(int bufferSize, boolean shared){
+        if(bufferSize < 1){
+            throw new IllegalArgumentException("Buffer size must be at least 1");
+        }
+
+        m_bufferSize = bufferSize;
+        m_shared = shared;
+    }
+
+    /**
+     * Acquires an empty buffer, reusing one returned during the current transaction when available.
+     *
+     * @return A cleared off-heap buffer of {@link #getBufferSize()} bytes.
+     */
+    @Override
+    public ByteBuffer acquire(){
+        ByteBuffer buffer = m_free.poll();
+        if(buffer != null){
+            return buffer;
+        }
+
+        if(m_arena == null){
+            m_arena = m_shared ? Arena.ofShared() : Arena.ofConfined();
+        }
+
+        MemorySegment segment = m_arena.allocate(m_bufferSize, ALIGNMENT);
+        m_allocatedBytes += m_bufferSize;
+        return segment.asByteBuffer();
+    }
+
+    /**
+     * Keeps a buffer for reuse until the arena is closed. Buffers of another size are ignored.
+     *
+     * @param buffer The buffer to return.
+     */
+    @Override
+    public void release(ByteBuffer buffer){
+        if(m_arena == null || buffer.capacity() != m_bufferSize || buffer.isReadOnly()){
+            return;
+        }
+
+        buffer.clear();
+        m_free.push(buffer);
+    }
+
+    /**
+     * Gets the capacity of the buffers handed out.
+     *
+     * @return The buffer size in bytes.
+     */
+    @Override
+    public int getBufferSize(){
+        return m_bufferSize;
+    }
+
+    /**
+     * Checks if the buffers may only be accessed by the thread that opened the arena.
+     *
+     * @return True unless the allocator uses shared arenas.
+     */
+    @Override
+    public boolean isThreadConfined(){
+        return !m_shared;
+    }
+
+    /**
+     * Closes the arena, freeing every buffer handed out since it was opened. Any buffer still
+     * referenced becomes inaccessible.
+     */
+    @Override
+    public void releaseAll(){
+        m_free.clear();
+        m_allocatedBytes = 0;
+
+        Arena arena = m_arena;
+        m_arena = null;
+        if(arena != null){
+            arena.close();
+        }
+    }
+
+    /**
+     * Gets the off-heap memory currently allocated from the arena.
+     *
+     * @return The allocated size in bytes; 0 when no arena is open.
+     */
+    public long getAllocatedBytes(){
+        return m_allocatedBytes;
+    }
+
+    /**
+     * Checks if an arena is open, meaning off-heap memory is held.
+     *
+     * @return True if the allocator holds an open arena.
+     */
+    public boolean isOpen(){
+        return m_arena != null;
+    }
+}
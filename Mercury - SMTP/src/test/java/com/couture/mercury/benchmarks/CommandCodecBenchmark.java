@@ -0,0 +1,136 @@
+package com.couture.mercury.benchmarks;
+
+import com.couture.mercury.core.protocol.codec.CodecReader;
+import com.couture.mercury.core.protocol.codec.CodecWriter;
+import com.couture.mercury.core.protocol.codec.CommandCodec;
+import com.couture.mercury.core.protocol.codec.SessionSnapshotCodec;
+import com.couture.mercury.core.protocol.commands.Command;
+import com.couture.mercury.core.protocol.commands.implementation.RCPTCommand;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact binary codec with default Java serialization for commands and session snapshots.
+ * Encoded sizes are printed once during setup.
+ *
+ * <p>See the Benchmarks section of the README for how to run it.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandCodecBenchmark {
+    private Command m_command;
+    private SmtpSession m_session;
+    private ArrayList<String> m_recipientList;
+    private CodecWriter m_writer;
+    private byte[] m_encodedCommand;
+    private byte[] m_serializedCommand;
+    private byte[] m_encodedSession;
+    private byte[] m_serializedSession;
+
+    @Setup
+    public void setUp() throws IOException {
+        m_command = new RCPTCommand("TO:<recipient@example.com>");
+        m_session = new SmtpSession();
+        m_session.getContext().setState(SessionState.RCPT);
+        m_session.getEnvelope().setReversePath("sender@example.com");
+        m_recipientList = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String recipient = "user" + i + "@example" + (i % 5) + ".com";
+            m_session.getEnvelope().getRecipients().addRecipient(recipient);
+            m_recipientList.add(recipient);
+        }
+
+        m_writer = new CodecWriter(4096);
+        m_encodedCommand = CommandCodec.encode(m_command);
+        m_serializedCommand = serialize(m_command);
+        m_encodedSession = SessionSnapshotCodec.encode(m_session);
+        m_serializedSession = serializeSession();
+
+        System.out.printf("%nCommand: codec %d bytes, ObjectOutputStream %d bytes%n",
+                m_encodedCommand.length, m_serializedCommand.length);
+        System.out.printf("Session (50 recipients): codec %d bytes, ObjectOutputStream %d bytes%n",
+                m_encodedSession.length, m_serializedSession.length);
+    }
+
+    @Benchmark
+    public int encodeCommandCodec() {
+        m_writer.reset();
+        CommandCodec.encode(m_command, m_writer);
+        return m_writer.size();
+    }
+
+    @Benchmark
+    public byte[] encodeCommandSerialization() throws IOException {
+        return serialize(m_command);
+    }
+
+    @Benchmark
+    public Command decodeCommandCodec() throws IOException {
+        return CommandCodec.decode(new CodecReader(m_encodedCommand));
+    }
+
+    @Benchmark
+    public Object decodeCommandSerialization() throws IOException, ClassNotFoundException {
+        return deserialize(m_serializedCommand);
+    }
+
+    @Benchmark
+    public int encodeSessionCodec() {
+        m_writer.reset();
+        SessionSnapshotCodec.encode(m_session, m_writer);
+        return m_writer.size();
+    }
+
+    @Benchmark
+    public byte[] encodeSessionSerialization() throws IOException {
+        return serializeSession();
+    }
+
+    @Benchmark
+    public SmtpSession decodeSessionCodec() throws IOException {
+        SessionSnapshotCodec.decode(m_encodedSession, m_session);
+        return m_session;
+    }
+
+    @Benchmark
+    public Object decodeSessionSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(m_serializedSession))) {
+            in.readObject();
+            in.readObject();
+            return in.readObject();
+        }
+    }
+
+    private byte[] serializeSession() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(SessionState.RCPT);
+            out.writeObject("sender@example.com");
+            out.writeObject(m_recipientList);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.couture.mercury.benchmarks;
+
+import com.couture.mercury.core.protocol.io.DataDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares DATA decoding with the SWAR line feed scan of {@link DataDecoder} against a decoder that
+ * looks at every byte. Both remove dot-stuffing, find the terminator and count the content bytes,
+ * so the difference is the cost of locating line boundaries.
+ *
+ * <p>The input is a dot-stuffed message of at least {@code bodySize} bytes with 76 byte lines,
+ * about one in fifty of which starts with a stuffed dot, followed by the terminator.</p>
+ *
+ * <p>See the Benchmarks section of the README for how to run it.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DataScanBenchmark {
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DOT = '.';
+
+    @Param({"1024", "65536", "10485760"})
+    private int bodySize;
+
+    private ByteBuffer m_wire;
+    private DataDecoder m_decoder;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        Random random = new Random(3);
+        StringBuilder wire = new StringBuilder(bodySize + 64);
+        while(wire.length() < bodySize){
+            if(random.nextInt(50) == 0){
+                wire.append("..");
+            }
+            for(int i = 0; i < 74; i++){
+                wire.append((char) ('a' + random.nextInt(26)));
+            }
+            wire.append("\r\n");
+        }
+        wire.append(".\r\n");
+
+        m_wire = ByteBuffer.wrap(wire.toString().getBytes(StandardCharsets.US_ASCII));
+        m_decoder = new DataDecoder();
+    }
+
+    @Benchmark
+    public long swar(){
+        m_decoder.reset();
+        ByteBuffer input = m_wire.duplicate();
+        long content = 0;
+        ByteBuffer slice;
+        while((slice = m_decoder.decode(input)) != null){
+            content += slice.remaining();
+        }
+        return content;
+    }
+
+    @Benchmark
+    public long byteAtATime(){
+        ByteBuffer input = m_wire.duplicate();
+        long content = 0;
+        // 0: in a line, 1: at a line start, 2: after a leading dot, 3: after a leading dot and CR.
+        int state = 1;
+
+        while(input.hasRemaining()){
+            byte value = input.get();
+            switch(state){
+                case 0 -> {
+                    content++;
+                    if(value == LF){
+                        state = 1;
+                    }
+                }
+                case 1 -> {
+                    if(value == DOT){
+                        state = 2;
+                    }
+                    else{
+                        content++;
+                        state = value == LF ? 1 : 0;
+                    }
+                }
+                case 2 -> {
+                    if(value == CR){
+                        state = 3;
+                    }
+                    else{
+                        content++;
+                        state = value == LF ? 1 : 0;
+                    }
+                }
+                default -> {
+                    if(value == LF){
+                        return content;
+                    }
+                    content += 2;
+                    state = 0;
+                }
+            }
+        }
+        return content;
+    }
+}
@@ -0,0 +1,119 @@
+package com.couture.mercury.benchmarks;
+
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Weighs the CPU spent on block compression against the disk bandwidth it saves. Each invocation
+ * appends a mail-like text body of {@code bodySize} bytes with an fsync per message, then reads it
+ * back either in full or as a 4 KiB range from the middle of the body.
+ *
+ * <p>A {@code level} of 0 turns compression off and gives the baseline. On a fast or memory-backed
+ * disk compression costs throughput, since deflating a 64 KiB body takes longer than writing it;
+ * it pays off once disk bandwidth rather than CPU is the limit. Compare the reported rates with the
+ * stored sizes printed at the end of each trial, which give the bytes written per message.</p>
+ *
+ * <p>See the Benchmarks section of the README for how to run it.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SpoolCompressionBenchmark {
+    private static final int RANGE_LENGTH = 4096;
+
+    @Param({"0", "1", "6"})
+    private int level;
+
+    @Param({"65536"})
+    private int bodySize;
+
+    private Path m_directory;
+    private MessageSpool m_spool;
+    private SpoolWriter m_writer;
+    private ByteBuffer m_body;
+    private long m_storedId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        m_directory = Files.createTempDirectory("spool-compression");
+        SpoolConfig.Builder config = SpoolConfig.builder(m_directory).segmentSize(256L << 20);
+        if(level > 0){
+            config.compressionThreshold(4096).compressionLevel(level);
+        }
+
+        m_spool = MessageSpool.open(config.build());
+        m_writer = m_spool.writer(FsyncPolicy.PER_MESSAGE);
+        m_body = ByteBuffer.wrap(text(bodySize));
+        m_storedId = m_writer.append(m_body.duplicate()).join();
+    }
+
+    @Benchmark
+    public long append(){
+        return m_writer.append(m_body.duplicate()).join();
+    }
+
+    @Benchmark
+    public byte[] readFull() throws IOException {
+        return m_spool.read(m_storedId);
+    }
+
+    @Benchmark
+    public byte[] readRange() throws IOException {
+        return m_spool.read(m_storedId, bodySize / 2, RANGE_LENGTH);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%nStored body: %d bytes for %d bytes of text%n", m_spool.getEntry(m_storedId).getLength(), bodySize);
+        m_spool.close();
+
+        try(Stream<Path> files = Files.walk(m_directory)){
+            for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Generates mail-like text from a small vocabulary.
+     *
+     * @param length The length in bytes.
+     * @return The text.
+     */
+    private static byte[] text(int length){
+        String[] words = {"meeting", "quarterly", "report", "please", "review", "the", "attached", "budget",
+                "thanks", "regards", "schedule", "invoice", "customer", "delivery", "update", "tomorrow"};
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(length + 16);
+        int line = 0;
+        while(text.length() < length){
+            String word = words[random.nextInt(words.length)];
+            text.append(word);
+            line += word.length() + 1;
+            if(line > 72){
+                text.append("\r\n");
+                line = 0;
+            }
+            else{
+                text.append(' ');
+            }
+        }
+        return text.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,117 @@
+package com.couture.mercury.benchmarks;
+
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long it takes to reopen a spool after a crash, with and without a checkpoint.
+ * The spool holds {@code messageCount} messages of 100 bytes; the checkpointed variant only has
+ * {@code tailMessages} written after its last checkpoint.
+ *
+ * <p>The crash is simulated by abandoning the spool that wrote the messages. After each measured
+ * open, the spool is closed and the index header saved at crash time is written back, so every
+ * invocation recovers from the same state. Setup of the default 10M message spool writes about
+ * 1.5 GB and takes a while.</p>
+ *
+ * <p>See the Benchmarks section of the README for how to run it.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SpoolRecoveryBenchmark {
+    // Size of the index header page, which holds the checkpoint position.
+    private static final int INDEX_HEADER_SIZE = 4096;
+    private static final String INDEX_FILE = "spool.idx";
+
+    @Param({"10000000"})
+    private int messageCount;
+
+    @Param({"10000"})
+    private int tailMessages;
+
+    @Param({"true", "false"})
+    private boolean checkpointed;
+
+    private Path m_directory;
+    private ByteBuffer m_crashHeader;
+    private MessageSpool m_recovered;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        m_directory = Files.createTempDirectory("spool-recovery");
+        SpoolConfig config = SpoolConfig.builder(m_directory).segmentSize(256L << 20).checkpointInterval(0).build();
+
+        // Deliberately never closed: this is the crash.
+        MessageSpool crashed = MessageSpool.open(config);
+        SpoolWriter writer = crashed.writer(FsyncPolicy.ASYNC);
+        byte[] body = new byte[100];
+
+        for(int i = 0; i < messageCount; i++){
+            if(checkpointed && i == messageCount - tailMessages){
+                crashed.checkpoint();
+            }
+            writer.append(body);
+        }
+
+        m_crashHeader = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        try(FileChannel index = FileChannel.open(m_directory.resolve(INDEX_FILE), StandardOpenOption.READ)){
+            index.read(m_crashHeader, 0);
+        }
+
+        if(!checkpointed){
+            // The spool writes an initial checkpoint when created; drop it to force a full replay.
+            m_crashHeader.put(16, new byte[24]);
+        }
+        restoreCrashHeader();
+    }
+
+    @Benchmark
+    public MessageSpool recover() throws IOException {
+        m_recovered = MessageSpool.open(SpoolConfig.builder(m_directory).segmentSize(256L << 20).build());
+        return m_recovered;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeRecovered() throws IOException {
+        System.out.printf("%n%s%n", m_recovered.getRecoveryReport());
+        m_recovered.close();
+        restoreCrashHeader();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try(Stream<Path> files = Files.walk(m_directory)){
+            for(Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator){
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the index header captured at crash time back to the index file.
+     *
+     * @throws IOException If the index cannot be written.
+     */
+    private void restoreCrashHeader() throws IOException {
+        try(FileChannel index = FileChannel.open(m_directory.resolve(INDEX_FILE), StandardOpenOption.WRITE)){
+            index.write(m_crashHeader.duplicate().clear(), 0);
+            index.force(false);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.couture.mercury.core.mocks;
+
+import com.couture.mercury.core.mailbox.MailboxStore;
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory mailbox storage, for testing local delivery.
+ * Records the recipients and content of every message delivered.
+ */
+public class MockMailboxStore implements MailboxStore {
+    private final List<List<String>> m_recipients = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> m_messages = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void deliver(String reversePath, List<String> recipients, TraceHeaders traceHeaders, ByteBuffer... body){
+        StringBuilder message = new StringBuilder();
+        ByteBuffer[] buffers = traceHeaders == null ? body : traceHeaders.prependTo(body);
+        for(ByteBuffer buffer : buffers){
+            message.append(StandardCharsets.US_ASCII.decode(buffer.duplicate()));
+        }
+        m_recipients.add(List.copyOf(recipients));
+        m_messages.add(message.toString());
+    }
+
+    /**
+     * Gets the recipients of each delivered message.
+     *
+     * @return A copy of the recipient lists, in delivery order.
+     */
+    public List<List<String>> getRecipients(){
+        synchronized(m_recipients){
+            return new ArrayList<>(m_recipients);
+        }
+    }
+
+    /**
+     * Gets the content of each delivered message, trace fields included.
+     *
+     * @return A copy of the messages, in delivery order.
+     */
+    public List<String> getMessages(){
+        synchronized(m_messages){
+            return new ArrayList<>(m_messages);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.couture.mercury.core.mocks;
+
+import com.couture.mercury.core.client.MxLookup;
+import com.couture.mercury.core.client.MxResolver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in for DNS, for testing mail exchanger lookups.
+ * Domains without a configured answer do not exist.
+ */
+public class MockMxResolver implements MxResolver {
+    private final Map<String, MxLookup> m_answers = new ConcurrentHashMap<>();
+    private final AtomicInteger m_lookups = new AtomicInteger();
+    private volatile CountDownLatch m_gate;
+
+    /**
+     * Sets the answer for a domain.
+     *
+     * @param domain The lower-case domain.
+     * @param answer The answer.
+     */
+    public void setAnswer(String domain, MxLookup answer){
+        m_answers.put(domain, answer);
+    }
+
+    /**
+     * Makes lookups wait until a latch opens, to hold several callers in one lookup.
+     *
+     * @param gate The latch, or null to answer at once.
+     */
+    public void setGate(CountDownLatch gate){
+        m_gate = gate;
+    }
+
+    /**
+     * Gets the number of lookups made.
+     *
+     * @return The lookup count.
+     */
+    public int getLookupCount(){
+        return m_lookups.get();
+    }
+
+    @Override
+    public MxLookup resolve(String domain){
+        m_lookups.incrementAndGet();
+        CountDownLatch gate = m_gate;
+        if(gate != null){
+            try{
+                gate.await();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                return MxLookup.failed(MxLookup.Status.SERVER_FAILURE, 0);
+            }
+        }
+        return m_answers.getOrDefault(domain, MxLookup.failed(MxLookup.Status.NO_DOMAIN, 0));
+    }
+}
@@ -0,0 +1,263 @@
+package com.couture.mercury.core.mocks;
+
+import com.couture.mercury.core.client.Destination;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-JVM stand-in for a remote SMTP server, for testing the outbound client.
+ * Listens on an ephemeral loopback port and serves each connection on its own thread.
+ *
+ * <p>Every command is accepted except RCPT to a recipient whose local part starts with "reject",
+ * which gets 550, or "defer", which gets 451, and RCPT beyond the recipient limit of a transaction,
+ * which gets 452. Received commands and messages, with dot-stuffing removed, are recorded for the
+ * test to inspect, along with how many MAIL commands arrived already followed by the next command,
+ * which only happens when the client pipelines.</p>
+ */
+public class MockSmtpServer implements AutoCloseable {
+    private final ServerSocket m_serverSocket;
+    private final List<String> m_extensions;
+    private final List<String> m_commands = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> m_messages = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Socket> m_connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger m_connectionCount = new AtomicInteger();
+    private final AtomicInteger m_pipelinedCount = new AtomicInteger();
+    private volatile int m_maxRecipients = Integer.MAX_VALUE;
+
+    /**
+     * Starts a server advertising the given EHLO extensions.
+     *
+     * @param extensions The extension lines, such as "PIPELINING".
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public MockSmtpServer(String... extensions) throws IOException {
+        m_serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        m_extensions = List.of(extensions);
+
+        Thread acceptor = new Thread(this::acceptConnections, "mock-smtp-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Gets the destination to connect to this server.
+     *
+     * @return The destination.
+     */
+    public Destination getDestination(){
+        return new Destination(m_serverSocket.getInetAddress().getHostAddress(), m_serverSocket.getLocalPort());
+    }
+
+    /**
+     * Gets the number of connections accepted.
+     *
+     * @return The connection count.
+     */
+    public int getConnectionCount(){
+        return m_connectionCount.get();
+    }
+
+    /**
+     * Sets the number of recipients accepted per transaction; further RCPT commands get 452.
+     *
+     * @param maxRecipients The recipient limit.
+     */
+    public void setMaxRecipients(int maxRecipients){
+        m_maxRecipients = maxRecipients;
+    }
+
+    /**
+     * Gets the number of MAIL commands whose following command had already arrived when MAIL was read.
+     *
+     * @return The pipelined MAIL count.
+     */
+    public int getPipelinedCount(){
+        return m_pipelinedCount.get();
+    }
+
+    /**
+     * Gets the command lines received, across all connections, in the order they were read.
+     *
+     * @return A copy of the commands.
+     */
+    public List<String> getCommands(){
+        synchronized(m_commands){
+            return new ArrayList<>(m_commands);
+        }
+    }
+
+    /**
+     * Counts the received commands that start with a verb.
+     *
+     * @param verb The command verb, such as RSET.
+     * @return The number of matching commands.
+     */
+    public long countCommands(String verb){
+        return getCommands().stream().filter(command -> command.startsWith(verb)).count();
+    }
+
+    /**
+     * Gets the message contents received, with dot-stuffing removed.
+     *
+     * @return A copy of the messages.
+     */
+    public List<String> getMessages(){
+        synchronized(m_messages){
+            return new ArrayList<>(m_messages);
+        }
+    }
+
+    /**
+     * Stops listening and drops every open connection.
+     *
+     * @throws IOException If the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        m_serverSocket.close();
+        for(Socket socket : m_connections){
+            socket.close();
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    private void acceptConnections(){
+        while(!m_serverSocket.isClosed()){
+            try{
+                Socket socket = m_serverSocket.accept();
+                m_connectionCount.incrementAndGet();
+                m_connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "mock-smtp-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch(IOException e){
+                // Closed.
+            }
+        }
+    }
+
+    /**
+     * Serves one connection until QUIT or disconnection.
+     *
+     * @param socket The connection.
+     */
+    private void serve(Socket socket){
+        try(socket){
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream output = socket.getOutputStream();
+            reply(output, "220 mock.example ESMTP");
+
+            int recipients = 0;
+            String line;
+            while((line = reader.readLine()) != null){
+                m_commands.add(line);
+                String verb = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch(verb){
+                    case "EHLO" -> reply(output, m_extensions.isEmpty() ? "250 mock.example"
+                            : "250-mock.example\r\n" + String.join("\r\n", extensionLines()));
+                    case "MAIL", "RSET" -> {
+                        recipients = 0;
+                        if(verb.equals("MAIL") && reader.ready()){
+                            m_pipelinedCount.incrementAndGet();
+                        }
+                        reply(output, "250 OK");
+                    }
+                    case "RCPT" -> {
+                        String recipient = line.substring(line.indexOf('<') + 1);
+                        if(recipients >= m_maxRecipients){
+                            reply(output, "452 Too many recipients");
+                        }
+                        else if(recipient.startsWith("reject")){
+                            reply(output, "550 No such user");
+                        }
+                        else if(recipient.startsWith("defer")){
+                            reply(output, "451 Try again later");
+                        }
+                        else{
+                            recipients++;
+                            reply(output, "250 OK");
+                        }
+                    }
+                    case "DATA" -> {
+                        if(recipients == 0){
+                            reply(output, "554 No valid recipients");
+                            continue;
+                        }
+                        reply(output, "354 Start mail input");
+                        m_messages.add(readMessage(reader));
+                        recipients = 0;
+                        reply(output, "250 OK: queued");
+                    }
+                    case "QUIT" -> {
+                        reply(output, "221 Bye");
+                        return;
+                    }
+                    default -> reply(output, "250 OK");
+                }
+            }
+        }
+        catch(IOException e){
+            // Dropped.
+        }
+        finally{
+            m_connections.remove(socket);
+        }
+    }
+
+    /**
+     * Formats the EHLO lines after the greeting line.
+     *
+     * @return The lines, the last one without a continuation mark.
+     */
+    private List<String> extensionLines(){
+        List<String> lines = new ArrayList<>();
+        for(int i = 0; i < m_extensions.size(); i++){
+            lines.add((i == m_extensions.size() - 1 ? "250 " : "250-") + m_extensions.get(i));
+        }
+        return lines;
+    }
+
+    /**
+     * Reads message content up to the terminator and removes dot-stuffing.
+     *
+     * @param reader The connection's reader.
+     * @return The content, each line ending with CRLF.
+     * @throws IOException If the connection fails.
+     */
+    private static String readMessage(BufferedReader reader) throws IOException {
+        StringBuilder message = new StringBuilder();
+        String line;
+        while((line = reader.readLine()) != null && !line.equals(".")){
+            message.append(line.startsWith(".") ? line.substring(1) : line).append("\r\n");
+        }
+        return message.toString();
+    }
+
+    /**
+     * Sends a reply.
+     *
+     * @param output The connection's output.
+     * @param reply The reply lines, without the final CRLF.
+     * @throws IOException If the connection fails.
+     */
+    private static void reply(OutputStream output, String reply) throws IOException {
+        output.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+    }
+}
@@ -0,0 +1,149 @@
+package com.couture.mercury.core.tests.client;
+
+import com.couture.mercury.core.client.ConcurrencyLimiter;
+import com.couture.mercury.core.client.ConcurrencyLimiter.Signal;
+import com.couture.mercury.core.client.DeliveryResult;
+import com.couture.mercury.core.client.OutboundMessage;
+import com.couture.mercury.core.client.SmtpClient;
+import com.couture.mercury.core.client.SmtpClientConfig;
+import com.couture.mercury.core.client.SmtpClientException;
+import com.couture.mercury.core.mocks.MockSmtpServer;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the adaptive per-domain concurrency limiter.
+ */
+public class ConcurrencyLimiterTests {
+
+    /**
+     * Tests that the window grows by one per success until the domain first pushes back, halves then,
+     * and afterwards grows by one per window of successes.
+     */
+    @Test
+    public void testWindowGrowsAndBacksOff() throws SmtpClientException {
+        // Arrange
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(SmtpClientConfig.builder().domainWindow(2, 20).build());
+
+        // Act & Assert
+        for(int i = 0; i < 6; i++){
+            limiter.acquire("example.com").release(Signal.SUCCESS);
+        }
+        assertEquals(8, limiter.getWindow("example.com"));
+
+        limiter.acquire("example.com").release(Signal.CONGESTION);
+        assertEquals(4, limiter.getWindow("example.com"));
+
+        for(int i = 0; i < 4; i++){
+            limiter.acquire("example.com").release(Signal.SUCCESS);
+        }
+        assertEquals(5, limiter.getWindow("example.com"));
+
+        limiter.acquire("example.com").release(Signal.NEUTRAL);
+        assertEquals(5, limiter.getWindow("example.com"));
+        assertEquals(Map.of("example.com", 5), limiter.getWindows());
+        assertEquals(2, limiter.getWindow("other.example"));
+    }
+
+    /**
+     * Tests that refusals of transactions already in flight when the window shrank count as one signal,
+     * and that the window never drops below one.
+     */
+    @Test
+    public void testBurstOfRefusalsBacksOffOnce() throws SmtpClientException {
+        // Arrange
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(SmtpClientConfig.builder().domainWindow(4, 20).build());
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            permits.add(limiter.acquire("example.com"));
+        }
+
+        // Act
+        for(ConcurrencyLimiter.Permit permit : permits){
+            permit.release(Signal.CONGESTION);
+        }
+
+        // Assert
+        assertEquals(2, limiter.getWindow("example.com"));
+        assertEquals(0, limiter.getInFlight("example.com"));
+        for(int i = 0; i < 3; i++){
+            limiter.acquire("example.com").release(Signal.CONGESTION);
+        }
+        assertEquals(1, limiter.getWindow("example.com"));
+    }
+
+    /**
+     * Tests that a full window makes callers wait and fail after the acquire timeout.
+     */
+    @Test
+    public void testFullWindowTimesOut() throws SmtpClientException {
+        // Arrange
+        SmtpClientConfig config = SmtpClientConfig.builder().domainWindow(1, 4).acquireTimeoutMillis(20).build();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(config);
+        ConcurrencyLimiter.Permit permit = limiter.acquire("example.com");
+
+        // Act & Assert
+        assertThrows(SmtpClientException.class, () -> limiter.acquire("example.com"));
+        permit.release(Signal.SUCCESS);
+        permit.release(Signal.SUCCESS);
+        assertEquals(0, limiter.getInFlight("example.com"));
+        assertEquals(2, limiter.getWindow("example.com"));
+    }
+
+    /**
+     * Tests that transaction replies are classified by what they say about the domain's capacity.
+     */
+    @Test
+    public void testRepliesClassified() {
+        // Arrange
+        CommandResult ok = new CommandResult(true, "OK", 250);
+        CommandResult closing = new CommandResult(false, "Too busy", 421);
+
+        // Act & Assert
+        assertEquals(Signal.SUCCESS, ConcurrencyLimiter.classify(new DeliveryResult(Map.of("a@x.example", ok), ok)));
+        assertEquals(Signal.CONGESTION, ConcurrencyLimiter.classify(new DeliveryResult(Map.of("a@x.example", closing), ok)));
+        assertEquals(Signal.CONGESTION, ConcurrencyLimiter.classify(new DeliveryResult(Map.of(), new CommandResult(false, "Later", 451))));
+        assertEquals(Signal.NEUTRAL, ConcurrencyLimiter.classify(new DeliveryResult(Map.of(), new CommandResult(false, "No", 550))));
+    }
+
+    /**
+     * Tests that relayed transactions adjust the window of their domain.
+     */
+    @Test
+    public void testDeliverAdjustsDomainWindow() throws IOException {
+        SmtpClientConfig config = SmtpClientConfig.builder().domainWindow(4, 20).build();
+        try(MockSmtpServer server = new MockSmtpServer("PIPELINING");
+            SmtpClient client = new SmtpClient(config)){
+            // Arrange
+            OutboundMessage accepted = new OutboundMessage("s@example.com", List.of("a@fast.example"), ascii("Hi\r\n"));
+            OutboundMessage deferred = new OutboundMessage("s@example.com", List.of("defer@slow.example"), ascii("Hi\r\n"));
+
+            // Act
+            client.deliver(List.of(accepted, deferred), domain -> server.getDestination());
+
+            // Assert
+            assertEquals(5, client.getLimiter().getWindow("fast.example"));
+            assertEquals(2, client.getLimiter().getWindow("slow.example"));
+            assertEquals(0, client.getLimiter().getInFlight("fast.example"));
+        }
+    }
+
+    /**
+     * Encodes text as a buffer.
+     *
+     * @param text The text.
+     * @return The US-ASCII bytes.
+     */
+    private static ByteBuffer ascii(String text){
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,137 @@
+package com.couture.mercury.core.tests.client;
+
+import com.couture.mercury.core.client.CachingMxResolver;
+import com.couture.mercury.core.client.Destination;
+import com.couture.mercury.core.client.MxLookup;
+import com.couture.mercury.core.client.MxRecord;
+import com.couture.mercury.core.client.UnroutableDomainException;
+import com.couture.mercury.core.mocks.MockMxResolver;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for mail exchanger lookups and their cache.
+ */
+public class MxResolverTests {
+
+    /**
+     * Tests that a found answer is reused until its TTL passes, and that the TTL is capped.
+     */
+    @Test
+    public void testFoundAnswerCachedForTtl() {
+        // Arrange
+        MockMxResolver dns = new MockMxResolver();
+        dns.setAnswer("example.com", MxLookup.found(60_000, new MxRecord("MX2.example.com.", 20), new MxRecord("mx1.example.com", 10)));
+        AtomicLong clock = new AtomicLong();
+        CachingMxResolver cache = new CachingMxResolver(dns, 30_000, 0, 0, clock::get);
+
+        // Act
+        MxLookup first = cache.resolve("example.com");
+        clock.set(29_999);
+        MxLookup second = cache.resolve("example.com");
+        clock.set(30_000);
+        cache.resolve("example.com");
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(List.of(new MxRecord("mx1.example.com", 10), new MxRecord("mx2.example.com", 20)), first.getRecords());
+        assertEquals(2, dns.getLookupCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    /**
+     * Tests that non-existent domains and server failures are remembered for their own TTLs.
+     */
+    @Test
+    public void testFailuresCachedNegatively() {
+        // Arrange
+        MockMxResolver dns = new MockMxResolver();
+        dns.setAnswer("broken.example", MxLookup.failed(MxLookup.Status.SERVER_FAILURE, 0));
+        AtomicLong clock = new AtomicLong();
+        CachingMxResolver cache = new CachingMxResolver(dns, 60_000, 10_000, 1_000, clock::get);
+
+        // Act
+        assertEquals(MxLookup.Status.NO_DOMAIN, cache.resolve("missing.example").getStatus());
+        assertEquals(MxLookup.Status.SERVER_FAILURE, cache.resolve("broken.example").getStatus());
+        clock.set(5_000);
+        cache.resolve("missing.example");
+        cache.resolve("broken.example");
+        clock.set(10_000);
+        int purged = cache.purgeExpired();
+
+        // Assert
+        assertEquals(3, dns.getLookupCount());
+        assertEquals(2, purged);
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that concurrent lookups of an uncached domain share one query.
+     */
+    @Test
+    public void testConcurrentLookupsCoalesced() throws Exception {
+        // Arrange
+        MockMxResolver dns = new MockMxResolver();
+        dns.setAnswer("example.com", MxLookup.found(60_000, new MxRecord("mx.example.com", 10)));
+        CountDownLatch gate = new CountDownLatch(1);
+        dns.setGate(gate);
+        CachingMxResolver cache = new CachingMxResolver(dns);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try{
+            // Act
+            List<Future<MxLookup>> lookups = new ArrayList<>();
+            for(int i = 0; i < 8; i++){
+                lookups.add(executor.submit(() -> cache.resolve("example.com")));
+            }
+            for(int i = 0; i < 500 && cache.getHitCount() < 7; i++){
+                Thread.sleep(10);
+            }
+            gate.countDown();
+
+            // Assert
+            MxLookup answer = lookups.get(0).get();
+            for(Future<MxLookup> lookup : lookups){
+                assertSame(answer, lookup.get());
+            }
+            assertEquals(1, dns.getLookupCount());
+            assertEquals(1, cache.getMissCount());
+        }
+        finally{
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that the router sends a domain to its most preferred exchanger and fails domains without one, permanently when the domain does not exist.
+     */
+    @Test
+    public void testRouterUsesPreferredExchanger() {
+        // Arrange
+        MockMxResolver dns = new MockMxResolver();
+        dns.setAnswer("example.com", MxLookup.found(60_000, new MxRecord("backup.example.com", 20), new MxRecord("mx.example.com", 5)));
+        Function<String, Destination> router = new CachingMxResolver(dns).asRouter();
+
+        // Act
+        Destination destination = router.apply("example.com");
+
+        // Assert
+        assertEquals(new Destination("mx.example.com"), destination);
+        UncheckedIOException missing = assertThrows(UncheckedIOException.class, () -> router.apply("missing.example"));
+        assertInstanceOf(UnroutableDomainException.class, missing.getCause());
+        assertEquals(550, ((UnroutableDomainException) missing.getCause()).getReply().getResponseCode());
+        assertThrows(IllegalArgumentException.class, () -> MxLookup.failed(MxLookup.Status.FOUND, 0));
+    }
+}
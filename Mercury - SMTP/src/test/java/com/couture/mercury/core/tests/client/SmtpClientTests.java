@@ -0,0 +1,296 @@
+package com.couture.mercury.core.tests.client;
+
+import com.couture.mercury.core.client.ConnectionPool;
+import com.couture.mercury.core.client.DeliveryResult;
+import com.couture.mercury.core.client.LocalLimitException;
+import com.couture.mercury.core.client.MxLookup;
+import com.couture.mercury.core.client.Destination;
+import com.couture.mercury.core.client.OutboundMessage;
+import com.couture.mercury.core.client.SmtpClient;
+import com.couture.mercury.core.client.SmtpClientConfig;
+import com.couture.mercury.core.client.SmtpConnection;
+import com.couture.mercury.core.mocks.MockMxResolver;
+import com.couture.mercury.core.mocks.MockSmtpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the outbound SMTP client and its connection pool, against an in-JVM stand-in server.
+ */
+public class SmtpClientTests {
+
+    /**
+     * Tests that consecutive messages to one destination share a connection, reset with RSET between
+     * transactions, and that message content survives dot-stuffing.
+     */
+    @Test
+    public void testConnectionReusedAcrossMessages() throws IOException {
+        try(MockSmtpServer server = new MockSmtpServer("PIPELINING", "SIZE 10240000");
+            SmtpClient client = new SmtpClient(SmtpClientConfig.builder().heloName("relay.example").build())){
+            // Arrange
+            String body = "Subject: dots\r\n\r\n.leading dot\r\n..two\r\n";
+            Destination destination = server.getDestination();
+
+            // Act
+            for(int i = 0; i < 3; i++){
+                DeliveryResult result = client.send(destination, "sender@example.com", List.of("rcpt@example.com"), ascii(body));
+                assertTrue(result.isFullyDelivered());
+            }
+
+            // Assert
+            assertEquals(1, server.getConnectionCount());
+            assertEquals(2, server.countCommands("RSET"));
+            assertEquals(1, server.countCommands("EHLO relay.example"));
+            assertEquals(List.of(body, body, body), server.getMessages());
+            assertEquals(1, client.getPool().getCreatedCount());
+            assertEquals(2, client.getPool().getReusedCount());
+            assertEquals(1, client.getPool().getIdleCount(destination));
+        }
+    }
+
+    /**
+     * Tests that refused recipients are reported without failing the rest of the transaction, and that
+     * a body without a final CRLF is terminated correctly.
+     */
+    @Test
+    public void testRecipientRepliesReported() throws IOException {
+        try(MockSmtpServer server = new MockSmtpServer();
+            SmtpClient client = new SmtpClient(SmtpClientConfig.builder().build())){
+            // Arrange
+            List<String> recipients = List.of("ok@example.com", "reject@example.com", "defer@example.com");
+
+            // Act
+            DeliveryResult result = client.send(server.getDestination(), null, recipients, ascii("no newline"));
+
+            // Assert
+            assertEquals(List.of("ok@example.com"), result.getDeliveredRecipients());
+            assertEquals(550, result.getReply("reject@example.com").getResponseCode());
+            assertEquals(451, result.getReply("defer@example.com").getResponseCode());
+            assertEquals(250, result.getReply("ok@example.com").getResponseCode());
+            assertFalse(result.isFullyDelivered());
+            assertTrue(server.getCommands().contains("MAIL FROM:<>"));
+            assertEquals(List.of("no newline\r\n"), server.getMessages());
+        }
+    }
+
+    /**
+     * Tests that idle connections are closed with QUIT once the idle timeout passes.
+     */
+    @Test
+    public void testIdleConnectionsEvicted() throws Exception {
+        SmtpClientConfig config = SmtpClientConfig.builder().idleTimeoutMillis(1).build();
+        try(MockSmtpServer server = new MockSmtpServer();
+            ConnectionPool pool = new ConnectionPool(config)){
+            // Arrange
+            Destination destination = server.getDestination();
+            pool.release(pool.acquire(destination));
+            Thread.sleep(20);
+
+            // Act
+            pool.evictIdle();
+
+            // Assert
+            assertEquals(0, pool.getIdleCount(destination));
+            assertEquals(0, pool.getOpenCount(destination));
+            for(int i = 0; i < 100 && server.countCommands("QUIT") == 0; i++){
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.countCommands("QUIT"));
+        }
+    }
+
+    /**
+     * Tests that a destination at its connection limit makes callers wait, failing after the acquire
+     * timeout, and that a released connection is handed to the next caller.
+     */
+    @Test
+    public void testConnectionLimitPerDestination() throws IOException {
+        SmtpClientConfig config = SmtpClientConfig.builder().maxConnectionsPerDestination(1).acquireTimeoutMillis(50).build();
+        try(MockSmtpServer server = new MockSmtpServer();
+            ConnectionPool pool = new ConnectionPool(config)){
+            // Arrange
+            Destination destination = server.getDestination();
+            SmtpConnection first = pool.acquire(destination);
+
+            // Act & Assert
+            assertThrows(LocalLimitException.class, () -> pool.acquire(destination));
+            assertEquals(1, pool.getOpenCount(destination));
+
+            pool.release(first);
+            SmtpConnection second = pool.acquire(destination);
+            assertSame(first, second);
+            pool.invalidate(second);
+            assertEquals(0, pool.getOpenCount(destination));
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    /**
+     * Tests that the envelope is sent in one write when the remote advertises PIPELINING, and command by
+     * command otherwise.
+     */
+    @Test
+    public void testEnvelopePipelinedWhenAdvertised() throws IOException {
+        try(MockSmtpServer pipelining = new MockSmtpServer("PIPELINING");
+            MockSmtpServer plain = new MockSmtpServer();
+            SmtpClient client = new SmtpClient(SmtpClientConfig.builder().build())){
+            // Arrange
+            List<String> recipients = List.of("a@example.com", "b@example.com", "c@example.com");
+
+            // Act
+            DeliveryResult pipelined = client.send(pipelining.getDestination(), "s@example.com", recipients, ascii("Hi\r\n"));
+            DeliveryResult sequential = client.send(plain.getDestination(), "s@example.com", recipients, ascii("Hi\r\n"));
+
+            // Assert
+            assertEquals(recipients, pipelined.getDeliveredRecipients());
+            assertEquals(recipients, sequential.getDeliveredRecipients());
+            assertEquals(1, pipelining.getPipelinedCount());
+            assertEquals(0, plain.getPipelinedCount());
+        }
+    }
+
+    /**
+     * Tests that a pipelined transaction whose recipients are all refused reports the refusal and leaves
+     * the connection usable for the next message.
+     */
+    @Test
+    public void testPipelinedTransactionWithoutRecipients() throws IOException {
+        try(MockSmtpServer server = new MockSmtpServer("PIPELINING");
+            SmtpClient client = new SmtpClient(SmtpClientConfig.builder().build())){
+            // Arrange
+            Destination destination = server.getDestination();
+
+            // Act
+            DeliveryResult refused = client.send(destination, "s@example.com", List.of("reject@example.com"), ascii("Hi\r\n"));
+            DeliveryResult accepted = client.send(destination, "s@example.com", List.of("ok@example.com"), ascii("Hi\r\n"));
+
+            // Assert
+            assertEquals(550, refused.getTransactionReply().getResponseCode());
+            assertTrue(accepted.isFullyDelivered());
+            assertEquals(1, server.getMessages().size());
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    /**
+     * Tests that queued messages are grouped by recipient domain, packed up to the recipient limit per
+     * transaction, and that recipients refused with 452 are carried into the next transaction.
+     */
+    @Test
+    public void testDeliverBatchesRecipientsByDomain() throws IOException {
+        SmtpClientConfig config = SmtpClientConfig.builder().maxRecipientsPerTransaction(3).build();
+        try(MockSmtpServer server = new MockSmtpServer("PIPELINING");
+            SmtpClient client = new SmtpClient(config)){
+            // Arrange
+            server.setMaxRecipients(2);
+            OutboundMessage first = new OutboundMessage("s@example.com",
+                    List.of("a1@x.example", "b1@Y.example", "a2@x.example", "a3@x.example"), ascii("One\r\n"));
+            OutboundMessage second = new OutboundMessage("s@example.com", List.of("a4@x.example"), ascii("Two\r\n"));
+            List<String> routed = new ArrayList<>();
+
+            // Act
+            Map<OutboundMessage, List<DeliveryResult>> results = client.deliver(List.of(first, second), domain -> {
+                routed.add(domain);
+                return server.getDestination();
+            });
+
+            // Assert
+            assertEquals(List.of("x.example", "y.example"), routed);
+            assertEquals(3, results.get(first).size());
+            assertEquals(List.of("a1@x.example", "a2@x.example"), results.get(first).get(0).getDeliveredRecipients());
+            assertEquals(List.of("a3@x.example"), results.get(first).get(1).getDeliveredRecipients());
+            assertEquals(List.of("b1@Y.example"), results.get(first).get(2).getDeliveredRecipients());
+            assertEquals(List.of("a4@x.example"), results.get(second).get(0).getDeliveredRecipients());
+            assertEquals(4, server.countCommands("MAIL"));
+            assertEquals(List.of("One\r\n", "One\r\n", "Two\r\n", "One\r\n"), server.getMessages());
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    /**
+     * Tests that concurrent callers to one domain, each needing several transactions, neither wait on
+     * each other until the acquire timeout nor shrink the window when the pool is smaller than it.
+     */
+    @Test
+    public void testConcurrentDeliveriesDoNotDeadlock() throws Exception {
+        SmtpClientConfig config = SmtpClientConfig.builder().maxConnectionsPerDestination(1).domainWindow(1, 4)
+                .maxRecipientsPerTransaction(1).acquireTimeoutMillis(5_000).build();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try(MockSmtpServer server = new MockSmtpServer();
+            SmtpClient client = new SmtpClient(config)){
+            // Arrange
+            List<Callable<List<DeliveryResult>>> tasks = new ArrayList<>();
+            for(int i = 0; i < 6; i++){
+                OutboundMessage message = new OutboundMessage("s@example.com",
+                        List.of("a" + i + "@x.example", "b" + i + "@x.example", "c" + i + "@x.example"), ascii("Body\r\n"));
+                tasks.add(() -> client.deliver(List.of(message), domain -> server.getDestination()).get(message));
+            }
+
+            // Act
+            long start = System.nanoTime();
+            List<Future<List<DeliveryResult>>> futures = executor.invokeAll(tasks);
+
+            // Assert
+            for(Future<List<DeliveryResult>> future : futures){
+                for(DeliveryResult result : future.get()){
+                    assertTrue(result.isFullyDelivered(), result.getTransactionReply().getMessage());
+                }
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertEquals(18, server.getMessages().size());
+            assertEquals(4, client.getLimiter().getWindow("x.example"));
+        }
+        finally{
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that recipients at a domain without mail exchangers fail permanently, while a failed
+     * lookup leaves them to be retried.
+     */
+    @Test
+    public void testUnroutableDomainFailsPermanently() {
+        try(SmtpClient client = new SmtpClient(SmtpClientConfig.builder().build())){
+            // Arrange
+            MockMxResolver dns = new MockMxResolver();
+            dns.setAnswer("broken.example", MxLookup.failed(MxLookup.Status.SERVER_FAILURE, 0));
+            OutboundMessage message = new OutboundMessage("s@example.com",
+                    List.of("a@missing.example", "b@broken.example"), ascii("Body\r\n"));
+
+            // Act
+            Map<OutboundMessage, List<DeliveryResult>> results = client.deliver(List.of(message), dns.asRouter());
+
+            // Assert
+            List<DeliveryResult> attempts = results.get(message);
+            assertEquals(2, attempts.size());
+            assertEquals(550, attempts.get(0).getTransactionReply().getResponseCode());
+            assertTrue(attempts.get(0).getTransactionReply().getMessage().startsWith("5.1.2"));
+            assertEquals(451, attempts.get(1).getTransactionReply().getResponseCode());
+            assertEquals(2, dns.getLookupCount());
+        }
+    }
+
+    /**
+     * Encodes text as a buffer.
+     *
+     * @param text The text.
+     * @return The US-ASCII bytes.
+     */
+    private static ByteBuffer ascii(String text){
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,129 @@
+package com.couture.mercury.core.tests.codec;
+
+import com.couture.mercury.core.mocks.MockCommand;
+import com.couture.mercury.core.protocol.codec.CodecException;
+import com.couture.mercury.core.protocol.codec.CodecWriter;
+import com.couture.mercury.core.protocol.codec.CodecReader;
+import com.couture.mercury.core.protocol.codec.CommandCodec;
+import com.couture.mercury.core.protocol.codec.SessionSnapshotCodec;
+import com.couture.mercury.core.protocol.commands.Command;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.commands.implementation.MAILCommand;
+import com.couture.mercury.core.protocol.commands.implementation.QUITCommand;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compact binary codecs.
+ */
+public class CommandCodecTests {
+
+    /**
+     * Tests that commands round-trip to their concrete implementation.
+     */
+    @Test
+    public void testCommandRoundTrip() throws CodecException {
+        // Arrange
+        Command command = new MAILCommand("FROM:<sender@exämple.com>");
+
+        // Act
+        Command decoded = CommandCodec.decode(CommandCodec.encode(command));
+
+        // Assert
+        assertInstanceOf(MAILCommand.class, decoded);
+        assertEquals(CommandType.MAIL, decoded.getCommandType());
+        assertArrayEquals(command.getParameters(), decoded.getParameters());
+    }
+
+    /**
+     * Tests that several records can be written to and read from one buffer.
+     */
+    @Test
+    public void testSequentialRecords() throws CodecException {
+        // Arrange
+        CodecWriter writer = new CodecWriter();
+        CommandCodec.encode(new QUITCommand(), writer);
+        CommandCodec.encodeResult(new CommandResult(false, null, 421), writer);
+
+        // Act
+        CodecReader reader = new CodecReader(writer.toByteArray());
+        Command command = CommandCodec.decode(reader);
+        CommandResult result = CommandCodec.decodeResult(reader);
+
+        // Assert
+        assertInstanceOf(QUITCommand.class, command);
+        assertFalse(result.isSuccess());
+        assertNull(result.getMessage());
+        assertEquals(421, result.getResponseCode());
+        assertEquals(0, reader.remaining());
+    }
+
+    /**
+     * Tests that session envelope state round-trips into another session.
+     */
+    @Test
+    public void testSessionSnapshotRoundTrip() throws CodecException {
+        // Arrange
+        SmtpSession source = new SmtpSession();
+        source.getContext().setState(SessionState.RCPT);
+        source.getEnvelope().setReversePath("");
+        source.getEnvelope().getRecipients().addRecipient("a@example.com");
+        source.getEnvelope().getRecipients().addRecipient("b@example.org");
+        SmtpSession target = new SmtpSession();
+
+        // Act
+        SessionSnapshotCodec.decode(SessionSnapshotCodec.encode(source), target);
+
+        // Assert
+        assertEquals(SessionState.RCPT, target.getContext().getState());
+        assertEquals("", target.getEnvelope().getReversePath());
+        assertEquals(2, target.getEnvelope().getRecipients().size());
+        assertEquals("b@example.org", target.getEnvelope().getRecipients().get(1));
+    }
+
+    /**
+     * Tests that truncated input is rejected with a CodecException.
+     */
+    @Test
+    public void testTruncatedInputIsRejected() {
+        // Arrange
+        byte[] encoded = CommandCodec.encode(new MAILCommand("FROM:<sender@example.com>"));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+
+        // Act & Assert
+        assertThrows(CodecException.class, () -> CommandCodec.decode(truncated));
+    }
+
+    /**
+     * Tests that a record of the wrong kind or version is rejected.
+     */
+    @Test
+    public void testWrongTagAndVersionAreRejected() {
+        // Arrange
+        byte[] result = CommandCodec.encodeResult(new CommandResult(true, "OK", 250));
+        byte[] futureVersion = CommandCodec.encode(new QUITCommand());
+        futureVersion[1] = 99;
+
+        // Act & Assert
+        assertThrows(CodecException.class, () -> CommandCodec.decode(result));
+        assertThrows(CodecException.class, () -> CommandCodec.decode(futureVersion));
+    }
+
+    /**
+     * Tests that commands whose parameters do not fit the concrete implementation are rejected.
+     */
+    @Test
+    public void testParameterMismatchIsRejected() {
+        // Arrange
+        byte[] encoded = CommandCodec.encode(new MockCommand(CommandType.HELO));
+
+        // Act & Assert
+        assertThrows(CodecException.class, () -> CommandCodec.decode(encoded));
+    }
+}
@@ -0,0 +1,183 @@
+package com.couture.mercury.core.tests.commands.validation;
+
+import com.couture.mercury.core.protocol.commands.Command;
+import com.couture.mercury.core.protocol.commands.CommandType;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import com.couture.mercury.core.protocol.validation.implementation.CommandValidator;
+import com.couture.mercury.core.protocol.validation.result.BatchValidationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for pipelined batch validation in CommandValidator.
+ */
+public class CommandValidatorBatchTests extends CommandValidatorTestBase {
+
+    /**
+     * Tests that a full MAIL/RCPT/DATA transaction validates against simulated state transitions.
+     */
+    @Test
+    public void testPipelinedTransactionIsValid() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = List.of(
+                createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"),
+                createMockCommand(CommandType.RCPT, "TO:<first@example.com>"),
+                createMockCommand(CommandType.RCPT, "TO:<second@example.com>"),
+                createMockCommand(CommandType.DATA));
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertEquals(4, result.size());
+        assertTrue(result.isAllValid(), "All pipelined commands should be valid");
+        assertEquals(-1, result.firstFailureIndex());
+    }
+
+    /**
+     * Tests that a recipient the store cannot hold, such as one without a domain, is rejected rather
+     * than silently left uncounted.
+     */
+    @Test
+    public void testRecipientWithoutDomainIsRejected() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = List.of(
+                createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"),
+                createMockCommand(CommandType.RCPT, "TO:<postmaster>"),
+                createMockCommand(CommandType.DATA));
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertTrue(result.isValid(0));
+        assertFalse(result.isValid(1));
+        assertFalse(result.isValid(2), "DATA should fail without an accepted recipient");
+    }
+
+    /**
+     * Tests that batch validation never mutates the real session context.
+     */
+    @Test
+    public void testBatchDoesNotMutateSession() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = List.of(
+                createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"),
+                createMockCommand(CommandType.RCPT, "TO:<first@example.com>"));
+
+        // Act
+        CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertEquals(SessionState.HELO, m_sessionContext.getState());
+        assertNull(m_sessionContext.getAttribute(CommandConstants.Attributes.RECIPIENTS_KEY));
+    }
+
+    /**
+     * Tests that a rejected RCPT does not count as a recipient, so DATA fails without any accepted recipients.
+     */
+    @Test
+    public void testFailedRecipientIsNotCounted() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = List.of(
+                createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"),
+                createMockCommand(CommandType.RCPT, "invalid"),
+                createMockCommand(CommandType.DATA));
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertTrue(result.isValid(0));
+        assertFalse(result.isValid(1));
+        assertFalse(result.isValid(2));
+        assertEquals(2, result.getFailureCount());
+        assertEquals(1, result.firstFailureIndex());
+        assertValidationFailure(result.toValidationResult(2));
+    }
+
+    /**
+     * Tests that recipients already present in the session are taken into account.
+     */
+    @Test
+    public void testExistingRecipientsAreVisible() {
+        // Arrange
+        m_sessionContext.setState(SessionState.RCPT);
+        List<String> recipients = new ArrayList<>();
+        recipients.add("<existing@example.com>");
+        m_sessionContext.setAttribute(CommandConstants.Attributes.RECIPIENTS_KEY, recipients);
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(
+                List.of(createMockCommand(CommandType.DATA)), m_sessionContext);
+
+        // Assert
+        assertTrue(result.isAllValid());
+    }
+
+    /**
+     * Tests that a large recipient group validates in one pass.
+     */
+    @Test
+    public void testLargeRecipientGroup() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = new ArrayList<>();
+        batch.add(createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"));
+        for (int i = 0; i < ValidationConstants.MAX_RECIPIENTS; i++) {
+            batch.add(createMockCommand(CommandType.RCPT, "TO:<user" + i + "@example.com>"));
+        }
+        batch.add(createMockCommand(CommandType.DATA));
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertTrue(result.isAllValid());
+    }
+
+    /**
+     * Tests that recipients beyond the recipient limit are rejected.
+     */
+    @Test
+    public void testRecipientLimitExceeded() {
+        // Arrange
+        m_sessionContext.setState(SessionState.HELO);
+        List<Command> batch = new ArrayList<>();
+        batch.add(createMockCommand(CommandType.MAIL, "FROM:<sender@example.com>"));
+        for (int i = 0; i <= ValidationConstants.MAX_RECIPIENTS; i++) {
+            batch.add(createMockCommand(CommandType.RCPT, "TO:<user" + i + "@example.com>"));
+        }
+
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(batch, m_sessionContext);
+
+        // Assert
+        assertEquals(1, result.getFailureCount());
+        assertEquals(batch.size() - 1, result.firstFailureIndex());
+    }
+
+    /**
+     * Tests that a null session context fails every command in the batch.
+     */
+    @Test
+    public void testNullSessionContext() {
+        // Act
+        BatchValidationResult result = CommandValidator.validateAll(
+                List.of(createMockCommand(CommandType.NOOP)), null);
+
+        // Assert
+        assertEquals(1, result.getFailureCount());
+        assertValidationFailure(result.toValidationResult(0));
+    }
+}
@@ -0,0 +1,200 @@
+package com.couture.mercury.core.tests.delivery;
+
+import com.couture.mercury.core.delivery.RetryPolicy;
+import com.couture.mercury.core.delivery.RetryScheduler;
+import com.couture.mercury.core.delivery.TimingWheel;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.spool.DeliveryState;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageStore;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.StoredEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the timing wheel and the retry scheduler built on it.
+ */
+public class RetrySchedulerTests {
+    private static final byte[] BODY = "Subject: Hello\r\n\r\nHello world\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long HOUR = 60 * 60_000;
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that entries on every level of the wheel expire on their due tick and never before it.
+     */
+    @Test
+    public void testWheelExpiresEntriesOnTime() {
+        // Arrange
+        TimingWheel wheel = new TimingWheel(1000, 4, 0);
+        long[] dueMillis = {1, 2_000, 63_000, 64_000, 4_096_000, 10 * HOUR, 3 * 24 * HOUR, 5 * 24 * HOUR};
+        for(int i = 0; i < dueMillis.length; i++){
+            wheel.schedule(i, dueMillis[i]);
+        }
+
+        // Act & Assert
+        for(int i = 0; i < dueMillis.length; i++){
+            long dueTick = (dueMillis[i] + 999) / 1000;
+            assertEquals(0, wheel.advance(dueTick * 1000 - 1000, id -> fail("Expired early: " + id)));
+            List<Long> expired = new ArrayList<>();
+            assertEquals(1, wheel.advance(dueTick * 1000, expired::add));
+            assertEquals(List.of((long) i), expired);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that a large deferred queue comes due in order of due tick.
+     */
+    @Test
+    public void testWheelHoldsManyEntries() {
+        // Arrange
+        TimingWheel wheel = new TimingWheel(1000, 4, 0);
+        SplittableRandom random = new SplittableRandom(42);
+        int count = 200_000;
+        long[] due = new long[count];
+        for(int i = 0; i < count; i++){
+            due[i] = random.nextLong(1, 2 * 24 * HOUR);
+            wheel.schedule(i, due[i]);
+        }
+        long[] lastTick = {0};
+
+        // Act
+        int expired = wheel.advance(2 * 24 * HOUR, id -> {
+            long tick = (due[(int) id] + 999) / 1000;
+            assertTrue(tick >= lastTick[0]);
+            lastTick[0] = tick;
+        });
+
+        // Assert
+        assertEquals(count, expired);
+        assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Tests that the backoff grows by the multiplier up to its cap and that the jittered delay stays
+     * within the upper half of it.
+     */
+    @Test
+    public void testBackoffWithJitter() {
+        // Arrange
+        RetryPolicy policy = RetryPolicy.builder().delays(60_000, HOUR).multiplier(2).maxAttempts(5).build();
+        SplittableRandom random = new SplittableRandom(7);
+
+        // Act & Assert
+        assertEquals(60_000, policy.getBackoffMillis(1));
+        assertEquals(240_000, policy.getBackoffMillis(3));
+        assertEquals(HOUR, policy.getBackoffMillis(20));
+        for(int i = 0; i < 1000; i++){
+            long delay = policy.nextDelayMillis(3, random);
+            assertTrue(delay >= 120_000 && delay <= 240_000);
+        }
+        assertFalse(policy.isExhausted(4));
+        assertTrue(policy.isExhausted(5));
+        assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().multiplier(0.5));
+    }
+
+    /**
+     * Tests that a temporary failure defers the recipient until its backoff passes, a permanent failure
+     * fails it at once, and the last allowed attempt fails it.
+     */
+    @Test
+    public void testAttemptOutcomes() throws IOException {
+        RetryPolicy policy = RetryPolicy.builder().delays(60_000, HOUR).maxAttempts(2).build();
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            StoredEnvelope envelope = store(store, spool, "a@example.com", "b@example.com", "c@example.com");
+            long first = envelope.getFirstRecordId();
+            RetryScheduler scheduler = new RetryScheduler(store, policy, 0);
+            CommandResult deferred = new CommandResult(false, "Try again later", 451);
+
+            // Act
+            DeliveryState a = scheduler.recordAttempt(first, deferred, 0);
+            DeliveryState b = scheduler.recordAttempt(first + 1, new CommandResult(false, "No such user", 550), 0);
+            DeliveryState c = scheduler.recordAttempt(first + 2, new CommandResult(true, "OK", 250), 0);
+
+            // Assert
+            assertEquals(DeliveryState.DEFERRED, a);
+            assertEquals(DeliveryState.FAILED, b);
+            assertEquals(DeliveryState.DELIVERED, c);
+            assertEquals(1, scheduler.size());
+            assertEquals(0, scheduler.pollDue(29_000, id -> fail("Retried early")));
+            List<Long> due = new ArrayList<>();
+            assertEquals(1, scheduler.pollDue(60_000, due::add));
+            assertEquals(List.of(first), due);
+            assertEquals(DeliveryState.FAILED, scheduler.recordAttempt(first, deferred, 60_000));
+            assertEquals(0, scheduler.size());
+        }
+    }
+
+    /**
+     * Tests that the queue is rebuilt from the ledger after a restart, with pending recipients due at
+     * once and deferred recipients within their backoff.
+     */
+    @Test
+    public void testRebuildAfterRestart() throws IOException {
+        RetryPolicy policy = RetryPolicy.builder().delays(60_000, HOUR).build();
+        long first;
+
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            first = store(store, spool, "a@example.com", "b@example.com", "c@example.com").getFirstRecordId();
+            store.updateDelivery(first, DeliveryState.DEFERRED);
+            store.updateDelivery(first + 1, DeliveryState.DELIVERED);
+        }
+
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            long now = 1_000_000;
+            RetryScheduler scheduler = new RetryScheduler(store, policy, now);
+
+            // Act
+            int scheduled = scheduler.rebuild(now);
+
+            // Assert
+            assertEquals(2, scheduled);
+            List<Long> due = new ArrayList<>();
+            scheduler.pollDue(now + 1000, due::add);
+            assertTrue(due.contains(first + 2));
+            scheduler.pollDue(now + 61_000, due::add);
+            assertEquals(2, due.size());
+            assertTrue(due.contains(first));
+            assertEquals(0, scheduler.size());
+        }
+    }
+
+    /**
+     * Stores a message to some recipients.
+     *
+     * @param store The store.
+     * @param spool The spool.
+     * @param recipients The recipients.
+     * @return The envelope.
+     */
+    private static StoredEnvelope store(MessageStore store, MessageSpool spool, String... recipients){
+        return store.store(spool.writer(FsyncPolicy.PER_MESSAGE), "sender@example.com", List.of(recipients),
+                ByteBuffer.wrap(BODY)).join();
+    }
+
+    /**
+     * Opens the spool under test.
+     *
+     * @return The spool.
+     * @throws IOException If the spool cannot be opened.
+     */
+    private MessageSpool open() throws IOException {
+        return MessageSpool.open(SpoolConfig.builder(m_directory).segmentSize(1 << 20).build());
+    }
+}
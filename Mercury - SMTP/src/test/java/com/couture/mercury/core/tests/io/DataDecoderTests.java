@@ -0,0 +1,196 @@
+package com.couture.mercury.core.tests.io;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.io.DataDecoder;
+import com.couture.mercury.core.protocol.io.LineBuffer;
+import com.couture.mercury.core.protocol.io.LineScanner;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for line feed scanning, command line framing and DATA decoding.
+ */
+public class DataDecoderTests {
+
+    /**
+     * Tests that the scanner finds every line feed position in heap and direct buffers of either byte order.
+     */
+    @Test
+    public void testScannerFindsLineFeedAtEveryOffset(){
+        for(int length = 1; length <= 40; length++){
+            for(int target = 0; target < length; target++){
+                // Arrange
+                byte[] bytes = new byte[length];
+                for(int i = 0; i < length; i++){
+                    // Bytes next to LF in value, to catch inexact matching.
+                    bytes[i] = (byte) (i % 2 == 0 ? 0x0B : 0x8A);
+                }
+                bytes[target] = '\n';
+                ByteBuffer direct = ByteBuffer.allocateDirect(length).put(bytes).flip();
+
+                // Act & Assert
+                assertEquals(target, LineScanner.indexOfLineFeed(ByteBuffer.wrap(bytes), 0, length));
+                assertEquals(target, LineScanner.indexOfLineFeed(direct.order(ByteOrder.BIG_ENDIAN), 0, length));
+                assertEquals(target, LineScanner.indexOfLineFeed(direct.order(ByteOrder.LITTLE_ENDIAN), 0, length));
+                assertEquals(-1, LineScanner.indexOfLineFeed(bytes, target + 1, length));
+            }
+        }
+    }
+
+    /**
+     * Tests that command lines split across reads are framed, bare LF does not end a line and
+     * overlong lines are discarded up to the next line feed.
+     */
+    @Test
+    public void testLineBufferFramesLines(){
+        // Arrange
+        LineBuffer buffer = new LineBuffer(16);
+        ByteBuffer first = ascii("MAIL FROM:<a");
+        ByteBuffer second = ascii("@b>\r\nNOOP\nX\r\n" + "A".repeat(20) + "\r\nRSET\r\n");
+
+        // Act & Assert
+        assertFalse(buffer.feed(first));
+        assertTrue(buffer.feed(second));
+        assertTrue(buffer.isOverflowed());
+        buffer.clear();
+
+        // "MAIL FROM:<a@b>\r\n" is 17 bytes, so it overflowed; the next line keeps its bare LF.
+        assertTrue(buffer.feed(second));
+        assertEquals("NOOP\nX", buffer.getLine());
+        buffer.clear();
+
+        assertTrue(buffer.feed(second));
+        assertTrue(buffer.isOverflowed());
+        buffer.clear();
+
+        assertTrue(buffer.feed(second));
+        assertEquals("RSET", buffer.getLine());
+        assertFalse(second.hasRemaining());
+    }
+
+    /**
+     * Tests that stuffed dots are removed, the terminator ends the message and the bytes after it are left unread.
+     */
+    @Test
+    public void testDecoderRemovesStuffingAndStopsAtTerminator(){
+        // Arrange
+        DataDecoder decoder = new DataDecoder();
+        ByteBuffer input = ascii("..leading\r\nmid.dle\r\n.\rx\r\n...\r\n.\r\nQUIT\r\n");
+
+        // Act
+        String content = drain(decoder, input);
+
+        // Assert
+        assertTrue(decoder.isComplete());
+        assertEquals(".leading\r\nmid.dle\r\n\rx\r\n..\r\n", content);
+        assertEquals("QUIT\r\n", StandardCharsets.US_ASCII.decode(input).toString());
+    }
+
+    /**
+     * Tests that decoding gives the same result however the input is split, including inside the terminator.
+     */
+    @Test
+    public void testDecoderHandlesEverySplit(){
+        String wire = "Subject: x\r\n\r\n..a\r\n.\r\r\nbody line\r\n.\r\n";
+        String expected = "Subject: x\r\n\r\n.a\r\n\r\r\nbody line\r\n";
+
+        for(int split = 0; split <= wire.length(); split++){
+            // Arrange
+            DataDecoder decoder = new DataDecoder();
+            ByteBuffer first = ascii(wire.substring(0, split));
+            ByteBuffer second = ascii(wire.substring(split));
+
+            // Act
+            String content = drain(decoder, first) + drain(decoder, second);
+
+            // Assert
+            assertTrue(decoder.isComplete(), "Split at " + split);
+            assertEquals(expected, content, "Split at " + split);
+        }
+    }
+
+    /**
+     * Tests that a dot line ending in a bare LF, or following one, does not end the message, so
+     * commands after it stay part of the content.
+     */
+    @Test
+    public void testDecoderIgnoresBareLineFeedTerminators(){
+        String[] wires = {"hello\n.\r\nMAIL FROM:<x@y>\r\n.\r\n", "hello\r\n.\nMAIL FROM:<x@y>\r\n.\r\n"};
+        String[] expected = {"hello\n.\r\nMAIL FROM:<x@y>\r\n", "hello\r\n\nMAIL FROM:<x@y>\r\n"};
+
+        for(int w = 0; w < wires.length; w++){
+            for(int split = 0; split <= wires[w].length(); split++){
+                // Arrange
+                DataDecoder decoder = new DataDecoder();
+                ByteBuffer first = ascii(wires[w].substring(0, split));
+                ByteBuffer second = ascii(wires[w].substring(split));
+
+                // Act
+                String content = drain(decoder, first) + drain(decoder, second);
+
+                // Assert
+                assertTrue(decoder.isComplete(), "Split at " + split);
+                assertEquals(expected[w], content, "Split at " + split);
+                assertFalse(second.hasRemaining(), "Split at " + split);
+            }
+        }
+    }
+
+    /**
+     * Tests that a session decodes raw DATA input into its message buffer and header parser.
+     */
+    @Test
+    public void testSessionReceivesData() throws CommandException, IOException {
+        // Arrange
+        SmtpSession session = new SmtpSession();
+        ByteBuffer input = ascii("Subject: hi\r\n\r\n..dot\r\n.\r\n");
+
+        // Act
+        boolean complete = session.receiveData(input);
+
+        // Assert
+        assertTrue(complete);
+        assertEquals("hi", session.getEnvelope().getHeaders().getSubject());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        session.getEnvelope().getMessageBuffer().transferTo(Channels.newChannel(output));
+        assertEquals("Subject: hi\r\n\r\n.dot\r\n", output.toString(StandardCharsets.US_ASCII));
+
+        session.resetTransaction();
+        assertFalse(session.getEnvelope().getDataDecoder().isComplete());
+    }
+
+    /**
+     * Decodes all content available from an input.
+     *
+     * @param decoder The decoder.
+     * @param input The input.
+     * @return The decoded content.
+     */
+    private static String drain(DataDecoder decoder, ByteBuffer input){
+        StringBuilder content = new StringBuilder();
+        ByteBuffer slice;
+        while((slice = decoder.decode(input)) != null){
+            content.append(StandardCharsets.US_ASCII.decode(slice));
+        }
+        return content.toString();
+    }
+
+    /**
+     * Encodes text as a buffer.
+     *
+     * @param text The text.
+     * @return The US-ASCII bytes.
+     */
+    private static ByteBuffer ascii(String text){
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,183 @@
+package com.couture.mercury.core.tests.io;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.io.BufferPool;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.session.MemoryCategory;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the hybrid memory and disk message buffer. Pooled buffers are 1 KiB and messages
+ * spill past 4 KiB.
+ */
+public class MessageBufferTests {
+    private static final int THRESHOLD = 4096;
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a message under the threshold stays in pooled memory and never creates a file.
+     */
+    @Test
+    public void testSmallMessageStaysInMemory() throws IOException {
+        // Arrange
+        BufferPool pool = new BufferPool(1024, 16);
+        MessageBuffer buffer = new MessageBuffer(pool, THRESHOLD, m_directory);
+        byte[] message = content(THRESHOLD);
+
+        // Act
+        buffer.write(ByteBuffer.wrap(message, 0, 1500));
+        buffer.write(ByteBuffer.wrap(message, 1500, message.length - 1500));
+
+        // Assert
+        assertFalse(buffer.isSpilled());
+        assertEquals(THRESHOLD, buffer.size());
+        assertEquals(4096, buffer.getMemoryBytes());
+        assertArrayEquals(message, drain(buffer));
+        assertEquals(0, countFiles());
+    }
+
+    /**
+     * Tests that a message crossing the threshold moves to a spill file, returns its buffers to the
+     * pool and reads back unchanged, and that reset deletes the file.
+     */
+    @Test
+    public void testLargeMessageSpillsToDisk() throws IOException {
+        // Arrange
+        BufferPool pool = new BufferPool(1024, 16);
+        MessageBuffer buffer = new MessageBuffer(pool, THRESHOLD, m_directory);
+        byte[] message = content(10_000);
+
+        // Act
+        buffer.write(ByteBuffer.wrap(message, 0, 3000));
+        buffer.write(ByteBuffer.wrap(message, 3000, 3000));
+        buffer.write(ByteBuffer.wrap(message, 6000, message.length - 6000));
+
+        // Assert
+        assertTrue(buffer.isSpilled());
+        assertEquals(0, buffer.getMemoryBytes());
+        assertEquals(3, pool.getIdleCount());
+        assertArrayEquals(message, drain(buffer));
+        assertArrayEquals(message, join(buffer.buffers()));
+
+        buffer.reset();
+        assertEquals(0, countFiles());
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Tests that pooled buffers are reused by the next transaction.
+     */
+    @Test
+    public void testBuffersAreReusedAfterReset() throws IOException {
+        // Arrange
+        BufferPool pool = new BufferPool(1024, 16);
+        MessageBuffer buffer = new MessageBuffer(pool, THRESHOLD, m_directory);
+        buffer.write(ByteBuffer.wrap(content(2000)));
+        buffer.reset();
+
+        // Act
+        byte[] second = content(1800);
+        buffer.write(ByteBuffer.wrap(second));
+
+        // Assert
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(2, pool.getReusedCount());
+        assertArrayEquals(second, join(buffer.buffers()));
+    }
+
+    /**
+     * Tests that a session charges in-memory message content and releases the charge when it spills.
+     */
+    @Test
+    public void testSessionChargesOnlyInMemoryContent() throws CommandException {
+        // Arrange
+        SmtpSession session = new SmtpSession(ValidationConstants.SESSION_MEMORY_BUDGET,
+                new MessageBuffer(new BufferPool(1024, 16), THRESHOLD, m_directory));
+        byte[] body = content(3000);
+        session.getEnvelope().getHeaderParser().finish();
+
+        // Act
+        session.appendMessageData(ByteBuffer.wrap(body));
+        long charged = session.getMemoryTracker().getRetainedBytes(MemoryCategory.DATA_BUFFER);
+        session.appendMessageData(ByteBuffer.wrap(body));
+        long spilled = session.getMemoryTracker().getRetainedBytes(MemoryCategory.DATA_BUFFER);
+
+        // Assert
+        assertEquals(3072, charged);
+        assertEquals(0, spilled);
+        assertTrue(session.getEnvelope().getMessageBuffer().isSpilled());
+
+        session.resetTransaction();
+        assertEquals(0, session.getEnvelope().getMessageBuffer().size());
+    }
+
+    /**
+     * Reads the content of a buffer through a channel.
+     *
+     * @param buffer The message buffer.
+     * @return The content.
+     * @throws IOException If the content cannot be read.
+     */
+    private static byte[] drain(MessageBuffer buffer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(buffer.size(), buffer.transferTo(Channels.newChannel(output)));
+        return output.toByteArray();
+    }
+
+    /**
+     * Joins buffers into an array.
+     *
+     * @param buffers The buffers.
+     * @return Their remaining bytes, in order.
+     */
+    private static byte[] join(ByteBuffer[] buffers){
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for(ByteBuffer buffer : buffers){
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            output.write(bytes, 0, bytes.length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Generates message content.
+     *
+     * @param length The length in bytes.
+     * @return The content.
+     */
+    private static byte[] content(int length){
+        byte[] content = new byte[length];
+        for(int i = 0; i < length; i++){
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    /**
+     * Counts the spill files in the spill directory.
+     *
+     * @return The number of files.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private long countFiles() throws IOException {
+        try(Stream<Path> files = Files.list(m_directory)){
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.couture.mercury.core.tests.mailbox;
+
+import com.couture.mercury.core.mailbox.MaildirConfig;
+import com.couture.mercury.core.mailbox.MaildirStore;
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for Maildir delivery.
+ */
+public class MaildirStoreTests {
+    private static final String BODY = "Subject: Test\r\n\r\nHello\r\n";
+
+    @TempDir
+    Path m_root;
+
+    /**
+     * Tests that a message is renamed into new behind its Return-Path and trace fields, leaving tmp
+     * empty and the caller's buffers untouched.
+     */
+    @Test
+    public void testDeliverMovesMessageIntoNew() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).hostname("mx/1:2").build());
+        ByteBuffer body = ByteBuffer.wrap(BODY.getBytes(StandardCharsets.US_ASCII));
+        TraceHeaders trace = new TraceHeaders().field("X-Trace", "test");
+
+        // Act
+        store.deliver("sender@example.org", List.of("User@Example.COM"), trace, body);
+
+        // Assert
+        Path mailbox = m_root.resolve("example.com").resolve("user");
+        assertEquals(mailbox, store.getMailbox("User@Example.COM"));
+        assertTrue(Files.isDirectory(mailbox.resolve("cur")));
+        assertEquals(0, list(mailbox.resolve("tmp")).size());
+        List<Path> delivered = list(mailbox.resolve("new"));
+        assertEquals(1, delivered.size());
+        String expected = "Return-Path: <sender@example.org>\r\nX-Trace: test\r\n" + BODY;
+        assertEquals(expected, Files.readString(delivered.get(0), StandardCharsets.US_ASCII));
+        assertTrue(delivered.get(0).getFileName().toString().endsWith(".mx\\0571\\0722,S=" + expected.length()));
+        assertEquals(0, body.position());
+        assertEquals(1, store.getDirectorySyncCount());
+    }
+
+    /**
+     * Tests that creating a mailbox forces every directory that gained an entry, up to the root, and
+     * that later deliveries force only the new directory.
+     */
+    @Test
+    public void testNewMailboxSyncsParentDirectories() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).build());
+
+        // Act
+        store.deliver(null, List.of("user@example.com"), null, body());
+        long first = store.getDirectoriesSynced();
+        store.deliver(null, List.of("user@example.com"), null, body());
+
+        // Assert
+        // new, the mailbox, the domain and the root.
+        assertEquals(4, first);
+        assertEquals(5, store.getDirectoriesSynced());
+        assertEquals(2, store.getDirectorySyncCount());
+    }
+
+    /**
+     * Tests that further recipients share the first recipient's file through hard links.
+     */
+    @Test
+    public void testRecipientsShareOneFile() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).build());
+
+        // Act
+        store.deliver(null, List.of("a@example.com", "b@example.com", "c@example.net"), null, body());
+
+        // Assert
+        Path a = single(store.getMailbox("a@example.com").resolve("new"));
+        Path b = single(store.getMailbox("b@example.com").resolve("new"));
+        Path c = single(store.getMailbox("c@example.net").resolve("new"));
+        assertEquals(a.getFileName(), b.getFileName());
+        assertEquals("Return-Path: <>\r\n" + BODY, Files.readString(c, StandardCharsets.US_ASCII));
+        assertEquals(2, store.getLinkedCount() + store.getCopiedCount());
+        if(store.getLinkedCount() == 2){
+            assertTrue(Files.isSameFile(a, b));
+            assertTrue(Files.isSameFile(a, c));
+        }
+    }
+
+    /**
+     * Tests that disabling hard links gives every recipient its own copy.
+     */
+    @Test
+    public void testCopiesWhenHardLinksDisabled() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).hardLinks(false).build());
+
+        // Act
+        store.deliver(null, List.of("a@example.com", "b@example.com"), null, body());
+
+        // Assert
+        Path a = single(store.getMailbox("a@example.com").resolve("new"));
+        Path b = single(store.getMailbox("b@example.com").resolve("new"));
+        assertFalse(Files.isSameFile(a, b));
+        assertEquals("Return-Path: <>\r\n" + BODY, Files.readString(b, StandardCharsets.US_ASCII));
+        assertEquals(0, list(store.getMailbox("b@example.com").resolve("tmp")).size());
+        assertEquals(0, store.getLinkedCount());
+        assertEquals(1, store.getCopiedCount());
+    }
+
+    /**
+     * Tests that a sharded mailbox spreads messages over hex-named subdirectories of new.
+     */
+    @Test
+    public void testShardedLayout() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).shardCount(4).build());
+
+        // Act
+        for(int i = 0; i < 40; i++){
+            store.deliver(null, List.of("user@example.com"), null, body());
+        }
+
+        // Assert
+        List<Path> shards = list(store.getMailbox("user@example.com").resolve("new"));
+        assertTrue(shards.size() > 1);
+        int messages = 0;
+        for(Path shard : shards){
+            assertTrue(shard.getFileName().toString().matches("0[0-3]"));
+            messages += list(shard).size();
+        }
+        assertEquals(40, messages);
+    }
+
+    /**
+     * Tests that addresses cannot name directories outside the root.
+     */
+    @Test
+    public void testMailboxNamesStayUnderRoot() throws IOException {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).build());
+
+        // Act
+        Path dots = store.getMailbox("..@..");
+        Path slash = store.getMailbox("a/../b@example.com");
+
+        // Assert
+        assertEquals(m_root.resolve("%2e.").resolve("%2e."), dots);
+        assertEquals(m_root.resolve("example.com").resolve("a%2f..%2fb"), slash);
+        assertThrows(IllegalArgumentException.class, () -> store.getMailbox("no-domain"));
+        assertThrows(IllegalArgumentException.class, () -> MaildirConfig.builder(m_root).shardCount(257));
+    }
+
+    /**
+     * Tests that concurrent deliveries to one mailbox all land and share directory fsyncs.
+     */
+    @Test
+    public void testConcurrentDeliveriesBatchDirectorySyncs() throws Exception {
+        // Arrange
+        MaildirStore store = new MaildirStore(MaildirConfig.builder(m_root).build());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int i = 0; i < 200; i++){
+            tasks.add(() -> {
+                store.deliver(null, List.of("busy@example.com"), null, body());
+                return null;
+            });
+        }
+
+        // Act
+        try{
+            for(Future<Void> future : executor.invokeAll(tasks)){
+                future.get();
+            }
+        }
+        finally{
+            executor.shutdown();
+        }
+
+        // Assert
+        assertEquals(200, list(store.getMailbox("busy@example.com").resolve("new")).size());
+        assertTrue(store.getDirectorySyncCount() <= 200);
+    }
+
+    /**
+     * Creates a message body.
+     *
+     * @return The body.
+     */
+    private static ByteBuffer body(){
+        return ByteBuffer.wrap(BODY.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Lists a directory.
+     *
+     * @param directory The directory.
+     * @return Its entries.
+     */
+    private static List<Path> list(Path directory) throws IOException {
+        try(Stream<Path> entries = Files.list(directory)){
+            return entries.toList();
+        }
+    }
+
+    /**
+     * Gets the only entry of a directory.
+     *
+     * @param directory The directory.
+     * @return The entry.
+     */
+    private static Path single(Path directory) throws IOException {
+        List<Path> entries = list(directory);
+        assertEquals(1, entries.size());
+        return entries.get(0);
+    }
+}
@@ -0,0 +1,147 @@
+package com.couture.mercury.core.tests.mime;
+
+import com.couture.mercury.core.protocol.mime.HeaderParser;
+import com.couture.mercury.core.protocol.mime.MessageHeaders;
+import com.couture.mercury.core.protocol.session.MemoryCategory;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the incremental header parser used during DATA.
+ */
+public class HeaderParserTests {
+    private static final String HEADERS = "Received: from relay.example.com\r\n"
+            + "\tby mx.example.org; Tue, 1 Oct 2024 10:00:00 +0000\r\n"
+            + "Received: from client.example.com\r\n"
+            + "Message-ID: <1234@example.com>\r\n"
+            + "From: Alice <alice@example.com>\r\n"
+            + "To: bob@example.org\r\n"
+            + "Subject: Quarterly\r\n"
+            + " report\r\n"
+            + "Date: Tue, 1 Oct 2024 09:59:00 +0000\r\n"
+            + "Content-Type: text/plain; charset=utf-8\r\n"
+            + "\r\n";
+
+    /**
+     * Tests that fields are extracted and unfolded when the message arrives one byte at a time.
+     */
+    @Test
+    public void testFieldsSplitAcrossChunks() {
+        // Arrange
+        HeaderParser parser = new HeaderParser(new MessageHeaders());
+        byte[] message = (HEADERS + "Body line\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        // Act
+        boolean complete = false;
+        for(int i = 0; i < message.length && !complete; i++){
+            complete = parser.feed(ByteBuffer.wrap(message, i, 1));
+        }
+
+        // Assert
+        MessageHeaders headers = parser.getHeaders();
+        assertTrue(complete);
+        assertEquals(HEADERS.length(), parser.getHeaderLength());
+        assertEquals("<1234@example.com>", headers.getMessageId());
+        assertEquals("Alice <alice@example.com>", headers.getFrom());
+        assertEquals("bob@example.org", headers.getTo());
+        assertEquals("Quarterly report", headers.getSubject());
+        assertEquals("Tue, 1 Oct 2024 09:59:00 +0000", headers.getDate());
+        assertEquals("text/plain; charset=utf-8", headers.getContentType());
+        assertEquals(2, headers.getReceivedCount());
+        assertEquals("from relay.example.com\tby mx.example.org; Tue, 1 Oct 2024 10:00:00 +0000",
+                headers.getAll(MessageHeaders.RECEIVED).get(0));
+    }
+
+    /**
+     * Tests that the chunk is left untouched and the body is not parsed once the header section ends.
+     */
+    @Test
+    public void testBodyIsNotParsed() {
+        // Arrange
+        HeaderParser parser = new HeaderParser(new MessageHeaders());
+        ByteBuffer first = ByteBuffer.wrap((HEADERS + "X-Not-A-Header: body\r\n").getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer second = ByteBuffer.wrap("Subject: also body\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        // Act
+        assertTrue(parser.feed(first));
+        assertTrue(parser.feed(second));
+
+        // Assert
+        assertEquals(0, first.position());
+        assertEquals(0, second.position());
+        assertEquals(8, parser.getHeaders().size());
+        assertNull(parser.getHeaders().getFirst("X-Not-A-Header"));
+        assertEquals(List.of("Quarterly report"), parser.getHeaders().getAll("subject"));
+    }
+
+    /**
+     * Tests that a line that is not a header field starts the body, and that a header-only message is finished explicitly.
+     */
+    @Test
+    public void testMalformedLineAndHeaderOnlyMessage() {
+        // Arrange
+        HeaderParser malformed = new HeaderParser(new MessageHeaders());
+        HeaderParser headerOnly = new HeaderParser(new MessageHeaders());
+
+        // Act
+        malformed.feed(ByteBuffer.wrap("Subject: hi\r\nno colon here\r\n".getBytes(StandardCharsets.US_ASCII)));
+        headerOnly.feed(ByteBuffer.wrap("Subject: hi\nX-Last: value".getBytes(StandardCharsets.US_ASCII)));
+        headerOnly.finish();
+
+        // Assert
+        assertTrue(malformed.isComplete());
+        assertEquals(13, malformed.getHeaderLength());
+        assertEquals("hi", malformed.getHeaders().getSubject());
+        assertTrue(headerOnly.isComplete());
+        assertEquals("value", headerOnly.getHeaders().getFirst("x-last"));
+        assertEquals(25, headerOnly.getHeaderLength());
+    }
+
+    /**
+     * Tests that parsing stops at the header section limit.
+     */
+    @Test
+    public void testSectionLimit() {
+        // Arrange
+        HeaderParser parser = new HeaderParser(new MessageHeaders(), 64);
+        StringBuilder headers = new StringBuilder();
+        for(int i = 0; i < 10; i++){
+            headers.append("X-Field-").append(i).append(": value\r\n");
+        }
+
+        // Act
+        boolean complete = parser.feed(ByteBuffer.wrap(headers.toString().getBytes(StandardCharsets.US_ASCII)));
+
+        // Assert
+        assertTrue(complete);
+        assertTrue(parser.isTruncated());
+        assertEquals(64, parser.getHeaderLength());
+        assertEquals(3, parser.getHeaders().size());
+    }
+
+    /**
+     * Tests that the session charges parsed headers to its data buffer and clears them on reset.
+     */
+    @Test
+    public void testSessionChargesParsedHeaders() throws Exception {
+        // Arrange
+        SmtpSession session = new SmtpSession();
+
+        // Act
+        session.parseHeaders(ByteBuffer.wrap(HEADERS.getBytes(StandardCharsets.US_ASCII)));
+        long charged = session.getMemoryTracker().getRetainedBytes(MemoryCategory.DATA_BUFFER);
+        session.resetTransaction();
+
+        // Assert
+        assertTrue(charged > session.getEnvelope().getHeaders().getRetainedBytes());
+        assertEquals(0, session.getMemoryTracker().getRetainedBytes(MemoryCategory.DATA_BUFFER));
+        assertEquals(0, session.getEnvelope().getHeaders().size());
+        assertFalse(session.getEnvelope().getHeaderParser().isComplete());
+    }
+}
@@ -0,0 +1,116 @@
+package com.couture.mercury.core.tests.mime;
+
+import com.couture.mercury.core.protocol.mime.ReceivedHeader;
+import com.couture.mercury.core.protocol.mime.TraceHeaders;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageStore;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import com.couture.mercury.core.spool.StoredEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for trace fields prepended to accepted messages.
+ */
+public class TraceHeadersTests {
+    private static final ZonedDateTime DATE = ZonedDateTime.of(2024, 10, 1, 10, 0, 0, 0, ZoneOffset.UTC);
+    private static final String BODY = "Subject: Hello\r\n\r\nHello world\r\n";
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests the folded layout of a Received field and that client-supplied values cannot inject lines.
+     */
+    @Test
+    public void testReceivedFormat() {
+        // Arrange
+        ReceivedHeader received = ReceivedHeader.builder("mx.example.org")
+                .from("client.example.com\r\nX-Injected: yes")
+                .clientHost("host.example.com")
+                .clientAddress("192.0.2.1")
+                .id("42")
+                .forRecipient("bob@example.org")
+                .date(DATE)
+                .build();
+
+        // Act
+        String field = received.format();
+
+        // Assert
+        assertEquals("Received: from client.example.com??X-Injected:?yes (host.example.com [192.0.2.1])\r\n"
+                + "\tby mx.example.org with ESMTP id 42\r\n"
+                + "\tfor <bob@example.org>; Tue, 1 Oct 2024 10:00:00 GMT\r\n", field);
+    }
+
+    /**
+     * Tests that the fields are gathered in front of the body when the message is spooled.
+     */
+    @Test
+    public void testPrependOnSpoolAppend() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build())){
+            // Arrange
+            TraceHeaders headers = new TraceHeaders()
+                    .returnPath("alice@example.com")
+                    .received(ReceivedHeader.builder("mx.example.org").date(DATE).build());
+            ByteBuffer body = ByteBuffer.wrap(BODY.getBytes(StandardCharsets.US_ASCII));
+
+            // Act
+            long id = spool.writer(FsyncPolicy.PER_MESSAGE).append(headers.prependTo(body)).join();
+
+            // Assert
+            assertEquals("Return-Path: <alice@example.com>\r\n"
+                    + "Received: by mx.example.org with ESMTP; Tue, 1 Oct 2024 10:00:00 GMT\r\n" + BODY,
+                    new String(spool.read(id), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Tests that each delivery gets its own transaction's fields while the deduplicated body is shared,
+     * and that the message is transferred to a file behind the fields.
+     */
+    @Test
+    public void testTransferWithPerTransactionFields() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory.resolve("spool")).build());
+            MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            StoredEnvelope first = store.store(writer, "alice@example.com", List.of("bob@example.org"),
+                    new TraceHeaders().received(ReceivedHeader.builder("mx.example.org").id("1").date(DATE).build()),
+                    ByteBuffer.wrap(BODY.getBytes(StandardCharsets.US_ASCII))).join();
+            StoredEnvelope second = store.store(writer, "alice@example.com", List.of("carol@example.org"),
+                    new TraceHeaders().received(ReceivedHeader.builder("mx.example.org").id("2").date(DATE).build()),
+                    ByteBuffer.wrap(BODY.getBytes(StandardCharsets.US_ASCII))).join();
+            Path delivered = m_directory.resolve("delivered.eml");
+
+            // Act
+            long written;
+            try(FileChannel channel = FileChannel.open(delivered, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)){
+                written = store.transferTo(store.readEnvelope(second.getEnvelopeId()),
+                        new TraceHeaders().returnPath(second.getReversePath()), channel);
+            }
+
+            // Assert
+            String expected = "Return-Path: <alice@example.com>\r\n"
+                    + "Received: by mx.example.org with ESMTP id 2; Tue, 1 Oct 2024 10:00:00 GMT\r\n" + BODY;
+            assertEquals(first.getBodyId(), second.getBodyId());
+            assertEquals(expected, Files.readString(delivered, StandardCharsets.US_ASCII));
+            assertEquals(expected.length(), written);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.couture.mercury.core.tests.session;
+
+import com.couture.mercury.core.protocol.session.LocalDomains;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RecipientStore.
+ */
+public class RecipientStoreTests {
+
+    /**
+     * Tests that addresses differing only in domain case or angle brackets are detected as duplicates.
+     */
+    @Test
+    public void testDuplicatesAreDetectedAfterNormalization() {
+        // Arrange
+        RecipientStore store = new RecipientStore();
+
+        // Act
+        RecipientStore.AddResult first = store.addRecipient("<User@Example.COM>");
+        RecipientStore.AddResult second = store.addRecipient("User@example.com");
+
+        // Assert
+        assertEquals(RecipientStore.AddResult.ADDED, first);
+        assertEquals(RecipientStore.AddResult.DUPLICATE, second);
+        assertEquals(1, store.size());
+        assertEquals("User@example.com", store.get(0));
+        assertTrue(store.contains("<User@EXAMPLE.com>"));
+    }
+
+    /**
+     * Tests that the local-part is compared case-sensitively.
+     */
+    @Test
+    public void testLocalPartIsCaseSensitive() {
+        // Arrange
+        RecipientStore store = new RecipientStore();
+
+        // Act
+        store.addRecipient("user@example.com");
+        RecipientStore.AddResult result = store.addRecipient("USER@example.com");
+
+        // Assert
+        assertEquals(RecipientStore.AddResult.ADDED, result);
+        assertEquals(2, store.size());
+    }
+
+    /**
+     * Tests that the recipient limit is enforced on insert.
+     */
+    @Test
+    public void testLimitIsEnforced() {
+        // Arrange
+        RecipientStore store = new RecipientStore(2);
+        store.addRecipient("a@example.com");
+        store.addRecipient("b@example.com");
+
+        // Act
+        RecipientStore.AddResult result = store.addRecipient("c@example.com");
+
+        // Assert
+        assertEquals(RecipientStore.AddResult.LIMIT_EXCEEDED, result);
+        assertEquals(RecipientStore.AddResult.DUPLICATE, store.addRecipient("a@example.com"));
+        assertTrue(store.isFull());
+        assertThrows(IllegalStateException.class, () -> store.add("d@example.com"));
+    }
+
+    /**
+     * Tests that addresses without a domain are rejected.
+     */
+    @Test
+    public void testInvalidAddressIsRejected() {
+        // Arrange
+        RecipientStore store = new RecipientStore();
+
+        // Act & Assert
+        assertEquals(RecipientStore.AddResult.INVALID, store.addRecipient("<>"));
+        assertEquals(RecipientStore.AddResult.INVALID, store.addRecipient("postmaster"));
+        assertEquals(RecipientStore.AddResult.INVALID, store.addRecipient(null));
+        assertTrue(store.isEmpty());
+    }
+
+    /**
+     * Tests that recipients are grouped by domain in first-seen order.
+     */
+    @Test
+    public void testGroupByDomain() {
+        // Arrange
+        RecipientStore store = new RecipientStore();
+        store.addRecipient("a@one.com");
+        store.addRecipient("b@two.com");
+        store.addRecipient("c@ONE.com");
+
+        // Act
+        Map<String, List<String>> groups = store.groupByDomain();
+
+        // Assert
+        assertEquals(List.of("one.com", "two.com"), List.copyOf(groups.keySet()));
+        assertEquals(List.of("a@one.com", "c@one.com"), groups.get("one.com"));
+        assertEquals(List.of("b@two.com"), groups.get("two.com"));
+    }
+
+    /**
+     * Tests that recipients are classified against the local domains as they are added.
+     */
+    @Test
+    public void testLocalRecipientsCounted() {
+        // Arrange
+        RecipientStore store = new RecipientStore();
+        store.setLocalDomains(LocalDomains.of("Local.example."));
+
+        // Act
+        store.addRecipient("a@LOCAL.example");
+        boolean oneLocal = store.isAllLocal();
+        store.addRecipient("b@remote.example");
+
+        // Assert
+        assertTrue(oneLocal);
+        assertEquals(1, store.getLocalCount());
+        assertFalse(store.isAllLocal());
+        store.setLocalDomains(LocalDomains.of("local.example", "remote.example"));
+        assertTrue(store.isAllLocal());
+        store.clear();
+        assertFalse(store.isAllLocal());
+        assertThrows(IllegalArgumentException.class, () -> LocalDomains.of(""));
+    }
+
+    /**
+     * Tests that a cleared store can be reused for a new transaction.
+     */
+    @Test
+    public void testClearAllowsReuse() {
+        // Arrange
+        RecipientStore store = new RecipientStore(1);
+        store.addRecipient("a@example.com");
+
+        // Act
+        store.clear();
+        RecipientStore.AddResult result = store.addRecipient("a@example.com");
+
+        // Assert
+        assertEquals(RecipientStore.AddResult.ADDED, result);
+        assertEquals(1, store.size());
+        assertFalse(store.contains("b@example.com"));
+    }
+}
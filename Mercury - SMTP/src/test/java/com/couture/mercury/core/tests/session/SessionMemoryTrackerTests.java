@@ -0,0 +1,138 @@
+package com.couture.mercury.core.tests.session;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.session.MemoryCategory;
+import com.couture.mercury.core.protocol.session.SessionLease;
+import com.couture.mercury.core.protocol.session.SessionMemoryRegistry;
+import com.couture.mercury.core.protocol.session.SessionMemoryTracker;
+import com.couture.mercury.core.protocol.session.SessionPool;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-session memory accounting and the global memory registry.
+ */
+public class SessionMemoryTrackerTests {
+
+    /**
+     * Tests that a charge beyond the session budget is rejected with 552 and leaves the total unchanged.
+     */
+    @Test
+    public void testSessionBudgetExceeded() throws CommandException {
+        // Arrange
+        SessionMemoryTracker tracker = new SessionMemoryTracker(1000);
+        tracker.charge(MemoryCategory.DATA_BUFFER, 900);
+
+        // Act
+        CommandException exception = assertThrows(CommandException.class,
+                () -> tracker.charge(MemoryCategory.DATA_BUFFER, 200));
+
+        // Assert
+        assertEquals(CommandConstants.ResponseCodes.EXCEEDED_STORAGE_ALLOCATION, exception.getResponseCode());
+        assertEquals(900, tracker.getRetainedBytes());
+        assertTrue(tracker.isExceeded());
+    }
+
+    /**
+     * Tests that a charge beyond the global budget is rejected with 452 even if the session has room.
+     */
+    @Test
+    public void testGlobalBudgetExceeded() throws CommandException {
+        // Arrange
+        SessionMemoryRegistry registry = new SessionMemoryRegistry(1500);
+        SessionMemoryTracker first = new SessionMemoryTracker(1000);
+        SessionMemoryTracker second = new SessionMemoryTracker(1000);
+        registry.register(first);
+        registry.register(second);
+        first.charge(MemoryCategory.DATA_BUFFER, 1000);
+
+        // Act
+        CommandException exception = assertThrows(CommandException.class,
+                () -> second.charge(MemoryCategory.DATA_BUFFER, 600));
+        second.charge(MemoryCategory.DATA_BUFFER, 500);
+
+        // Assert
+        assertEquals(CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE, exception.getResponseCode());
+        assertEquals(1500, registry.getRetainedBytes());
+
+        registry.unregister(first);
+        assertEquals(500, registry.getRetainedBytes());
+    }
+
+    /**
+     * Tests that the heaviest sessions are reported in descending order.
+     */
+    @Test
+    public void testTopSessions() throws CommandException {
+        // Arrange
+        SessionMemoryRegistry registry = new SessionMemoryRegistry();
+        SessionMemoryTracker light = new SessionMemoryTracker();
+        SessionMemoryTracker medium = new SessionMemoryTracker();
+        SessionMemoryTracker heavy = new SessionMemoryTracker();
+        registry.register(light);
+        registry.register(medium);
+        registry.register(heavy);
+
+        light.charge(MemoryCategory.ATTRIBUTES, 10);
+        medium.charge(MemoryCategory.RECIPIENTS, 100);
+        heavy.charge(MemoryCategory.DATA_BUFFER, 1000);
+
+        // Act
+        List<SessionMemoryTracker> top = registry.getTopSessions(2);
+
+        // Assert
+        assertEquals(List.of(heavy, medium), top);
+    }
+
+    /**
+     * Tests that a pooled session is charged while leased and releases its charges when returned.
+     */
+    @Test
+    public void testPooledSessionAccounting() throws CommandException {
+        // Arrange
+        SessionMemoryRegistry registry = new SessionMemoryRegistry();
+        SessionPool pool = new SessionPool(4, false, registry);
+        SessionLease lease = pool.acquire();
+        SmtpSession session = lease.getSession();
+        long fixed = session.getMemoryTracker().getRetainedBytes();
+
+        // Act
+        session.addRecipient("<rcpt@example.com>");
+        long withRecipient = registry.getRetainedBytes();
+        session.resetTransaction();
+        long afterReset = session.getMemoryTracker().getRetainedBytes();
+        lease.close();
+
+        // Assert
+        assertTrue(fixed > 0, "Fixed session buffers should be charged");
+        assertTrue(withRecipient > fixed);
+        assertEquals(fixed, afterReset);
+        assertEquals(0, registry.getRetainedBytes());
+        assertEquals(0, registry.getSessionCount());
+    }
+
+    /**
+     * Tests that a session whose budget cannot hold another recipient rejects it with 552.
+     */
+    @Test
+    public void testRecipientRejectedOverBudget() {
+        // Arrange
+        SmtpSession session = new SmtpSession(new SmtpSession().getMemoryTracker().getRetainedBytes() + 100);
+
+        // Act
+        CommandException exception = assertThrows(CommandException.class, () -> {
+            for(int i = 0; i < 10; i++){
+                session.addRecipient("<recipient" + i + "@example.com>");
+            }
+        });
+
+        // Assert
+        assertEquals(CommandConstants.ResponseCodes.EXCEEDED_STORAGE_ALLOCATION, exception.getResponseCode());
+        assertTrue(session.getEnvelope().getRecipients().size() < 10);
+    }
+}
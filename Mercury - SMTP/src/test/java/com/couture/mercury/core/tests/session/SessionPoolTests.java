@@ -0,0 +1,160 @@
+package com.couture.mercury.core.tests.session;
+
+import com.couture.mercury.core.protocol.io.BufferPool;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.session.SessionAttributes;
+import com.couture.mercury.core.protocol.session.SessionLease;
+import com.couture.mercury.core.protocol.session.SessionPool;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SessionPool and session recycling.
+ */
+public class SessionPoolTests {
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a returned session is reset and handed to the next connection.
+     */
+    @Test
+    public void testReleasedSessionIsRecycled() {
+        // Arrange
+        SessionPool pool = new SessionPool();
+        SessionLease first = pool.acquire();
+        SmtpSession session = first.getSession();
+        session.getContext().setState(SessionState.RCPT);
+        session.getEnvelope().setReversePath("sender@example.com");
+        session.getEnvelope().getRecipients().addRecipient("rcpt@example.com");
+
+        // Act
+        first.close();
+        SessionLease second = pool.acquire();
+
+        // Assert
+        assertSame(session, second.getSession());
+        assertEquals(SessionState.CONNECT, session.getContext().getState());
+        assertNull(session.getEnvelope().getReversePath());
+        assertTrue(session.getEnvelope().getRecipients().isEmpty());
+        assertSame(session.getEnvelope().getRecipients(), session.getContext().getAttribute(SessionAttributes.RECIPIENTS));
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(1, pool.getReusedCount());
+        assertEquals(1, pool.getOutstandingCount());
+    }
+
+    /**
+     * Tests that closing a lease twice only returns the session once.
+     */
+    @Test
+    public void testDoubleCloseIsIgnored() {
+        // Arrange
+        SessionPool pool = new SessionPool();
+        SessionLease lease = pool.acquire();
+
+        // Act
+        lease.close();
+        lease.close();
+
+        // Assert
+        assertTrue(lease.isClosed());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, pool.getOutstandingCount());
+        assertThrows(IllegalStateException.class, lease::getSession);
+    }
+
+    /**
+     * Tests that RSET semantics clear the transaction but keep the identified state.
+     */
+    @Test
+    public void testResetTransactionKeepsHeloState() {
+        // Arrange
+        SmtpSession session = new SmtpSession();
+        session.getContext().setState(SessionState.RCPT);
+        session.getEnvelope().getRecipients().addRecipient("rcpt@example.com");
+
+        // Act
+        session.resetTransaction();
+
+        // Assert
+        assertEquals(SessionState.HELO, session.getContext().getState());
+        assertTrue(session.getEnvelope().getRecipients().isEmpty());
+    }
+
+    /**
+     * Tests that a lease dropped without being closed is reported as a leak.
+     */
+    @Test
+    public void testUnclosedLeaseIsReportedAsLeak() throws InterruptedException {
+        // Arrange
+        SessionPool pool = new SessionPool();
+        leakLease(pool);
+
+        // Act
+        for (int i = 0; i < 50 && pool.getLeakedCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        // Assert
+        assertEquals(1, pool.getLeakedCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    /**
+     * Tests that the message buffer of a leaked session is reset, closing and deleting its spill file.
+     */
+    @Test
+    public void testLeakedSessionReleasesSpillFile() throws Exception {
+        // Arrange
+        MessageBuffer buffer = new MessageBuffer(BufferPool.shared(), 16, m_directory);
+        SessionPool pool = new SessionPool(1, false, null, () -> new SmtpSession(ValidationConstants.SESSION_MEMORY_BUDGET, buffer));
+        leakSpilledLease(pool);
+        assertTrue(buffer.isSpilled());
+
+        // Act
+        for (int i = 0; i < 50 && pool.getLeakedCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        // Assert
+        assertEquals(1, pool.getLeakedCount());
+        assertFalse(buffer.isSpilled());
+        assertEquals(0, buffer.size());
+        try (Stream<Path> files = Files.list(m_directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Acquires a lease and drops the only reference to it.
+     *
+     * @param pool The pool to acquire from.
+     */
+    private static void leakLease(SessionPool pool) {
+        pool.acquire().getSession();
+    }
+
+    /**
+     * Acquires a lease, spills a message into its session's buffer and drops the only reference to the lease.
+     *
+     * @param pool The pool to acquire from.
+     * @throws IOException If the message cannot be written.
+     */
+    private static void leakSpilledLease(SessionPool pool) throws IOException {
+        pool.acquire().getSession().getEnvelope().getMessageBuffer().write(ByteBuffer.wrap(new byte[64]));
+    }
+}
@@ -0,0 +1,126 @@
+package com.couture.mercury.core.tests.session;
+
+import com.couture.mercury.core.protocol.session.AttributeKey;
+import com.couture.mercury.core.protocol.session.RecipientStore;
+import com.couture.mercury.core.protocol.session.SessionAttributes;
+import com.couture.mercury.core.protocol.session.SessionState;
+import com.couture.mercury.core.protocol.session.SmtpSessionContext;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SmtpSessionContext and typed attribute keys.
+ */
+public class SmtpSessionContextTests {
+    private SmtpSessionContext m_context;
+
+    /**
+     * Sets up a fresh session context before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        m_context = new SmtpSessionContext();
+    }
+
+    /**
+     * Tests that typed and name-based access see the same attribute slot.
+     */
+    @Test
+    public void testTypedAndNamedAccessShareSlot() {
+        // Arrange
+        RecipientStore recipients = new RecipientStore();
+
+        // Act
+        m_context.setAttribute(SessionAttributes.RECIPIENTS, recipients);
+
+        // Assert
+        assertSame(recipients, m_context.getAttribute(SessionAttributes.RECIPIENTS));
+        assertSame(recipients, m_context.getAttribute(CommandConstants.Attributes.RECIPIENTS_KEY));
+    }
+
+    /**
+     * Tests that a name-based write with the wrong type for a registered key is rejected.
+     */
+    @Test
+    public void testNamedWriteWithWrongTypeIsRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> m_context.setAttribute(CommandConstants.Attributes.RECIPIENTS_KEY, new ArrayList<String>()));
+    }
+
+    /**
+     * Tests that registering a name twice returns the same key, and that a conflicting type is rejected.
+     */
+    @Test
+    public void testKeyRegistration() {
+        // Act
+        AttributeKey<String> key = AttributeKey.register("TEST_REGISTRATION", String.class);
+
+        // Assert
+        assertSame(key, AttributeKey.register("TEST_REGISTRATION", String.class));
+        assertSame(key, AttributeKey.forName("TEST_REGISTRATION"));
+        assertThrows(IllegalStateException.class, () -> AttributeKey.register("TEST_REGISTRATION", Integer.class));
+    }
+
+    /**
+     * Tests that keys registered after the context was created are still stored.
+     */
+    @Test
+    public void testLateRegisteredKey() {
+        // Arrange
+        AttributeKey<Integer> key = AttributeKey.register("TEST_LATE_KEY_" + System.nanoTime(), Integer.class);
+
+        // Act
+        m_context.setAttribute(key, 42);
+
+        // Assert
+        assertEquals(42, m_context.getAttribute(key));
+    }
+
+    /**
+     * Tests that unknown names are stored per context without registering global keys, and that
+     * null removes an attribute.
+     */
+    @Test
+    public void testUnknownNameAndRemoval() {
+        // Arrange
+        int registered = AttributeKey.count();
+        SmtpSessionContext other = new SmtpSessionContext();
+
+        // Act
+        m_context.setAttribute("TEST_UNKNOWN_NAME", "value");
+        String stored = (String) m_context.getAttribute("TEST_UNKNOWN_NAME");
+        Object seenByOther = other.getAttribute("TEST_UNKNOWN_NAME");
+        m_context.setAttribute("TEST_UNKNOWN_NAME", null);
+
+        // Assert
+        assertEquals("value", stored);
+        assertNull(seenByOther);
+        assertNull(AttributeKey.forName("TEST_UNKNOWN_NAME"));
+        assertEquals(registered, AttributeKey.count());
+        assertNull(m_context.getAttribute("TEST_UNKNOWN_NAME"));
+        assertNull(m_context.getAttribute("TEST_NEVER_SET"));
+    }
+
+    /**
+     * Tests that reset clears attributes and returns to the CONNECT state.
+     */
+    @Test
+    public void testReset() {
+        // Arrange
+        m_context.setState(SessionState.RCPT);
+        m_context.setAttribute(SessionAttributes.REVERSE_PATH, "sender@example.com");
+
+        // Act
+        m_context.reset();
+
+        // Assert
+        assertEquals(SessionState.CONNECT, m_context.getState());
+        assertNull(m_context.getAttribute(SessionAttributes.REVERSE_PATH));
+    }
+}
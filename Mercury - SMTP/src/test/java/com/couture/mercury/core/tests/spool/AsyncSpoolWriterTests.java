@@ -0,0 +1,254 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.mocks.MockMailboxStore;
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.commands.CommandResult;
+import com.couture.mercury.core.protocol.session.LocalDomains;
+import com.couture.mercury.core.protocol.session.SessionLease;
+import com.couture.mercury.core.protocol.session.SessionPool;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.spool.AsyncSpoolWriter;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageStore;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.StoredEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for spool writes performed on the asynchronous I/O pool.
+ */
+public class AsyncSpoolWriterTests {
+    private static final String MESSAGE = "Subject: Hi\r\n\r\nHello\r\n.\r\n";
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a completed DATA transaction is stored off the calling thread and the 250 reply is
+     * delivered on the resume executor, with the transaction reset.
+     */
+    @Test
+    public void testAcceptedMessageRepliesOnResumeExecutor() throws IOException, CommandException {
+        ExecutorService reactor = Executors.newSingleThreadExecutor(task -> new Thread(task, "reactor"));
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build());
+            MessageStore store = MessageStore.open(spool);
+            AsyncSpoolWriter writer = new AsyncSpoolWriter(store, spool.writer(FsyncPolicy.PER_MESSAGE))){
+            // Arrange
+            SmtpSession session = transaction();
+
+            // Act
+            CompletableFuture<String> replyThread = writer.acceptMessage(session, null, reactor)
+                    .thenApply(reply -> reply.getResponseCode() + " " + Thread.currentThread().getName());
+
+            // Assert
+            assertEquals("250 reactor", replyThread.join());
+            assertNull(session.getEnvelope().getReversePath());
+            assertEquals(0, session.getEnvelope().getMessageBuffer().size());
+            assertEquals(1, store.getBodiesStored());
+            assertEquals(1, store.getPendingEnvelopeCount());
+        }
+        finally{
+            reactor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a write is refused with 452 while the I/O thread is stalled and its queue is full,
+     * and that the stalled writes complete once the disk catches up.
+     */
+    @Test
+    public void testFullQueueIsRefusedWithoutBlocking() throws Exception {
+        SpoolConfig config = SpoolConfig.builder(m_directory).ioThreads(1).ioQueueCapacity(1).build();
+        try(MessageSpool spool = MessageSpool.open(config);
+            MessageStore store = MessageStore.open(spool);
+            AsyncSpoolWriter writer = new AsyncSpoolWriter(store, spool.writer(FsyncPolicy.PER_MESSAGE))){
+            // Arrange
+            CountDownLatch stalled = new CountDownLatch(1);
+            CountDownLatch disk = new CountDownLatch(1);
+            ByteBuffer body = ByteBuffer.wrap("Hello\r\n".getBytes(StandardCharsets.US_ASCII));
+            CompletableFuture<StoredEnvelope> first = writer.store("a@example.com", new StalledRecipients(stalled, disk), null, body);
+            assertTrue(stalled.await(10, TimeUnit.SECONDS));
+            CompletableFuture<StoredEnvelope> second = writer.store("a@example.com", List.of("c@example.com"), null, body.duplicate());
+
+            // Act
+            CommandResult reply = writer.acceptMessage(transaction(), null, Runnable::run).join();
+
+            // Assert
+            assertEquals(CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE, reply.getResponseCode());
+            assertEquals(1, writer.getRejectedCount());
+            assertFalse(first.isDone());
+
+            disk.countDown();
+            assertEquals(List.of("b@example.com"), first.get(10, TimeUnit.SECONDS).getRecipients());
+            assertEquals(List.of("c@example.com"), second.get(10, TimeUnit.SECONDS).getRecipients());
+        }
+    }
+
+    /**
+     * Tests that a transaction whose recipients are all local is delivered to the mailboxes without
+     * being spooled, while one with a remote recipient is spooled for relay.
+     */
+    @Test
+    public void testAllLocalTransactionSkipsSpool() throws IOException, CommandException {
+        MockMailboxStore mailboxes = new MockMailboxStore();
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build());
+            MessageStore store = MessageStore.open(spool);
+            AsyncSpoolWriter writer = new AsyncSpoolWriter(store, spool.writer(FsyncPolicy.PER_MESSAGE), null, mailboxes)){
+            // Arrange
+            LocalDomains local = LocalDomains.of("Example.com", "example.org");
+            SmtpSession allLocal = transaction(local, "rcpt@example.com", "other@EXAMPLE.org");
+            SmtpSession mixed = transaction(local, "rcpt@example.com", "remote@elsewhere.net");
+
+            // Act
+            CommandResult localReply = writer.acceptMessage(allLocal, null, Runnable::run).join();
+            CommandResult mixedReply = writer.acceptMessage(mixed, null, Runnable::run).join();
+
+            // Assert
+            assertEquals(CommandConstants.ResponseCodes.SUCCESS, localReply.getResponseCode());
+            assertEquals(List.of(List.of("rcpt@example.com", "other@example.org")), mailboxes.getRecipients());
+            assertEquals(List.of(MESSAGE.substring(0, MESSAGE.length() - 3)), mailboxes.getMessages());
+            assertEquals(1, writer.getDeliveredLocallyCount());
+            assertTrue(mixedReply.isSuccess());
+            assertEquals(1, store.getBodiesStored());
+            assertEquals(0, allLocal.getEnvelope().getRecipients().getLocalCount());
+        }
+    }
+
+    /**
+     * Tests that a session whose lease is closed while its message is still queued for the I/O thread
+     * is recycled only once the write has finished with its message buffer.
+     */
+    @Test
+    public void testClosedLeaseWaitsForQueuedWrite() throws Exception {
+        SpoolConfig config = SpoolConfig.builder(m_directory).ioThreads(1).ioQueueCapacity(2).build();
+        try(MessageSpool spool = MessageSpool.open(config);
+            MessageStore store = MessageStore.open(spool);
+            AsyncSpoolWriter writer = new AsyncSpoolWriter(store, spool.writer(FsyncPolicy.PER_MESSAGE))){
+            // Arrange
+            SessionPool pool = new SessionPool();
+            SessionLease lease = pool.acquire();
+            SmtpSession session = lease.getSession();
+            fill(session, "rcpt@example.com");
+            CountDownLatch stalled = new CountDownLatch(1);
+            CountDownLatch disk = new CountDownLatch(1);
+            ByteBuffer body = ByteBuffer.wrap("Hello\r\n".getBytes(StandardCharsets.US_ASCII));
+            writer.store("a@example.com", new StalledRecipients(stalled, disk), null, body);
+            assertTrue(stalled.await(10, TimeUnit.SECONDS));
+            CompletableFuture<CommandResult> reply = writer.acceptMessage(session, null, Runnable::run);
+
+            // Act
+            lease.close();
+
+            // Assert
+            assertTrue(session.isHandedOff());
+            assertEquals(0, pool.getIdleCount());
+            assertEquals(1, pool.getOutstandingCount());
+            assertTrue(session.getEnvelope().getMessageBuffer().size() > 0);
+
+            disk.countDown();
+            CommandResult result = reply.get(10, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess());
+            assertFalse(session.isHandedOff());
+            assertEquals(1, pool.getIdleCount());
+            assertEquals(0, pool.getOutstandingCount());
+            long envelopeId = Long.parseLong(result.getMessage().substring("OK: queued as ".length()));
+            StoredEnvelope stored = store.readEnvelope(envelopeId);
+            assertEquals(List.of("rcpt@example.com"), stored.getRecipients());
+            assertEquals(MESSAGE.substring(0, MESSAGE.length() - 3), new String(store.readBody(stored), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Creates a session with a complete transaction.
+     *
+     * @return The session.
+     * @throws CommandException If the message cannot be buffered.
+     */
+    private static SmtpSession transaction() throws CommandException {
+        return transaction(LocalDomains.none(), "rcpt@example.com");
+    }
+
+    /**
+     * Creates a session with a complete transaction to some recipients.
+     *
+     * @param localDomains The domains hosted locally.
+     * @param recipients The recipients.
+     * @return The session.
+     * @throws CommandException If the message cannot be buffered.
+     */
+    private static SmtpSession transaction(LocalDomains localDomains, String... recipients) throws CommandException {
+        SmtpSession session = new SmtpSession();
+        session.setLocalDomains(localDomains);
+        fill(session, recipients);
+        return session;
+    }
+
+    /**
+     * Gives a session a complete transaction to some recipients.
+     *
+     * @param session The session.
+     * @param recipients The recipients.
+     * @throws CommandException If the message cannot be buffered.
+     */
+    private static void fill(SmtpSession session, String... recipients) throws CommandException {
+        session.getEnvelope().setReversePath("sender@example.com");
+        for(String recipient : recipients){
+            session.addRecipient(recipient);
+        }
+        assertTrue(session.receiveData(ByteBuffer.wrap(MESSAGE.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    /**
+     * A single recipient whose iteration stalls the I/O thread, standing in for a slow disk.
+     */
+    private static final class StalledRecipients extends AbstractCollection<String> {
+        private final CountDownLatch m_stalled;
+        private final CountDownLatch m_release;
+
+        /**
+         * Creates the recipients.
+         *
+         * @param stalled Counted down once the I/O thread is stalled.
+         * @param release Awaited before the recipients are returned.
+         */
+        StalledRecipients(CountDownLatch stalled, CountDownLatch release){
+            m_stalled = stalled;
+            m_release = release;
+        }
+
+        @Override
+        public Iterator<String> iterator(){
+            m_stalled.countDown();
+            try{
+                m_release.await();
+            }
+            catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return List.of("b@example.com").iterator();
+        }
+
+        @Override
+        public int size(){
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageState;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolEntry;
+import com.couture.mercury.core.spool.SpoolException;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the segmented message spool.
+ */
+public class MessageSpoolTests {
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a message can be read back after a per-message fsync.
+     */
+    @Test
+    public void testAppendAndRead() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build())){
+            // Act
+            long id = spool.writer(FsyncPolicy.PER_MESSAGE).appendAndAwait(bytes("Subject: hello\r\n\r\nbody"));
+
+            // Assert
+            assertEquals("Subject: hello\r\n\r\nbody", new String(spool.read(id), StandardCharsets.US_ASCII));
+            SpoolEntry entry = spool.getEntry(id);
+            assertEquals(MessageState.QUEUED, entry.getState());
+            assertEquals(22, entry.getLength());
+        }
+    }
+
+    /**
+     * Tests that concurrent group-window writes share fsync calls and are all acknowledged.
+     */
+    @Test
+    public void testGroupCommitBatchesMessages() throws Exception {
+        SpoolConfig config = SpoolConfig.builder(m_directory).groupCommitWindowMicros(50_000).maxGroupSize(16).build();
+
+        try(MessageSpool spool = MessageSpool.open(config)){
+            SpoolWriter writer = spool.writer(FsyncPolicy.GROUP_WINDOW);
+
+            // Act
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for(int i = 0; i < 64; i++){
+                futures.add(writer.append(bytes("message " + i)));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get();
+
+            // Assert
+            assertEquals(64, spool.getGroupCommittedMessageCount());
+            assertTrue(spool.getGroupCommitCount() < 64, "Messages should share group commits");
+            assertEquals("message 63", new String(spool.read(futures.get(63).get()), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Tests that a full segment is sealed and writes continue in a new one.
+     */
+    @Test
+    public void testSegmentRollover() throws IOException {
+        SpoolConfig config = SpoolConfig.builder(m_directory).segmentSize(4096).build();
+
+        try(MessageSpool spool = MessageSpool.open(config)){
+            SpoolWriter writer = spool.writer(FsyncPolicy.ASYNC);
+            long first = writer.appendAndAwait(new byte[3000]);
+
+            // Act
+            long second = writer.appendAndAwait(new byte[3000]);
+
+            // Assert
+            assertEquals(2, spool.getSegmentCount());
+            assertNotEquals(spool.getEntry(first).getSegmentId(), spool.getEntry(second).getSegmentId());
+            assertEquals(3000, spool.read(second).length);
+            assertThrows(SpoolException.class, () -> writer.appendAndAwait(new byte[5000]));
+        }
+    }
+
+    /**
+     * Tests that messages and their states survive closing and reopening the spool.
+     */
+    @Test
+    public void testReopenPreservesIndex() throws IOException {
+        long delivered;
+        long queued;
+
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build())){
+            SpoolWriter writer = spool.writer();
+            delivered = writer.appendAndAwait(bytes("first"));
+            queued = writer.appendAndAwait(bytes("second"));
+            spool.setState(delivered, MessageState.DELIVERED);
+        }
+
+        // Act
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).build())){
+            long next = spool.writer().appendAndAwait(bytes("third"));
+
+            // Assert
+            assertEquals(MessageState.DELIVERED, spool.getEntry(delivered).getState());
+            assertEquals("second", new String(spool.read(queued), StandardCharsets.US_ASCII));
+            assertEquals(queued + 1, next);
+            assertNull(spool.getEntry(next + 1));
+        }
+    }
+
+    /**
+     * Encodes a test message as US-ASCII.
+     *
+     * @param value The message text.
+     * @return The encoded bytes.
+     */
+    private static byte[] bytes(String value){
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,232 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.protocol.session.MailEnvelope;
+import com.couture.mercury.core.spool.DeliveryRecord;
+import com.couture.mercury.core.spool.DeliveryState;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageState;
+import com.couture.mercury.core.spool.MessageStore;
+import com.couture.mercury.core.spool.SpoolCompactor;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import com.couture.mercury.core.spool.StoredEnvelope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for single-copy message storage with per-recipient delivery records.
+ */
+public class MessageStoreTests {
+    private static final byte[] BODY = "Subject: Hello\r\n\r\nHello world\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a message to many recipients stores one body and one pending record per recipient.
+     */
+    @Test
+    public void testManyRecipientsShareOneBody() throws IOException {
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            List<String> recipients = new ArrayList<>();
+            for(int i = 0; i < 100; i++){
+                recipients.add("<user" + i + "@Example.com>");
+            }
+
+            // Act
+            StoredEnvelope envelope = store.store(writer(spool), "sender@example.com", recipients, ByteBuffer.wrap(BODY)).join();
+
+            // Assert
+            assertEquals(1, store.getBodiesStored());
+            assertEquals(100, envelope.getRecipients().size());
+            assertEquals("user7@example.com", envelope.getRecipients().get(7));
+            assertArrayEquals(BODY, store.readBody(envelope));
+            List<DeliveryRecord> records = store.getDeliveries(envelope);
+            assertEquals(100, records.size());
+            assertEquals(99, records.get(99).getRecipientIndex());
+            assertTrue(records.stream().allMatch(record -> record.getState() == DeliveryState.PENDING));
+            assertEquals("sender@example.com", store.readEnvelope(envelope.getEnvelopeId()).getReversePath());
+        }
+    }
+
+    /**
+     * Tests that an identical body stored within the dedup window is referenced instead of stored again,
+     * and stays queued until every envelope referencing it is done.
+     */
+    @Test
+    public void testIdenticalBodyIsDeduplicated() throws IOException {
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            SpoolWriter writer = writer(spool);
+            StoredEnvelope first = store.store(writer, "a@example.com", List.of("x@example.com"), ByteBuffer.wrap(BODY)).join();
+
+            // Act
+            StoredEnvelope second = store.store(writer, "b@example.com", List.of("y@example.com"), ByteBuffer.wrap(BODY)).join();
+            store.updateDelivery(first.getFirstRecordId(), DeliveryState.DELIVERED);
+
+            // Assert
+            assertEquals(first.getBodyId(), second.getBodyId());
+            assertEquals(1, store.getBodiesStored());
+            assertEquals(1, store.getBodiesDeduplicated());
+            assertEquals(MessageState.DELIVERED, spool.getEntry(first.getEnvelopeId()).getState());
+            assertEquals(MessageState.QUEUED, spool.getEntry(first.getBodyId()).getState());
+
+            store.updateDelivery(second.getFirstRecordId(), DeliveryState.FAILED);
+            assertEquals(MessageState.DELIVERED, spool.getEntry(first.getBodyId()).getState());
+            assertEquals(0, store.getPendingEnvelopeCount());
+        }
+    }
+
+    /**
+     * Tests that deferrals keep a record pending and count attempts, and that final records cannot change.
+     */
+    @Test
+    public void testDeferralAndFinalState() throws IOException {
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool, 0)){
+            // Arrange
+            StoredEnvelope envelope = store.store(writer(spool), null, List.of("x@example.com", "y@example.com"),
+                    ByteBuffer.wrap(BODY)).join();
+            long record = envelope.getFirstRecordId();
+
+            // Act
+            store.updateDelivery(record, DeliveryState.DEFERRED);
+            store.updateDelivery(record, DeliveryState.DELIVERED);
+
+            // Assert
+            assertEquals(2, store.getDelivery(record).getAttempts());
+            assertEquals(MessageState.QUEUED, spool.getEntry(envelope.getEnvelopeId()).getState());
+            assertThrows(IllegalStateException.class, () -> store.updateDelivery(record, DeliveryState.FAILED));
+            assertEquals(1, store.getUndeliveredRecords().size());
+        }
+    }
+
+    /**
+     * Tests that pending deliveries are rebuilt from the ledger when the store is reopened.
+     */
+    @Test
+    public void testPendingDeliveriesSurviveRestart() throws IOException {
+        StoredEnvelope envelope;
+
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            envelope = store.store(writer(spool), "a@example.com", List.of("x@example.com", "y@example.com"),
+                    ByteBuffer.wrap(BODY)).join();
+            store.updateDelivery(envelope.getFirstRecordId(), DeliveryState.DELIVERED);
+        }
+
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Act
+            List<DeliveryRecord> undelivered = store.getUndeliveredRecords();
+
+            // Assert
+            assertEquals(1, undelivered.size());
+            assertEquals(envelope.getFirstRecordId() + 1, undelivered.get(0).getRecordId());
+            assertEquals(1, store.getPendingEnvelopeCount());
+
+            store.updateDelivery(undelivered.get(0).getRecordId(), DeliveryState.DELIVERED);
+            assertEquals(MessageState.DELIVERED, spool.getEntry(envelope.getBodyId()).getState());
+        }
+    }
+
+    /**
+     * Tests that the transaction is read from the session's envelope: reverse-path, recipients and content.
+     */
+    @Test
+    public void testStoreFromMailEnvelope() throws IOException {
+        try(MessageSpool spool = open(); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            MailEnvelope mail = new MailEnvelope();
+            mail.setReversePath("sender@example.com");
+            mail.getRecipients().add("<first@example.com>");
+            mail.getRecipients().add("<second@example.com>");
+            mail.getMessageBuffer().write(ByteBuffer.wrap(BODY));
+
+            // Act
+            StoredEnvelope envelope = store.store(writer(spool), mail).join();
+
+            // Assert
+            assertEquals(List.of("first@example.com", "second@example.com"), envelope.getRecipients());
+            assertEquals("sender@example.com", envelope.getReversePath());
+            assertArrayEquals(BODY, store.readBody(envelope));
+            assertTrue(store.store(writer(spool), new MailEnvelope()).isCompletedExceptionally());
+        }
+    }
+
+    /**
+     * Tests that compaction reclaims the ledger records below the oldest undelivered one, and that
+     * the remaining records keep their identifiers, including after a restart.
+     */
+    @Test
+    public void testCompactionReclaimsDeliveredRecords() throws IOException {
+        long pendingRecordId;
+        Path ledger = m_directory.resolve("delivery.ldg");
+        SpoolConfig config = SpoolConfig.builder(m_directory).segmentSize(8 << 20).build();
+
+        try(MessageSpool spool = MessageSpool.open(config); MessageStore store = MessageStore.open(spool)){
+            // Arrange
+            List<String> recipients = new ArrayList<>();
+            for(int i = 0; i < 40_000; i++){
+                recipients.add("r" + i + "@example.com");
+            }
+            StoredEnvelope delivered = store.store(writer(spool), "sender@example.com", recipients, ByteBuffer.wrap(BODY)).join();
+            for(int i = 0; i < recipients.size(); i++){
+                store.updateDelivery(delivered.getFirstRecordId() + i, DeliveryState.DELIVERED);
+            }
+            StoredEnvelope pending = store.store(writer(spool), "sender@example.com", List.of("last@example.com"),
+                    ByteBuffer.wrap(BODY)).join();
+            pendingRecordId = pending.getFirstRecordId();
+            long sizeBefore = Files.size(ledger);
+
+            // Act
+            new SpoolCompactor(spool).compact();
+
+            // Assert
+            assertTrue(Files.size(ledger) < sizeBefore);
+            assertNull(store.getDelivery(delivered.getFirstRecordId()));
+            assertEquals(DeliveryState.PENDING, store.getDelivery(pendingRecordId).getState());
+            assertEquals(1, store.getUndeliveredRecords().size());
+        }
+
+        try(MessageSpool spool = MessageSpool.open(config); MessageStore store = MessageStore.open(spool)){
+            List<DeliveryRecord> undelivered = store.getUndeliveredRecords();
+            assertEquals(1, undelivered.size());
+            assertEquals(pendingRecordId, undelivered.get(0).getRecordId());
+
+            StoredEnvelope next = store.store(writer(spool), null, List.of("next@example.com"), ByteBuffer.wrap(BODY)).join();
+            assertEquals(pendingRecordId + 1, next.getFirstRecordId());
+            store.updateDelivery(pendingRecordId, DeliveryState.DELIVERED);
+            assertEquals(List.of(pendingRecordId + 1), store.getUndeliveredRecords().stream().map(DeliveryRecord::getRecordId).toList());
+        }
+    }
+
+    /**
+     * Opens the spool under test.
+     *
+     * @return The spool.
+     * @throws IOException If the spool cannot be opened.
+     */
+    private MessageSpool open() throws IOException {
+        return MessageSpool.open(SpoolConfig.builder(m_directory).segmentSize(1 << 20).build());
+    }
+
+    /**
+     * Creates a writer that forces every message, so the tests do not wait for group commits.
+     *
+     * @param spool The spool.
+     * @return The writer.
+     */
+    private static SpoolWriter writer(MessageSpool spool){
+        return spool.writer(FsyncPolicy.PER_MESSAGE);
+    }
+}
@@ -0,0 +1,116 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.spool.CompactionResult;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageState;
+import com.couture.mercury.core.spool.SpoolCompactor;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for spool compaction. Segments hold two 1500 byte messages each.
+ */
+public class SpoolCompactorTests {
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a sealed segment without live messages is deleted.
+     */
+    @Test
+    public void testDeadSegmentIsDeleted() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(config())){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            long first = writer.appendAndAwait(new byte[1500]);
+            long second = writer.appendAndAwait(new byte[1500]);
+            writer.appendAndAwait(new byte[1500]);
+            spool.setState(first, MessageState.DELIVERED);
+            spool.setState(second, MessageState.BOUNCED);
+
+            // Act
+            CompactionResult result = new SpoolCompactor(spool).compact();
+
+            // Assert
+            assertEquals(1, result.getSegmentsDeleted());
+            assertEquals(0, result.getMessagesRelocated());
+            assertEquals(3040, result.getBytesReclaimed());
+            assertEquals(1, spool.getSegmentCount());
+        }
+    }
+
+    /**
+     * Tests that live messages of a mostly dead segment are relocated and stay readable, including after a restart.
+     */
+    @Test
+    public void testMostlyDeadSegmentIsRewritten() throws IOException {
+        long live;
+
+        try(MessageSpool spool = MessageSpool.open(config())){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            long dead = writer.appendAndAwait(new byte[3000]);
+            live = writer.appendAndAwait(new byte[]{1, 2, 3});
+            writer.appendAndAwait(new byte[3000]);
+            spool.setState(dead, MessageState.DELIVERED);
+            int originalSegment = spool.getEntry(live).getSegmentId();
+
+            // Act
+            SpoolCompactor compactor = new SpoolCompactor(spool);
+            CompactionResult result = compactor.compact();
+
+            // Assert
+            assertEquals(1, result.getSegmentsRewritten());
+            assertEquals(1, result.getMessagesRelocated());
+            assertEquals(23, result.getBytesCopied());
+            assertEquals(result.getBytesReclaimed(), compactor.getBytesReclaimed());
+            assertNotEquals(originalSegment, spool.getEntry(live).getSegmentId());
+            assertArrayEquals(new byte[]{1, 2, 3}, spool.read(live));
+        }
+
+        try(MessageSpool spool = MessageSpool.open(config())){
+            assertArrayEquals(new byte[]{1, 2, 3}, spool.read(live));
+            assertEquals(MessageState.QUEUED, spool.getEntry(live).getState());
+        }
+    }
+
+    /**
+     * Tests that segments with enough live data are left alone.
+     */
+    @Test
+    public void testLiveSegmentIsKept() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(config())){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            long first = writer.appendAndAwait(new byte[1500]);
+            writer.appendAndAwait(new byte[1500]);
+            writer.appendAndAwait(new byte[1500]);
+            spool.setState(first, MessageState.DELIVERED);
+
+            // Act
+            CompactionResult result = new SpoolCompactor(spool).compact();
+
+            // Assert
+            assertEquals(0, result.getSegmentsDeleted());
+            assertEquals(2, spool.getSegmentCount());
+        }
+    }
+
+    /**
+     * Creates a spool configuration with small segments.
+     *
+     * @return The configuration.
+     */
+    private SpoolConfig config(){
+        return SpoolConfig.builder(m_directory).segmentSize(4096).build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.spool.CompactionResult;
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.MessageState;
+import com.couture.mercury.core.spool.SpoolCompactor;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolEntry;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for block compression of spooled bodies. Compressed bodies use 4 KiB blocks.
+ */
+public class SpoolCompressionTests {
+    private static final byte[] TEXT = text(40_000);
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that a text body is stored compressed and reads back unchanged, in full and by range.
+     */
+    @Test
+    public void testTextBodyIsCompressed() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(config())){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            int half = TEXT.length / 2;
+
+            // Act
+            long id = writer.append(ByteBuffer.wrap(TEXT, 0, half), ByteBuffer.wrap(TEXT, half, TEXT.length - half)).join();
+
+            // Assert
+            SpoolEntry entry = spool.getEntry(id);
+            assertTrue(entry.isCompressed());
+            assertTrue(entry.getLength() * 3 < TEXT.length, "Text should compress at least 3x");
+            assertArrayEquals(TEXT, spool.read(id));
+            assertArrayEquals(Arrays.copyOfRange(TEXT, 4000, 13000), spool.read(id, 4000, 9000));
+            assertArrayEquals(Arrays.copyOfRange(TEXT, TEXT.length - 10, TEXT.length), spool.read(id, TEXT.length - 10, 10));
+            assertThrows(IOException.class, () -> spool.read(id, TEXT.length - 10, 11));
+
+            ByteArrayOutputStream delivered = new ByteArrayOutputStream();
+            assertEquals(TEXT.length, spool.transferTo(id, new ByteBuffer[0], Channels.newChannel(delivered)));
+            assertArrayEquals(TEXT, delivered.toByteArray());
+        }
+    }
+
+    /**
+     * Tests that small bodies and bodies that do not shrink are stored as they are.
+     */
+    @Test
+    public void testSmallAndIncompressibleBodiesAreStoredPlain() throws IOException {
+        try(MessageSpool spool = MessageSpool.open(config())){
+            // Arrange
+            SpoolWriter writer = spool.writer(FsyncPolicy.PER_MESSAGE);
+            byte[] random = new byte[10_000];
+            new Random(42).nextBytes(random);
+
+            // Act
+            long small = writer.appendAndAwait(Arrays.copyOf(TEXT, 1000));
+            long incompressible = writer.appendAndAwait(random);
+
+            // Assert
+            assertFalse(spool.getEntry(small).isCompressed());
+            assertFalse(spool.getEntry(incompressible).isCompressed());
+            assertArrayEquals(random, spool.read(incompressible));
+            assertArrayEquals(Arrays.copyOfRange(random, 100, 200), spool.read(incompressible, 100, 100));
+        }
+    }
+
+    /**
+     * Tests that compressed records keep their format through crash recovery and compaction,
+     * and stay readable once compression has been turned off.
+     */
+    @Test
+    public void testCompressedRecordsSurviveRecoveryAndCompaction() throws IOException {
+        // Arrange
+        MessageSpool crashed = MessageSpool.open(config());
+        SpoolWriter crashedWriter = crashed.writer(FsyncPolicy.PER_MESSAGE);
+        byte[] random = new byte[6000];
+        new Random(42).nextBytes(random);
+        long dead = crashedWriter.appendAndAwait(random);
+        long live = crashedWriter.appendAndAwait(TEXT);
+
+        // Act
+        try(MessageSpool spool = MessageSpool.open(SpoolConfig.builder(m_directory).segmentSize(16384).compactionLiveRatio(0.9).build())){
+            spool.setState(dead, MessageState.DELIVERED);
+            spool.writer(FsyncPolicy.PER_MESSAGE).appendAndAwait(new byte[9000]);
+            CompactionResult result = new SpoolCompactor(spool).compact();
+
+            // Assert
+            assertEquals(1, result.getMessagesRelocated());
+            assertTrue(spool.getEntry(live).isCompressed());
+            assertArrayEquals(TEXT, spool.read(live));
+        }
+    }
+
+    /**
+     * Creates a spool configuration that compresses bodies of 2 KiB and more.
+     *
+     * @return The configuration.
+     */
+    private SpoolConfig config(){
+        return SpoolConfig.builder(m_directory)
+                .segmentSize(16384)
+                .compressionThreshold(2048)
+                .compressionBlockSize(4096)
+                .build();
+    }
+
+    /**
+     * Generates mail-like text.
+     *
+     * @param length The length in bytes.
+     * @return The text.
+     */
+    private static byte[] text(int length){
+        String[] words = {"meeting", "quarterly", "report", "please", "review", "the", "attached", "budget", "thanks", "regards"};
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder(length + 16);
+        int line = 0;
+        while(text.length() < length){
+            String word = words[random.nextInt(words.length)];
+            text.append(word);
+            line += word.length() + 1;
+            if(line > 70){
+                text.append("\r\n");
+                line = 0;
+            }
+            else{
+                text.append(' ');
+            }
+        }
+        return text.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+    }
+}
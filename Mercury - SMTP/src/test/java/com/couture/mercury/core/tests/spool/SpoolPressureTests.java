@@ -0,0 +1,124 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.protocol.commands.CommandException;
+import com.couture.mercury.core.protocol.util.CommandConstants;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolPressure;
+import com.couture.mercury.core.spool.SpoolReadThrottle;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for spool backpressure on the receive path.
+ */
+public class SpoolPressureTests {
+    private static final SpoolConfig CONFIG = SpoolConfig.builder(Path.of("spool"))
+            .pressureBytes(1000, 4000)
+            .pressureLatencyMillis(10, 100)
+            .build();
+
+    /**
+     * Tests that queued bytes throttle at the high-water mark and release only at the low-water mark,
+     * and that new mail is refused with 452 in between.
+     */
+    @Test
+    public void testQueuedBytesHysteresis() throws CommandException {
+        // Arrange
+        SpoolPressure pressure = new SpoolPressure(CONFIG);
+        List<SpoolPressure.Level> transitions = new ArrayList<>();
+        pressure.addListener(transitions::add);
+
+        // Act & Assert
+        pressure.writeQueued(3000);
+        pressure.checkAcceptingMail();
+        pressure.writeQueued(1000);
+        assertEquals(SpoolPressure.Level.THROTTLED, pressure.getLevel());
+        assertEquals(1.0, pressure.getPressure());
+
+        pressure.writeCompleted(2000, 0);
+        assertEquals(SpoolPressure.Level.THROTTLED, pressure.getLevel());
+        CommandException refused = assertThrows(CommandException.class, pressure::checkAcceptingMail);
+        assertEquals(CommandConstants.ResponseCodes.INSUFFICIENT_STORAGE, refused.getResponseCode());
+
+        pressure.writeRefused(1000);
+        assertEquals(SpoolPressure.Level.NORMAL, pressure.getLevel());
+        assertEquals(1000, pressure.getQueuedBytes());
+        assertEquals(List.of(SpoolPressure.Level.THROTTLED, SpoolPressure.Level.NORMAL), transitions);
+    }
+
+    /**
+     * Tests that slow writes throttle the receive path while writes are in flight and that a drained
+     * spool is not held back by its latency history.
+     */
+    @Test
+    public void testWriteLatencyThrottlesWhileInFlight(){
+        // Arrange
+        SpoolPressure pressure = new SpoolPressure(CONFIG);
+        long slow = TimeUnit.MILLISECONDS.toNanos(200);
+
+        // Act & Assert
+        pressure.writeQueued(10);
+        pressure.writeQueued(10);
+        pressure.writeCompleted(10, slow);
+        assertEquals(SpoolPressure.Level.THROTTLED, pressure.getLevel());
+        assertEquals(200, pressure.getWriteLatencyMillis());
+
+        pressure.writeCompleted(10, slow);
+        assertEquals(SpoolPressure.Level.NORMAL, pressure.getLevel());
+        assertEquals(0, pressure.getWriteLatencyMillis());
+    }
+
+    /**
+     * Tests that read interest is cleared on connections in DATA under pressure and restored on release,
+     * and that connections registered while throttled are paused straight away.
+     */
+    @Test
+    public void testReadThrottleTogglesReadInterest() throws IOException {
+        // Arrange
+        SpoolPressure pressure = new SpoolPressure(CONFIG);
+        SpoolReadThrottle throttle = new SpoolReadThrottle(pressure);
+        try(Selector selector = Selector.open()){
+            SelectionKey first = register(selector);
+            SelectionKey second = register(selector);
+            throttle.register(first);
+
+            // Act & Assert
+            pressure.writeQueued(4000);
+            assertTrue(throttle.isThrottled());
+            assertEquals(0, first.interestOps() & SelectionKey.OP_READ);
+
+            throttle.register(second);
+            assertEquals(0, second.interestOps() & SelectionKey.OP_READ);
+            throttle.unregister(second);
+            assertEquals(SelectionKey.OP_READ, second.interestOps());
+
+            pressure.writeCompleted(4000, 0);
+            assertFalse(throttle.isThrottled());
+            assertEquals(SelectionKey.OP_READ, first.interestOps());
+            assertEquals(1, throttle.getRegisteredCount());
+        }
+    }
+
+    /**
+     * Registers the read end of a new pipe for reading.
+     *
+     * @param selector The selector.
+     * @return The key.
+     * @throws IOException If the pipe cannot be opened.
+     */
+    private static SelectionKey register(Selector selector) throws IOException {
+        Pipe.SourceChannel source = Pipe.open().source();
+        source.configureBlocking(false);
+        return source.register(selector, SelectionKey.OP_READ);
+    }
+}
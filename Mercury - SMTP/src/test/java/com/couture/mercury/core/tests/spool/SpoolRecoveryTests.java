@@ -0,0 +1,150 @@
+package com.couture.mercury.core.tests.spool;
+
+import com.couture.mercury.core.spool.FsyncPolicy;
+import com.couture.mercury.core.spool.MessageSpool;
+import com.couture.mercury.core.spool.RecoveryReport;
+import com.couture.mercury.core.spool.SpoolConfig;
+import com.couture.mercury.core.spool.SpoolWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for spool crash recovery. A crash is simulated by abandoning a spool without closing it,
+ * which leaves its writes in the page cache exactly as a killed process would.
+ */
+public class SpoolRecoveryTests {
+
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that only the segment tail written after the checkpoint is replayed.
+     */
+    @Test
+    public void testReplayStartsFromCheckpoint() throws IOException {
+        // Arrange
+        MessageSpool crashed = MessageSpool.open(config());
+        SpoolWriter writer = crashed.writer(FsyncPolicy.PER_MESSAGE);
+        for(int i = 0; i < 5; i++){
+            writer.appendAndAwait(bytes("before " + i));
+        }
+        crashed.checkpoint();
+        long last = 0;
+        for(int i = 0; i < 3; i++){
+            last = writer.appendAndAwait(bytes("after " + i));
+        }
+
+        // Act
+        try(MessageSpool spool = MessageSpool.open(config())){
+            RecoveryReport report = spool.getRecoveryReport();
+
+            // Assert
+            assertTrue(report.isFromCheckpoint());
+            assertEquals(3, report.getRecordsReplayed());
+            assertEquals(0, report.getBytesTruncated());
+            assertEquals("before 0", new String(spool.read(1), StandardCharsets.US_ASCII));
+            assertEquals("after 2", new String(spool.read(last), StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Tests that a partially written record at the end of a segment is truncated.
+     */
+    @Test
+    public void testPartialRecordIsTruncated() throws IOException {
+        // Arrange
+        long last;
+        try(MessageSpool spool = MessageSpool.open(config())){
+            last = spool.writer().appendAndAwait(bytes("complete"));
+        }
+
+        Path segment = segmentFile();
+        long intactSize = Files.size(segment);
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.APPEND)){
+            // Header of a 100 byte record followed by only 10 bytes of its body.
+            ByteBuffer torn = ByteBuffer.allocate(30);
+            torn.putInt(0x4D53504C).putLong(last + 1).putInt(100).putInt(0).put(new byte[10]).flip();
+            channel.write(torn);
+        }
+
+        // Act
+        try(MessageSpool spool = MessageSpool.open(config())){
+            long next = spool.writer().appendAndAwait(bytes("next"));
+
+            // Assert
+            assertEquals(30, spool.getRecoveryReport().getBytesTruncated());
+            assertEquals(last + 1, next);
+            assertEquals("next", new String(spool.read(next), StandardCharsets.US_ASCII));
+        }
+        assertEquals(intactSize + 24, Files.size(segment));
+    }
+
+    /**
+     * Tests that a record with a corrupt body is discarded along with its index entry.
+     */
+    @Test
+    public void testCorruptRecordIsDiscarded() throws IOException {
+        // Arrange
+        MessageSpool crashed = MessageSpool.open(config());
+        SpoolWriter writer = crashed.writer(FsyncPolicy.PER_MESSAGE);
+        long intact = writer.appendAndAwait(bytes("intact"));
+        long corrupt = writer.appendAndAwait(bytes("corrupt"));
+
+        Path segment = segmentFile();
+        try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), Files.size(segment) - 1);
+        }
+
+        // Act
+        try(MessageSpool spool = MessageSpool.open(config())){
+            RecoveryReport report = spool.getRecoveryReport();
+
+            // Assert
+            assertEquals(1, report.getEntriesDiscarded());
+            assertNotNull(spool.getEntry(intact));
+            assertNull(spool.getEntry(corrupt));
+        }
+    }
+
+    /**
+     * Creates a spool configuration without automatic checkpoints.
+     *
+     * @return The configuration.
+     */
+    private SpoolConfig config(){
+        return SpoolConfig.builder(m_directory).checkpointInterval(0).build();
+    }
+
+    /**
+     * Finds the single segment file of the spool.
+     *
+     * @return The segment file.
+     * @throws IOException If the directory cannot be listed.
+     */
+    private Path segmentFile() throws IOException {
+        try(Stream<Path> files = Files.list(m_directory)){
+            return files.filter(file -> file.getFileName().toString().endsWith(".spool")).findFirst().orElseThrow();
+        }
+    }
+
+    /**
+     * Encodes a test message as US-ASCII.
+     *
+     * @param value The message text.
+     * @return The encoded bytes.
+     */
+    private static byte[] bytes(String value){
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,126 @@
+package com.couture.mercury.core.tests.io;
+
+import com.couture.mercury.core.protocol.io.ArenaBufferAllocator;
+import com.couture.mercury.core.protocol.io.MessageBuffer;
+import com.couture.mercury.core.protocol.session.SmtpSession;
+import com.couture.mercury.core.protocol.util.ValidationConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for off-heap message buffers allocated from a per-session arena. Only compiled on Java 22 and later.
+ */
+public class ArenaBufferAllocatorTests {
+    @TempDir
+    Path m_directory;
+
+    /**
+     * Tests that message content is held off-heap and reads back unchanged.
+     */
+    @Test
+    public void testContentIsHeldOffHeap() throws IOException {
+        // Arrange
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator(1024);
+        MessageBuffer buffer = new MessageBuffer(allocator, 4096, m_directory);
+        byte[] message = new byte[3000];
+        for(int i = 0; i < message.length; i++){
+            message[i] = (byte) ('a' + i % 26);
+        }
+
+        // Act
+        buffer.write(ByteBuffer.wrap(message));
+
+        // Assert
+        assertTrue(allocator.isOpen());
+        assertEquals(3072, allocator.getAllocatedBytes());
+        ByteBuffer[] buffers = buffer.buffers();
+        assertTrue(buffers[0].isDirect());
+
+        byte[] read = new byte[message.length];
+        int position = 0;
+        for(ByteBuffer part : buffers){
+            int length = part.remaining();
+            part.get(read, position, length);
+            position += length;
+        }
+        assertArrayEquals(message, read);
+    }
+
+    /**
+     * Tests that RSET closes the arena and leaves earlier buffers inaccessible.
+     */
+    @Test
+    public void testResetClosesArena() throws IOException {
+        // Arrange
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator(1024);
+        SmtpSession session = new SmtpSession(ValidationConstants.SESSION_MEMORY_BUDGET,
+                new MessageBuffer(allocator, 4096, m_directory));
+        MessageBuffer buffer = session.getEnvelope().getMessageBuffer();
+        buffer.write(ByteBuffer.wrap(new byte[2000]));
+        ByteBuffer stale = buffer.buffers()[0];
+
+        // Act
+        session.resetTransaction();
+
+        // Assert
+        assertFalse(allocator.isOpen());
+        assertEquals(0, allocator.getAllocatedBytes());
+        assertThrows(IllegalStateException.class, () -> stale.get(0));
+    }
+
+    /**
+     * Tests that buffers returned when a message spills are reused within the transaction.
+     */
+    @Test
+    public void testSpilledBuffersAreReused() throws IOException {
+        // Arrange
+        ArenaBufferAllocator allocator = new ArenaBufferAllocator(1024);
+        MessageBuffer buffer = new MessageBuffer(allocator, 2048, m_directory);
+        buffer.write(ByteBuffer.wrap(new byte[2000]));
+
+        // Act
+        buffer.write(ByteBuffer.wrap(new byte[2000]));
+        ByteBuffer reused = allocator.acquire();
+
+        // Assert
+        assertTrue(buffer.isSpilled());
+        assertEquals(2048, allocator.getAllocatedBytes());
+        assertEquals(0, reused.position());
+        buffer.close();
+        assertFalse(allocator.isOpen());
+    }
+
+    /**
+     * Tests that content in a shared arena can be read by another thread, while a confined
+     * allocator reports its content as confined until it spills.
+     */
+    @Test
+    public void testSharedArenaIsReadableFromOtherThreads() throws Exception {
+        // Arrange
+        MessageBuffer shared = new MessageBuffer(new ArenaBufferAllocator(1024, true), 4096, m_directory);
+        MessageBuffer confined = new MessageBuffer(new ArenaBufferAllocator(1024), 16, m_directory);
+        shared.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        confined.write(ByteBuffer.wrap(new byte[8]));
+        assertTrue(confined.isThreadConfined());
+
+        // Act
+        ByteBuffer[] buffers = shared.buffers();
+        byte read = CompletableFuture.supplyAsync(() -> buffers[0].get(2)).get(10, TimeUnit.SECONDS);
+        confined.write(ByteBuffer.wrap(new byte[32]));
+
+        // Assert
+        assertEquals(3, read);
+        assertFalse(shared.isThreadConfined());
+        assertFalse(confined.isThreadConfined());
+        CompletableFuture.runAsync(shared::reset).get(10, TimeUnit.SECONDS);
+        confined.reset();
+    }
+}